@@ -1,19 +1,29 @@
 package com.example.notificationmicro.config;
 
+import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
+
 @Configuration
+@Profile("!reactive")
 public class RestTemplateConfig {
 
     @Bean
-    public RestTemplate restTemplate(){
-        return new RestTemplate();
+    public RestTemplate restTemplate(RestTemplateBuilder restTemplateBuilder){
+        // Timeouts, so a hung service on the other end fails our call instead of holding a request thread forever
+        return restTemplateBuilder
+                .setConnectTimeout(Duration.ofSeconds(2))
+                .setReadTimeout(Duration.ofSeconds(5))
+                .build();
     }
 }
 
 
 // @Configuration tells Spring to look inside this class at application start and create bean of the annotated methods, so we can then autowire them
 // @Bean is a method-level annotation that allows us to create a bean of that specific method
-// RestTemplate is a class provided by Spring Framework that allows us to make Rest calls to other web services (in this case Spring ReferAll Main)
\ No newline at end of file
+// RestTemplate is a class provided by Spring Framework that allows us to make Rest calls to other web services (in this case Spring ReferAll Main)
+// @Profile("!reactive"): nothing in the reactive profile calls out to other services (and Spring Boot only makes a RestTemplateBuilder for servlet apps)
@@ -0,0 +1,15 @@
+package com.example.notificationmicro.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "scheduling.enabled", havingValue = "true", matchIfMissing = true)
+public class SchedulingConfig {
+}
+
+
+// @EnableScheduling turns on the @Scheduled background jobs (NotificationHub's heartbeats run on its own timer, so a slow client can't hold these up)
+// @ConditionalOnProperty lets us switch them off with scheduling.enabled=false, which the tests do
@@ -1,23 +1,42 @@
 package com.example.notificationmicro.controller;
 
 
+import com.example.notificationmicro.dto.InboxPageDTO;
 import com.example.notificationmicro.dto.NotificationDTO;
 import com.example.notificationmicro.model.Notification;
+import com.example.notificationmicro.service.NotificationHub;
 import com.example.notificationmicro.service.NotificationService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
 import java.util.List;
 
 @RestController
+@Profile("!reactive")
 @RequestMapping("/notifications")
 public class NotificationController {
 
     @Autowired
     NotificationService notificationService;
 
+    @Autowired
+    NotificationHub notificationHub;
+
+    // Spring's own ObjectMapper, so dates are read the same way as in @RequestBody
+    @Autowired
+    ObjectMapper objectMapper;
+
     // This saves the notificationDTO to the notification DTO with the newly added comment's info, the associated post, and who that post belongs to.
     // By having it saved to the Notification DB, we can then query the DB by user (who the post belongs to) to notify a user of comments on their post.
     @PostMapping
@@ -29,6 +48,74 @@ public class NotificationController {
         return new ResponseEntity<>(newNotificationToSend, HttpStatus.CREATED);
     }
 
+    // The main app sends the notifications queued in its outbox here in batches, so it makes one call per batch instead of one call per comment.
+    // The body can be a JSON array of notifications, or NDJSON (one notification per line) for streaming large bursts.
+    // Either way we don't read the whole body into a List: the notifications are parsed one at a time and handed straight to the service.
+    @PostMapping(value = "batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<?> addNotifications (HttpServletRequest request) throws IOException {
+        int notificationsSaved;
+        try (MappingIterator<NotificationDTO> notificationDTOs = objectMapper.readerFor(NotificationDTO.class).readValues(request.getInputStream())) {
+            notificationsSaved = notificationService.createNotifications(notificationDTOs);
+        }
+        catch (RuntimeException e) {
+            // The iterator wraps JSON errors in a RuntimeException; anything else isn't the sender's fault
+            if (!(e.getCause() instanceof JsonProcessingException)) {
+                throw e;
+            }
+            // A bad notification rolls back the whole batch, so the sender can fix it and safely send the batch again
+            return ResponseEntity.badRequest().body("Unable to read notifications: " + e.getCause().getMessage());
+        }
+
+        if (notificationsSaved == 0) {
+            return ResponseEntity.badRequest().body("No notifications provided");
+        }
+        return new ResponseEntity<>(notificationsSaved + " notifications saved", HttpStatus.CREATED);
+    }
+
+    // ------- INBOX --------
+    // One page of a user's inbox, newest first, with read/unread state and the unread count, i.e. /notifications/1/inbox?limit=20 and then ?limit=20&before={nextBefore}
+    @GetMapping("{userId}/inbox")
+    public ResponseEntity<?> getInbox (@PathVariable Integer userId, @RequestParam(required = false) Integer before, @RequestParam(defaultValue = "20") Integer limit) {
+        if (limit <= 0) {
+            return ResponseEntity.badRequest().body("Inbox limit must be greater than 0");
+        }
+        InboxPageDTO inboxPage = notificationService.getInbox(userId, before, limit);
+        return ResponseEntity.ok(inboxPage);
+    }
+
+    // Just the number of unread notifications, for the notification bell
+    @GetMapping("{userId}/unread-count")
+    public ResponseEntity<Long> getUnreadCount (@PathVariable Integer userId) {
+        return ResponseEntity.ok(notificationService.getUnreadCount(userId));
+    }
+
+    // Mark one notification as read
+    @PutMapping("{userId}/{notificationId}/read")
+    public ResponseEntity<?> markNotificationRead (@PathVariable Integer userId, @PathVariable Integer notificationId) {
+        boolean markedRead = notificationService.markNotificationRead(userId, notificationId);
+        if (!markedRead) {
+            return new ResponseEntity<>("Unread notification not found", HttpStatus.NOT_FOUND);
+        }
+        return ResponseEntity.ok().body("Notification marked as read");
+    }
+
+    // Mark all of a user's notifications as read
+    @PutMapping("{userId}/read")
+    public ResponseEntity<?> markAllNotificationsRead (@PathVariable Integer userId) {
+        int markedRead = notificationService.markAllNotificationsRead(userId);
+        return ResponseEntity.ok().body(markedRead + " notifications marked as read");
+    }
+
+    // ------- STREAM --------
+    // Server-Sent Events: keeps the connection open and pushes each new notification for the user as it is saved, so the front end doesn't need to poll
+    // The front end can open it with new EventSource("http://localhost:8081/notifications/1/stream") and listen for "notification" events
+    // (and "missed" events, which mean it fell behind and should reload the inbox)
+    @CrossOrigin(origins = "*")
+    @GetMapping(value = "{userId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamNotifications (@PathVariable Integer userId) {
+        return notificationHub.subscribe(userId);
+    }
+
    // To query notifications that belong to a user to display on the front end as their list of notifications
     @GetMapping ("{userId}")
     public  ResponseEntity<?> getNotificationByUserId (@PathVariable Integer userId) {
@@ -38,4 +125,12 @@ public class NotificationController {
         }
         return new ResponseEntity<>(notificationsFromUser, HttpStatus.OK);
     }
+
+    // The same notifications streamed as NDJSON (one per line, newest first) when asked for with Accept: application/x-ndjson.
+    // They are written as they are read from the database, so a user with a huge history doesn't need the whole list in memory on either side.
+    @GetMapping (value = "{userId}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamNotificationsByUserId (@PathVariable Integer userId) {
+        StreamingResponseBody notificationsFromUser = out -> notificationService.writeNotificationsFromUser(userId, out);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(notificationsFromUser);
+    }
 }
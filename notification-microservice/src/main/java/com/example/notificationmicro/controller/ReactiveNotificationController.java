@@ -0,0 +1,105 @@
+package com.example.notificationmicro.controller;
+
+import com.example.notificationmicro.dto.InboxPageDTO;
+import com.example.notificationmicro.dto.NotificationDTO;
+import com.example.notificationmicro.model.Notification;
+import com.example.notificationmicro.service.ReactiveNotificationHub;
+import com.example.notificationmicro.service.ReactiveNotificationService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/notifications")
+@Profile("reactive")
+public class ReactiveNotificationController {
+
+    @Autowired
+    ReactiveNotificationService reactiveNotificationService;
+
+    @Autowired
+    ReactiveNotificationHub reactiveNotificationHub;
+
+    // Same as NotificationController.addNotification: save one notification for the owner of the post that was commented on
+    @PostMapping
+    public Mono<ResponseEntity<?>> addNotification (@RequestBody NotificationDTO notificationDTO) {
+        return reactiveNotificationService.createNotification(notificationDTO)
+                .map(newNotificationToSend -> new ResponseEntity<>(newNotificationToSend, HttpStatus.CREATED));
+    }
+
+    // A JSON array or NDJSON of notifications from the main app's outbox. WebFlux decodes them one at a time as the body arrives,
+    // and they go to the database a block at a time, so a big burst is never all in memory.
+    // Not required, so an empty batch gets "No notifications provided" like it does from NotificationController.
+    @PostMapping(value = "batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Mono<ResponseEntity<String>> addNotifications (@RequestBody(required = false) Flux<NotificationDTO> notificationDTOs) {
+        return reactiveNotificationService.createNotifications(notificationDTOs)
+                .map(notificationsSaved -> notificationsSaved == 0
+                        ? ResponseEntity.badRequest().body("No notifications provided")
+                        : new ResponseEntity<>(notificationsSaved + " notifications saved", HttpStatus.CREATED))
+                // A bad notification rolls back the whole batch, so the sender can fix it and safely send the batch again
+                .onErrorResume(ServerWebInputException.class, e -> Mono.just(ResponseEntity.badRequest()
+                        .body("Unable to read notifications: " + NestedExceptionUtils.getMostSpecificCause(e).getMessage())));
+    }
+
+    // ------- INBOX --------
+    @GetMapping("{userId}/inbox")
+    public Mono<ResponseEntity<?>> getInbox (@PathVariable Integer userId, @RequestParam(required = false) Integer before, @RequestParam(defaultValue = "20") Integer limit) {
+        if (limit <= 0) {
+            return Mono.just(ResponseEntity.badRequest().body("Inbox limit must be greater than 0"));
+        }
+        Mono<InboxPageDTO> inboxPage = reactiveNotificationService.getInbox(userId, before, limit);
+        return inboxPage.map(ResponseEntity::ok);
+    }
+
+    @GetMapping("{userId}/unread-count")
+    public Mono<ResponseEntity<Long>> getUnreadCount (@PathVariable Integer userId) {
+        return reactiveNotificationService.getUnreadCount(userId).map(ResponseEntity::ok);
+    }
+
+    @PutMapping("{userId}/{notificationId}/read")
+    public Mono<ResponseEntity<String>> markNotificationRead (@PathVariable Integer userId, @PathVariable Integer notificationId) {
+        return reactiveNotificationService.markNotificationRead(userId, notificationId)
+                .map(markedRead -> markedRead
+                        ? ResponseEntity.ok().body("Notification marked as read")
+                        : new ResponseEntity<>("Unread notification not found", HttpStatus.NOT_FOUND));
+    }
+
+    @PutMapping("{userId}/read")
+    public Mono<ResponseEntity<String>> markAllNotificationsRead (@PathVariable Integer userId) {
+        return reactiveNotificationService.markAllNotificationsRead(userId)
+                .map(markedRead -> ResponseEntity.ok().body(markedRead + " notifications marked as read"));
+    }
+
+    // ------- STREAM --------
+    // Server-Sent Events, with the same "notification" and "missed" events as NotificationController's stream
+    @CrossOrigin(origins = "*")
+    @GetMapping(value = "{userId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> streamNotifications (@PathVariable Integer userId) {
+        return reactiveNotificationHub.subscribe(userId);
+    }
+
+    @GetMapping ("{userId}")
+    public Mono<ResponseEntity<List<Notification>>> getNotificationByUserId (@PathVariable Integer userId) {
+        return reactiveNotificationService.getNotificationsFromUser(userId).collectList().map(ResponseEntity::ok);
+    }
+
+    // With Accept: application/x-ndjson, each notification is written out as it comes off the database connection,
+    // and only as fast as the client reads them (a slow client slows the query down instead of filling up memory)
+    @GetMapping (value = "{userId}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Notification> streamNotificationsByUserId (@PathVariable Integer userId) {
+        return reactiveNotificationService.getNotificationsFromUser(userId);
+    }
+}
+
+// The reactive profile's NotificationController, with the same paths, request bodies, responses and error messages, so the main app can't tell which one it's talking to.
+// Every method hands back a Mono or Flux, and Netty writes the response when it's ready, so no thread waits on the database while a request is in flight.
@@ -0,0 +1,24 @@
+package com.example.notificationmicro.dto;
+
+import com.example.notificationmicro.model.Notification;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+
+public class InboxPageDTO {
+
+    private List<Notification> notifications;
+    private Integer nextBefore;
+    private long unreadCount;
+
+}
+
+// One page of a user's inbox, newest first.
+// nextBefore is the id to pass as ?before= to get the next (older) page, and it is null once there are no older notifications.
+// unreadCount comes along so the bell can update without a second call.
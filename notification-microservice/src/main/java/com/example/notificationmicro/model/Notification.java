@@ -13,10 +13,12 @@ import java.util.List;
 @AllArgsConstructor
 @Entity
 @Data
+@Table(indexes = @Index(name = "idx_notification_inbox", columnList = "user_id, notification_id DESC"))
 
 public class Notification {
     @Id
-    @GeneratedValue(strategy = GenerationType.SEQUENCE)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "notification_seq")
+    @SequenceGenerator(name = "notification_seq", sequenceName = "notification_seq", allocationSize = 500)
     private Integer notificationId;
     private Integer postId;
     private Integer userId;
@@ -27,7 +29,16 @@ public class Notification {
     @CreationTimestamp
     private LocalDateTime timeCommentCreated;
 
+    @Column(name = "is_read")
+    private boolean read;
+
 }
 
 
+// @SequenceGenerator allocationSize = 500: Hibernate reserves 500 ids per trip to the sequence (the "pooled" optimizer) instead of asking for the next id for every notification.
+// ^That matters for /notifications/batch, where one call to the sequence now covers a whole JDBC batch of INSERTs.
+
+// idx_notification_inbox: a user's inbox is read newest first, a page at a time, so this index lets the database jump straight to the user's newest notifications (or to the page cursor) without scanning their whole history.
+// read: false until the user opens it. The column is named is_read since READ is a keyword in SQL.
+
 // The Notification entity mirrors attributes of the NotificationDTO. This is so that when we need to save the NotificationDTO instances to the database, we can convert them into an instance of the Notification entity first.
\ No newline at end of file
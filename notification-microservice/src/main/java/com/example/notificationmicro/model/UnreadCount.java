@@ -0,0 +1,24 @@
+package com.example.notificationmicro.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Data
+
+public class UnreadCount {
+    @Id
+    private Integer userId;
+    private long unreadCount;
+
+}
+
+
+// One row per user with how many of their notifications are still unread.
+// It is kept up to date as notifications are created and read, so the notification bell can show the count with a single primary key lookup instead of counting the user's notifications.
+// The counter is only ever changed with "unreadCount = unreadCount + ?" updates in the database, so two requests at the same time can't overwrite each other's change.
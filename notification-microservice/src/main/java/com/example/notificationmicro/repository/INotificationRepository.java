@@ -1,15 +1,43 @@
 package com.example.notificationmicro.repository;
 
 import com.example.notificationmicro.model.Notification;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface INotificationRepository extends JpaRepository<Notification, Integer> {
    // custom query method to find notifications by user id
 
    Optional<List<Notification>> findNotificationsByUserId (Integer userId);
+
+   // The same notifications newest first, read from a forward-only cursor 100 rows at a time instead of all at once (must be read inside a transaction)
+   @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "100"), @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+   Stream<Notification> streamByUserIdOrderByNotificationIdDesc(Integer userId);
+
+   // Inbox: a user's newest notifications first (first page)
+   List<Notification> findByUserIdOrderByNotificationIdDesc(Integer userId, Pageable pageable);
+
+   // Inbox: the next page, older than the last notification the user saw
+   List<Notification> findByUserIdAndNotificationIdLessThanOrderByNotificationIdDesc(Integer userId, Integer before, Pageable pageable);
+
+   // Mark one notification as read; returns 1 only if it was unread (so we know whether to change the unread count)
+   @Modifying
+   @Query("UPDATE Notification n SET n.read = true WHERE n.notificationId = :notificationId AND n.userId = :userId AND n.read = false")
+   int markRead(@Param("userId") Integer userId, @Param("notificationId") Integer notificationId);
+
+   // Mark all of a user's notifications as read; returns how many were unread
+   @Modifying
+   @Query("UPDATE Notification n SET n.read = true WHERE n.userId = :userId AND n.read = false")
+   int markAllRead(@Param("userId") Integer userId);
 }
@@ -0,0 +1,22 @@
+package com.example.notificationmicro.repository;
+
+import com.example.notificationmicro.model.UnreadCount;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface IUnreadCountRepository extends JpaRepository<UnreadCount, Integer> {
+
+   // Add to (or, with a negative delta, take away from) a user's unread count; returns 0 if the user has no counter yet
+   @Modifying
+   @Query("UPDATE UnreadCount u SET u.unreadCount = u.unreadCount + :delta WHERE u.userId = :userId")
+   int addToUnreadCount(@Param("userId") Integer userId, @Param("delta") long delta);
+
+   // Create a user's counter at 0 if it doesn't exist yet (if another request just created it, this does nothing)
+   @Modifying
+   @Query(value = "INSERT INTO unread_count (user_id, unread_count) VALUES (:userId, 0) ON CONFLICT DO NOTHING", nativeQuery = true)
+   void createUnreadCountIfMissing(@Param("userId") Integer userId);
+}
@@ -0,0 +1,158 @@
+package com.example.notificationmicro.repository;
+
+import com.example.notificationmicro.model.Notification;
+import io.r2dbc.spi.Readable;
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Statement;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+@Profile("reactive")
+public class ReactiveNotificationRepository {
+
+    @Autowired
+    DatabaseClient databaseClient;
+
+    // Same as allocationSize on Notification's @SequenceGenerator: every trip to the sequence reserves this many ids
+    public static final int ID_BLOCK_SIZE = 500;
+
+    private static final String COLUMNS = "notification_id, post_id, user_id, comment_id, comment_text, commented_by_username, time_comment_created, is_read";
+
+    // The ids left in the block we reserved last, nextId to highestId (guarded by this)
+    private int nextId = 1;
+    private int highestId = 0;
+
+    // The first of count new consecutive ids (count is at most ID_BLOCK_SIZE), from the block we already have when there's room,
+    // so saving notifications one at a time doesn't cost a trip to the sequence (or a block of ids) each
+    public Mono<Integer> nextIds(int count) {
+        return Mono.defer(() -> {
+            synchronized (this) {
+                if (highestId - nextId + 1 >= count) {
+                    int firstId = nextId;
+                    nextId += count;
+                    return Mono.just(firstId);
+                }
+            }
+            return reserveIdBlock().map(highest -> {
+                synchronized (this) {
+                    int firstId = highest - ID_BLOCK_SIZE + 1;
+                    nextId = firstId + count;
+                    highestId = highest;
+                    return firstId;
+                }
+            });
+        });
+    }
+
+    // Reserve ID_BLOCK_SIZE ids and return the highest one; the block is (highest - ID_BLOCK_SIZE, highest], like Hibernate's pooled optimizer.
+    // The very first value of a new sequence is 1, which would make a block of mostly negative ids, so then we take the next one (Hibernate does the same).
+    private Mono<Integer> reserveIdBlock() {
+        return nextIdBlock()
+                .flatMap(highest -> highest < ID_BLOCK_SIZE ? nextIdBlock() : Mono.just(highest));
+    }
+
+    private Mono<Integer> nextIdBlock() {
+        return databaseClient.sql("SELECT nextval('notification_seq')")
+                .map(row -> row.get(0, Long.class).intValue())
+                .one();
+    }
+
+    // INSERT the notifications (ids already set) as one statement with a set of parameters per notification, so the driver pipelines them
+    public Mono<Long> insertAll(List<Notification> notifications) {
+        return databaseClient.inConnectionMany(connection -> {
+            Statement insert = connection.createStatement("INSERT INTO notification (" + COLUMNS + ") VALUES ($1, $2, $3, $4, $5, $6, $7, $8)");
+            for (int i = 0; i < notifications.size(); i++) {
+                if (i > 0) {
+                    insert.add();
+                }
+                Notification notification = notifications.get(i);
+                bind(insert, 0, notification.getNotificationId(), Integer.class);
+                bind(insert, 1, notification.getPostId(), Integer.class);
+                bind(insert, 2, notification.getUserId(), Integer.class);
+                bind(insert, 3, notification.getCommentId(), Integer.class);
+                bind(insert, 4, notification.getCommentText(), String.class);
+                bind(insert, 5, notification.getCommentedByUsername(), String.class);
+                bind(insert, 6, notification.getTimeCommentCreated(), LocalDateTime.class);
+                insert.bind(7, notification.isRead());
+            }
+            return Flux.from(insert.execute()).flatMap(Result::getRowsUpdated);
+        }).reduce(0L, Long::sum);
+    }
+
+    private static <T> void bind(Statement statement, int index, T value, Class<T> type) {
+        if (value == null) {
+            statement.bindNull(index, type);
+        }
+        else {
+            statement.bind(index, value);
+        }
+    }
+
+    // All of a user's notifications newest first, as they come off the connection
+    public Flux<Notification> streamByUserIdOrderByNotificationIdDesc(Integer userId) {
+        return databaseClient.sql("SELECT " + COLUMNS + " FROM notification WHERE user_id = :userId ORDER BY notification_id DESC")
+                .bind("userId", userId)
+                .map(ReactiveNotificationRepository::toNotification)
+                .all();
+    }
+
+    // Inbox: a user's newest notifications first (first page)
+    public Flux<Notification> findByUserIdOrderByNotificationIdDesc(Integer userId, int limit) {
+        return databaseClient.sql("SELECT " + COLUMNS + " FROM notification WHERE user_id = :userId ORDER BY notification_id DESC LIMIT :limit")
+                .bind("userId", userId)
+                .bind("limit", limit)
+                .map(ReactiveNotificationRepository::toNotification)
+                .all();
+    }
+
+    // Inbox: the next page, older than the last notification the user saw
+    public Flux<Notification> findByUserIdAndNotificationIdLessThanOrderByNotificationIdDesc(Integer userId, Integer before, int limit) {
+        return databaseClient.sql("SELECT " + COLUMNS + " FROM notification WHERE user_id = :userId AND notification_id < :before ORDER BY notification_id DESC LIMIT :limit")
+                .bind("userId", userId)
+                .bind("before", before)
+                .bind("limit", limit)
+                .map(ReactiveNotificationRepository::toNotification)
+                .all();
+    }
+
+    // Mark one notification as read; returns 1 only if it was unread (so we know whether to change the unread count)
+    public Mono<Long> markRead(Integer userId, Integer notificationId) {
+        return databaseClient.sql("UPDATE notification SET is_read = true WHERE notification_id = :notificationId AND user_id = :userId AND is_read = false")
+                .bind("notificationId", notificationId)
+                .bind("userId", userId)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    // Mark all of a user's notifications as read; returns how many were unread
+    public Mono<Long> markAllRead(Integer userId) {
+        return databaseClient.sql("UPDATE notification SET is_read = true WHERE user_id = :userId AND is_read = false")
+                .bind("userId", userId)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    private static Notification toNotification(Readable row) {
+        return new Notification(
+                row.get("notification_id", Integer.class),
+                row.get("post_id", Integer.class),
+                row.get("user_id", Integer.class),
+                row.get("comment_id", Integer.class),
+                row.get("comment_text", String.class),
+                row.get("commented_by_username", String.class),
+                row.get("time_comment_created", LocalDateTime.class),
+                Boolean.TRUE.equals(row.get("is_read", Boolean.class)));
+    }
+}
+
+// The reactive profile's version of INotificationRepository: the same queries, written out in SQL and run through R2DBC, so nothing here blocks a thread.
+// Rows are mapped to the same Notification class the JPA side uses, so the JSON the service sends back is the same either way.
+// The ids come from the same notification_seq in blocks of ID_BLOCK_SIZE, so this profile and the JPA one can take turns on the same database.
@@ -0,0 +1,40 @@
+package com.example.notificationmicro.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+@Repository
+@Profile("reactive")
+public class ReactiveUnreadCountRepository {
+
+    @Autowired
+    DatabaseClient databaseClient;
+
+    // A user's unread count (empty if they have no counter yet)
+    public Mono<Long> findUnreadCount(Integer userId) {
+        return databaseClient.sql("SELECT unread_count FROM unread_count WHERE user_id = :userId")
+                .bind("userId", userId)
+                .map(row -> row.get("unread_count", Long.class))
+                .one();
+    }
+
+    // Add to (or, with a negative delta, take away from) a user's unread count; returns 0 if the user has no counter yet
+    public Mono<Long> addToUnreadCount(Integer userId, long delta) {
+        return databaseClient.sql("UPDATE unread_count SET unread_count = unread_count + :delta WHERE user_id = :userId")
+                .bind("delta", delta)
+                .bind("userId", userId)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    // Create a user's counter at 0 if it doesn't exist yet (if another request just created it, this does nothing)
+    public Mono<Long> createUnreadCountIfMissing(Integer userId) {
+        return databaseClient.sql("INSERT INTO unread_count (user_id, unread_count) VALUES (:userId, 0) ON CONFLICT DO NOTHING")
+                .bind("userId", userId)
+                .fetch()
+                .rowsUpdated();
+    }
+}
@@ -0,0 +1,321 @@
+package com.example.notificationmicro.service;
+
+import com.example.notificationmicro.model.Notification;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Slf4j
+@Service
+@Profile("!reactive")
+public class NotificationHub {
+
+    // How many notifications we hold for one connection that isn't keeping up, before dropping the oldest
+    @Value("${notification.stream.buffer-size:100}")
+    int bufferSize = 100;
+
+    // How often every open connection gets a heartbeat
+    @Value("${notification.stream.heartbeat-ms:15000}")
+    long heartbeatMs = 15000;
+
+    // How long a connection stays open before the client has to reconnect (EventSource does this on its own)
+    @Value("${notification.stream.timeout-ms:1800000}")
+    long timeoutMs = 1800000;
+
+    // How long one send to a client can take before we give up on that connection
+    @Value("${notification.stream.send-timeout-ms:5000}")
+    long sendTimeoutMs = 5000;
+
+    // Most sender threads running at once (without virtual threads); idle ones go away after a minute
+    @Value("${notification.stream.sender-threads:32}")
+    int senderThreads = 32;
+
+    // userId -> that user's open connections (a user can have a few tabs open)
+    private final Map<Integer, Set<Subscriber>> subscribersByUser = new ConcurrentHashMap<>();
+
+    @Autowired
+    Environment environment;
+
+    // Sends the buffered notifications and heartbeats to the clients, so a slow client never holds up the thread that saved the notification.
+    // Each connection has its own queue and at most one sender at a time, or with virtual threads on, a new virtual thread per drain.
+    private Executor senders;
+
+    // Our own timer for heartbeats and for catching stuck sends. It never sends anything itself, so it can't be held up by a client,
+    // and it doesn't take the shared @Scheduled thread.
+    private ScheduledExecutorService timer;
+
+    @PostConstruct
+    public void start() {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            senders = new VirtualThreadTaskExecutor("notification-sender-");
+        }
+        else {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(senderThreads, senderThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    namedThreads("notification-sender-"));
+            pool.allowCoreThreadTimeOut(true);
+            senders = pool;
+        }
+        timer = Executors.newSingleThreadScheduledExecutor(namedThreads("notification-hub-timer-"));
+        timer.scheduleAtFixedRate(this::sendHeartbeats, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+        long checkEveryMs = Math.max(sendTimeoutMs / 2, 10);
+        timer.scheduleAtFixedRate(this::dropStuckConnections, checkEveryMs, checkEveryMs, TimeUnit.MILLISECONDS);
+    }
+
+
+    // ------- SUBSCRIBE --------
+    // Open a stream of new notifications for a user
+    public SseEmitter subscribe(Integer userId) {
+        return subscribe(userId, new SseEmitter(timeoutMs));
+    }
+
+    SseEmitter subscribe(Integer userId, SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(userId, emitter, new ArrayBlockingQueue<>(bufferSize));
+        subscribersByUser.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(e -> unsubscribe(subscriber));
+
+        // Send something straight away so the client knows the stream is open
+        // (before the response has started, the emitter only holds on to it, so this can't block)
+        try {
+            emitter.send(SseEmitter.event().comment("connected"));
+        }
+        catch (IOException | IllegalStateException e) {
+            subscriber.close(e);
+        }
+        return emitter;
+    }
+
+    public int getSubscriberCount(Integer userId) {
+        Set<Subscriber> subscribers = subscribersByUser.get(userId);
+        return subscribers == null ? 0 : subscribers.size();
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        subscribersByUser.computeIfPresent(subscriber.userId, (id, subscribers) -> {
+            subscribers.remove(subscriber);
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+    }
+
+
+    // ------- PUBLISH --------
+    // Push a new notification to every open connection of the user it belongs to
+    // If it was saved in a transaction, we wait until that transaction commits, so clients never see a notification that was rolled back.
+    public void publish(Notification notification) {
+        if (getSubscriberCount(notification.getUserId()) == 0) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            deliver(notification);
+            return;
+        }
+        // A batch saves many notifications in one transaction, so they share one list and one synchronization instead of one each
+        @SuppressWarnings("unchecked")
+        List<Notification> afterCommit = (List<Notification>) TransactionSynchronizationManager.getResource(this);
+        if (afterCommit == null) {
+            List<Notification> toDeliver = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, toDeliver);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    toDeliver.forEach(NotificationHub.this::deliver);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(NotificationHub.this);
+                }
+            });
+            afterCommit = toDeliver;
+        }
+        afterCommit.add(notification);
+    }
+
+    private void deliver(Notification notification) {
+        Set<Subscriber> subscribers = subscribersByUser.get(notification.getUserId());
+        if (subscribers == null) {
+            return;
+        }
+        for (Subscriber subscriber : subscribers) {
+            subscriber.enqueue(notification);
+            subscriber.scheduleDrain();
+        }
+    }
+
+
+    // ------- HEARTBEAT --------
+    // A comment line every so often keeps proxies from closing idle connections, and lets us notice clients that have gone away
+    // The heartbeat is queued like a notification and sent by the senders, so a client that isn't reading can't hold up the timer.
+    void sendHeartbeats() {
+        subscribersByUser.values().forEach(subscribers -> subscribers.forEach(subscriber -> {
+            subscriber.heartbeatDue = true;
+            subscriber.scheduleDrain();
+        }));
+    }
+
+    // A client that stopped reading (but didn't disconnect) makes the send block until the socket write times out.
+    // Once a send has taken longer than sendTimeoutMs we stop queueing anything for that connection, and its sender closes it when the write gives up.
+    void dropStuckConnections() {
+        long now = System.nanoTime();
+        long sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+        subscribersByUser.values().forEach(subscribers -> subscribers.forEach(subscriber -> {
+            long sendStartedAt = subscriber.sendStartedAt;
+            if (sendStartedAt != 0 && now - sendStartedAt > sendTimeoutNanos) {
+                log.debug("Notification stream for user " + subscriber.userId + " took longer than " + sendTimeoutMs + " ms to send, dropping it");
+                subscriber.closed = true;
+                unsubscribe(subscriber);
+            }
+        }));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+        if (senders instanceof ExecutorService pool) {
+            pool.shutdownNow();
+        }
+        subscribersByUser.values().forEach(subscribers -> subscribers.forEach(subscriber -> subscriber.emitter.complete()));
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicLong count = new AtomicLong();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+
+    // One open connection
+    private class Subscriber {
+        final Integer userId;
+        final SseEmitter emitter;
+        final BlockingQueue<Notification> buffer;
+        // true while a sender thread is draining this subscriber's buffer (only one at a time, so events stay in order)
+        final AtomicBoolean sending = new AtomicBoolean();
+        // notifications dropped because the buffer was full
+        final AtomicLong dropped = new AtomicLong();
+        // a heartbeat is waiting to be sent
+        volatile boolean heartbeatDue;
+        // System.nanoTime() when the send in progress started, 0 when nothing is being sent
+        volatile long sendStartedAt;
+        // dropped by dropStuckConnections; the sender closes it once its send returns
+        volatile boolean closed;
+
+        Subscriber(Integer userId, SseEmitter emitter, BlockingQueue<Notification> buffer) {
+            this.userId = userId;
+            this.emitter = emitter;
+            this.buffer = buffer;
+        }
+
+        // Never blocks: if the client is too far behind, the oldest notification makes room for the newest
+        void enqueue(Notification notification) {
+            while (!buffer.offer(notification)) {
+                if (buffer.poll() != null) {
+                    dropped.incrementAndGet();
+                }
+            }
+        }
+
+        void scheduleDrain() {
+            if (!closed && sending.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this::drain);
+                }
+                catch (RejectedExecutionException e) {
+                    // Shutting down
+                    sending.set(false);
+                }
+            }
+        }
+
+        void drain() {
+            try {
+                do {
+                    if (heartbeatDue) {
+                        heartbeatDue = false;
+                        send(SseEmitter.event().comment("heartbeat"));
+                    }
+                    Notification next;
+                    while ((next = buffer.poll()) != null) {
+                        sendMissed();
+                        send(SseEmitter.event()
+                                .id(String.valueOf(next.getNotificationId()))
+                                .name("notification")
+                                .data(next));
+                    }
+                    sendMissed();
+                    sending.set(false);
+                    // Something may have been added after our last poll but before we set sending to false
+                } while ((heartbeatDue || dropped.get() > 0 || !buffer.isEmpty()) && sending.compareAndSet(false, true));
+
+                // The last send did get through in the end, but too late: this connection was already dropped
+                if (closed) {
+                    close(new IOException("Send took longer than " + sendTimeoutMs + " ms"));
+                }
+            }
+            catch (IOException | IllegalStateException e) {
+                // The client went away, or the send took too long
+                log.debug("Notification stream for user " + userId + " closed: " + e.getMessage());
+                sending.set(false);
+                close(e);
+            }
+        }
+
+        // Tell the client it missed some (these are older than anything still in the buffer), so it can reload its inbox
+        private void sendMissed() throws IOException {
+            long missed = dropped.getAndSet(0);
+            if (missed > 0) {
+                send(SseEmitter.event().name("missed").data(missed));
+            }
+        }
+
+        private void send(SseEmitter.SseEventBuilder event) throws IOException {
+            if (closed) {
+                throw new IOException("Send took longer than " + sendTimeoutMs + " ms");
+            }
+            sendStartedAt = System.nanoTime();
+            try {
+                emitter.send(event);
+            }
+            finally {
+                sendStartedAt = 0;
+            }
+        }
+
+        void close(Exception e) {
+            closed = true;
+            unsubscribe(this);
+            emitter.completeWithError(e);
+        }
+    }
+}
+
+// This is the in-memory fan-out behind GET /notifications/{userId}/stream (Server-Sent Events), so clients get new notifications pushed instead of polling.
+// Each connection has its own bounded buffer, so one slow client can only ever hold bufferSize notifications in memory and can't slow down anyone else.
+// SseEmitter.send blocks while the client isn't reading, so sends only ever happen on the sender threads: never on the request thread that saved
+// the notification, and never on the timer. A stuck connection ties up one sender until the socket write times out (server.tomcat.connection-timeout),
+// and after sendTimeoutMs nothing more is queued for it.
+// The hub lives in memory, so each instance of this service only pushes the notifications it saved itself.
@@ -1,15 +1,32 @@
 package com.example.notificationmicro.service;
 
+import com.example.notificationmicro.dto.InboxPageDTO;
 import com.example.notificationmicro.dto.NotificationDTO;
 import com.example.notificationmicro.model.Notification;
+import com.example.notificationmicro.model.UnreadCount;
 import com.example.notificationmicro.repository.INotificationRepository;
+import com.example.notificationmicro.repository.IUnreadCountRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
 
 @Service
+@Profile("!reactive")
 public class NotificationService {
     @Autowired
     RestTemplate restTemplate;
@@ -18,8 +35,81 @@ public class NotificationService {
     @Autowired
     INotificationRepository iNotificationRepository;
 
+    @Autowired
+    IUnreadCountRepository iUnreadCountRepository;
+
+    @Autowired
+    NotificationHub notificationHub;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    // Spring's own ObjectMapper, so notifications are written exactly like a normal JSON response
+    @Autowired
+    ObjectMapper objectMapper;
+
+    // Notifications written between flushes when streaming; the persistence context is cleared at the same time so memory stays flat
+    static final int STREAM_CHUNK_SIZE = 100;
+
+    private static final byte[] NEW_LINE = {'\n'};
 
+    // Largest inbox page we serve, no matter what limit the client asks for
+    static final int MAX_INBOX_PAGE_SIZE = 100;
+
+    // We flush to the database every time we have this many notifications, which is also how many INSERTs go in one JDBC batch
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:500}")
+    int batchSize = 500;
+
+
+    @Transactional
     public Notification createNotification(NotificationDTO notificationDTO) {
+        Notification notificationCreated = iNotificationRepository.save(toNotification(notificationDTO));
+        addToUnreadCount(notificationCreated.getUserId(), 1);
+        // Push it to the user's open notification streams once it is committed
+        notificationHub.publish(notificationCreated);
+        return notificationCreated;
+
+    }
+
+    // Save a batch of notifications sent by the main app, reading them one at a time as they are parsed from the request
+    // Every batchSize notifications we flush them as one JDBC batch and clear them from the persistence context, so memory stays flat however many are sent.
+    // Returns how many notifications were saved.
+    @Transactional
+    public int createNotifications(Iterator<NotificationDTO> notificationDTOs) {
+        int saved = 0;
+        // We add up the new notifications per user and update each user's unread count once at the end, instead of once per notification
+        // Sorted by user id, so two batches at the same time lock the same users' counters in the same order (instead of deadlocking)
+        Map<Integer, Long> newUnreadByUser = new TreeMap<>();
+        while (notificationDTOs.hasNext()) {
+            Notification notificationCreated = toNotification(notificationDTOs.next());
+            entityManager.persist(notificationCreated);
+            notificationHub.publish(notificationCreated);
+            if (notificationCreated.getUserId() != null) {
+                newUnreadByUser.merge(notificationCreated.getUserId(), 1L, Long::sum);
+            }
+            saved++;
+            if (saved % batchSize == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        newUnreadByUser.forEach(this::addToUnreadCount);
+        return saved;
+    }
+
+    // Keep the user's unread counter in step with their notifications
+    private void addToUnreadCount(Integer userId, long delta) {
+        if (userId == null || delta == 0) {
+            return;
+        }
+        // Almost always the counter already exists and this one UPDATE is all it takes
+        if (iUnreadCountRepository.addToUnreadCount(userId, delta) == 0) {
+            iUnreadCountRepository.createUnreadCountIfMissing(userId);
+            iUnreadCountRepository.addToUnreadCount(userId, delta);
+        }
+    }
+
+    static Notification toNotification(NotificationDTO notificationDTO) {
         // We need to map the Notification DTO to a notification object
         // We start that mapping by creating an instance to represent our newly created notification
         Notification notificationCreated = new Notification();
@@ -30,12 +120,71 @@ public class NotificationService {
         notificationCreated.setCommentText(notificationDTO.getCommentText());
         notificationCreated.setCommentedByUsername(notificationDTO.getCommentedByUsername());
         notificationCreated.setTimeCommentCreated(notificationDTO.getTimeCommentCreated());
-
-        return iNotificationRepository.save(notificationCreated);
-
+        return notificationCreated;
     }
 
     public List<Notification> getNotificationFromUser(Integer userId) {
         return iNotificationRepository.findNotificationsByUserId(userId).orElseThrow(() -> new RuntimeException("Notifications from userId " + userId + " does not exist."));
     }
+
+    // Write all of a user's notifications to out as NDJSON (one per line), newest first, as they are read from the database.
+    // We never hold the whole list: every STREAM_CHUNK_SIZE notifications we flush what we've written and let go of them.
+    @Transactional(readOnly = true)
+    public long writeNotificationsFromUser(Integer userId, OutputStream out) throws IOException {
+        long written = 0;
+        try (Stream<Notification> notifications = iNotificationRepository.streamByUserIdOrderByNotificationIdDesc(userId)) {
+            Iterator<Notification> iterator = notifications.iterator();
+            while (iterator.hasNext()) {
+                out.write(objectMapper.writeValueAsBytes(iterator.next()));
+                out.write(NEW_LINE);
+                if (++written % STREAM_CHUNK_SIZE == 0) {
+                    out.flush();
+                    entityManager.clear();
+                }
+            }
+        }
+        out.flush();
+        return written;
+    }
+
+    // One page of a user's inbox, newest first. "before" is the nextBefore from the previous page (null for the first page).
+    public InboxPageDTO getInbox(Integer userId, Integer before, Integer limit) {
+        int pageSize = Math.min(Math.max(limit, 1), MAX_INBOX_PAGE_SIZE);
+        // One extra row tells us whether there is an older page, without a count query
+        PageRequest firstRows = PageRequest.of(0, pageSize + 1);
+
+        List<Notification> notifications = before == null
+                ? iNotificationRepository.findByUserIdOrderByNotificationIdDesc(userId, firstRows)
+                : iNotificationRepository.findByUserIdAndNotificationIdLessThanOrderByNotificationIdDesc(userId, before, firstRows);
+
+        Integer nextBefore = null;
+        if (notifications.size() > pageSize) {
+            notifications = notifications.subList(0, pageSize);
+            nextBefore = notifications.get(pageSize - 1).getNotificationId();
+        }
+        return new InboxPageDTO(notifications, nextBefore, getUnreadCount(userId));
+    }
+
+    // How many unread notifications a user has (a single primary key lookup)
+    public long getUnreadCount(Integer userId) {
+        return iUnreadCountRepository.findById(userId).map(UnreadCount::getUnreadCount).orElse(0L);
+    }
+
+    // Mark one notification as read; returns false if it doesn't exist for this user or was already read
+    @Transactional
+    public boolean markNotificationRead(Integer userId, Integer notificationId) {
+        boolean markedRead = iNotificationRepository.markRead(userId, notificationId) == 1;
+        if (markedRead) {
+            addToUnreadCount(userId, -1);
+        }
+        return markedRead;
+    }
+
+    // Mark all of a user's notifications as read; returns how many were unread
+    @Transactional
+    public int markAllNotificationsRead(Integer userId) {
+        int markedRead = iNotificationRepository.markAllRead(userId);
+        addToUnreadCount(userId, -markedRead);
+        return markedRead;
+    }
 }
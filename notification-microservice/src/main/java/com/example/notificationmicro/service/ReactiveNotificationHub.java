@@ -0,0 +1,129 @@
+package com.example.notificationmicro.service;
+
+import com.example.notificationmicro.model.Notification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.NoTransactionException;
+import org.springframework.transaction.reactive.TransactionSynchronization;
+import org.springframework.transaction.reactive.TransactionSynchronizationManager;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+@Profile("reactive")
+public class ReactiveNotificationHub {
+
+    // How many notifications we hold for one connection that isn't keeping up, before dropping the oldest
+    @Value("${notification.stream.buffer-size:100}")
+    int bufferSize = 100;
+
+    // How often a heartbeat comment is sent
+    @Value("${notification.stream.heartbeat-ms:15000}")
+    long heartbeatMs = 15000;
+
+    // How long a connection stays open before the client has to reconnect (EventSource does this on its own)
+    @Value("${notification.stream.timeout-ms:1800000}")
+    long timeoutMs = 1800000;
+
+    // userId -> that user's open connections (a user can have a few tabs open)
+    private final Map<Integer, Set<Sinks.Many<Notification>>> subscribersByUser = new ConcurrentHashMap<>();
+
+    // Two threads publishing to the same connection at once have to take turns; this is how long one waits before giving up
+    private static final Sinks.EmitFailureHandler WAIT_FOR_OTHER_PUBLISHER = Sinks.EmitFailureHandler.busyLooping(Duration.ofMillis(100));
+
+
+    // ------- SUBSCRIBE --------
+    // Open a stream of new notifications for a user: "notification" events, "missed" events when the client fell behind, and heartbeat comments
+    public Flux<ServerSentEvent<Object>> subscribe(Integer userId) {
+        Sinks.Many<Notification> subscriber = Sinks.many().unicast().onBackpressureBuffer();
+        AtomicLong dropped = new AtomicLong();
+
+        // Never holds more than bufferSize for a slow client: the oldest notification makes room for the newest
+        Flux<ServerSentEvent<Object>> notifications = subscriber.asFlux()
+                .onBackpressureBuffer(bufferSize, notification -> dropped.incrementAndGet(), BufferOverflowStrategy.DROP_OLDEST)
+                .concatMap(notification -> {
+                    // Tell the client it missed some, so it can reload its inbox
+                    long missed = dropped.getAndSet(0);
+                    ServerSentEvent<Object> event = ServerSentEvent.builder()
+                            .id(String.valueOf(notification.getNotificationId()))
+                            .event("notification")
+                            .data(notification)
+                            .build();
+                    return missed > 0
+                            ? Flux.just(ServerSentEvent.builder().event("missed").data(missed).build(), event)
+                            : Flux.just(event);
+                });
+
+        // A comment line every so often keeps proxies from closing idle connections, and lets us notice clients that have gone away
+        Flux<ServerSentEvent<Object>> heartbeats = Flux.interval(Duration.ofMillis(heartbeatMs))
+                .onBackpressureDrop()
+                .map(tick -> ServerSentEvent.builder().comment("heartbeat").build());
+
+        return Flux.merge(notifications, heartbeats)
+                // Send something straight away so the client knows the stream is open
+                .startWith(ServerSentEvent.builder().comment("connected").build())
+                .take(Duration.ofMillis(timeoutMs))
+                .doOnSubscribe(subscription -> subscribersByUser.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(subscriber))
+                .doFinally(signal -> unsubscribe(userId, subscriber));
+    }
+
+    public int getSubscriberCount(Integer userId) {
+        Set<Sinks.Many<Notification>> subscribers = subscribersByUser.get(userId);
+        return subscribers == null ? 0 : subscribers.size();
+    }
+
+    private void unsubscribe(Integer userId, Sinks.Many<Notification> subscriber) {
+        subscribersByUser.computeIfPresent(userId, (id, subscribers) -> {
+            subscribers.remove(subscriber);
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+    }
+
+
+    // ------- PUBLISH --------
+    // Push a new notification to every open connection of the user it belongs to.
+    // Inside a transaction we wait until it commits, so clients never see a notification that was rolled back.
+    public Mono<Void> publish(Notification notification) {
+        if (getSubscriberCount(notification.getUserId()) == 0) {
+            return Mono.empty();
+        }
+        return TransactionSynchronizationManager.forCurrentTransaction()
+                .flatMap(transaction -> {
+                    if (!transaction.isSynchronizationActive()) {
+                        return Mono.<Void>fromRunnable(() -> deliver(notification));
+                    }
+                    transaction.registerSynchronization(new TransactionSynchronization() {
+                        @Override
+                        public Mono<Void> afterCommit() {
+                            return Mono.fromRunnable(() -> deliver(notification));
+                        }
+                    });
+                    return Mono.<Void>empty();
+                })
+                .onErrorResume(NoTransactionException.class, e -> Mono.fromRunnable(() -> deliver(notification)));
+    }
+
+    private void deliver(Notification notification) {
+        Set<Sinks.Many<Notification>> subscribers = subscribersByUser.get(notification.getUserId());
+        if (subscribers == null) {
+            return;
+        }
+        for (Sinks.Many<Notification> subscriber : subscribers) {
+            subscriber.emitNext(notification, WAIT_FOR_OTHER_PUBLISHER);
+        }
+    }
+}
+
+// The reactive profile's NotificationHub. Instead of an SseEmitter and a sender thread per connection, each connection is a Flux that Netty
+// writes out as the client reads it: no thread waits on a slow client, and an idle connection costs only its (bounded) buffer.
+// Like NotificationHub, it lives in memory, so each instance of this service only pushes the notifications it saved itself.
@@ -0,0 +1,145 @@
+package com.example.notificationmicro.service;
+
+import com.example.notificationmicro.dto.InboxPageDTO;
+import com.example.notificationmicro.dto.NotificationDTO;
+import com.example.notificationmicro.model.Notification;
+import com.example.notificationmicro.repository.ReactiveNotificationRepository;
+import com.example.notificationmicro.repository.ReactiveUnreadCountRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static com.example.notificationmicro.service.NotificationService.MAX_INBOX_PAGE_SIZE;
+
+@Service
+@Profile("reactive")
+public class ReactiveNotificationService {
+
+    @Autowired
+    ReactiveNotificationRepository reactiveNotificationRepository;
+
+    @Autowired
+    ReactiveUnreadCountRepository reactiveUnreadCountRepository;
+
+    @Autowired
+    ReactiveNotificationHub reactiveNotificationHub;
+
+
+    @Transactional
+    public Mono<Notification> createNotification(NotificationDTO notificationDTO) {
+        Notification notificationCreated = NotificationService.toNotification(notificationDTO);
+        return reactiveNotificationRepository.nextIds(1)
+                .flatMap(firstId -> insert(List.of(notificationCreated), firstId))
+                .then(addToUnreadCount(notificationCreated.getUserId(), 1))
+                .then(Mono.defer(() -> reactiveNotificationHub.publish(notificationCreated)))
+                .thenReturn(notificationCreated);
+    }
+
+    // Save a batch of notifications sent by the main app as they are decoded from the request.
+    // Every ID_BLOCK_SIZE notifications get their ids at once and go to the database as one pipelined INSERT, so memory stays flat however many are sent.
+    // Returns how many notifications were saved.
+    @Transactional
+    public Mono<Integer> createNotifications(Flux<NotificationDTO> notificationDTOs) {
+        // We add up the new notifications per user and update each user's unread count once at the end, instead of once per notification
+        // Sorted by user id, so two batches at the same time lock the same users' counters in the same order (instead of deadlocking)
+        Map<Integer, Long> newUnreadByUser = new TreeMap<>();
+        return notificationDTOs
+                .map(NotificationService::toNotification)
+                .buffer(ReactiveNotificationRepository.ID_BLOCK_SIZE)
+                // One block at a time, in order (newUnreadByUser is only ever touched by one block)
+                .concatMap(block -> reactiveNotificationRepository.nextIds(block.size())
+                        .flatMap(firstId -> insert(block, firstId))
+                        .thenMany(Flux.fromIterable(block))
+                        .concatMap(notificationCreated -> {
+                            if (notificationCreated.getUserId() != null) {
+                                newUnreadByUser.merge(notificationCreated.getUserId(), 1L, Long::sum);
+                            }
+                            return reactiveNotificationHub.publish(notificationCreated);
+                        })
+                        .then(Mono.just(block.size())))
+                .reduce(0, Integer::sum)
+                .flatMap(saved -> Flux.fromIterable(newUnreadByUser.entrySet())
+                        .concatMap(newUnread -> addToUnreadCount(newUnread.getKey(), newUnread.getValue()))
+                        .then(Mono.just(saved)));
+    }
+
+    // Give the notifications the ids from firstId on, and save them
+    private Mono<Long> insert(List<Notification> notifications, int firstId) {
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < notifications.size(); i++) {
+            notifications.get(i).setNotificationId(firstId + i);
+            // Like @CreationTimestamp on the JPA side
+            notifications.get(i).setTimeCommentCreated(now);
+        }
+        return reactiveNotificationRepository.insertAll(notifications);
+    }
+
+    // Keep the user's unread counter in step with their notifications
+    private Mono<Void> addToUnreadCount(Integer userId, long delta) {
+        if (userId == null || delta == 0) {
+            return Mono.empty();
+        }
+        // Almost always the counter already exists and this one UPDATE is all it takes
+        return reactiveUnreadCountRepository.addToUnreadCount(userId, delta)
+                .flatMap(updated -> updated > 0
+                        ? Mono.<Void>empty()
+                        : reactiveUnreadCountRepository.createUnreadCountIfMissing(userId)
+                                .then(reactiveUnreadCountRepository.addToUnreadCount(userId, delta))
+                                .then());
+    }
+
+    // All of a user's notifications, newest first, as they are read from the database
+    public Flux<Notification> getNotificationsFromUser(Integer userId) {
+        return reactiveNotificationRepository.streamByUserIdOrderByNotificationIdDesc(userId);
+    }
+
+    // One page of a user's inbox, newest first. "before" is the nextBefore from the previous page (null for the first page).
+    public Mono<InboxPageDTO> getInbox(Integer userId, Integer before, Integer limit) {
+        int pageSize = Math.min(Math.max(limit, 1), MAX_INBOX_PAGE_SIZE);
+        // One extra row tells us whether there is an older page, without a count query
+        Flux<Notification> notifications = before == null
+                ? reactiveNotificationRepository.findByUserIdOrderByNotificationIdDesc(userId, pageSize + 1)
+                : reactiveNotificationRepository.findByUserIdAndNotificationIdLessThanOrderByNotificationIdDesc(userId, before, pageSize + 1);
+
+        return Mono.zip(notifications.collectList(), getUnreadCount(userId), (page, unreadCount) -> {
+            Integer nextBefore = null;
+            if (page.size() > pageSize) {
+                page = page.subList(0, pageSize);
+                nextBefore = page.get(pageSize - 1).getNotificationId();
+            }
+            return new InboxPageDTO(page, nextBefore, unreadCount);
+        });
+    }
+
+    // How many unread notifications a user has (a single primary key lookup)
+    public Mono<Long> getUnreadCount(Integer userId) {
+        return reactiveUnreadCountRepository.findUnreadCount(userId).defaultIfEmpty(0L);
+    }
+
+    // Mark one notification as read; returns false if it doesn't exist for this user or was already read
+    @Transactional
+    public Mono<Boolean> markNotificationRead(Integer userId, Integer notificationId) {
+        return reactiveNotificationRepository.markRead(userId, notificationId)
+                .flatMap(updated -> updated == 1
+                        ? addToUnreadCount(userId, -1).thenReturn(true)
+                        : Mono.just(false));
+    }
+
+    // Mark all of a user's notifications as read; returns how many were unread
+    @Transactional
+    public Mono<Integer> markAllNotificationsRead(Integer userId) {
+        return reactiveNotificationRepository.markAllRead(userId)
+                .flatMap(markedRead -> addToUnreadCount(userId, -markedRead).thenReturn(markedRead.intValue()));
+    }
+}
+
+// The reactive profile's NotificationService: same behaviour, but every method returns a Mono or Flux and nothing waits on the database.
+// @Transactional works on these too: the transaction follows the Mono/Flux instead of the thread.
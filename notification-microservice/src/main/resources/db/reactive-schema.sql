@@ -0,0 +1,23 @@
+-- The tables Hibernate makes from Notification and UnreadCount, for the reactive profile (which has no Hibernate).
+-- IF NOT EXISTS, so it runs safely on every start and on a database the JPA side already made.
+
+-- INCREMENT BY 500 like allocationSize on Notification's @SequenceGenerator: each value reserves a block of 500 ids
+CREATE SEQUENCE IF NOT EXISTS notification_seq START WITH 1 INCREMENT BY 500;
+
+CREATE TABLE IF NOT EXISTS notification (
+    notification_id integer NOT NULL PRIMARY KEY,
+    post_id integer,
+    user_id integer,
+    comment_id integer,
+    comment_text varchar(255),
+    commented_by_username varchar(255),
+    time_comment_created timestamp(6),
+    is_read boolean NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_notification_inbox ON notification (user_id, notification_id DESC);
+
+CREATE TABLE IF NOT EXISTS unread_count (
+    user_id integer NOT NULL PRIMARY KEY,
+    unread_count bigint NOT NULL
+);
@@ -1,13 +1,274 @@
 package com.example.notificationmicro;
 
+import com.example.notificationmicro.service.NotificationService;
+import com.jayway.jsonpath.JsonPath;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// The servlet/JPA endpoints against the in-memory H2 database (see src/test/resources/application.properties)
+// Every test uses its own user ids, since they all share the one database
 @SpringBootTest
+@AutoConfigureMockMvc
 class NotificationMicroApplicationTests {
 
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    NotificationService notificationService;
+
+    private static String notificationJson(int userId, int commentId) {
+        return "{\"postId\":1,\"userId\":" + userId + ",\"commentId\":" + commentId + ",\"commentText\":\"Nice post\",\"commentedByUsername\":\"testUser\"}";
+    }
+
     @Test
     void contextLoads() {
     }
 
+    // ------- BATCH --------
+
+    @Test
+    void batchAsJsonArray() throws Exception {
+        mockMvc.perform(post("/notifications/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + notificationJson(1, 1) + "," + notificationJson(1, 2) + "," + notificationJson(1, 3) + "]"))
+                .andExpect(status().isCreated())
+                .andExpect(content().string("3 notifications saved"));
+
+        mockMvc.perform(get("/notifications/1/inbox"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.notifications.length()").value(3))
+                .andExpect(jsonPath("$.unreadCount").value(3));
+    }
+
+    @Test
+    void batchAsNdjson() throws Exception {
+        mockMvc.perform(post("/notifications/batch")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(notificationJson(2, 10) + "\n" + notificationJson(2, 11) + "\n"))
+                .andExpect(status().isCreated())
+                .andExpect(content().string("2 notifications saved"));
+
+        mockMvc.perform(get("/notifications/2/inbox"))
+                .andExpect(jsonPath("$.notifications.length()").value(2))
+                // Newest first
+                .andExpect(jsonPath("$.notifications[0].commentId").value(11));
+    }
+
+    @Test
+    void emptyBatchIsRejected() throws Exception {
+        mockMvc.perform(post("/notifications/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("No notifications provided"));
+
+        mockMvc.perform(post("/notifications/batch")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(""))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("No notifications provided"));
+    }
+
+    @Test
+    void badBatchIsRolledBack() throws Exception {
+        // The first notification is fine and gets persisted before the bad one is read
+        mockMvc.perform(post("/notifications/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + notificationJson(3, 20) + ",{\"userId\":\"not a number\"}]"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(startsWith("Unable to read notifications")));
+
+        // Nothing from the bad batch was saved, not even the good notification before it
+        mockMvc.perform(get("/notifications/3/unread-count"))
+                .andExpect(content().string("0"));
+        mockMvc.perform(get("/notifications/3/inbox"))
+                .andExpect(jsonPath("$.notifications.length()").value(0));
+    }
+
+    @Test
+    void batchAddsUpUnreadCountsPerUser() throws Exception {
+        mockMvc.perform(post("/notifications/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + notificationJson(4, 30) + "," + notificationJson(5, 31) + "," + notificationJson(4, 32) + "]"))
+                .andExpect(status().isCreated());
+        mockMvc.perform(post("/notifications/batch")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(notificationJson(4, 33) + "\n"))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(get("/notifications/4/unread-count"))
+                .andExpect(content().string("3"));
+        mockMvc.perform(get("/notifications/5/unread-count"))
+                .andExpect(content().string("1"));
+    }
+
+    // ------- INBOX --------
+
+    @Test
+    void inboxPagesNewestFirst() throws Exception {
+        mockMvc.perform(post("/notifications/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + notificationJson(10, 1) + "," + notificationJson(10, 2) + "," + notificationJson(10, 3) + "]"))
+                .andExpect(status().isCreated());
+
+        String firstPage = mockMvc.perform(get("/notifications/10/inbox?limit=2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.notifications.length()").value(2))
+                .andExpect(jsonPath("$.notifications[0].commentId").value(3))
+                .andExpect(jsonPath("$.notifications[1].commentId").value(2))
+                .andExpect(jsonPath("$.unreadCount").value(3))
+                .andExpect(jsonPath("$.nextBefore").isNumber())
+                .andReturn().getResponse().getContentAsString();
+        Integer nextBefore = JsonPath.read(firstPage, "$.nextBefore");
+
+        mockMvc.perform(get("/notifications/10/inbox?limit=2&before=" + nextBefore))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.notifications.length()").value(1))
+                .andExpect(jsonPath("$.notifications[0].commentId").value(1))
+                .andExpect(jsonPath("$.nextBefore").doesNotExist());
+    }
+
+    @Test
+    void inboxRejectsBadLimit() throws Exception {
+        mockMvc.perform(get("/notifications/11/inbox?limit=0"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Inbox limit must be greater than 0"));
+    }
+
+    @Test
+    void unreadCountIsZeroForNewUser() throws Exception {
+        mockMvc.perform(get("/notifications/12/unread-count"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("0"));
+    }
+
+    @Test
+    void readingUpdatesTheUnreadCount() throws Exception {
+        String saved = mockMvc.perform(post("/notifications")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(notificationJson(13, 10)))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        Integer notificationId = JsonPath.read(saved, "$.notificationId");
+        mockMvc.perform(post("/notifications/batch")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(notificationJson(13, 11) + "\n" + notificationJson(13, 12) + "\n"))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(put("/notifications/13/" + notificationId + "/read"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("Notification marked as read"));
+        // Already read, so it doesn't count twice
+        mockMvc.perform(put("/notifications/13/" + notificationId + "/read"))
+                .andExpect(status().isNotFound());
+        // Someone else's notification
+        mockMvc.perform(put("/notifications/14/" + notificationId + "/read"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/notifications/13/unread-count"))
+                .andExpect(content().string("2"));
+        mockMvc.perform(get("/notifications/13/inbox"))
+                .andExpect(jsonPath("$.notifications[2].read").value(true))
+                .andExpect(jsonPath("$.notifications[0].read").value(false));
+
+        mockMvc.perform(put("/notifications/13/read"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("2 notifications marked as read"));
+        mockMvc.perform(get("/notifications/13/unread-count"))
+                .andExpect(content().string("0"));
+    }
+
+    // ------- STREAM --------
+
+    @Test
+    void notificationsStreamAsNdjsonNewestFirst() throws Exception {
+        postBatch(20, 250);
+
+        MvcResult result = mockMvc.perform(get("/notifications/20").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        // One whole notification per line, across more than one chunk
+        String[] lines = body.split("\n");
+        assertEquals(250, lines.length);
+        assertEquals(250, (Integer) JsonPath.read(lines[0], "$.commentId"));
+        assertEquals(1, (Integer) JsonPath.read(lines[249], "$.commentId"));
+        assertEquals(20, (Integer) JsonPath.read(lines[100], "$.userId"));
+    }
+
+    @Test
+    void userWithoutNotificationsStreamsEmptyBody() throws Exception {
+        // A user with no notifications is still a 200, with no lines
+        MvcResult result = mockMvc.perform(get("/notifications/21").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void notificationsAreFlushedAChunkAtATime() throws Exception {
+        postBatch(22, 250);
+        FlushRecordingStream out = new FlushRecordingStream();
+
+        long written = notificationService.writeNotificationsFromUser(22, out);
+
+        assertEquals(250, written);
+        // Every STREAM_CHUNK_SIZE notifications go out before the next ones are read, then the rest at the end
+        assertEquals(List.of(100, 200, 250), out.linesAtEachFlush);
+        assertEquals(250, out.toString(StandardCharsets.UTF_8).split("\n").length);
+    }
+
+    private void postBatch(int userId, int count) throws Exception {
+        StringBuilder ndjson = new StringBuilder();
+        for (int commentId = 1; commentId <= count; commentId++) {
+            ndjson.append(notificationJson(userId, commentId)).append('\n');
+        }
+        mockMvc.perform(post("/notifications/batch")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(ndjson.toString()))
+                .andExpect(status().isCreated());
+    }
+
+    // Remembers how many lines had been written each time it was flushed
+    private static class FlushRecordingStream extends ByteArrayOutputStream {
+        final List<Integer> linesAtEachFlush = new ArrayList<>();
+
+        @Override
+        public void flush() {
+            int lines = 0;
+            for (byte b : toByteArray()) {
+                if (b == '\n') {
+                    lines++;
+                }
+            }
+            linesAtEachFlush.add(lines);
+        }
+    }
 }
@@ -0,0 +1,170 @@
+package com.example.notificationmicro;
+
+import com.example.notificationmicro.dto.InboxPageDTO;
+import com.example.notificationmicro.model.Notification;
+import com.example.notificationmicro.service.ReactiveNotificationHub;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The reactive profile against an in-memory H2 database through R2DBC, checking it answers like the servlet/JPA endpoints do
+@SpringBootTest(properties = {
+        "spring.r2dbc.url=r2dbc:h2:mem:///notification-reactive;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "spring.r2dbc.username=sa",
+        "spring.r2dbc.password="})
+@ActiveProfiles("reactive")
+@AutoConfigureWebTestClient
+class NotificationMicroReactiveApplicationTests {
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @Autowired
+    ReactiveNotificationHub reactiveNotificationHub;
+
+    private static String notificationJson(int userId, int commentId) {
+        return "{\"postId\":1,\"userId\":" + userId + ",\"commentId\":" + commentId + ",\"commentText\":\"Nice post\",\"commentedByUsername\":\"testUser\"}";
+    }
+
+    @Test
+    void contextLoads() {
+    }
+
+    @Test
+    void batchThenInboxPages() {
+        webTestClient.post().uri("/notifications/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("[" + notificationJson(1, 1) + "," + notificationJson(1, 2) + "," + notificationJson(1, 3) + "]")
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(String.class).isEqualTo("3 notifications saved");
+
+        InboxPageDTO firstPage = webTestClient.get().uri("/notifications/1/inbox?limit=2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(InboxPageDTO.class).returnResult().getResponseBody();
+        assertEquals(2, firstPage.getNotifications().size());
+        assertEquals(3, firstPage.getUnreadCount());
+        // Newest first
+        assertEquals(3, firstPage.getNotifications().get(0).getCommentId());
+        assertNotNull(firstPage.getNextBefore());
+
+        InboxPageDTO lastPage = webTestClient.get().uri("/notifications/1/inbox?limit=2&before=" + firstPage.getNextBefore())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(InboxPageDTO.class).returnResult().getResponseBody();
+        assertEquals(1, lastPage.getNotifications().size());
+        assertNull(lastPage.getNextBefore());
+    }
+
+    @Test
+    void readingUpdatesTheUnreadCount() {
+        Notification saved = webTestClient.post().uri("/notifications")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(notificationJson(2, 10))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(Notification.class).returnResult().getResponseBody();
+        webTestClient.post().uri("/notifications/batch")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .bodyValue(notificationJson(2, 11) + "\n" + notificationJson(2, 12) + "\n")
+                .exchange()
+                .expectStatus().isCreated();
+
+        webTestClient.put().uri("/notifications/2/" + saved.getNotificationId() + "/read")
+                .exchange()
+                .expectStatus().isOk();
+        webTestClient.put().uri("/notifications/2/" + saved.getNotificationId() + "/read")
+                .exchange()
+                .expectStatus().isNotFound();
+        webTestClient.get().uri("/notifications/2/unread-count")
+                .exchange()
+                .expectBody(Long.class).isEqualTo(2L);
+
+        webTestClient.put().uri("/notifications/2/read")
+                .exchange()
+                .expectBody(String.class).isEqualTo("2 notifications marked as read");
+        webTestClient.get().uri("/notifications/2/unread-count")
+                .exchange()
+                .expectBody(Long.class).isEqualTo(0L);
+    }
+
+    @Test
+    void notificationsStreamAsNdjson() {
+        webTestClient.post().uri("/notifications/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("[" + notificationJson(3, 20) + "," + notificationJson(3, 21) + "]")
+                .exchange()
+                .expectStatus().isCreated();
+
+        List<Notification> streamed = webTestClient.get().uri("/notifications/3")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(Notification.class).getResponseBody().collectList().block();
+        assertEquals(2, streamed.size());
+        assertEquals(21, streamed.get(0).getCommentId());
+    }
+
+    @Test
+    void badBatchIsRejected() {
+        webTestClient.post().uri("/notifications/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("[" + notificationJson(4, 30) + ",{\"userId\":\"not a number\"}]")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class).value(body -> assertTrue(body.startsWith("Unable to read notifications")));
+
+        // Nothing from the bad batch was saved
+        webTestClient.get().uri("/notifications/4/unread-count")
+                .exchange()
+                .expectBody(Long.class).isEqualTo(0L);
+
+        webTestClient.post().uri("/notifications/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("[]")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class).isEqualTo("No notifications provided");
+    }
+
+    @Test
+    void newNotificationsArePushedToStreams() throws Exception {
+        CompletableFuture<List<ServerSentEvent<String>>> firstEvents = webTestClient.get().uri("/notifications/5/stream")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(new ParameterizedTypeReference<ServerSentEvent<String>>() {})
+                .getResponseBody()
+                .take(2)
+                .collectList()
+                .toFuture();
+        // Wait until the stream is open before saving, or there's no one to push to yet
+        for (int wait = 0; wait < 100 && reactiveNotificationHub.getSubscriberCount(5) == 0; wait++) {
+            Thread.sleep(50);
+        }
+
+        webTestClient.post().uri("/notifications")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(notificationJson(5, 40))
+                .exchange()
+                .expectStatus().isCreated();
+
+        List<ServerSentEvent<String>> events = firstEvents.get(10, TimeUnit.SECONDS);
+        assertEquals("connected", events.get(0).comment());
+        assertEquals("notification", events.get(1).event());
+        assertTrue(events.get(1).data().contains("\"commentId\":40"));
+    }
+}
@@ -0,0 +1,229 @@
+package com.example.notificationmicro.service;
+
+import com.example.notificationmicro.model.Notification;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The servlet hub on its own, with emitters that record what is sent to them (or hang, like a client that stopped reading)
+class NotificationHubTest {
+
+    private NotificationHub hub;
+
+    private final List<TestEmitter> emitters = new ArrayList<>();
+
+    @BeforeEach
+    void startHub() {
+        hub = new NotificationHub();
+        hub.environment = new MockEnvironment();
+        // The tests send heartbeats themselves
+        hub.heartbeatMs = 60000;
+        hub.sendTimeoutMs = 200;
+    }
+
+    @AfterEach
+    void stopHub() {
+        emitters.forEach(emitter -> emitter.release.countDown());
+        hub.shutdown();
+    }
+
+    @Test
+    void notificationIsSentToTheUsersStreams() throws Exception {
+        hub.start();
+        TestEmitter firstTab = subscribe(1);
+        TestEmitter secondTab = subscribe(1);
+        TestEmitter otherUser = subscribe(2);
+
+        hub.publish(notification(1, 10));
+
+        awaitUntil(() -> firstTab.sentAny("commentId=10") && secondTab.sentAny("commentId=10"));
+        assertEquals(":connected", firstTab.sent.get(0).trim());
+        assertFalse(otherUser.sentAny("commentId=10"));
+    }
+
+    @Test
+    void batchInATransactionIsSentOnceItCommits() throws Exception {
+        hub.start();
+        TestEmitter emitter = subscribe(1);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            hub.publish(notification(1, 20));
+            hub.publish(notification(1, 21));
+            hub.publish(notification(1, 22));
+
+            // One synchronization for the whole transaction, and nothing is sent before it commits
+            List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+            assertEquals(1, synchronizations.size());
+            Thread.sleep(100);
+            assertFalse(emitter.sentAny("commentId=20"));
+
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+            synchronizations.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        }
+        finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        awaitUntil(() -> emitter.sentAny("commentId=22"));
+        // In the order they were saved
+        assertTrue(emitter.sent.get(1).contains("commentId=20"));
+        assertTrue(emitter.sent.get(2).contains("commentId=21"));
+        assertNull(TransactionSynchronizationManager.getResource(hub));
+    }
+
+    @Test
+    void rolledBackNotificationIsNeverSent() throws Exception {
+        hub.start();
+        TestEmitter emitter = subscribe(1);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            hub.publish(notification(1, 30));
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        }
+        finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        Thread.sleep(100);
+        assertFalse(emitter.sentAny("commentId=30"));
+        assertNull(TransactionSynchronizationManager.getResource(hub));
+    }
+
+    @Test
+    void stuckClientDoesNotHoldUpOthers() throws Exception {
+        hub.sendTimeoutMs = 60000;
+        hub.start();
+        TestEmitter stuck = subscribe(1);
+        TestEmitter other = subscribe(2);
+        stuck.hang = true;
+
+        hub.publish(notification(1, 40));
+        awaitUntil(() -> stuck.hanging);
+
+        // Neither publishing nor the heartbeat waits on the stuck client
+        hub.publish(notification(2, 41));
+        hub.sendHeartbeats();
+
+        awaitUntil(() -> other.sentAny("commentId=41") && other.sentAny("heartbeat"));
+        assertEquals(1, hub.getSubscriberCount(1));
+    }
+
+    @Test
+    void stuckSendIsDroppedAfterTheSendTimeout() throws Exception {
+        hub.start();
+        TestEmitter stuck = subscribe(1);
+        stuck.hang = true;
+
+        hub.publish(notification(1, 50));
+
+        // Nothing more is queued for it once the send has taken longer than sendTimeoutMs
+        awaitUntil(() -> hub.getSubscriberCount(1) == 0);
+        assertNull(stuck.completedWith);
+
+        // Closed as soon as the write gives up
+        stuck.release.countDown();
+        awaitUntil(() -> stuck.completedWith != null);
+        assertInstanceOf(IOException.class, stuck.completedWith);
+    }
+
+    @Test
+    void clientThatFellBehindIsToldWhatItMissed() throws Exception {
+        hub.sendTimeoutMs = 60000;
+        hub.bufferSize = 2;
+        hub.start();
+        TestEmitter slow = subscribe(1);
+        slow.hang = true;
+
+        hub.publish(notification(1, 60));
+        awaitUntil(() -> slow.hanging);
+        // The buffer holds 2, so the oldest of these is dropped
+        hub.publish(notification(1, 61));
+        hub.publish(notification(1, 62));
+        hub.publish(notification(1, 63));
+        slow.hang = false;
+        slow.release.countDown();
+
+        awaitUntil(() -> slow.sentAny("commentId=63"));
+        assertFalse(slow.sentAny("commentId=61"));
+        // Told before the notifications that came after the one it missed
+        assertTrue(slow.sent.get(1).contains("commentId=60"));
+        assertTrue(slow.sent.get(2).contains("event:missed\ndata:1"));
+        assertTrue(slow.sent.get(3).contains("commentId=62"));
+    }
+
+
+    private TestEmitter subscribe(Integer userId) {
+        TestEmitter emitter = new TestEmitter();
+        emitters.add(emitter);
+        hub.subscribe(userId, emitter);
+        return emitter;
+    }
+
+    private static Notification notification(Integer userId, Integer commentId) {
+        Notification notification = new Notification();
+        notification.setNotificationId(commentId);
+        notification.setPostId(1);
+        notification.setUserId(userId);
+        notification.setCommentId(commentId);
+        notification.setCommentText("Nice post");
+        notification.setCommentedByUsername("testUser");
+        return notification;
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        for (int wait = 0; wait < 100 && !condition.getAsBoolean(); wait++) {
+            Thread.sleep(50);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    // Records every event as text; with hang set, a send blocks until release, like a write to a client that isn't reading
+    private static class TestEmitter extends SseEmitter {
+        final List<String> sent = new CopyOnWriteArrayList<>();
+        final CountDownLatch release = new CountDownLatch(1);
+        volatile boolean hang;
+        volatile boolean hanging;
+        volatile Throwable completedWith;
+
+        @Override
+        public void send(SseEventBuilder event) throws IOException {
+            if (hang) {
+                hanging = true;
+                try {
+                    release.await();
+                }
+                catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            StringBuilder text = new StringBuilder();
+            event.build().forEach(part -> text.append(part.getData()));
+            sent.add(text.toString());
+        }
+
+        @Override
+        public void completeWithError(Throwable ex) {
+            completedWith = ex;
+        }
+
+        boolean sentAny(String text) {
+            return sent.stream().anyMatch(event -> event.contains(text));
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.notificationmicro.service;
+
+import com.example.notificationmicro.dto.NotificationDTO;
+import com.example.notificationmicro.model.Notification;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+// NotificationService.toNotification: the DTO -> entity mapping behind createNotification and the batch endpoint, done once per notification received
+// (in this package because the method is package-private)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NotificationMappingBenchmark {
+
+    private NotificationDTO notificationDTO;
+
+    @Setup
+    public void setUp() {
+        notificationDTO = new NotificationDTO();
+        notificationDTO.setPostId(1);
+        notificationDTO.setUserId(1);
+        notificationDTO.setCommentId(1);
+        notificationDTO.setCommentText("I'd love a referral, sending you my resume now!");
+        notificationDTO.setCommentedByUsername("commenter");
+        notificationDTO.setTimeCommentCreated(LocalDateTime.of(2024, 5, 2, 9, 0));
+    }
+
+    @Benchmark
+    public Notification toNotification() {
+        return NotificationService.toNotification(notificationDTO);
+    }
+}
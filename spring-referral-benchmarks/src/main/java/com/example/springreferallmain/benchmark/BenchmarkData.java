@@ -0,0 +1,55 @@
+package com.example.springreferallmain.benchmark;
+
+import com.example.springreferallmain.model.Address;
+import com.example.springreferallmain.model.Comment;
+import com.example.springreferallmain.model.Post;
+import com.example.springreferallmain.model.Tag;
+import com.example.springreferallmain.model.User;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// Sample data shared by the benchmarks, shaped like what the app really serves:
+// a user with an address, and posts that each have 2 tags and close to the 255 characters of content a post can hold
+public class BenchmarkData {
+
+    public static User makeUser(Integer userId) {
+        Address address = new Address(userId, "123 Main St", "Austin", "TX", "78701", "USA", null);
+        return new User(userId, "user" + userId, "user" + userId + "@example.com", "password",
+                "https://example.com/profile/" + userId + ".png", "Happy to refer people to my team.", LocalDateTime.of(2024, 5, 1, 9, 0), null, address, null);
+    }
+
+    public static List<Tag> makeTags(int count) {
+        List<Tag> tags = new ArrayList<>();
+        for (int tagNumber = 1; tagNumber <= count; tagNumber++) {
+            tags.add(new Tag(null, "tag" + tagNumber, "Posts about tag " + tagNumber, new ArrayList<>()));
+        }
+        return tags;
+    }
+
+    // The post's id and creation time are left for the database to fill in when postId is null
+    public static Post makePost(Integer postId, User user, List<Tag> tags) {
+        LocalDateTime timePostCreated = postId == null ? null : LocalDateTime.of(2024, 5, 1, 9, 0).plusMinutes(postId);
+        return new Post(postId, "Hiring Java developers " + postId,
+                "We're hiring backend developers to work on our Spring services. Message me if you'd like a referral. ".repeat(2),
+                12, 3, "https://example.com/media/" + postId + ".png", timePostCreated, user, new ArrayList<>(), new ArrayList<>(tags), null);
+    }
+
+    public static List<Post> makeFeedPage(int size) {
+        User user = makeUser(1);
+        List<Tag> tags = makeTags(2);
+        for (int tagNumber = 0; tagNumber < tags.size(); tagNumber++) {
+            tags.get(tagNumber).setTagId(tagNumber + 1);
+        }
+        List<Post> posts = new ArrayList<>();
+        for (int postNumber = 1; postNumber <= size; postNumber++) {
+            posts.add(makePost(postNumber, user, tags));
+        }
+        return posts;
+    }
+
+    public static Comment makeComment(Integer commentId, Post post) {
+        return new Comment(commentId, "I'd love a referral, sending you my resume now!", 0, "commenter", LocalDateTime.of(2024, 5, 2, 9, 0), post, null);
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.springreferallmain.benchmark;
+
+import com.example.springreferallmain.model.Post;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Jackson (de)serialization of posts with their User -> Address and Tags, i.e. what every GET /posts response and POST /posts request body goes through
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PostJsonBenchmark {
+
+    // Configured like Spring Boot's own ObjectMapper (JavaTimeModule, ISO dates)
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    private Post post;
+    private List<Post> feedPage;
+    private String postJson;
+    private String feedPageJson;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        feedPage = BenchmarkData.makeFeedPage(20);
+        post = feedPage.get(0);
+        postJson = objectMapper.writeValueAsString(post);
+        feedPageJson = objectMapper.writeValueAsString(feedPage);
+    }
+
+    @Benchmark
+    public byte[] writePost() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(post);
+    }
+
+    // A page of the homepage feed
+    @Benchmark
+    public byte[] writeFeedPage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(feedPage);
+    }
+
+    @Benchmark
+    public Post readPost() throws JsonProcessingException {
+        return objectMapper.readValue(postJson, Post.class);
+    }
+
+    @Benchmark
+    public List<Post> readFeedPage() throws JsonProcessingException {
+        return objectMapper.readValue(feedPageJson, new TypeReference<List<Post>>() {});
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.springreferallmain.benchmark;
+
+import com.example.springreferallmain.SpringReferAllMainApplication;
+import com.example.springreferallmain.model.Post;
+import com.example.springreferallmain.model.Tag;
+import com.example.springreferallmain.model.User;
+import com.example.springreferallmain.repository.IPostRepository;
+import com.example.springreferallmain.repository.ITagRepository;
+import com.example.springreferallmain.repository.IUserRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+// Repository calls against an in-memory H2 database (in Postgres mode, like the tests), through the app's real Spring Data / Hibernate setup.
+// These measure our queries and mappings, not Postgres, so compare them with each other and across commits rather than with production timings.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PostRepositoryBenchmark {
+
+    static final int POSTS = 1000;
+    static final int PAGE_SIZE = 20;
+
+    private ConfigurableApplicationContext context;
+    private IPostRepository iPostRepository;
+
+    private List<Integer> postIds;
+    private List<Integer> pageOfPostIds;
+    private int nextPost;
+
+    @Setup
+    public void setUp() {
+        // Command line arguments, so they win over the app's application.properties (which points at a local Postgres)
+        context = new SpringApplicationBuilder(SpringReferAllMainApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:refer-all-benchmark;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                        "--spring.jpa.show-sql=false",
+                        "--scheduling.enabled=false",
+                        "--logging.level.root=WARN");
+        iPostRepository = context.getBean(IPostRepository.class);
+
+        // One transaction, so the user and tags are still attached when the posts that point at them are saved
+        context.getBean(TransactionTemplate.class).executeWithoutResult(status -> {
+            User user = context.getBean(IUserRepository.class).save(BenchmarkData.makeUser(null));
+            List<Tag> tags = context.getBean(ITagRepository.class).saveAll(BenchmarkData.makeTags(5));
+            List<Post> posts = new ArrayList<>();
+            for (int postNumber = 0; postNumber < POSTS; postNumber++) {
+                posts.add(BenchmarkData.makePost(null, user, List.of(tags.get(postNumber % 5), tags.get((postNumber + 1) % 5))));
+            }
+            iPostRepository.saveAll(posts);
+        });
+
+        postIds = iPostRepository.findAllPostIds();
+        pageOfPostIds = postIds.subList(POSTS / 2, POSTS / 2 + PAGE_SIZE);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    // A different post each time, like users opening posts from the feed
+    @Benchmark
+    public Optional<Post> findById() {
+        nextPost = (nextPost + 1) % postIds.size();
+        return iPostRepository.findById(postIds.get(nextPost));
+    }
+
+    // First page of the homepage feed (GET /posts?limit=20)
+    @Benchmark
+    public List<Post> findFeedFirstPage() {
+        return iPostRepository.findFeedFirstPage(PageRequest.of(0, PAGE_SIZE));
+    }
+
+    // Loading a page of posts by id, as search, tag filtering and trending do
+    @Benchmark
+    public List<Post> findPostsByPostIdIn() {
+        return iPostRepository.findPostsByPostIdIn(pageOfPostIds);
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.springreferallmain.service;
+
+import com.example.springreferallmain.benchmark.BenchmarkData;
+import com.example.springreferallmain.dto.NotificationDTO;
+import com.example.springreferallmain.model.Comment;
+import com.example.springreferallmain.model.Post;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// CommentService.getNotificationDTO: the mapping done for every new comment, before its notification is queued in the outbox
+// (in this package because the method is package-private)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommentNotificationBenchmark {
+
+    private Post post;
+    private Comment comment;
+
+    @Setup
+    public void setUp() {
+        post = BenchmarkData.makePost(1, BenchmarkData.makeUser(1), List.of());
+        comment = BenchmarkData.makeComment(1, post);
+    }
+
+    @Benchmark
+    public NotificationDTO getNotificationDTO() {
+        return CommentService.getNotificationDTO(post.getPostId(), post, comment);
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+// Fills both apps with synthetic data through their own APIs (the bulk import endpoints where there is one),
+// so it works the same against the embedded apps or ones already running somewhere else
+public class DataSeeder {
+
+    // The ids the workload picks from
+    public record SeededData(List<Integer> userIds, List<Integer> tagIds, List<Integer> postIds) {}
+
+    // Rows per import request; each request is saved in batches by the app itself
+    private static final int IMPORT_CHUNK = 5000;
+
+    private final LoadTestOptions options;
+    private final LoadTestClient client;
+    private final String mainUrl;
+    private final String notificationUrl;
+    private final SyntheticData syntheticData;
+
+    public DataSeeder(LoadTestOptions options, LoadTestClient client, String mainUrl, String notificationUrl) {
+        this.options = options;
+        this.client = client;
+        this.mainUrl = mainUrl;
+        this.notificationUrl = notificationUrl;
+        this.syntheticData = new SyntheticData(options.seed());
+    }
+
+    public SeededData seed() throws Exception {
+        importRows("users", mainUrl + "/users/import", options.users(), syntheticData::user);
+        List<Integer> userIds = client.getNdjsonIds(mainUrl + "/users", "userId");
+        importRows("tags", mainUrl + "/tags/import", options.tags(), syntheticData::tag);
+        List<Integer> tagIds = client.getNdjsonIds(mainUrl + "/tags", "tagId");
+        importRows("posts", mainUrl + "/posts/import", options.posts(), postNumber -> syntheticData.post(userIds, tagIds));
+        List<Integer> postIds = client.getNdjsonIds(mainUrl + "/posts", "postId");
+
+        addComments(postIds, userIds.size());
+        if (notificationUrl != null) {
+            importRows("notifications", notificationUrl + "/notifications/batch", options.notifications(),
+                    notificationNumber -> syntheticData.notification(notificationNumber, userIds, postIds));
+        }
+        return new SeededData(userIds, tagIds, postIds);
+    }
+
+    private void importRows(String what, String url, int count, IntFunction<Object> makeRow) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        int imported = 0;
+        for (int first = 0; first < count; first += IMPORT_CHUNK) {
+            List<Object> rows = new ArrayList<>();
+            for (int rowNumber = first; rowNumber < Math.min(count, first + IMPORT_CHUNK); rowNumber++) {
+                rows.add(makeRow.apply(rowNumber));
+            }
+            JsonNode report = client.postNdjson(url, rows);
+            // The main app's imports report what they saved; the notification batch endpoint just says how many
+            imported += report.has("rowsImported") ? report.get("rowsImported").asInt() : rows.size();
+        }
+        printSeeded(what, imported, start);
+    }
+
+    // There's no bulk endpoint for comments, so they're posted one at a time like users would, across all the load test threads.
+    // Each one is also queued for the notification microservice, so this seeds notifications too.
+    private void addComments(List<Integer> postIds, int userCount) throws Exception {
+        long start = System.nanoTime();
+        AtomicInteger added = new AtomicInteger();
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(options.threads());
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int thread = 0; thread < options.threads(); thread++) {
+                Random random = new Random(options.seed() + thread);
+                workers.add(executor.submit(() -> {
+                    while (next.getAndIncrement() < options.comments()) {
+                        Integer postId = postIds.get(SyntheticData.skewedIndex(random, postIds.size()));
+                        if (client.postJson(mainUrl + "/comments/posts/" + postId, syntheticData.comment(random, userCount)) < 300) {
+                            added.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+        printSeeded("comments", added.get(), start);
+    }
+
+    private static void printSeeded(String what, int count, long start) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Seeded %,d %s in %.1fs (%,.0f/s)%n", count, what, seconds, count / seconds);
+    }
+}
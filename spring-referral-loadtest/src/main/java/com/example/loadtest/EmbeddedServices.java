@@ -0,0 +1,86 @@
+package com.example.loadtest;
+
+import com.example.notificationmicro.NotificationMicroApplication;
+import com.example.springreferallmain.SpringReferAllMainApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+// Both apps started in this JVM on random ports, each with its own in-memory H2 database (in Postgres mode, like the tests),
+// and the main app pointed at this notification microservice instead of localhost:8081
+public class EmbeddedServices implements AutoCloseable {
+
+    private final ConfigurableApplicationContext notificationService;
+    private final ConfigurableApplicationContext mainApp;
+
+    // virtualThreads: handle requests on virtual threads instead of Tomcat's platform thread pool (Java 21+)
+    public EmbeddedServices(boolean virtualThreads) throws IOException {
+        notificationService = start(NotificationMicroApplication.class, "notification-microservice",
+                "--spring.datasource.url=jdbc:h2:mem:notification-loadtest;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+                "--spring.threads.virtual.enabled=" + virtualThreads);
+        mainApp = start(SpringReferAllMainApplication.class, "Spring-ReferAll-Main",
+                "--spring.datasource.url=jdbc:h2:mem:refer-all-loadtest;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+                "--notification-service.base-url=" + getNotificationUrl(),
+                "--spring.threads.virtual.enabled=" + virtualThreads);
+    }
+
+    public String getMainUrl() {
+        return "http://localhost:" + ((WebServerApplicationContext) mainApp).getWebServer().getPort();
+    }
+
+    public String getNotificationUrl() {
+        return "http://localhost:" + ((WebServerApplicationContext) notificationService).getWebServer().getPort();
+    }
+
+    @Override
+    public void close() {
+        mainApp.close();
+        notificationService.close();
+    }
+
+    private static ConfigurableApplicationContext start(Class<?> application, String applicationName, String... overrides) throws IOException {
+        List<String> args = new ArrayList<>(List.of(overrides));
+        // Command line arguments win over the app's own properties (which point at a local Postgres)
+        args.add("--server.port=0");
+        args.add("--spring.datasource.username=sa");
+        args.add("--spring.datasource.password=");
+        args.add("--spring.jpa.show-sql=false");
+        args.add("--spring.main.banner-mode=off");
+        args.add("--logging.level.root=WARN");
+        // Don't look for an application.properties on the classpath, we've already picked the right one (see below)
+        args.add("--spring.config.name=loadtest-embedded");
+        Map<String, Object> properties = applicationProperties(applicationName);
+        // Let Hibernate pick the H2 dialect itself
+        properties.remove("spring.jpa.properties.hibernate.dialect");
+        return new SpringApplicationBuilder(application)
+                .properties(properties)
+                .run(args.toArray(String[]::new));
+    }
+
+    // Both apps have an application.properties and only one of them would be found by name, so we look through all of them for the app's own
+    private static Map<String, Object> applicationProperties(String applicationName) throws IOException {
+        Enumeration<URL> resources = EmbeddedServices.class.getClassLoader().getResources("application.properties");
+        while (resources.hasMoreElements()) {
+            Properties properties = new Properties();
+            try (InputStream in = resources.nextElement().openStream()) {
+                properties.load(in);
+            }
+            if (applicationName.equals(properties.getProperty("spring.application.name"))) {
+                Map<String, Object> byName = new HashMap<>();
+                properties.forEach((name, value) -> byName.put((String) name, ((String) value).trim()));
+                return byName;
+            }
+        }
+        throw new IllegalStateException("No application.properties for " + applicationName + " on the classpath");
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Response times per operation, in microseconds, in HdrHistograms (so p99.9 is as accurate as p50, however many requests there are)
+public class LatencyStats {
+
+    // Anything slower than a minute is recorded as a minute (the client times out at 30s anyway)
+    private static final long MAX_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+
+    public LatencyStats() {
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new ConcurrentHistogram(MAX_MICROS, 3));
+            errors.put(operation, new LongAdder());
+        }
+    }
+
+    public void record(Operation operation, long nanos, boolean succeeded) {
+        latencies.get(operation).recordValue(Math.min(MAX_MICROS, TimeUnit.NANOSECONDS.toMicros(nanos)));
+        if (!succeeded) {
+            errors.get(operation).increment();
+        }
+    }
+
+    public void print(PrintStream out, double seconds) {
+        out.printf("%-10s %10s %8s %10s %9s %9s %9s %9s %9s%n", "operation", "requests", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        Histogram all = new Histogram(MAX_MICROS, 3);
+        long allErrors = 0;
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = latencies.get(operation);
+            if (histogram.getTotalCount() == 0) {
+                continue;
+            }
+            all.add(histogram);
+            allErrors += errors.get(operation).sum();
+            printRow(out, operation.name().toLowerCase(), histogram, errors.get(operation).sum(), seconds);
+        }
+        printRow(out, "all", all, allErrors, seconds);
+    }
+
+    public long getRequests(Operation operation) {
+        return latencies.get(operation).getTotalCount();
+    }
+
+    // Two runs of the same workload side by side: for each operation, the requests per second, p99 and errors of both and how they changed
+    public static void printComparison(PrintStream out, String firstName, LatencyStats first, String secondName, LatencyStats second, double seconds) {
+        out.printf("%-10s %12s %12s %8s %12s %12s %8s %10s %10s%n", "operation", firstName + " req/s", secondName + " req/s", "change",
+                firstName + " p99", secondName + " p99", "change", firstName + " err", secondName + " err");
+        for (Operation operation : Operation.values()) {
+            Histogram firstLatencies = first.latencies.get(operation);
+            Histogram secondLatencies = second.latencies.get(operation);
+            if (firstLatencies.getTotalCount() == 0 && secondLatencies.getTotalCount() == 0) {
+                continue;
+            }
+            double firstThroughput = firstLatencies.getTotalCount() / seconds;
+            double secondThroughput = secondLatencies.getTotalCount() / seconds;
+            double firstP99 = millis(firstLatencies.getValueAtPercentile(99));
+            double secondP99 = millis(secondLatencies.getValueAtPercentile(99));
+            out.printf("%-10s %,12.1f %,12.1f %8s %12.2f %12.2f %8s %,10d %,10d%n", operation.name().toLowerCase(),
+                    firstThroughput, secondThroughput, change(firstThroughput, secondThroughput),
+                    firstP99, secondP99, change(firstP99, secondP99),
+                    first.errors.get(operation).sum(), second.errors.get(operation).sum());
+        }
+    }
+
+    // i.e. +12% or -40%
+    private static String change(double before, double after) {
+        return before == 0 ? "n/a" : String.format("%+.0f%%", (after - before) / before * 100);
+    }
+
+    private static void printRow(PrintStream out, String name, Histogram histogram, long errorCount, double seconds) {
+        out.printf("%-10s %,10d %,8d %,10.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n", name, histogram.getTotalCount(), errorCount, histogram.getTotalCount() / seconds,
+                millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(90)), millis(histogram.getValueAtPercentile(99)),
+                millis(histogram.getValueAtPercentile(99.9)), millis(histogram.getMaxValue()));
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.loadtest;
+
+import java.io.PrintStream;
+
+// Seeds both apps with synthetic data, runs the mixed workload against them and prints throughput and latency percentiles per kind of request.
+// With no --main-url, both apps are started right here on in-memory H2 databases, with the real notification microservice standing in for the deployed one.
+// i.e. java -jar target/loadtest.jar --posts=50000 --threads=64 --duration=2m --mix=feed=40,search=30,comment=30
+// To compare the two execution modes, add --compare-threading=true and many threads (i.e. --threads=1000); see ThreadingComparison.
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        if (options.compareThreading()) {
+            new ThreadingComparison(options).run(System.out);
+            return;
+        }
+        run(options, options.virtualThreads(), System.out);
+    }
+
+    // One run: start the apps (unless we were given where they are), seed them, run the workload and print what was measured
+    static LatencyStats run(LoadTestOptions options, boolean virtualThreads, PrintStream out) throws Exception {
+        LoadTestClient client = new LoadTestClient();
+
+        EmbeddedServices embeddedServices = options.embedded() ? new EmbeddedServices(virtualThreads) : null;
+        PinnedThreads pinnedThreads = virtualThreads ? new PinnedThreads(options.pinnedThreshold()) : null;
+        try {
+            String mainUrl = embeddedServices != null ? embeddedServices.getMainUrl() : options.mainUrl();
+            String notificationUrl = embeddedServices != null ? embeddedServices.getNotificationUrl() : options.notificationUrl();
+            out.println("Main app: " + mainUrl + ", notification microservice: " + (notificationUrl == null ? "not seeded" : notificationUrl));
+            if (embeddedServices != null) {
+                out.println("Requests handled on " + (virtualThreads ? "virtual threads" : "platform threads (Tomcat's pool)"));
+            }
+
+            DataSeeder.SeededData data = new DataSeeder(options, client, mainUrl, notificationUrl).seed();
+
+            out.printf("Running %s with %d threads for %ss (after a %ss warmup)%n", options.mix(), options.threads(),
+                    options.duration().toSeconds(), options.warmup().toSeconds());
+            LatencyStats stats = new Workload(options, client, mainUrl, data).run();
+            stats.print(out, options.duration().toNanos() / 1e9);
+            if (pinnedThreads != null) {
+                pinnedThreads.print(out);
+            }
+            return stats;
+        }
+        finally {
+            if (pinnedThreads != null) {
+                pinnedThreads.close();
+            }
+            if (embeddedServices != null) {
+                embeddedServices.close();
+            }
+        }
+    }
+}
+
+// The load is closed loop: each thread waits for its response before sending the next request, like a user would.
+// That means when the app slows down, fewer requests are sent, so compare runs with the same thread count, and add threads to push the app harder.
+// The embedded apps share this JVM (and its CPUs) with the load generator, so their numbers are best compared with each other, not with production.
@@ -0,0 +1,95 @@
+package com.example.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+// The JDK's HTTP client with JSON and NDJSON helpers. One is shared by every load test thread (it pools its connections).
+public class LoadTestClient {
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    // Dates as ISO strings, like the apps' own ObjectMapper
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    // Seeding imports can take a while for big batches
+    private static final Duration IMPORT_TIMEOUT = Duration.ofMinutes(10);
+
+    public int get(String url) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url)).timeout(REQUEST_TIMEOUT).GET().build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    public HttpResponse<byte[]> getJson(String url) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url)).timeout(REQUEST_TIMEOUT).GET().build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    public JsonNode readTree(byte[] json) throws IOException {
+        return objectMapper.readTree(json);
+    }
+
+    public int postJson(String url, Object body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                .build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    // Sends rows as NDJSON (one JSON object per line) and returns the response body, i.e. an import report
+    public JsonNode postNdjson(String url, List<?> rows) throws IOException, InterruptedException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (Object row : rows) {
+            body.write(objectMapper.writeValueAsBytes(row));
+            body.write('\n');
+        }
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(IMPORT_TIMEOUT)
+                .header("Content-Type", "application/x-ndjson")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .build();
+        HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() >= 300) {
+            throw new IOException("POST " + url + " returned " + response.statusCode() + ": " + new String(response.body()));
+        }
+        return response.body().length == 0 ? objectMapper.nullNode() : objectMapper.readTree(response.body());
+    }
+
+    // Streams a whole collection as NDJSON and picks one field out of every row, i.e. every postId
+    public List<Integer> getNdjsonIds(String url, String idField) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(IMPORT_TIMEOUT)
+                .header("Accept", "application/x-ndjson")
+                .GET()
+                .build();
+        HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        List<Integer> ids = new ArrayList<>();
+        try (MappingIterator<JsonNode> rows = objectMapper.readerFor(JsonNode.class).readValues(response.body())) {
+            while (rows.hasNext()) {
+                ids.add(rows.next().get(idField).asInt());
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.loadtest;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Everything the load test can be told, as --name=value arguments, i.e. java -jar target/loadtest.jar --posts=50000 --threads=64 --duration=2m
+public record LoadTestOptions(
+        // Where the apps are. Left empty, both are started in this JVM on in-memory H2 databases.
+        String mainUrl,
+        String notificationUrl,
+
+        // How much data to seed before the run
+        int users,
+        int tags,
+        int posts,
+        int comments,
+        int notifications,
+
+        // The run: how many concurrent clients, for how long, and how much of the start to leave out of the results
+        int threads,
+        Duration warmup,
+        Duration duration,
+
+        // Relative weight of each kind of request, i.e. feed=50,search=20,keyword=10,comment=15,inbox=5
+        Map<Operation, Integer> mix,
+        // Comments posted back to back by one client in a comment burst
+        int commentBurst,
+
+        // Same data every run for the same seed
+        long seed,
+
+        // Run the embedded apps on virtual threads (spring.threads.virtual.enabled) instead of Tomcat's platform thread pool
+        boolean virtualThreads,
+        // Run the same seeded workload twice, on freshly started embedded apps each time: once on platform threads, once on virtual threads
+        boolean compareThreading,
+        // On virtual threads, pins longer than this are counted (see PinnedThreads)
+        Duration pinnedThreshold) {
+
+    static final String DEFAULT_MIX = "feed=50,search=20,keyword=10,comment=15,inbox=5";
+
+    static final int VIRTUAL_THREADS_JAVA_VERSION = 21;
+
+    static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Options look like --name=value, not " + arg);
+            }
+            values.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        LoadTestOptions options = new LoadTestOptions(
+                values.remove("main-url"),
+                values.remove("notification-url"),
+                Integer.parseInt(values.getOrDefault("users", "1000")),
+                Integer.parseInt(values.getOrDefault("tags", "50")),
+                Integer.parseInt(values.getOrDefault("posts", "20000")),
+                Integer.parseInt(values.getOrDefault("comments", "10000")),
+                Integer.parseInt(values.getOrDefault("notifications", "100000")),
+                Integer.parseInt(values.getOrDefault("threads", "32")),
+                parseDuration(values.getOrDefault("warmup", "10s")),
+                parseDuration(values.getOrDefault("duration", "60s")),
+                parseMix(values.getOrDefault("mix", DEFAULT_MIX)),
+                Integer.parseInt(values.getOrDefault("comment-burst", "5")),
+                Long.parseLong(values.getOrDefault("seed", "42")),
+                Boolean.parseBoolean(values.getOrDefault("virtual-threads", "false")),
+                Boolean.parseBoolean(values.getOrDefault("compare-threading", "false")),
+                parseDuration(values.getOrDefault("pinned-threshold", "20ms")));
+        for (String known : new String[] {"users", "tags", "posts", "comments", "notifications", "threads", "warmup", "duration", "mix", "comment-burst", "seed",
+                "virtual-threads", "compare-threading", "pinned-threshold"}) {
+            values.remove(known);
+        }
+        if (!values.isEmpty()) {
+            throw new IllegalArgumentException("Unknown options: " + values.keySet());
+        }
+        if (options.users() <= 0 || options.tags() <= 0 || options.posts() <= 0 || options.threads() <= 0) {
+            throw new IllegalArgumentException("users, tags, posts and threads must be greater than 0");
+        }
+        if (options.virtualThreads() && !options.embedded()) {
+            throw new IllegalArgumentException("--virtual-threads is for the embedded apps; set spring.threads.virtual.enabled on apps you run yourself");
+        }
+        if (options.compareThreading() && (options.virtualThreads() || !options.embedded())) {
+            throw new IllegalArgumentException("--compare-threading starts the embedded apps in both modes itself, so it can't be used with --virtual-threads or --main-url");
+        }
+        if ((options.virtualThreads() || options.compareThreading()) && Runtime.version().feature() < VIRTUAL_THREADS_JAVA_VERSION) {
+            // Spring Boot would quietly stay on platform threads, and we'd be comparing the same thing twice.
+            // The apps are still built for Java 17, so the virtual thread runs wait for a Java 21 runtime to run the jar on.
+            throw new IllegalArgumentException("Virtual threads need Java " + VIRTUAL_THREADS_JAVA_VERSION + " or newer to run on, this is Java "
+                    + Runtime.version().feature() + ". Run the jar with a Java " + VIRTUAL_THREADS_JAVA_VERSION + " runtime.");
+        }
+        return options;
+    }
+
+    boolean embedded() {
+        return mainUrl == null;
+    }
+
+    // 30s, 2m, 1h, or a plain number of seconds
+    private static Duration parseDuration(String value) {
+        String number = value.replaceAll("[a-z]+$", "");
+        return switch (value.substring(number.length())) {
+            case "", "s" -> Duration.ofSeconds(Long.parseLong(number));
+            case "ms" -> Duration.ofMillis(Long.parseLong(number));
+            case "m" -> Duration.ofMinutes(Long.parseLong(number));
+            case "h" -> Duration.ofHours(Long.parseLong(number));
+            default -> throw new IllegalArgumentException("Durations look like 30s, 2m or 1h, not " + value);
+        };
+    }
+
+    private static Map<Operation, Integer> parseMix(String value) {
+        Map<Operation, Integer> mix = new LinkedHashMap<>();
+        for (String part : value.split(",")) {
+            String[] operationAndWeight = part.split("=");
+            mix.put(Operation.valueOf(operationAndWeight[0].trim().toUpperCase()), Integer.parseInt(operationAndWeight[1].trim()));
+        }
+        if (mix.values().stream().mapToInt(Integer::intValue).sum() <= 0) {
+            throw new IllegalArgumentException("The mix needs at least one operation with a weight above 0");
+        }
+        return mix;
+    }
+}
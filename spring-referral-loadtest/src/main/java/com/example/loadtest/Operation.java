@@ -0,0 +1,15 @@
+package com.example.loadtest;
+
+// The kinds of request the load test makes, each timed separately
+public enum Operation {
+    // A page of the homepage feed, and sometimes the next page or two after it (GET /posts?limit=20, then &after=)
+    FEED,
+    // Full text search (GET /posts/search?q=)
+    SEARCH,
+    // The older keyword filter (GET /posts?keyword=)
+    KEYWORD,
+    // Several comments in a row on one post; each is queued for the notification microservice (POST /comments/posts/{postId})
+    COMMENT,
+    // A page of a user's notifications, which the main app gets from the microservice (GET /users/{userId}/notifications/inbox)
+    INBOX
+}
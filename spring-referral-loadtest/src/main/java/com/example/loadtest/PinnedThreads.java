@@ -0,0 +1,72 @@
+package com.example.loadtest;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+// Listens for the JVM's own jdk.VirtualThreadPinned events while the embedded apps run on virtual threads, i.e. a virtual thread that blocked
+// while stuck to its carrier thread, and counts them by where they happened. Both apps run in this JVM, so one recording covers both.
+public class PinnedThreads implements AutoCloseable {
+
+    private final Duration threshold;
+    private final RecordingStream recording = new RecordingStream();
+    private final LongAdder pins = new LongAdder();
+    private final Map<String, LongAdder> pinsByPlace = new ConcurrentHashMap<>();
+
+    // Pins shorter than threshold aren't worth hearing about
+    public PinnedThreads(Duration threshold) {
+        this.threshold = threshold;
+        recording.enable("jdk.VirtualThreadPinned").withThreshold(threshold).withStackTrace();
+        recording.onEvent("jdk.VirtualThreadPinned", this::pinned);
+        recording.startAsync();
+    }
+
+    public long getPins() {
+        return pins.sum();
+    }
+
+    public void print(PrintStream out) {
+        out.printf("Virtual threads pinned for longer than %dms: %,d%n", threshold.toMillis(), getPins());
+        pinsByPlace.entrySet().stream()
+                .sorted(Map.Entry.<String, LongAdder>comparingByValue((a, b) -> Long.compare(b.sum(), a.sum())))
+                .limit(5)
+                .forEach(place -> out.printf("%,10d at %s%n", place.getValue().sum(), place.getKey()));
+    }
+
+    @Override
+    public void close() {
+        recording.close();
+    }
+
+    private void pinned(RecordedEvent event) {
+        pins.increment();
+        pinsByPlace.computeIfAbsent(whereItHappened(event), place -> new LongAdder()).increment();
+    }
+
+    // The first few frames outside the JDK, which is where the synchronized block or native call that pinned the thread is
+    private static String whereItHappened(RecordedEvent event) {
+        if (event.getStackTrace() == null) {
+            return "(no stack trace)";
+        }
+        return event.getStackTrace().getFrames().stream()
+                .filter(RecordedFrame::isJavaFrame)
+                .map(frame -> frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber())
+                .filter(frame -> !frame.startsWith("java.") && !frame.startsWith("jdk."))
+                .limit(3)
+                .collect(Collectors.joining(" < "));
+    }
+}
+
+// A virtual thread that blocks inside a synchronized block (or a native call) can't let go of its carrier, so it holds up one of the few
+// carrier threads (one per CPU) until it's done. Our own synchronized blocks (TrendingPosts, the last-known notification caches in UserService)
+// only touch memory, so they should never show up here; the usual suspects are JDBC drivers that still lock with synchronized (i.e. H2),
+// and anything the notification client does while holding a monitor.
+// It lives here rather than in the apps: it only records anything on Java 21+, and the load test is where the two execution modes are compared.
+// For a stack trace of every pin in a deployed app, however short, run it with -Djdk.tracePinnedThreads=full.
@@ -0,0 +1,112 @@
+package com.example.loadtest;
+
+import com.example.notificationmicro.dto.NotificationDTO;
+import com.example.springreferallmain.dto.PostImportRow;
+import com.example.springreferallmain.dto.TagImportRow;
+import com.example.springreferallmain.dto.UserImportRow;
+import com.example.springreferallmain.model.Comment;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Made-up users, tags, posts, comments and notifications that look enough like the real thing to load the apps the same way:
+// words are picked with a skew (a few are in lots of posts, most are rare), like real text, so searches hit long and short posting lists,
+// and some posts get far more comments than others, like popular posts do.
+public class SyntheticData {
+
+    private static final String[] WORDS = {
+            "hiring", "java", "referral", "remote", "backend", "engineer", "spring", "developer", "team", "role",
+            "senior", "junior", "python", "react", "frontend", "cloud", "aws", "data", "startup", "internship",
+            "kotlin", "devops", "kubernetes", "postgres", "design", "product", "manager", "analyst", "security", "mobile",
+            "android", "ios", "typescript", "golang", "rust", "platform", "infrastructure", "machine", "learning", "fintech",
+            "healthcare", "accessible", "inclusive", "mentorship", "bootcamp", "apprenticeship", "hybrid", "onsite", "contract", "visa"};
+
+    private static final String[] CITIES = {"Austin", "Boston", "Chicago", "Denver", "Seattle", "New York", "Atlanta", "Portland"};
+
+    private final Random random;
+
+    public SyntheticData(long seed) {
+        random = new Random(seed);
+    }
+
+    // Lower indexes come up far more often (roughly the top 10 words are in most posts)
+    public String word(Random random) {
+        return WORDS[(int) (Math.pow(random.nextDouble(), 2.5) * WORDS.length)];
+    }
+
+    public String words(Random random, int count) {
+        StringBuilder words = new StringBuilder();
+        for (int wordNumber = 0; wordNumber < count; wordNumber++) {
+            if (wordNumber > 0) {
+                words.append(' ');
+            }
+            words.append(word(random));
+        }
+        return words.toString();
+    }
+
+    // An index into a list of the given size where the first items are the popular ones
+    public static int skewedIndex(Random random, int size) {
+        return Math.min(size - 1, (int) (Math.pow(random.nextDouble(), 3) * size));
+    }
+
+    public UserImportRow user(int userNumber) {
+        UserImportRow user = new UserImportRow();
+        user.setUsername("user" + userNumber);
+        user.setEmail("user" + userNumber + "@example.com");
+        user.setPassword("password" + userNumber);
+        user.setUserBio("Happy to refer people for " + words(random, 3) + " roles");
+        user.setStreet(userNumber + " Main St");
+        user.setCity(CITIES[userNumber % CITIES.length]);
+        user.setState("TX");
+        user.setZipCode(String.format("%05d", userNumber % 100000));
+        user.setCountry("USA");
+        return user;
+    }
+
+    public TagImportRow tag(int tagNumber) {
+        TagImportRow tag = new TagImportRow();
+        tag.setTagName(tagNumber < WORDS.length ? WORDS[tagNumber] : "tag" + tagNumber);
+        tag.setTagDescription("Posts about " + tag.getTagName());
+        return tag;
+    }
+
+    // Posts come from a skewed set of users (some post a lot) and have 1 to 3 tags
+    public PostImportRow post(List<Integer> userIds, List<Integer> tagIds) {
+        PostImportRow post = new PostImportRow();
+        post.setUserId(userIds.get(skewedIndex(random, userIds.size())));
+        post.setPostTitle(words(random, 4));
+        // Well under the 255 characters a post can hold
+        post.setPostContent(words(random, 10 + random.nextInt(15)));
+        List<Integer> postTagIds = new ArrayList<>();
+        for (int tagNumber = 1 + random.nextInt(3); tagNumber > 0; tagNumber--) {
+            Integer tagId = tagIds.get(skewedIndex(random, tagIds.size()));
+            if (!postTagIds.contains(tagId)) {
+                postTagIds.add(tagId);
+            }
+        }
+        post.setTagIds(postTagIds);
+        return post;
+    }
+
+    public Comment comment(Random random, int userCount) {
+        Comment comment = new Comment();
+        comment.setCommentText(words(random, 5 + random.nextInt(10)));
+        comment.setCommentedByUsername("user" + random.nextInt(userCount));
+        return comment;
+    }
+
+    // What the main app would have sent the microservice for a comment on one of these posts
+    public NotificationDTO notification(int notificationNumber, List<Integer> userIds, List<Integer> postIds) {
+        NotificationDTO notification = new NotificationDTO();
+        notification.setUserId(userIds.get(skewedIndex(random, userIds.size())));
+        notification.setPostId(postIds.get(random.nextInt(postIds.size())));
+        notification.setCommentId(notificationNumber);
+        notification.setCommentText(words(random, 8));
+        notification.setCommentedByUsername("user" + random.nextInt(userIds.size()));
+        notification.setTimeCommentCreated(LocalDateTime.now().minusMinutes(notificationNumber));
+        return notification;
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.loadtest;
+
+import java.io.PrintStream;
+
+// --compare-threading=true: the same seeded data and the same workload, run on freshly started embedded apps twice,
+// first with requests on Tomcat's platform threads and then on virtual threads, followed by the two side by side.
+// Needs a Java 21 runtime (see LoadTestOptions.parse); the apps themselves are still built for Java 17.
+public class ThreadingComparison {
+
+    private final LoadTestOptions options;
+
+    public ThreadingComparison(LoadTestOptions options) {
+        this.options = options;
+    }
+
+    public Result run(PrintStream out) throws Exception {
+        out.println("----- Platform threads -----");
+        LatencyStats platformThreads = LoadTest.run(options, false, out);
+        out.println("----- Virtual threads -----");
+        LatencyStats virtualThreads = LoadTest.run(options, true, out);
+
+        out.println("----- Platform threads vs virtual threads -----");
+        LatencyStats.printComparison(out, "platform", platformThreads, "virtual", virtualThreads, options.duration().toNanos() / 1e9);
+        return new Result(platformThreads, virtualThreads);
+    }
+
+    public record Result(LatencyStats platformThreads, LatencyStats virtualThreads) {
+    }
+}
+
+// Both runs seed the same data from the same seed and start from empty databases, so the only difference between them is the execution mode.
+// Virtual threads only pay off when there are more clients than Tomcat has threads (200) and requests spend their time waiting (on the database
+// or the notification microservice); below that, expect the two to be about the same. Past that, the connection pool becomes the limit instead.
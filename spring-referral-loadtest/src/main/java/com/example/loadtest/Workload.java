@@ -0,0 +1,155 @@
+package com.example.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// The mixed workload: every thread is one client that picks a request from the mix, sends it, waits for the response and goes again, until the time is up.
+// Requests finished during the warmup aren't counted, so the JIT, connection pools and caches have settled before we measure.
+public class Workload {
+
+    private final LoadTestOptions options;
+    private final LoadTestClient client;
+    private final String mainUrl;
+    private final DataSeeder.SeededData data;
+    private final SyntheticData syntheticData;
+
+    // Each operation once per unit of its weight, so picking a random entry follows the mix
+    private final List<Operation> weightedOperations = new ArrayList<>();
+
+    public Workload(LoadTestOptions options, LoadTestClient client, String mainUrl, DataSeeder.SeededData data) {
+        this.options = options;
+        this.client = client;
+        this.mainUrl = mainUrl;
+        this.data = data;
+        this.syntheticData = new SyntheticData(options.seed());
+        for (Map.Entry<Operation, Integer> operationWeight : options.mix().entrySet()) {
+            for (int weight = 0; weight < operationWeight.getValue(); weight++) {
+                weightedOperations.add(operationWeight.getKey());
+            }
+        }
+    }
+
+    // Runs the workload and returns what was measured after the warmup
+    public LatencyStats run() throws Exception {
+        LatencyStats stats = new LatencyStats();
+        long start = System.nanoTime();
+        long measureFrom = start + options.warmup().toNanos();
+        long end = measureFrom + options.duration().toNanos();
+
+        ExecutorService executor = Executors.newFixedThreadPool(options.threads());
+        try {
+            List<Future<?>> clients = new ArrayList<>();
+            for (int thread = 0; thread < options.threads(); thread++) {
+                Random random = new Random(options.seed() * 31 + thread);
+                clients.add(executor.submit(() -> {
+                    while (System.nanoTime() < end) {
+                        Operation operation = weightedOperations.get(random.nextInt(weightedOperations.size()));
+                        send(operation, random, stats, measureFrom);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> clientThread : clients) {
+                clientThread.get();
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+        return stats;
+    }
+
+    private void send(Operation operation, Random random, LatencyStats stats, long measureFrom) throws InterruptedException {
+        switch (operation) {
+            case FEED -> {
+                // Most people look at the first page, some scroll on for a page or two
+                String cursor = null;
+                int pages = 1 + (random.nextInt(4) == 0 ? 1 + random.nextInt(2) : 0);
+                for (int page = 0; page < pages; page++) {
+                    String url = mainUrl + "/posts?limit=20" + (cursor == null ? "" : "&after=" + encode(cursor));
+                    JsonNode feedPage = timeJson(operation, url, stats, measureFrom);
+                    if (feedPage == null || !feedPage.hasNonNull("nextCursor")) {
+                        break;
+                    }
+                    cursor = feedPage.get("nextCursor").asText();
+                }
+            }
+            case SEARCH -> time(operation, mainUrl + "/posts/search?q=" + encode(syntheticData.words(random, 1 + random.nextInt(2))), stats, measureFrom);
+            case KEYWORD -> time(operation, mainUrl + "/posts?keyword=" + encode(syntheticData.word(random)), stats, measureFrom);
+            case COMMENT -> {
+                // A burst of comments on one (probably popular) post, which the main app fans out to the notification microservice
+                Integer postId = data.postIds().get(SyntheticData.skewedIndex(random, data.postIds().size()));
+                for (int comment = 0; comment < options.commentBurst(); comment++) {
+                    long start = System.nanoTime();
+                    boolean succeeded;
+                    try {
+                        succeeded = client.postJson(mainUrl + "/comments/posts/" + postId, syntheticData.comment(random, data.userIds().size())) < 300;
+                    }
+                    catch (IOException e) {
+                        succeeded = false;
+                    }
+                    recordIfMeasuring(operation, start, succeeded, stats, measureFrom);
+                }
+            }
+            case INBOX -> {
+                Integer userId = data.userIds().get(SyntheticData.skewedIndex(random, data.userIds().size()));
+                time(operation, mainUrl + "/users/" + userId + "/notifications/inbox?limit=20", stats, measureFrom);
+            }
+        }
+    }
+
+    private void time(Operation operation, String url, LatencyStats stats, long measureFrom) throws InterruptedException {
+        long start = System.nanoTime();
+        boolean succeeded;
+        try {
+            succeeded = succeeded(operation, client.get(url));
+        }
+        catch (IOException e) {
+            succeeded = false;
+        }
+        recordIfMeasuring(operation, start, succeeded, stats, measureFrom);
+    }
+
+    // Same, for when we need the response body; returns null if the request failed
+    private JsonNode timeJson(Operation operation, String url, LatencyStats stats, long measureFrom) throws InterruptedException {
+        long start = System.nanoTime();
+        JsonNode body = null;
+        try {
+            HttpResponse<byte[]> response = client.getJson(url);
+            if (succeeded(operation, response.statusCode())) {
+                body = client.readTree(response.body());
+            }
+        }
+        catch (IOException e) {
+            body = null;
+        }
+        recordIfMeasuring(operation, start, body != null, stats, measureFrom);
+        return body;
+    }
+
+    private static void recordIfMeasuring(Operation operation, long start, boolean succeeded, LatencyStats stats, long measureFrom) {
+        if (start >= measureFrom) {
+            stats.record(operation, System.nanoTime() - start, succeeded);
+        }
+    }
+
+    // Searches answer 404 when nothing matches, which is a normal answer, not an error
+    private static boolean succeeded(Operation operation, int status) {
+        return status < 300 || (status == 404 && (operation == Operation.SEARCH || operation == Operation.KEYWORD));
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
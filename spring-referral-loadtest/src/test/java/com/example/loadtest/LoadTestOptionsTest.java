@@ -0,0 +1,57 @@
+package com.example.loadtest;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadTestOptionsTest {
+
+    @Test
+    void defaultsToOneRunOnPlatformThreads() {
+        LoadTestOptions options = LoadTestOptions.parse(new String[0]);
+
+        assertTrue(options.embedded());
+        assertFalse(options.virtualThreads());
+        assertFalse(options.compareThreading());
+        assertEquals(Duration.ofMillis(20), options.pinnedThreshold());
+    }
+
+    @Test
+    void comparisonNeedsTheEmbeddedApps() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> LoadTestOptions.parse(new String[] {"--compare-threading=true", "--main-url=http://localhost:8080"}));
+        assertTrue(e.getMessage().contains("--compare-threading"));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> LoadTestOptions.parse(new String[] {"--compare-threading=true", "--virtual-threads=true"}));
+    }
+
+    // On Java 17 Spring Boot would quietly run both halves on platform threads, so the comparison refuses to start instead
+    @Test
+    @EnabledForJreRange(max = JRE.JAVA_20)
+    void virtualThreadsAreRefusedBeforeJava21() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> LoadTestOptions.parse(new String[] {"--compare-threading=true"}));
+        assertTrue(e.getMessage().contains("Java 21"));
+
+        assertThrows(IllegalArgumentException.class, () -> LoadTestOptions.parse(new String[] {"--virtual-threads=true"}));
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_21)
+    void virtualThreadsAreAcceptedOnJava21() {
+        LoadTestOptions options = LoadTestOptions.parse(new String[] {"--compare-threading=true", "--pinned-threshold=5ms"});
+
+        assertTrue(options.compareThreading());
+        assertEquals(Duration.ofMillis(5), options.pinnedThreshold());
+    }
+
+    @Test
+    void unknownOptionsAreRefused() {
+        assertThrows(IllegalArgumentException.class, () -> LoadTestOptions.parse(new String[] {"--virtual=true"}));
+    }
+}
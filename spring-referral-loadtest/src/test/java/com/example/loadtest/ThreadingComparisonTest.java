@@ -0,0 +1,69 @@
+package com.example.loadtest;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Small runs of the real scenario: both apps started in this JVM, seeded, and loaded for a couple of seconds
+class ThreadingComparisonTest {
+
+    private static final String[] SMALL_RUN = {"--users=20", "--tags=5", "--posts=100", "--comments=20", "--notifications=50",
+            "--threads=8", "--warmup=0s", "--duration=2s"};
+
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    private final PrintStream out = new PrintStream(output, true, StandardCharsets.UTF_8);
+
+    // The platform thread half of the comparison, which is all Java 17 can run
+    @Test
+    void scenarioRunsOnPlatformThreads() throws Exception {
+        LatencyStats stats = LoadTest.run(LoadTestOptions.parse(SMALL_RUN), false, out);
+
+        for (Operation operation : new Operation[] {Operation.FEED, Operation.SEARCH, Operation.COMMENT, Operation.INBOX}) {
+            assertTrue(stats.getRequests(operation) > 0, operation + " was never sent");
+        }
+        assertTrue(output.toString(StandardCharsets.UTF_8).contains("platform threads"));
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_21)
+    void comparisonRunsTheSameScenarioInBothModes() throws Exception {
+        String[] compare = new String[SMALL_RUN.length + 1];
+        System.arraycopy(SMALL_RUN, 0, compare, 0, SMALL_RUN.length);
+        compare[SMALL_RUN.length] = "--compare-threading=true";
+
+        ThreadingComparison.Result result = new ThreadingComparison(LoadTestOptions.parse(compare)).run(out);
+
+        assertTrue(result.platformThreads().getRequests(Operation.FEED) > 0);
+        assertTrue(result.virtualThreads().getRequests(Operation.FEED) > 0);
+        String printed = output.toString(StandardCharsets.UTF_8);
+        assertTrue(printed.contains("Requests handled on virtual threads"));
+        assertTrue(printed.contains("Virtual threads pinned for longer than 20ms"));
+        assertTrue(printed.contains("Platform threads vs virtual threads"));
+    }
+
+    @Test
+    void comparisonIsPrintedPerOperation() {
+        LatencyStats platform = new LatencyStats();
+        LatencyStats virtual = new LatencyStats();
+        platform.record(Operation.FEED, 10_000_000, true);
+        virtual.record(Operation.FEED, 5_000_000, true);
+        virtual.record(Operation.FEED, 5_000_000, false);
+
+        LatencyStats.printComparison(out, "platform", platform, "virtual", virtual, 1);
+
+        String[] lines = output.toString(StandardCharsets.UTF_8).split("\n");
+        // A header and one row: the only operation that was sent
+        assertEquals(2, lines.length);
+        assertTrue(lines[1].startsWith("feed"));
+        // Twice the requests at half the p99, and one of them failed
+        assertTrue(lines[1].contains("+100%"));
+        assertTrue(lines[1].contains("-50%"));
+        assertTrue(lines[1].trim().endsWith("0          1"));
+    }
+}
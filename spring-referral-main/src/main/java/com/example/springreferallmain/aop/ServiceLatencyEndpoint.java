@@ -0,0 +1,48 @@
+package com.example.springreferallmain.aop;
+
+import com.example.springreferallmain.dto.MethodLatencyDTO;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+@Component
+@Endpoint(id = "servicelatency")
+public class ServiceLatencyEndpoint {
+    @Autowired
+    ServiceMetricsAspect serviceMetricsAspect;
+
+    // Every service method called so far, by name, with its call and error counts and latency percentiles in milliseconds, i.e. GET /actuator/servicelatency
+    // The percentiles cover the last couple of minutes of sampled calls; the counts are since startup.
+    @ReadOperation
+    public Map<String, MethodLatencyDTO> serviceLatency() {
+        Map<String, MethodLatencyDTO> latencyByMethod = new TreeMap<>();
+        for (ServiceMetricsAspect.MethodMetrics metrics : serviceMetricsAspect.getMethodMetrics()) {
+            HistogramSnapshot snapshot = metrics.latency().takeSnapshot();
+            MethodLatencyDTO latency = new MethodLatencyDTO();
+            latency.setCalls((long) metrics.calls().count());
+            latency.setErrors((long) metrics.errors().count());
+            latency.setSampledCalls(snapshot.count());
+            latency.setMaxMs(snapshot.max(TimeUnit.MILLISECONDS));
+            for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+                double ms = percentile.value(TimeUnit.MILLISECONDS);
+                if (percentile.percentile() == 0.5) {
+                    latency.setP50Ms(ms);
+                } else if (percentile.percentile() == 0.99) {
+                    latency.setP99Ms(ms);
+                } else if (percentile.percentile() == 0.999) {
+                    latency.setP999Ms(ms);
+                }
+            }
+            // Overloads share their meters, so they'd all give the same numbers
+            latencyByMethod.putIfAbsent(metrics.method(), latency);
+        }
+        return latencyByMethod;
+    }
+}
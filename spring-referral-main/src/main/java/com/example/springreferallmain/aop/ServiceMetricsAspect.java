@@ -0,0 +1,93 @@
+package com.example.springreferallmain.aop;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@Aspect
+@Component
+public class ServiceMetricsAspect {
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    // Time 1 in every sampleRate calls (1 = time every call). Every call and every error is still counted.
+    @Value("${service-metrics.sample-rate:10}")
+    int sampleRate;
+
+    // One entry per service method, made the first time it is called
+    private final ConcurrentHashMap<Method, MethodMetrics> metricsByMethod = new ConcurrentHashMap<>();
+
+    record MethodMetrics(String method, Timer latency, Counter calls, Counter errors) {}
+
+
+    @Pointcut("execution(* com.example.springreferallmain.service..*.*(..))")
+    public void serviceMethods() {}
+
+    @Around("serviceMethods()")
+    public Object timeAroundMethod(ProceedingJoinPoint proceedingJoinPoint) throws Throwable {
+        MethodMetrics metrics = metricsFor(proceedingJoinPoint);
+        metrics.calls().increment();
+        boolean sampled = sampleRate <= 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0;
+        long start = sampled ? System.nanoTime() : 0;
+        try {
+            return proceedingJoinPoint.proceed();
+        }
+        catch (Throwable e) {
+            metrics.errors().increment();
+            throw e;
+        }
+        finally {
+            if (sampled) {
+                metrics.latency().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    Collection<MethodMetrics> getMethodMetrics() {
+        return metricsByMethod.values();
+    }
+
+    private MethodMetrics metricsFor(ProceedingJoinPoint proceedingJoinPoint) {
+        Method method = ((MethodSignature) proceedingJoinPoint.getSignature()).getMethod();
+        MethodMetrics metrics = metricsByMethod.get(method);
+        if (metrics == null) {
+            metrics = metricsByMethod.computeIfAbsent(method, this::registerMetrics);
+        }
+        return metrics;
+    }
+
+    // Show up under /actuator/metrics (tagged with the method), and all together under /actuator/servicelatency
+    private MethodMetrics registerMetrics(Method method) {
+        String name = method.getDeclaringClass().getSimpleName() + "." + method.getName();
+        Timer latency = Timer.builder("service.method.latency")
+                .description("How long service methods take (a sample of calls, see service-metrics.sample-rate)")
+                .tag("method", name)
+                .publishPercentiles(0.5, 0.99, 0.999)
+                .percentilePrecision(2)
+                .register(meterRegistry);
+        Counter calls = Counter.builder("service.method.calls").tag("method", name).register(meterRegistry);
+        Counter errors = Counter.builder("service.method.errors")
+                .description("Service method calls that threw an exception")
+                .tag("method", name)
+                .register(meterRegistry);
+        return new MethodMetrics(name, latency, calls, errors);
+    }
+}
+
+// This used to log two INFO lines (built with string concatenation) around every service call, which cost more than some of the calls and gave us no numbers.
+// Now each call bumps a counter, and 1 in sample-rate calls is timed with System.nanoTime() into a Timer (Micrometer keeps its percentiles in HdrHistograms),
+// so p50/p99/p99.9 come from real traffic while the overhead stays well under a microsecond a call. Overloaded methods share one set of metrics.
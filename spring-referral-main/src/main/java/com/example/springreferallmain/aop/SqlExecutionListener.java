@@ -0,0 +1,66 @@
+package com.example.springreferallmain.aop;
+
+import lombok.extern.slf4j.Slf4j;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.MethodExecutionContext;
+import net.ttddyy.dsproxy.listener.MethodExecutionListener;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+// Called by the proxied DataSource around every statement and every JDBC method call (see SqlInstrumentationConfig)
+// It adds each statement to the current request's SqlRequestStats, and logs any single statement slower than slowStatementNanos wherever it ran.
+@Slf4j
+public class SqlExecutionListener implements QueryExecutionListener, MethodExecutionListener {
+
+    private final long slowStatementNanos;
+
+    // Statements run one after the other on a thread, so one start time per thread is enough
+    private final ThreadLocal<long[]> statementStart = ThreadLocal.withInitial(() -> new long[1]);
+
+    public SqlExecutionListener(long slowStatementNanos) {
+        this.slowStatementNanos = slowStatementNanos;
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        statementStart.get()[0] = System.nanoTime();
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        long nanos = System.nanoTime() - statementStart.get()[0];
+        String sql = queryInfoList.size() == 1
+                ? queryInfoList.get(0).getQuery()
+                : queryInfoList.stream().map(QueryInfo::getQuery).collect(Collectors.joining("; "));
+        SqlRequestStats stats = SqlRequestStats.current();
+        if (stats != null) {
+            stats.statementExecuted(sql, nanos);
+        }
+        if (nanos > slowStatementNanos) {
+            log.warn("slow_sql elapsed_ms={} batch_size={} success={} sql=\"{}\"",
+                    TimeUnit.NANOSECONDS.toMillis(nanos), execInfo.isBatch() ? execInfo.getBatchSize() : 1, execInfo.isSuccess(), sql);
+        }
+    }
+
+    @Override
+    public void beforeMethod(MethodExecutionContext executionContext) {
+    }
+
+    // A row is fetched every time ResultSet.next() finds one
+    @Override
+    public void afterMethod(MethodExecutionContext executionContext) {
+        if (executionContext.getTarget() instanceof ResultSet
+                && Boolean.TRUE.equals(executionContext.getResult())
+                && executionContext.getMethod().getName().equals("next")) {
+            SqlRequestStats stats = SqlRequestStats.current();
+            if (stats != null) {
+                stats.rowFetched();
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.springreferallmain.aop;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+// Starts counting SQL when a request reaches a controller method, and hands the totals to SqlStatsRecorder when it's done
+public class SqlRequestInterceptor implements AsyncHandlerInterceptor {
+
+    private final SqlStatsRecorder sqlStatsRecorder;
+
+    public SqlRequestInterceptor(SqlStatsRecorder sqlStatsRecorder) {
+        this.sqlStatsRecorder = sqlStatsRecorder;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (handler instanceof HandlerMethod) {
+            SqlRequestStats.start();
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        SqlRequestStats stats = SqlRequestStats.end();
+        if (stats != null && handler instanceof HandlerMethod handlerMethod) {
+            String name = handlerMethod.getBeanType().getSimpleName() + "." + handlerMethod.getMethod().getName();
+            sqlStatsRecorder.record(name, request.getMethod(), request.getRequestURI(), stats);
+        }
+    }
+
+    // A streamed (NDJSON) response carries on in another thread, which we don't follow; the request is counted when it's dispatched back to finish
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        SqlRequestStats.end();
+    }
+}
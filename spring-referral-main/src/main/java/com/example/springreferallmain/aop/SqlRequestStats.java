@@ -0,0 +1,66 @@
+package com.example.springreferallmain.aop;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// The SQL one HTTP request has run so far: how many statements, how long the database took, how many rows came back,
+// and which statement it ran the most times (the telltale sign of an N+1, i.e. one SELECT per post for its tags)
+// One of these lives in a ThreadLocal while the request is being handled (see SqlRequestInterceptor); there's none outside requests.
+public class SqlRequestStats {
+    private static final ThreadLocal<SqlRequestStats> CURRENT = new ThreadLocal<>();
+
+    private int statements;
+    private long jdbcNanos;
+    private long rowsFetched;
+    private final Map<String, Integer> executionsBySql = new HashMap<>();
+    private String mostRepeatedSql;
+    private int mostRepeatedCount;
+
+    static void start() {
+        CURRENT.set(new SqlRequestStats());
+    }
+
+    static SqlRequestStats current() {
+        return CURRENT.get();
+    }
+
+    static SqlRequestStats end() {
+        SqlRequestStats stats = CURRENT.get();
+        CURRENT.remove();
+        return stats;
+    }
+
+    void statementExecuted(String sql, long nanos) {
+        statements++;
+        jdbcNanos += nanos;
+        int executions = executionsBySql.merge(sql, 1, Integer::sum);
+        if (executions > mostRepeatedCount) {
+            mostRepeatedCount = executions;
+            mostRepeatedSql = sql;
+        }
+    }
+
+    void rowFetched() {
+        rowsFetched++;
+    }
+
+    public int getStatements() {
+        return statements;
+    }
+
+    public long getJdbcNanos() {
+        return jdbcNanos;
+    }
+
+    public long getRowsFetched() {
+        return rowsFetched;
+    }
+
+    public String getMostRepeatedSql() {
+        return mostRepeatedSql;
+    }
+
+    public int getMostRepeatedCount() {
+        return mostRepeatedCount;
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.springreferallmain.aop;
+
+import com.example.springreferallmain.dto.RequestSqlStatsDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+@Component
+@Endpoint(id = "sqlstats")
+public class SqlStatsEndpoint {
+    @Autowired
+    SqlStatsRecorder sqlStatsRecorder;
+
+    // Every controller method called so far, with the SQL its requests ran on average and at most, i.e. GET /actuator/sqlstats
+    // Sort by avgStatements or maxStatements to find the endpoints with runaway query counts.
+    @ReadOperation
+    public Map<String, RequestSqlStatsDTO> sqlStats() {
+        return sqlStatsRecorder.getStatsByHandler();
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.springreferallmain.aop;
+
+import com.example.springreferallmain.dto.RequestSqlStatsDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Adds up the SQL of every request per controller method (shown under /actuator/sqlstats), and logs a warning for any request that ran
+// more statements or spent longer in the database than it should, or ran the same statement over and over (an N+1)
+@Slf4j
+public class SqlStatsRecorder {
+
+    // A request over any of these limits is logged
+    @Value("${sql-instrumentation.max-statements:20}")
+    int maxStatements;
+
+    @Value("${sql-instrumentation.max-jdbc-time:500ms}")
+    Duration maxJdbcTime;
+
+    @Value("${sql-instrumentation.max-repeated-statement:10}")
+    int maxRepeatedStatement;
+
+    private final ConcurrentHashMap<String, HandlerTotals> totalsByHandler = new ConcurrentHashMap<>();
+
+    private static class HandlerTotals {
+        final LongAdder requests = new LongAdder();
+        final LongAdder statements = new LongAdder();
+        final LongAccumulator maxStatements = new LongAccumulator(Long::max, 0);
+        final LongAdder jdbcNanos = new LongAdder();
+        final LongAccumulator maxJdbcNanos = new LongAccumulator(Long::max, 0);
+        final LongAdder rowsFetched = new LongAdder();
+        final LongAdder warnings = new LongAdder();
+    }
+
+    // handler is the controller method, i.e. PostController.getAllPosts
+    void record(String handler, String method, String path, SqlRequestStats stats) {
+        HandlerTotals totals = totalsByHandler.computeIfAbsent(handler, h -> new HandlerTotals());
+        totals.requests.increment();
+        totals.statements.add(stats.getStatements());
+        totals.maxStatements.accumulate(stats.getStatements());
+        totals.jdbcNanos.add(stats.getJdbcNanos());
+        totals.maxJdbcNanos.accumulate(stats.getJdbcNanos());
+        totals.rowsFetched.add(stats.getRowsFetched());
+
+        boolean tooManyStatements = stats.getStatements() > maxStatements;
+        boolean tooSlow = stats.getJdbcNanos() > maxJdbcTime.toNanos();
+        boolean repeated = stats.getMostRepeatedCount() > maxRepeatedStatement;
+        if (tooManyStatements || tooSlow || repeated) {
+            totals.warnings.increment();
+            // key=value, so the warnings can be searched and graphed by field
+            log.warn("sql_request_warning handler={} method={} path={} statements={} jdbc_ms={} rows_fetched={} too_many_statements={} too_slow={} possible_n_plus_1={} most_repeated_count={} most_repeated_sql=\"{}\"",
+                    handler, method, path, stats.getStatements(), TimeUnit.NANOSECONDS.toMillis(stats.getJdbcNanos()), stats.getRowsFetched(),
+                    tooManyStatements, tooSlow, repeated, stats.getMostRepeatedCount(), stats.getMostRepeatedSql());
+        }
+    }
+
+    public Map<String, RequestSqlStatsDTO> getStatsByHandler() {
+        Map<String, RequestSqlStatsDTO> statsByHandler = new TreeMap<>();
+        totalsByHandler.forEach((handler, totals) -> {
+            long requests = Math.max(1, totals.requests.sum());
+            statsByHandler.put(handler, new RequestSqlStatsDTO(
+                    totals.requests.sum(),
+                    (double) totals.statements.sum() / requests,
+                    totals.maxStatements.get(),
+                    totals.jdbcNanos.sum() / 1e6 / requests,
+                    totals.maxJdbcNanos.get() / 1e6,
+                    (double) totals.rowsFetched.sum() / requests,
+                    totals.warnings.sum()));
+        });
+        return statsByHandler;
+    }
+}
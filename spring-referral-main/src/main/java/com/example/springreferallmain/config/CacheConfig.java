@@ -0,0 +1,13 @@
+package com.example.springreferallmain.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableCaching
+public class CacheConfig {
+}
+
+
+// @EnableCaching turns on @Cacheable (i.e. TagCatalogCache). The caches themselves are Caffeine caches set up by spring.cache.* in application.properties,
+// which is where their size and time-to-live limits are.
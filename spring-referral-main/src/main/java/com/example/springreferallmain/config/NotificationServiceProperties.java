@@ -0,0 +1,60 @@
+package com.example.springreferallmain.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "notification-service")
+public class NotificationServiceProperties {
+
+    // Where the Notification microservice runs
+    private String baseUrl = "http://localhost:8081";
+
+    private Client client = new Client();
+
+    private CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+    private Bulkhead bulkhead = new Bulkhead();
+
+    @Data
+    public static class Client {
+        // Open connections kept in the pool, in total and per host (we only call one host today, so these are usually the same)
+        private int maxConnections = 50;
+        private int maxConnectionsPerRoute = 50;
+
+        // How long we wait to open a connection, to get one from the pool when they're all busy, and for the response
+        private Duration connectTimeout = Duration.ofSeconds(2);
+        private Duration poolWaitTimeout = Duration.ofSeconds(1);
+        private Duration readTimeout = Duration.ofSeconds(5);
+
+        // Idle connections are closed after this long, so we don't reuse one the other side has already dropped
+        private Duration idleTimeout = Duration.ofSeconds(30);
+
+        // Use the JDK HttpClient with HTTP/2 instead of the Apache connection pool
+        private boolean http2 = false;
+    }
+
+    @Data
+    public static class CircuitBreaker {
+        // This many failed calls in a row opens the circuit, and we stop calling the microservice
+        private int failureThreshold = 5;
+
+        // How long the circuit stays open before we let one trial call through to see if the microservice is back
+        private Duration openDuration = Duration.ofSeconds(10);
+    }
+
+    @Data
+    public static class Bulkhead {
+        // At most this many of our request threads can be waiting on the microservice at once
+        private int maxConcurrentCalls = 20;
+
+        // How long a call waits for one of those slots before it gives up and uses the fallback
+        private Duration maxWait = Duration.ZERO;
+    }
+}
+
+
+// @ConfigurationProperties binds everything under notification-service.* in application.properties to this class, i.e. notification-service.client.read-timeout=5s
+// Enabled by @EnableConfigurationProperties in RestTemplateConfig
@@ -1,19 +1,108 @@
 package com.example.springreferallmain.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.http.HttpClient;
+
 @Configuration
+@EnableConfigurationProperties(NotificationServiceProperties.class)
 public class RestTemplateConfig {
 
     @Bean
-    public RestTemplate restTemplate(){
-        return new RestTemplate();
+    public RestTemplate restTemplate(RestTemplateBuilder restTemplateBuilder, NotificationServiceProperties properties,
+                                     ObjectProvider<CloseableHttpClient> pooledHttpClient, ObjectProvider<HttpClient> http2HttpClient){
+        NotificationServiceProperties.Client client = properties.getClient();
+        ClientHttpRequestFactory requestFactory = client.isHttp2()
+                ? http2RequestFactory(http2HttpClient.getObject(), client)
+                : new HttpComponentsClientHttpRequestFactory(pooledHttpClient.getObject());
+
+        return restTemplateBuilder
+                .rootUri(properties.getBaseUrl())
+                .requestFactory(() -> requestFactory)
+                .build();
+    }
+
+    // ------- APACHE HTTPCLIENT (default) --------
+    // A pool of keep-alive connections, so we don't open a new TCP connection for every call
+    // As beans, Spring closes the pool (and its open connections) when the app shuts down
+    @Bean
+    @ConditionalOnProperty(name = "notification-service.client.http2", havingValue = "false", matchIfMissing = true)
+    public PoolingHttpClientConnectionManager notificationConnectionManager(NotificationServiceProperties properties, MeterRegistry meterRegistry) {
+        NotificationServiceProperties.Client client = properties.getClient();
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(client.getMaxConnections())
+                .setMaxConnPerRoute(client.getMaxConnectionsPerRoute())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(client.getConnectTimeout()))
+                        .setSocketTimeout(Timeout.of(client.getReadTimeout()))
+                        .build())
+                .build();
+
+        // Publishes httpcomponents.httpclient.pool.* metrics (leased, available and pending connections) under /actuator/metrics
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "notification-service").bindTo(meterRegistry);
+        return connectionManager;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "notification-service.client.http2", havingValue = "false", matchIfMissing = true)
+    public CloseableHttpClient notificationHttpClient(NotificationServiceProperties properties, PoolingHttpClientConnectionManager notificationConnectionManager) {
+        NotificationServiceProperties.Client client = properties.getClient();
+        return HttpClients.custom()
+                .setConnectionManager(notificationConnectionManager)
+                // The connection manager is a bean of its own, so Spring closes it (not the client)
+                .setConnectionManagerShared(true)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(client.getPoolWaitTimeout()))
+                        .setResponseTimeout(Timeout.of(client.getReadTimeout()))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(client.getIdleTimeout()))
+                .build();
+    }
+
+    // ------- JDK HTTPCLIENT (notification-service.client.http2=true) --------
+    // The JDK's own HttpClient, which speaks HTTP/2 (and falls back to HTTP/1.1 if the other side doesn't) and keeps its own connections open
+    @Bean
+    @ConditionalOnProperty(name = "notification-service.client.http2", havingValue = "true")
+    public HttpClient notificationHttp2Client(NotificationServiceProperties properties) {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(properties.getClient().getConnectTimeout())
+                .build();
+    }
+
+    private static ClientHttpRequestFactory http2RequestFactory(HttpClient httpClient, NotificationServiceProperties.Client client) {
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(client.getReadTimeout());
+        return requestFactory;
     }
 }
 
 
 // @Configuration tells Spring to look inside this class at application start and create bean of the annotated methods, so we can then autowire them
 // @Bean is a method-level annotation that allows us to create a bean of that specific method
-// RestTemplate is a class provided by Spring Framework that allows us to make Rest calls to other web services (in this case Spring ReferAll Ma
\ No newline at end of file
+// RestTemplate is a class provided by Spring Framework that allows us to make Rest calls to other web services (in this case the Notification microservice)
+// rootUri means the services only give the path (i.e. "/notifications/{userId}"), and the host comes from notification-service.base-url
+// The timeouts mean a hung Notification microservice makes our calls fail after a few seconds, instead of holding a Tomcat thread forever
+// Building it from Spring's RestTemplateBuilder also records the http.client.requests timer for every call
+// The HTTP client and its connection pool are beans (only the ones for the chosen client are created), so Spring closes them with the application context
+// instead of leaving the pool's connections and eviction thread behind. The JDK HttpClient has no close() before Java 21; it lets go of its connections once it is no longer used.
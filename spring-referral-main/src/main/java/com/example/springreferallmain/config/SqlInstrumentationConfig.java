@@ -0,0 +1,57 @@
+package com.example.springreferallmain.config;
+
+import com.example.springreferallmain.aop.SqlExecutionListener;
+import com.example.springreferallmain.aop.SqlRequestInterceptor;
+import com.example.springreferallmain.aop.SqlStatsRecorder;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+@Configuration
+public class SqlInstrumentationConfig implements WebMvcConfigurer {
+
+    @Bean
+    public SqlStatsRecorder sqlStatsRecorder() {
+        return new SqlStatsRecorder();
+    }
+
+    // Wraps the DataSource Spring Boot makes (Hikari) in datasource-proxy, so every statement and ResultSet goes past SqlExecutionListener.
+    // static, since it has to exist before the DataSource is made (too early for @Value, so the threshold is read from the Environment)
+    @Bean
+    public static BeanPostProcessor sqlInstrumentedDataSource(Environment environment) {
+        Duration slowStatement = environment.getProperty("sql-instrumentation.slow-statement", Duration.class, Duration.ofMillis(200));
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof ProxyDataSource)) {
+                    SqlExecutionListener listener = new SqlExecutionListener(slowStatement.toNanos());
+                    return ProxyDataSourceBuilder.create(beanName, dataSource)
+                            .listener(listener)
+                            .methodListener(listener)
+                            .proxyResultSet()
+                            .build();
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new SqlRequestInterceptor(sqlStatsRecorder()));
+    }
+}
+
+// This replaces spring.jpa.show-sql, which printed every statement to stdout: slow under load, and too much to read.
+// Instead each request's statements, database time and rows fetched are added up, per controller method, under /actuator/sqlstats,
+// and only the outliers are logged (one line per slow statement or per request over the sql-instrumentation.* limits).
+// Only what runs on the request's own thread is counted; background jobs (i.e. the like flusher) and streamed responses show up in slow_sql lines only.
+// To see every statement while debugging, set logging.level.org.hibernate.SQL=DEBUG.
@@ -1,7 +1,11 @@
 package com.example.springreferallmain.controller;
+import com.example.springreferallmain.dto.CommentPatchDTO;
+import com.example.springreferallmain.dto.UpdatedVersionDTO;
 import com.example.springreferallmain.model.Comment;
 import com.example.springreferallmain.service.CommentService;
+import com.example.springreferallmain.service.LikeService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -14,6 +18,9 @@ public class CommentController {
     @Autowired
     CommentService commentService;
 
+    @Autowired
+    LikeService likeService;
+
 
     // ------- Creating --------
     // Add a new comment to a post
@@ -25,6 +32,8 @@ public class CommentController {
             return ResponseEntity.badRequest().body("Tsk tsk. Null or empty comment provided");
         }
         else {
+            // A new comment starts at version 0, whatever the client sent
+            commentToAdd.setVersion(null);
             Comment newComment = commentService.addCommentToAPost(postId, commentToAdd);
 
             return ResponseEntity.status(HttpStatus.CREATED).body(newComment);
@@ -33,10 +42,13 @@ public class CommentController {
 
 
     // ------- RETRIEVE --------
-    // Get comments tied to a post (to display comments under a post for user)
+    // Get comments tied to a post a page at a time, oldest first (to display comments under a post for user), i.e. /comments/posts/1?page=0&size=20
     @GetMapping("posts/{postId}")
-    public ResponseEntity<List<Comment>> getCommentsByPostId(@PathVariable Integer postId) {
-        List<Comment> commentsTiedToPost = commentService.getCommentsByPostId(postId);
+    public ResponseEntity<?> getCommentsByPostId(@PathVariable Integer postId, @RequestParam(defaultValue = "0") Integer page, @RequestParam(defaultValue = "20") Integer size) {
+        if (page < 0 || size <= 0 || size > 100) {
+            return ResponseEntity.badRequest().body("Tsk tsk. Please provide a page of 0 or more and a size between 1 and 100.");
+        }
+        List<Comment> commentsTiedToPost = commentService.getCommentsByPostId(postId, page, size);
         if (commentsTiedToPost == null || commentsTiedToPost.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
@@ -55,6 +67,38 @@ public class CommentController {
         return ResponseEntity.ok(updatedCommentOnPost);
     }
 
+    // Edit just some fields of a comment, i.e. {"version": 0, "commentText": "Fixed a typo"}, where version is the one that came with the comment
+    // If the comment was edited since, nothing is changed and the client gets a 409
+    @PatchMapping("{commentId}")
+    public ResponseEntity<?> patchCommentById(@PathVariable Integer commentId, @RequestBody CommentPatchDTO commentPatch) {
+        if (commentPatch.getVersion() == null) {
+            return ResponseEntity.badRequest().body("Tsk tsk. Please send the version of the comment you are editing.");
+        }
+        if (commentPatch.getCommentText() == null && commentPatch.getCommentedByUsername() == null) {
+            return ResponseEntity.badRequest().body("Tsk tsk. Nothing to update.");
+        }
+        if ("".equals(commentPatch.getCommentText())) {
+            return ResponseEntity.badRequest().body("Tsk tsk. Null or empty comment provided");
+        }
+        Integer newVersion = commentService.patchCommentById(commentId, commentPatch);
+        return ResponseEntity.ok(new UpdatedVersionDTO(commentId, newVersion));
+    }
+
+
+    // ------- LIKES --------
+    // Like or unlike a comment. The like is counted straight away and saved to the database within a second (hence 202 Accepted).
+    @PostMapping("{commentId}/likes")
+    public ResponseEntity<?> likeComment(@PathVariable Integer commentId) {
+        likeService.likeComment(commentId);
+        return ResponseEntity.accepted().body("Comment liked");
+    }
+
+    @DeleteMapping("{commentId}/likes")
+    public ResponseEntity<?> unlikeComment(@PathVariable Integer commentId) {
+        likeService.unlikeComment(commentId);
+        return ResponseEntity.accepted().body("Comment unliked");
+    }
+
 
     // ------- DELETE--------
     // Delete comment by id
@@ -66,8 +110,10 @@ public class CommentController {
         }
         return ResponseEntity.ok().body("Comment deleted successfully.");
     }
-}
-
-
-
 
+    // Someone else edited it since the client read it (PATCH), or between our read and our save (PUT)
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<String> handleEditConflict(OptimisticLockingFailureException e) {
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.CONFLICT);
+    }
+}
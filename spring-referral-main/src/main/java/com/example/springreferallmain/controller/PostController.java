@@ -1,14 +1,30 @@
 package com.example.springreferallmain.controller;
+import com.example.springreferallmain.dto.BulkImportReportDTO;
+import com.example.springreferallmain.dto.FeedPageDTO;
+import com.example.springreferallmain.dto.PostPatchDTO;
+import com.example.springreferallmain.dto.UpdatedVersionDTO;
 import com.example.springreferallmain.model.Post;
+import com.example.springreferallmain.service.BulkImportService;
+import com.example.springreferallmain.service.ChangeVersions;
 import com.example.springreferallmain.service.CommentService;
+import com.example.springreferallmain.service.LikeService;
 import com.example.springreferallmain.service.PostService;
+import com.example.springreferallmain.service.PostTagIndex;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
 import java.util.List;
 
+import static com.example.springreferallmain.service.ChangeVersions.Aggregate.POSTS;
+
 @CrossOrigin(origins = "*")
 @RestController
 @RequestMapping ("posts")
@@ -16,9 +32,18 @@ public class PostController {
     @Autowired
     PostService postService;
 
+    @Autowired
+    BulkImportService bulkImportService;
+
     @Autowired
     CommentService commentService;
 
+    @Autowired
+    LikeService likeService;
+
+    @Autowired
+    ChangeVersions changeVersions;
+
 
     // ------- CREATE --------
     // Create a new post
@@ -29,6 +54,8 @@ public class PostController {
             return ResponseEntity.badRequest().body("Please make sure you provide a post title and content before submitting.");
         }
         else {
+            // A new post starts at version 0, whatever the client sent
+            postToAdd.setVersion(null);
             Post newPostCreated = postService.addPost(userId, postToAdd);
 
             return new ResponseEntity<>(newPostCreated, HttpStatus.CREATED);
@@ -38,6 +65,7 @@ public class PostController {
     // Create a list of posts for testing
     @PostMapping
     public ResponseEntity<?> addPosts(@RequestBody List<Post> postsToAdd) {
+        postsToAdd.forEach(post -> post.setVersion(null));
         List<Post> newPostsCreated = postService.addPosts(postsToAdd);
         if (postsToAdd == null || postsToAdd.isEmpty())  {
             return ResponseEntity.badRequest().body("Tsk tsk. Null posts provided");
@@ -45,10 +73,26 @@ public class PostController {
         return new ResponseEntity<>(newPostsCreated, HttpStatus.CREATED);
     }
 
+    // Bulk import posts as NDJSON or CSV, with the columns userId, postTitle, postContent, postMediaURL and tagIds (i.e. 1;2). The users and tags must already exist.
+    // Imported posts are searchable, filterable by tag and can trend straight away, like posts added one at a time.
+    @PostMapping(value = "import", consumes = {MediaType.APPLICATION_NDJSON_VALUE, "text/csv"})
+    public ResponseEntity<?> importPosts(HttpServletRequest request) throws IOException {
+        BulkImportReportDTO report = bulkImportService.importPosts(request.getInputStream(), BulkImportService.Format.of(MediaType.parseMediaType(request.getContentType())));
+        if (report.getRowsImported() == 0) {
+            return ResponseEntity.badRequest().body(report);
+        }
+        return ResponseEntity.status(HttpStatus.CREATED).body(report);
+    }
+
     // ------- RETRIEVE --------
     // Get all posts (to display on homepage)
+    // The reads below send an ETag; if the client's If-None-Match still matches, nothing changed and they get a 304 without us touching the database.
+    // (Not search and trending: search also matches comment text, and trending changes as time passes.)
     @GetMapping
-    public ResponseEntity<List<Post>> getAllPosts() {
+    public ResponseEntity<List<Post>> getAllPosts(WebRequest request) {
+        if (request.checkNotModified(changeVersions.etag(POSTS))) {
+            return null;
+        }
         List<Post> allPosts = postService.getAllPosts();
         if (allPosts.isEmpty() ) {
             return ResponseEntity.notFound().build();
@@ -56,9 +100,93 @@ public class PostController {
         return ResponseEntity.ok(allPosts);
     }
 
+    // Same list streamed as NDJSON (one post per line) when asked for with Accept: application/x-ndjson, i.e. to export them all.
+    // Rows are written as they are read from the database, so the first ones arrive straight away and memory use doesn't grow with the number of posts.
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllPosts(WebRequest request) {
+        if (request.checkNotModified(changeVersions.etag(POSTS, "ndjson"))) {
+            return null;
+        }
+        StreamingResponseBody allPosts = out -> postService.writeAllPosts(out);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(allPosts);
+    }
+
+    // Get one page of posts for the homepage feed, i.e. /posts?limit=20 and then /posts?limit=20&after={nextCursor}
+    // An empty page is not an error here, it just means the user has scrolled to the end of the feed.
+    @GetMapping(params= {"limit"})
+    public ResponseEntity<?> getPostFeed(@RequestParam(required = false) String after, @RequestParam Integer limit, WebRequest request) {
+        if (limit <= 0) {
+            return ResponseEntity.badRequest().body("Tsk tsk. The feed limit must be greater than 0.");
+        }
+        if (request.checkNotModified(changeVersions.etag(POSTS))) {
+            return null;
+        }
+        FeedPageDTO feedPage;
+        try {
+            feedPage = postService.getPostFeed(after, limit);
+        }
+        catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Tsk tsk. The feed cursor is not valid. Start again from the first page (without after).");
+        }
+        return ResponseEntity.ok(feedPage);
+    }
+
+    // Full text search over post titles, content, tag names and comments, best match first, i.e. /posts/search?q=remote java jobs
+    @GetMapping("search")
+    public ResponseEntity<?> searchPosts(@RequestParam String q, @RequestParam(defaultValue = "0") Integer page, @RequestParam(defaultValue = "20") Integer size) {
+        if (q.isBlank() || page < 0 || size <= 0 || size > 100) {
+            return ResponseEntity.badRequest().body("Tsk tsk. Please provide a search query, a page of 0 or more and a size between 1 and 100.");
+        }
+        List<Post> matchingPosts = postService.searchPosts(q, page, size);
+        if (matchingPosts.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(matchingPosts);
+    }
+
+    // Get the posts with the most recent likes and comments, most trending first, i.e. /posts/trending?limit=10
+    @GetMapping("trending")
+    public ResponseEntity<?> getTrendingPosts(@RequestParam(defaultValue = "20") Integer limit) {
+        if (limit <= 0 || limit > 100) {
+            return ResponseEntity.badRequest().body("Tsk tsk. The limit must be between 1 and 100.");
+        }
+        List<Post> trendingPosts = postService.getTrendingPosts(limit);
+        if (trendingPosts.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(trendingPosts);
+    }
+
+    // Get posts filtered by several tags (by tag id), newest first, i.e. /posts?tags=1,2,3&mode=and
+    // mode=and: posts with all of the tags, mode=or: posts with any of them, mode=not: posts with none of them
+    @GetMapping(params= {"tags"})
+    public ResponseEntity<?> getPostsByTags(@RequestParam List<Integer> tags, @RequestParam(defaultValue = "and") String mode, @RequestParam(defaultValue = "0") Integer page, @RequestParam(defaultValue = "20") Integer size, WebRequest request) {
+        PostTagIndex.Mode tagMode;
+        try {
+            tagMode = PostTagIndex.Mode.valueOf(mode.toUpperCase());
+        }
+        catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Tsk tsk. The mode must be and, or or not.");
+        }
+        if (tags.isEmpty() || page < 0 || size <= 0 || size > 100) {
+            return ResponseEntity.badRequest().body("Tsk tsk. Please provide at least one tag id, a page of 0 or more and a size between 1 and 100.");
+        }
+        if (request.checkNotModified(changeVersions.etag(POSTS))) {
+            return null;
+        }
+        List<Post> postsWithTags = postService.getPostsByTags(tags, tagMode, page, size);
+        if (postsWithTags.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(postsWithTags);
+    }
+
     // Get all posts matching a keyword search, i.e. so users can see matching refer-all posts
     @GetMapping(params= {"keyword"})
-    public ResponseEntity<List<Post>> getPostsByDescriptionContaining(@RequestParam String keyword) {
+    public ResponseEntity<List<Post>> getPostsByDescriptionContaining(@RequestParam String keyword, WebRequest request) {
+        if (request.checkNotModified(changeVersions.etag(POSTS))) {
+            return null;
+        }
         List<Post> postsMatchingKeyword = postService.getPostsByDescriptionContaining(keyword);
         if (postsMatchingKeyword == null ||postsMatchingKeyword.isEmpty()) {
             return ResponseEntity.notFound().build();
@@ -79,6 +207,37 @@ public class PostController {
         return ResponseEntity.ok(updatedPost);
     }
 
+    // Edit just some fields of a post, i.e. {"version": 3, "postTitle": "New title"}, where version is the one that came with the post the client is editing
+    // If someone edited the post since, nothing is changed and the client gets a 409, so they can reload it and try again
+    @PatchMapping("{postId}")
+    public ResponseEntity<?> patchPostById(@PathVariable Integer postId, @RequestBody PostPatchDTO postPatch) {
+        if (postPatch.getVersion() == null) {
+            return ResponseEntity.badRequest().body("Tsk tsk. Please send the version of the post you are editing.");
+        }
+        if (postPatch.getPostTitle() == null && postPatch.getPostContent() == null && postPatch.getPostMediaURL() == null) {
+            return ResponseEntity.badRequest().body("Tsk tsk. Nothing to update.");
+        }
+        if ("".equals(postPatch.getPostTitle()) || "".equals(postPatch.getPostContent())) {
+            return ResponseEntity.badRequest().body("Please make sure you provide a post title and content before submitting.");
+        }
+        Integer newVersion = postService.patchPostById(postId, postPatch);
+        return ResponseEntity.ok(new UpdatedVersionDTO(postId, newVersion));
+    }
+
+    // ------- LIKES --------
+    // Like or unlike a post. The like is counted straight away and saved to the database within a second (hence 202 Accepted).
+    @PostMapping("{postId}/likes")
+    public ResponseEntity<?> likePost(@PathVariable Integer postId) {
+        likeService.likePost(postId);
+        return ResponseEntity.accepted().body("Post liked");
+    }
+
+    @DeleteMapping("{postId}/likes")
+    public ResponseEntity<?> unlikePost(@PathVariable Integer postId) {
+        likeService.unlikePost(postId);
+        return ResponseEntity.accepted().body("Post unliked");
+    }
+
     // ------- DELETE--------
     // Delete post by id (if user deletes a post)
     @DeleteMapping("{postId}")
@@ -90,5 +249,11 @@ public class PostController {
         return ResponseEntity.ok().body("Post deleted successfully.");
     }
 
+    // Someone else edited it since the client read it (PATCH), or between our read and our save (PUT)
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<String> handleEditConflict(OptimisticLockingFailureException e) {
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.CONFLICT);
+    }
+
 
 }
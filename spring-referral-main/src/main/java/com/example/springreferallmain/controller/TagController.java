@@ -1,21 +1,38 @@
 package com.example.springreferallmain.controller;
 
+import com.example.springreferallmain.dto.BulkImportReportDTO;
 import com.example.springreferallmain.model.Post;
 import com.example.springreferallmain.model.Tag;
+import com.example.springreferallmain.service.BulkImportService;
+import com.example.springreferallmain.service.ChangeVersions;
 import com.example.springreferallmain.service.TagService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
 import java.util.List;
 
+import static com.example.springreferallmain.service.ChangeVersions.Aggregate.POSTS;
+import static com.example.springreferallmain.service.ChangeVersions.Aggregate.TAGS;
+
 @RestController
 @RequestMapping("tags")
 public class TagController {
     @Autowired
     TagService tagService;
 
+    @Autowired
+    BulkImportService bulkImportService;
+
+    @Autowired
+    ChangeVersions changeVersions;
+
     //Note: Post is the owning entity side so that is why most tag methods are mapped from Post.
 
 
@@ -48,6 +65,16 @@ public class TagController {
         return ResponseEntity.status(HttpStatus.CREATED).body(newTagsCreated);
     }
 
+    // Bulk import tags as NDJSON or CSV (columns tagName and tagDescription), and get back a report of what was imported
+    @PostMapping(value = "import", consumes = {MediaType.APPLICATION_NDJSON_VALUE, "text/csv"})
+    public ResponseEntity<?> importTags(HttpServletRequest request) throws IOException {
+        BulkImportReportDTO report = bulkImportService.importTags(request.getInputStream(), BulkImportService.Format.of(MediaType.parseMediaType(request.getContentType())));
+        if (report.getRowsImported() == 0) {
+            return ResponseEntity.badRequest().body(report);
+        }
+        return ResponseEntity.status(HttpStatus.CREATED).body(report);
+    }
+
     // Add tag to a post
     @PostMapping("/{tagId}/posts/{postId}")
     public ResponseEntity<?> addTagToPost(@PathVariable Integer postId, @PathVariable Integer tagId) {
@@ -62,8 +89,12 @@ public class TagController {
 
     // ------- RETRIEVE --------
     // Get all tags (display tag options to user)
+    // Tags hardly ever change, so most of the time a client that already has them (If-None-Match) gets a 304 without the cache or the database being asked
     @GetMapping
-    public ResponseEntity<List<Tag>> getAllTags() {
+    public ResponseEntity<List<Tag>> getAllTags(WebRequest request) {
+        if (request.checkNotModified(changeVersions.etag(TAGS))) {
+            return null;
+        }
         List<Tag> listOfTagsOptions = tagService.getAllTags();
         if (listOfTagsOptions == null || listOfTagsOptions.isEmpty()) {
             return ResponseEntity.notFound().build();
@@ -71,12 +102,27 @@ public class TagController {
         return ResponseEntity.ok(listOfTagsOptions);
     }
 
+    // Same list streamed as NDJSON (one tag per line) when asked for with Accept: application/x-ndjson, i.e. to export them all.
+    // Rows are written as they are read from the database, so the first ones arrive straight away and memory use doesn't grow with the number of tags.
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllTags(WebRequest request) {
+        if (request.checkNotModified(changeVersions.etag(TAGS, "ndjson"))) {
+            return null;
+        }
+        StreamingResponseBody allTags = out -> tagService.writeAllTags(out);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(allTags);
+    }
+
     // Get posts associated with a tag
     // This way we can show a posts with that tag.
     // Note: I realize after the fact, I probably could have put this in tag controller, however since this still technically has to do with tags and since I'm still querying from the iTagRepository with tag.getPosts()...leaving it alone for now as project is almost due. Sowwy :(
+    // Which posts have a tag only changes with the posts (and tagging them), so this uses the posts' ETag
     @GetMapping("{tagId}/posts")
 
-    public ResponseEntity<List<Post>> getPostsWithTagId(@PathVariable Integer tagId) {
+    public ResponseEntity<List<Post>> getPostsWithTagId(@PathVariable Integer tagId, WebRequest request) {
+        if (request.checkNotModified(changeVersions.etag(POSTS))) {
+            return null;
+        }
         List <Post> postsWithTagId = tagService.getPostsByTagById(tagId);
         if (postsWithTagId  == null || postsWithTagId.isEmpty()) {
             return ResponseEntity.notFound().build();
@@ -1,21 +1,42 @@
 package com.example.springreferallmain.controller;
+import com.example.springreferallmain.dto.BulkImportReportDTO;
+import com.example.springreferallmain.dto.InboxPageDTO;
 import com.example.springreferallmain.dto.NotificationDTO;
+import com.example.springreferallmain.dto.UpdatedVersionDTO;
+import com.example.springreferallmain.dto.UserPatchDTO;
 import com.example.springreferallmain.model.User;
+import com.example.springreferallmain.service.BulkImportService;
+import com.example.springreferallmain.service.ChangeVersions;
 import com.example.springreferallmain.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.client.ResourceAccessException;
 
 import javax.management.Notification;
+import java.io.IOException;
 import java.util.List;
 
+import static com.example.springreferallmain.service.ChangeVersions.Aggregate.USERS;
+
 @RestController
 @RequestMapping("/users")
 public class UserController {
     @Autowired
     UserService userService;
 
+    @Autowired
+    BulkImportService bulkImportService;
+
+    @Autowired
+    ChangeVersions changeVersions;
+
     // ------- CREATE --------
     // Create a new user (when user creates an account)
     // ? return type b/c either could return a string or the new user created
@@ -27,6 +48,8 @@ public class UserController {
             return ResponseEntity.badRequest().body("Tsk tsk. Null user provided. Please make sure to fill in the required fields when creating account.");
         }
         else {
+            // A new account starts at version 0, whatever the client sent
+            userToAdd.setVersion(null);
             User newUserCreated = userService.addUser(userToAdd);
             return new ResponseEntity<>(newUserCreated, HttpStatus.CREATED);
 
@@ -38,6 +61,7 @@ public class UserController {
     // Create a list of Users for testing purposes
     @PostMapping("bulk")
     public ResponseEntity<?> addUsers(@RequestBody List<User> usersToAdd) {
+        usersToAdd.forEach(user -> user.setVersion(null));
         List<User> newUsersCreated = userService.addUsers(usersToAdd);
         if (usersToAdd == null || usersToAdd.isEmpty())  {
             return ResponseEntity.badRequest().body("Tsk tsk. Null users provided");
@@ -45,10 +69,25 @@ public class UserController {
         return new ResponseEntity<>(newUsersCreated, HttpStatus.CREATED);
     }
 
+    // Bulk import: users as NDJSON (one JSON user per line) or CSV (a header line naming the columns, then one user per line), i.e. to seed or migrate data.
+    // The body is read and saved a batch at a time, so it can be millions of rows; the response says how many were imported and which rows were left out and why.
+    @PostMapping(value = "import", consumes = {MediaType.APPLICATION_NDJSON_VALUE, "text/csv"})
+    public ResponseEntity<?> importUsers(HttpServletRequest request) throws IOException {
+        BulkImportReportDTO report = bulkImportService.importUsers(request.getInputStream(), BulkImportService.Format.of(MediaType.parseMediaType(request.getContentType())));
+        if (report.getRowsImported() == 0) {
+            return ResponseEntity.badRequest().body(report);
+        }
+        return ResponseEntity.status(HttpStatus.CREATED).body(report);
+    }
+
     // ------- RETRIEVE --------
     // Get all users (to display users in profile directory)
+    // These reads send an ETag: a client that sends it back (If-None-Match) gets a 304 and no query is run, unless a user changed since
     @GetMapping
-    public ResponseEntity<List<User>> getAllUsers () {
+    public ResponseEntity<List<User>> getAllUsers (WebRequest request) {
+        if (request.checkNotModified(changeVersions.etag(USERS))) {
+            return null;
+        }
         List<User> registeredUsersList = userService.getAllUsers();
         if (registeredUsersList == null || registeredUsersList.isEmpty()) {
             return ResponseEntity.notFound().build();
@@ -56,10 +95,24 @@ public class UserController {
         return ResponseEntity.ok(registeredUsersList);
     }
 
+    // Same list streamed as NDJSON (one user per line) when asked for with Accept: application/x-ndjson, i.e. to export them all.
+    // Rows are written as they are read from the database, so the first ones arrive straight away and memory use doesn't grow with the number of users.
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllUsers(WebRequest request) {
+        if (request.checkNotModified(changeVersions.etag(USERS, "ndjson"))) {
+            return null;
+        }
+        StreamingResponseBody registeredUsers = out -> userService.writeAllUsers(out);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(registeredUsers);
+    }
+
 
     // Get user by id (to display user info on My Account page)
     @GetMapping("{userId}")
-    public ResponseEntity<User> getUserById (@PathVariable Integer userId) {
+    public ResponseEntity<User> getUserById (@PathVariable Integer userId, WebRequest request) {
+        if (request.checkNotModified(changeVersions.etag(USERS))) {
+            return null;
+        }
         User registeredUser = userService.getUserById(userId);
         if (registeredUser == null) {
             return ResponseEntity.notFound().build();
@@ -82,6 +135,23 @@ public class UserController {
 
     }
 
+    // Edit just some account fields, i.e. {"version": 2, "userBio": "Now hiring!"}, where version is the one that came with the user
+    // If the account was edited since (i.e. in another tab), nothing is changed and the client gets a 409
+    @PatchMapping("{userId}")
+    public ResponseEntity<?> patchUserById (@PathVariable Integer userId, @RequestBody UserPatchDTO userPatch) {
+        if (userPatch.getVersion() == null) {
+            return ResponseEntity.badRequest().body("Tsk tsk. Please send the version of the account you are editing.");
+        }
+        if (userPatch.getUsername() == null && userPatch.getEmail() == null && userPatch.getPassword() == null && userPatch.getProfilePictureURL() == null && userPatch.getUserBio() == null) {
+            return ResponseEntity.badRequest().body("Tsk tsk. Nothing to update.");
+        }
+        if ("".equals(userPatch.getUsername()) || "".equals(userPatch.getEmail()) || "".equals(userPatch.getPassword())) {
+            return ResponseEntity.badRequest().body("Tsk tsk. Username, email and password can't be empty.");
+        }
+        Integer newVersion = userService.patchUserById(userId, userPatch);
+        return ResponseEntity.ok(new UpdatedVersionDTO(userId, newVersion));
+    }
+
 
     // ------- DELETE--------
     // Delete user by id (if user closes his account)
@@ -118,4 +188,49 @@ public class UserController {
 
     }
 
+    // One page of the user's inbox, newest first, i.e. /users/1/notifications/inbox?limit=20 and then ?limit=20&before={nextBefore}
+    @GetMapping("{userId}/notifications/inbox")
+    public ResponseEntity<?> getNotificationInbox (@PathVariable Integer userId, @RequestParam(required = false) Integer before, @RequestParam(defaultValue = "20") Integer limit) {
+        if (limit <= 0) {
+            return ResponseEntity.badRequest().body("Tsk tsk. The inbox limit must be greater than 0.");
+        }
+        InboxPageDTO inboxPage = userService.getNotificationInbox(userId, before, limit);
+        return ResponseEntity.ok(inboxPage);
+    }
+
+    // Number of unread notifications (for the notification bell)
+    @GetMapping("{userId}/notifications/unread-count")
+    public ResponseEntity<Long> getUnreadNotificationCount (@PathVariable Integer userId) {
+        return ResponseEntity.ok(userService.getUnreadNotificationCount(userId));
+    }
+
+    // Mark one notification as read (when the user opens it)
+    @PutMapping("{userId}/notifications/{notificationId}/read")
+    public ResponseEntity<?> markNotificationRead (@PathVariable Integer userId, @PathVariable Integer notificationId) {
+        boolean markedRead = userService.markNotificationRead(userId, notificationId);
+        if (!markedRead) {
+            return new ResponseEntity<>("Unread notification not found", HttpStatus.NOT_FOUND);
+        }
+        return ResponseEntity.ok().body("Notification marked as read");
+    }
+
+    // Mark all notifications as read
+    @PutMapping("{userId}/notifications/read")
+    public ResponseEntity<?> markAllNotificationsRead (@PathVariable Integer userId) {
+        userService.markAllNotificationsRead(userId);
+        return ResponseEntity.ok().body("All notifications marked as read");
+    }
+
+    // Someone else edited it since the client read it (PATCH), or between our read and our save (PUT)
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<String> handleEditConflict(OptimisticLockingFailureException e) {
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.CONFLICT);
+    }
+
+    // The Notification microservice is unavailable and we have nothing saved from it to show instead
+    @ExceptionHandler(ResourceAccessException.class)
+    public ResponseEntity<String> handleNotificationServiceUnavailable (ResourceAccessException e) {
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
 }
@@ -0,0 +1,33 @@
+package com.example.springreferallmain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkImportReportDTO {
+    private int rowsRead;
+    private int rowsImported;
+    private int rowsRejected;
+    private List<BatchErrors> batchesWithErrors = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class BatchErrors {
+        private int batchNumber;
+        private int firstRow;
+        private int lastRow;
+        private int rowsImported;
+        private List<String> errors = new ArrayList<>();
+    }
+}
+
+// What a bulk import did. Rows are numbered from 1 (not counting a CSV header).
+// Only batches that had a problem are listed: either some rows were rejected (bad JSON/CSV, missing fields, unknown user or tag)
+// and the rest of the batch was saved, or the database refused the batch and none of it was saved.
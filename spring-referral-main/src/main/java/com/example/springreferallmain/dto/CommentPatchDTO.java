@@ -0,0 +1,17 @@
+package com.example.springreferallmain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CommentPatchDTO {
+    private Integer version;
+    private String commentText;
+    private String commentedByUsername;
+}
+
+// One edit of a comment (PATCH /comments/{commentId}): version is the version of the comment the client read, and is required.
+// Only the fields that are sent are changed.
@@ -0,0 +1,19 @@
+package com.example.springreferallmain.dto;
+
+import com.example.springreferallmain.model.Post;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FeedPageDTO {
+    private List<Post> posts;
+    private String nextCursor;
+}
+
+// One page of the homepage feed.
+// nextCursor is an opaque token: the client passes it back as ?after= to get the next page, and it is null once there are no more posts.
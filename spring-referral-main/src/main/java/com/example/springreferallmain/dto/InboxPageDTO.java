@@ -0,0 +1,19 @@
+package com.example.springreferallmain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InboxPageDTO {
+    private List<NotificationDTO> notifications;
+    private Integer nextBefore;
+    private long unreadCount;
+}
+
+// Mirrors InboxPageDTO in the Notification microservice: one page of a user's inbox, newest first.
+// nextBefore is passed back as ?before= for the next (older) page, and is null on the last page.
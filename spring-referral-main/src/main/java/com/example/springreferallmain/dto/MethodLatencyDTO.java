@@ -0,0 +1,21 @@
+package com.example.springreferallmain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MethodLatencyDTO {
+    private long calls;
+    private long errors;
+    private long sampledCalls;
+    private double p50Ms;
+    private double p99Ms;
+    private double p999Ms;
+    private double maxMs;
+}
+
+// One service method's row in /actuator/servicelatency (see ServiceMetricsAspect).
+// calls and errors count every call; the latencies only come from the sampled calls.
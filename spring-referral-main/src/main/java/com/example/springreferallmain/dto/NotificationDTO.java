@@ -19,10 +19,12 @@ public class NotificationDTO {
     private String commentText;
     private String commentedByUsername;
     private LocalDateTime timeCommentCreated;
+    private boolean read;
 
 }
 
 // Notice how it's just annotated with @Data. A DTO is simply a courier of data.
 
 // The attributes listed are so that we get the rest of comment info as well as associated post for context
+// read tells the user whether they have already opened the notification
 // We have the user id too of who wrote the post to identify who needs to be notified is a comment is left on that post
\ No newline at end of file
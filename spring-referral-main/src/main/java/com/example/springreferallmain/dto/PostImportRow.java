@@ -0,0 +1,21 @@
+package com.example.springreferallmain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PostImportRow {
+    private Integer userId;
+    private String postTitle;
+    private String postContent;
+    private String postMediaURL;
+    private List<Integer> tagIds;
+}
+
+// One post in a bulk import (POST /posts/import), i.e. one NDJSON line or one CSV row with these column names.
+// The user and tags must already exist. In CSV, tagIds are separated by semicolons, i.e. 1;2;3
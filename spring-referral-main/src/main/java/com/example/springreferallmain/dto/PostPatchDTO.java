@@ -0,0 +1,18 @@
+package com.example.springreferallmain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PostPatchDTO {
+    private Integer version;
+    private String postTitle;
+    private String postContent;
+    private String postMediaURL;
+}
+
+// One edit of a post (PATCH /posts/{postId}): version is the version of the post the client read, and is required.
+// Only the fields that are sent are changed; leave a field out (or null) to keep it as it is.
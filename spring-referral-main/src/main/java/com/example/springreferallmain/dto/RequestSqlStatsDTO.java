@@ -0,0 +1,21 @@
+package com.example.springreferallmain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RequestSqlStatsDTO {
+    private long requests;
+    private double avgStatements;
+    private long maxStatements;
+    private double avgJdbcMs;
+    private double maxJdbcMs;
+    private double avgRowsFetched;
+    private long warnings;
+}
+
+// One controller method's row in /actuator/sqlstats: per request, how many SQL statements it ran, how long the database took and how many rows came back.
+// warnings counts the requests that went over the sql-instrumentation.* limits (each one is also logged).
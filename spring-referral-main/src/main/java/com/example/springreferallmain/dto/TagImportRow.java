@@ -0,0 +1,15 @@
+package com.example.springreferallmain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TagImportRow {
+    private String tagName;
+    private String tagDescription;
+}
+
+// One tag in a bulk import (POST /tags/import), i.e. one NDJSON line or one CSV row with these column names.
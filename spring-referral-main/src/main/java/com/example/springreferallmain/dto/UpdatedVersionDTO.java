@@ -0,0 +1,16 @@
+package com.example.springreferallmain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UpdatedVersionDTO {
+    private Integer id;
+    private Integer version;
+}
+
+// What a PATCH sends back: the id of what was edited and its new version, to send with the next edit.
+// The edit is a single UPDATE, so we don't read the whole row back just to return it.
@@ -0,0 +1,25 @@
+package com.example.springreferallmain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserImportRow {
+    private String username;
+    private String email;
+    private String password;
+    private String profilePictureURL;
+    private String userBio;
+
+    // The user's address, flattened so a CSV row can hold it
+    private String street;
+    private String city;
+    private String state;
+    private String zipCode;
+    private String country;
+}
+
+// One user in a bulk import (POST /users/import), i.e. one NDJSON line or one CSV row with these column names.
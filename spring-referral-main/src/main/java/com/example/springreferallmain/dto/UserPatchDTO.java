@@ -0,0 +1,20 @@
+package com.example.springreferallmain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserPatchDTO {
+    private Integer version;
+    private String username;
+    private String email;
+    private String password;
+    private String profilePictureURL;
+    private String userBio;
+}
+
+// One edit of an account (PATCH /users/{userId}): version is the version of the user the client read, and is required.
+// Only the fields that are sent are changed. The address is edited on its own, through PATCH /address/users/{userId}.
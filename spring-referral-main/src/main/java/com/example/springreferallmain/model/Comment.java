@@ -6,13 +6,16 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.time.LocalDateTime;
 
 @Entity
+@DynamicUpdate
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
+@Table(indexes = @Index(name = "idx_comment_thread", columnList = "post_id, time_comment_created, comment_id"))
 public class Comment {
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE)
@@ -26,16 +29,27 @@ public class Comment {
     private LocalDateTime timeCommentCreated;
 
     @JsonIgnore
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn (name = "post_id", nullable = false)
     private Post post;
 
+    @Version
+    private Integer version;
+
 }
 
 
+// ------- Thread index --------
+// idx_comment_thread: a post's comments are read a page at a time, oldest first. This index matches that filter and sort order,
+// so each page reads just its own rows instead of sorting the whole thread.
+
 // ------- Many to One with Posts --------
 // Many comments can belong to one post.
 // @JoinColumn: post_id is the foreign key that references the postId from Post. Each comment needs to be tied to a post (nullable= false).
 // ^Hibernate then associates the post with that post_id to its respective comment(s).
+// FetchType.LAZY: a page of comments doesn't need its post (the client already has it), so the post is only loaded if something asks for it.
+
+// @JsonIgnore: We can view comments without needing to see the post, vs it would be helpful to see the post and affiliated comments.
 
-// @JsonIgnore: We can view comments without needing to see the post, vs it would be helpful to see the post and affiliated comments.
\ No newline at end of file
+// ------- Version --------
+// Like Post: an edit only goes through if the comment is still at the version that was read (PATCH /comments/{commentId} and the body of PUT take it back), and likes don't count as edits.
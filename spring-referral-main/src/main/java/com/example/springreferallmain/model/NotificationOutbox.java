@@ -0,0 +1,45 @@
+package com.example.springreferallmain.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NotificationOutbox {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE)
+    private Integer outboxId;
+    private Integer postId;
+    private Integer userId;
+    private Integer commentId;
+    private String commentText;
+    private String commentedByUsername;
+    private LocalDateTime timeCommentCreated;
+
+    @Column(updatable = false)
+    @CreationTimestamp
+    private LocalDateTime timeQueued;
+
+    // How many times the microservice rejected this notification as invalid (a 400 or 422), and why it did the last time
+    private int attempts;
+    @Column(length = 500)
+    private String lastError;
+
+    // Set once the notification has been rejected; the dispatcher skips it from then on
+    private LocalDateTime deadLetteredAt;
+}
+
+// ------- Transactional outbox --------
+// A row here is a notification that still has to be sent to the Notification microservice.
+// It is saved in the same transaction as the comment, so either both are saved or neither is (we never lose or invent a notification).
+// NotificationDispatcher sends these rows in batches in the background and deletes them once the microservice has accepted them.
+// The attributes mirror NotificationDTO, the same way Notification does in the microservice.
+// attempts/lastError/deadLetteredAt: a row the microservice rejects (i.e. a 400 for a bad value) would otherwise block every notification queued after it.
+// Dead-lettered rows stay in the table so they can be looked at (and fixed and re-queued by clearing deadLetteredAt).
@@ -1,27 +1,40 @@
 package com.example.springreferallmain.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.OptimisticLock;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
+@DynamicUpdate
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
+@Table(indexes = @Index(name = "idx_post_feed", columnList = "time_post_created DESC, post_id DESC"))
 public class Post {
     @Id
-    @GeneratedValue(strategy = GenerationType.SEQUENCE)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "post_seq")
+    @SequenceGenerator(name = "post_seq", sequenceName = "post_seq", allocationSize = 500)
     private Integer postId;
     private String postTitle;
     private String postContent;
     private Integer numberLikesOnPost;
+
+    // Kept up to date by CommentService, so a post shows how many comments it has without loading them
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Integer commentCount = 0;
     private String postMediaURL;
 
     @Column(updatable = false)
@@ -36,7 +49,11 @@ public class Post {
 
 
     // One to Many with Comments
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
     @OneToMany(mappedBy = "post", cascade = CascadeType.ALL)
+    @BatchSize(size = 100)
     private List<Comment> comments = new ArrayList<>();
 
 
@@ -47,10 +64,30 @@ public class Post {
             joinColumns = @JoinColumn(name = "post_id"),
             inverseJoinColumns = @JoinColumn(name = "tag_id")
     )
+    @BatchSize(size = 100)
+    @OptimisticLock(excluded = true)
     private List<Tag> tags = new ArrayList<>();
 
+    // Goes up by one on every edit (see the note on versions below)
+    @Version
+    private Integer version;
+
 }
 
+// ------- Ids --------
+// @SequenceGenerator allocationSize = 500 (here and on User, Address and Tag): Hibernate reserves 500 ids per trip to the sequence instead of one per row.
+// ^That's what lets a bulk import (see BulkImportService) send whole JDBC batches of INSERTs without a sequence call in between.
+
+// ------- Feed index --------
+// idx_post_feed: the homepage feed is read newest first and paged with a (timePostCreated, postId) cursor.
+// This composite index matches that sort order, so the database can seek straight to the cursor instead of sorting every post.
+
+// ------- Fetching posts --------
+// Reads of posts go through the @EntityGraph repository methods, which join in the user and their address in the same query.
+// Comments are not sent with the post (only commentCount is); they're paged separately from GET /comments/posts/{postId}, so listing posts never loads them.
+// @BatchSize on tags (and on comments, when the search index reads them): the first time one post's tags are loaded, Hibernate loads them for up to 100 posts in one IN (...) query.
+// ^Together a page of posts costs 2 queries (posts, tags) instead of 1 + a few per post.
+
 // ------- Many to One with User --------
 // Many posts can belong to one User.
 // @JoinColumn: user_id is the foreign key that references the userId from User. Each post needs to have a userId (nullable= false)
@@ -61,10 +98,20 @@ public class Post {
 // A post can have many comments.
 // mappedBy: Comment entity owns the relationship.
 // list of Comments mapped to each post by post field in Comment.
+// @JsonIgnore: a thread can be long, so comments are read a page at a time instead of with the post.
+// Left out of equals/hashCode/toString too, so comparing or logging a post doesn't load its whole thread.
 
 
 // ------- Many to Many with Tags--------
 // A post can have many tags.
 // @JoinTable since we query more from posts, and when we do query, the related Tags will display.
 // inverseJoinColumn: tag_id is the foreign key.
+// @OptimisticLock(excluded = true): tagging a post doesn't change its version, so tagging never conflicts with someone editing the post.
+
+// ------- Versions --------
+// @Version: every UPDATE of a post checks it is still at the version that was read (WHERE version = ?) and moves it to the next one.
+// If someone else saved the post in between, nothing is written and the edit fails with a 409, instead of one of the two edits silently getting lost.
+// Clients send back the version they read in PATCH /posts/{postId} or in the body of PUT /posts/{postId}. Likes and commentCount are counters added to in place, so they don't change the version.
+// A new post always starts at version 0, whatever version the client sent with it.
+// @DynamicUpdate: an UPDATE only sets the columns that actually changed, instead of every column.
 
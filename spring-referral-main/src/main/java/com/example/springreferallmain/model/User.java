@@ -6,11 +6,13 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
+@DynamicUpdate
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -19,7 +21,8 @@ public class User {
 
 
     @Id
-    @GeneratedValue(strategy = GenerationType.SEQUENCE)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_seq")
+    @SequenceGenerator(name = "user_seq", sequenceName = "user_seq", allocationSize = 500)
     private Integer userId;
     private String username;
     private String email;
@@ -38,6 +41,9 @@ public class User {
     @OneToOne(cascade = CascadeType.ALL)
     @JoinColumn(name = "address_id", nullable= false, unique= true)
     private Address address;
+
+    @Version
+    private Integer version;
 }
 
 // ------- One to Many with Post --------
@@ -49,4 +55,8 @@ public class User {
 // -------  One to One with Address --------
 // @OneToOne annotated above Address: Each user has one address.
 //CascadeType.ALL: for any actions taken on User should be taken on Address; i.e. if User deleted, then we delete that Address
-//@JoinColumn: address_id is the foreign key (referencing addressId from Address) and each user needs to have an address (nullable= false) that is unique
\ No newline at end of file
+//@JoinColumn: address_id is the foreign key (referencing addressId from Address) and each user needs to have an address (nullable= false) that is unique
+
+// ------- Version --------
+// Same as Post: edits check and move the version, so two edits of the same account at once can't overwrite each other (PATCH /users/{userId} and the body of PUT /users/{userId} take it back).
+// The address is its own row, so changing only the address (PATCH /address/users/{userId}) leaves the user's version as it is.
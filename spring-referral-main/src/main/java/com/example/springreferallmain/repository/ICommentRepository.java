@@ -1,20 +1,26 @@
 package com.example.springreferallmain.repository;
 
 import com.example.springreferallmain.model.Comment;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Optional;
 
 @Repository
 public interface ICommentRepository extends JpaRepository<Comment, Integer> {
 
 
-  // Find comments tied to that post (by post id)
+  // Find one page of the comments tied to that post (by post id), oldest first
   // Note: my attribute is postId- hence the repetition of Post
 
-  Optional <List<Comment>> findCommentByPostPostId (Integer postId);
+  List<Comment> findCommentsByPostPostIdOrderByTimeCommentCreatedAscCommentIdAsc(Integer postId, Pageable pageable);
+
+  // (postId, timeCommentCreated) of every comment made since a time, for building TrendingPosts on startup
+  @Query("SELECT c.post.postId, c.timeCommentCreated FROM Comment c WHERE c.timeCommentCreated >= :since")
+  List<Object[]> findCommentTimesSince(@Param("since") LocalDateTime since);
 
 }
@@ -0,0 +1,15 @@
+package com.example.springreferallmain.repository;
+
+import com.example.springreferallmain.model.NotificationOutbox;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface INotificationOutboxRepository extends JpaRepository<NotificationOutbox, Integer> {
+
+    // Oldest pending notifications first, one batch at a time (dead-lettered ones are skipped)
+    List<NotificationOutbox> findByDeadLetteredAtIsNullOrderByOutboxIdAsc(Pageable pageable);
+}
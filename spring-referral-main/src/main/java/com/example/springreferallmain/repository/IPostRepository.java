@@ -1,17 +1,82 @@
 package com.example.springreferallmain.repository;
 
 import com.example.springreferallmain.model.Post;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface IPostRepository extends JpaRepository<Post, Integer> {
 
+    // Every read below loads the post's user and address in the same query (see the note at the bottom of Post)
+    @Override
+    @EntityGraph(attributePaths = {"user", "user.address"})
+    List<Post> findAll();
+
     // Find posts that contain keyword
+    @EntityGraph(attributePaths = {"user", "user.address"})
     Optional <List<Post>> findPostsByPostContentContaining(String keyword);
 
+    // Find posts by a set of ids (i.e. the ids the search index matched)
+    @EntityGraph(attributePaths = {"user", "user.address"})
+    List<Post> findPostsByPostIdIn(Collection<Integer> postIds);
+
+    // Find posts tagged with a tag (by tag id)
+    @EntityGraph(attributePaths = {"user", "user.address"})
+    List<Post> findDistinctPostsByTagsTagId(Integer tagId);
+
+
+    // Homepage feed: first page, newest posts first
+    @EntityGraph(attributePaths = {"user", "user.address"})
+    @Query("SELECT p FROM Post p ORDER BY p.timePostCreated DESC, p.postId DESC")
+    List<Post> findFeedFirstPage(Pageable pageable);
+
+    // Homepage feed: next page, seeking past the (timePostCreated, postId) of the last post the client saw
+    @EntityGraph(attributePaths = {"user", "user.address"})
+    @Query("SELECT p FROM Post p WHERE (p.timePostCreated, p.postId) < (:timePostCreated, :postId) ORDER BY p.timePostCreated DESC, p.postId DESC")
+    List<Post> findFeedPageAfter(@Param("timePostCreated") LocalDateTime timePostCreated, @Param("postId") Integer postId, Pageable pageable);
+
+    // Every post, read from a forward-only cursor 100 rows at a time instead of all at once (for NdjsonWriter; must be read inside a transaction)
+    @EntityGraph(attributePaths = {"user", "user.address"})
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "100"), @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("SELECT p FROM Post p ORDER BY p.postId")
+    Stream<Post> streamAllBy();
+
+    // Just the ids of the posts tagged with a tag, newest first, straight from the Tag_Posts join table (this is what TagCatalogCache keeps)
+    @Query("SELECT p.postId FROM Post p JOIN p.tags t WHERE t.tagId = :tagId ORDER BY p.postId DESC")
+    List<Integer> findPostIdsByTagId(@Param("tagId") Integer tagId);
+
+    // Every post id, and every (postId, tagId) row of the Tag_Posts join table, for building PostTagIndex on startup
+    @Query("SELECT p.postId FROM Post p")
+    List<Integer> findAllPostIds();
+
+    @Query("SELECT p.postId, t.tagId FROM Post p JOIN p.tags t")
+    List<Object[]> findAllPostTagPairs();
+
+    // (postId, timePostCreated, numberLikesOnPost) of every post created since a time, for building TrendingPosts on startup
+    @Query("SELECT p.postId, p.timePostCreated, p.numberLikesOnPost FROM Post p WHERE p.timePostCreated >= :since")
+    List<Object[]> findPostActivitySince(@Param("since") LocalDateTime since);
+
+    // Add to (or take from) a post's comment count in the database itself, so two comments at once can't overwrite each other's count
+    @Modifying
+    @Transactional
+    @Query("UPDATE Post p SET p.commentCount = p.commentCount + :change WHERE p.postId = :postId")
+    int addToCommentCount(@Param("postId") Integer postId, @Param("change") int change);
 
 }
+
+// Both feed queries only ever ask for the first rows (no OFFSET), so they read the same few index entries no matter how deep the user has scrolled.
@@ -1,9 +1,20 @@
 package com.example.springreferallmain.repository;
 
 import com.example.springreferallmain.model.Tag;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.util.stream.Stream;
+
 @Repository
 public interface ITagRepository extends JpaRepository<Tag, Integer> {
+
+    // Every tag, read from a forward-only cursor 100 rows at a time instead of all at once (for NdjsonWriter; must be read inside a transaction)
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "100"), @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("SELECT t FROM Tag t ORDER BY t.tagId")
+    Stream<Tag> streamAllBy();
 }
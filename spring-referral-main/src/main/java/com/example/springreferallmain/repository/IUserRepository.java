@@ -1,9 +1,29 @@
 package com.example.springreferallmain.repository;
 
 import com.example.springreferallmain.model.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
 @Repository
 public interface IUserRepository  extends JpaRepository<User, Integer> {
+
+    // Every user, read from a forward-only cursor 100 rows at a time instead of all at once (for NdjsonWriter; must be read inside a transaction)
+    @EntityGraph(attributePaths = {"address"})
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "100"), @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("SELECT u FROM User u ORDER BY u.userId")
+    Stream<User> streamAllBy();
+
+    // Which of these user ids exist, in one query (for checking a batch of imported posts)
+    @Query("SELECT u.userId FROM User u WHERE u.userId IN :userIds")
+    List<Integer> findExistingUserIds(@Param("userIds") Collection<Integer> userIds);
 }
@@ -6,11 +6,17 @@ import com.example.springreferallmain.repository.IUserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import static com.example.springreferallmain.service.ChangeVersions.Aggregate.POSTS;
+import static com.example.springreferallmain.service.ChangeVersions.Aggregate.USERS;
+
 @Service
 public class AddressService {
     @Autowired
     IUserRepository iUserRepository;
 
+    @Autowired
+    ChangeVersions changeVersions;
+
     // We don't need a Delete mapping for Address, since when a user is deleted, an address is deleted.
     // Similarly, when a user is created, an address is required to be added.
     // Instead, I have decided to write two methods that allow me to target just the address of a user, that is 1.) getting just the address of a user and 2.) updating just the address of a user.
@@ -45,6 +51,8 @@ public class AddressService {
 
         // save updated user to cascade the changes to the address :)
         iUserRepository.save(existingUser);
+        // The address is shown with the user, and with the user's posts
+        changeVersions.changed(USERS, POSTS);
 
         //return updated address
         return existingUserAddress;
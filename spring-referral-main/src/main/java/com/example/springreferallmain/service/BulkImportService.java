@@ -0,0 +1,354 @@
+package com.example.springreferallmain.service;
+
+import com.example.springreferallmain.dto.BulkImportReportDTO;
+import com.example.springreferallmain.dto.PostImportRow;
+import com.example.springreferallmain.dto.TagImportRow;
+import com.example.springreferallmain.dto.UserImportRow;
+import com.example.springreferallmain.model.Address;
+import com.example.springreferallmain.model.Post;
+import com.example.springreferallmain.model.Tag;
+import com.example.springreferallmain.model.User;
+import com.example.springreferallmain.repository.ITagRepository;
+import com.example.springreferallmain.repository.IUserRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.PersistenceException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+@Slf4j
+@Service
+public class BulkImportService {
+    @Autowired
+    IUserRepository iUserRepository;
+
+    @Autowired
+    ITagRepository iTagRepository;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    // Spring's own ObjectMapper, so NDJSON rows are read the same way as a @RequestBody
+    @Autowired
+    ObjectMapper objectMapper;
+
+    // Imported posts have to show up in search, under their tags, and in trending, like posts added one at a time
+    @Autowired
+    PostSearchIndex postSearchIndex;
+
+    @Autowired
+    PostTagIndex postTagIndex;
+
+    @Autowired
+    TrendingPosts trendingPosts;
+
+    @Autowired
+    TagCatalogCache tagCatalogCache;
+
+    @Autowired
+    ChangeVersions changeVersions;
+
+    // Rows saved per transaction, which is also how many INSERTs go in one JDBC batch
+    @Value("${bulk-import.batch-size:${spring.jpa.properties.hibernate.jdbc.batch_size:500}}")
+    int batchSize = 500;
+
+    private final CsvMapper csvMapper = CsvMapper.builder()
+            .enable(CsvParser.Feature.EMPTY_STRING_AS_NULL)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build();
+
+    public enum Format {
+        NDJSON, CSV;
+
+        public static Format of(MediaType contentType) {
+            return contentType != null && contentType.isCompatibleWith(MediaType.parseMediaType("text/csv")) ? CSV : NDJSON;
+        }
+    }
+
+    // One row of the input: its number (from 1) and either what it says, or why it couldn't be read
+    private record ImportRow<R>(int rowNumber, R row, String error) {
+    }
+
+
+    // ------- IMPORT --------
+
+    public BulkImportReportDTO importUsers(InputStream in, Format format) throws IOException {
+        return importRows(in, format, UserImportRow.class, Set.of(), this::saveUsers, savedUsers -> changedIfAny(savedUsers, ChangeVersions.Aggregate.USERS));
+    }
+
+    public BulkImportReportDTO importTags(InputStream in, Format format) throws IOException {
+        return importRows(in, format, TagImportRow.class, Set.of(), this::saveTags, savedTags -> {
+            tagCatalogCache.evictCatalog();
+            changedIfAny(savedTags, ChangeVersions.Aggregate.TAGS);
+        });
+    }
+
+    public BulkImportReportDTO importPosts(InputStream in, Format format) throws IOException {
+        return importRows(in, format, PostImportRow.class, Set.of("tagIds"), this::savePosts, this::indexPosts);
+    }
+
+    // Reads the input a row at a time and saves it batchSize rows at a time, each batch in its own transaction.
+    // A bad row is left out and reported; if the database refuses a batch, that batch is rolled back and reported, and we carry on with the next one.
+    private <R, E> BulkImportReportDTO importRows(InputStream in, Format format, Class<R> rowType, Set<String> listColumns,
+                                                  BatchSaver<R, E> saver, Consumer<List<E>> afterCommit) throws IOException {
+        BulkImportReportDTO report = new BulkImportReportDTO();
+        List<ImportRow<R>> batch = new ArrayList<>(batchSize);
+        int batchNumber = 0;
+
+        BufferedReader lines = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        Function<String, R> parser = format == Format.CSV ? csvParser(lines.readLine(), rowType, listColumns) : lineParser(objectMapper.readerFor(rowType));
+
+        int rowNumber = 0;
+        String line;
+        while ((line = lines.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            rowNumber++;
+            try {
+                R row = Objects.requireNonNull(parser.apply(line), "the row is empty");
+                batch.add(new ImportRow<>(rowNumber, row, null));
+            }
+            catch (RuntimeException e) {
+                batch.add(new ImportRow<>(rowNumber, null, "Row " + rowNumber + " could not be read: " + rootMessage(e)));
+            }
+            if (batch.size() == batchSize) {
+                saveBatch(++batchNumber, batch, saver, afterCommit, report);
+            }
+        }
+        if (!batch.isEmpty()) {
+            saveBatch(++batchNumber, batch, saver, afterCommit, report);
+        }
+
+        report.setRowsRead(rowNumber);
+        report.setRowsRejected(rowNumber - report.getRowsImported());
+        log.info("Imported " + report.getRowsImported() + " of " + rowNumber + " " + rowType.getSimpleName() + "s in " + batchNumber + " batches");
+        return report;
+    }
+
+    private <R, E> void saveBatch(int batchNumber, List<ImportRow<R>> batch, BatchSaver<R, E> saver, Consumer<List<E>> afterCommit, BulkImportReportDTO report) {
+        List<String> errors = new ArrayList<>();
+        List<ImportRow<R>> readableRows = new ArrayList<>();
+        for (ImportRow<R> row : batch) {
+            if (row.error() != null) {
+                errors.add(row.error());
+            } else {
+                readableRows.add(row);
+            }
+        }
+
+        List<E> saved = List.of();
+        if (!readableRows.isEmpty()) {
+            try {
+                saved = transactionTemplate.execute(status -> {
+                    List<E> savedInBatch = saver.save(readableRows, errors);
+                    // Send the whole batch now, so a problem shows up here (and rolls back this batch only)
+                    entityManager.flush();
+                    entityManager.clear();
+                    return savedInBatch;
+                });
+                afterCommit.accept(saved);
+            }
+            catch (DataAccessException | PersistenceException | TransactionException e) {
+                errors.add("Batch " + batchNumber + " was not saved: " + rootMessage(e));
+                saved = List.of();
+            }
+        }
+
+        report.setRowsImported(report.getRowsImported() + saved.size());
+        if (!errors.isEmpty()) {
+            int firstRow = batch.get(0).rowNumber();
+            int lastRow = batch.get(batch.size() - 1).rowNumber();
+            report.getBatchesWithErrors().add(new BulkImportReportDTO.BatchErrors(batchNumber, firstRow, lastRow, saved.size(), errors));
+        }
+        batch.clear();
+    }
+
+
+    // ------- SAVE A BATCH --------
+    // Each of these runs inside the batch's transaction, persists the good rows, and adds a message to errors for each row it leaves out
+
+    private interface BatchSaver<R, E> {
+        List<E> save(List<ImportRow<R>> rows, List<String> errors);
+    }
+
+    private List<User> saveUsers(List<ImportRow<UserImportRow>> rows, List<String> errors) {
+        List<User> users = new ArrayList<>();
+        for (ImportRow<UserImportRow> importRow : rows) {
+            UserImportRow row = importRow.row();
+            // Same rule as creating one account
+            if (isBlank(row.getUsername()) || isBlank(row.getEmail()) || isBlank(row.getPassword())) {
+                errors.add("Row " + importRow.rowNumber() + ": username, email and password are required");
+                continue;
+            }
+            Address address = new Address(null, row.getStreet(), row.getCity(), row.getState(), row.getZipCode(), row.getCountry(), null);
+            User user = new User(null, row.getUsername(), row.getEmail(), row.getPassword(), row.getProfilePictureURL(), row.getUserBio(), null, null, address, null);
+            entityManager.persist(user);
+            users.add(user);
+        }
+        return users;
+    }
+
+    private List<Tag> saveTags(List<ImportRow<TagImportRow>> rows, List<String> errors) {
+        List<Tag> tags = new ArrayList<>();
+        for (ImportRow<TagImportRow> importRow : rows) {
+            TagImportRow row = importRow.row();
+            if (isBlank(row.getTagName()) || isBlank(row.getTagDescription())) {
+                errors.add("Row " + importRow.rowNumber() + ": tagName and tagDescription are required");
+                continue;
+            }
+            Tag tag = new Tag(null, row.getTagName(), row.getTagDescription(), new ArrayList<>());
+            entityManager.persist(tag);
+            tags.add(tag);
+        }
+        return tags;
+    }
+
+    private List<Post> savePosts(List<ImportRow<PostImportRow>> rows, List<String> errors) {
+        // Look up every user and tag the batch mentions in one query each, instead of one per row
+        Set<Integer> userIds = new HashSet<>();
+        Set<Integer> tagIds = new HashSet<>();
+        for (ImportRow<PostImportRow> importRow : rows) {
+            if (importRow.row().getUserId() != null) {
+                userIds.add(importRow.row().getUserId());
+            }
+            if (importRow.row().getTagIds() != null) {
+                importRow.row().getTagIds().stream().filter(Objects::nonNull).forEach(tagIds::add);
+            }
+        }
+        Set<Integer> existingUserIds = userIds.isEmpty() ? Set.of() : new HashSet<>(iUserRepository.findExistingUserIds(userIds));
+        Map<Integer, Tag> existingTags = new HashMap<>();
+        iTagRepository.findAllById(tagIds).forEach(tag -> existingTags.put(tag.getTagId(), tag));
+
+        List<Post> posts = new ArrayList<>();
+        for (ImportRow<PostImportRow> importRow : rows) {
+            PostImportRow row = importRow.row();
+            String problem = null;
+            if (isBlank(row.getPostTitle()) || isBlank(row.getPostContent())) {
+                problem = "postTitle and postContent are required";
+            } else if (!existingUserIds.contains(row.getUserId())) {
+                problem = "user with id " + row.getUserId() + " does not exist";
+            }
+            List<Tag> tags = new ArrayList<>();
+            if (problem == null && row.getTagIds() != null) {
+                for (Integer tagId : row.getTagIds()) {
+                    Tag tag = existingTags.get(tagId);
+                    if (tag == null) {
+                        problem = "tag with id " + tagId + " does not exist";
+                        break;
+                    }
+                    tags.add(tag);
+                }
+            }
+            if (problem != null) {
+                errors.add("Row " + importRow.rowNumber() + ": " + problem);
+                continue;
+            }
+
+            // The user is only a reference (no SELECT); we already know it exists
+            Post post = new Post(null, row.getPostTitle(), row.getPostContent(), 0, 0, row.getPostMediaURL(), null,
+                    entityManager.getReference(User.class, row.getUserId()), new ArrayList<>(), tags, null);
+            entityManager.persist(post);
+            posts.add(post);
+        }
+        return posts;
+    }
+
+    // Once a batch of posts is committed, add them to the in-memory indexes, like PostService.addPosts does
+    private void indexPosts(List<Post> posts) {
+        for (Post post : posts) {
+            postSearchIndex.indexPost(post);
+            postTagIndex.indexPost(post);
+            tagCatalogCache.evictPostIdsForTagsOf(post);
+            trendingPosts.postCreated(post.getPostId(), post.getTimePostCreated());
+        }
+        changedIfAny(posts, ChangeVersions.Aggregate.POSTS);
+    }
+
+    // A batch where every row failed changed nothing, so reads keep their ETag
+    private void changedIfAny(List<?> saved, ChangeVersions.Aggregate aggregate) {
+        if (!saved.isEmpty()) {
+            changeVersions.changed(aggregate);
+        }
+    }
+
+
+    // ------- HELPERS --------
+
+    // CSV: the first line names the columns (in any order); every line after it is one row. List columns hold values separated by semicolons.
+    private <R> Function<String, R> csvParser(String headerLine, Class<R> rowType, Set<String> listColumns) throws IOException {
+        if (headerLine == null) {
+            return line -> null;
+        }
+        CsvSchema.Builder schema = CsvSchema.builder();
+        String[] columns = csvMapper.readerFor(String[].class).readValue(headerLine);
+        for (String column : columns) {
+            if (listColumns.contains(column.trim())) {
+                schema.addArrayColumn(column.trim(), ";");
+            } else {
+                schema.addColumn(column.trim());
+            }
+        }
+        return lineParser(csvMapper.readerFor(rowType).with(schema.build()));
+    }
+
+    // NDJSON: every line is one JSON object
+    private static <R> Function<String, R> lineParser(ObjectReader reader) {
+        return line -> {
+            try {
+                return reader.readValue(line);
+            }
+            catch (IOException e) {
+                throw new IllegalArgumentException(e);
+            }
+        };
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    // The useful part of an exception's message (i.e. which column was wrong, or which constraint the database hit)
+    private static String rootMessage(Throwable e) {
+        Throwable cause = e;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof JsonProcessingException jsonError) {
+            return jsonError.getOriginalMessage();
+        }
+        return cause.getMessage();
+    }
+}
+
+// How a bulk import works, i.e. POST /posts/import with an NDJSON or CSV body:
+// - The body is read one line at a time and never held in memory as a whole; only the current batch (batchSize rows) is.
+// - Each batch is persisted in one transaction. Ids come from pooled sequences (500 at a time, see Post), and hibernate.jdbc.batch_size
+//   makes Hibernate send the INSERTs in JDBC batches (multi-row INSERTs on Postgres with reWriteBatchedInserts), so a batch of 500 rows is a handful of round trips.
+// - The persistence context is cleared after every batch, so memory stays flat however big the import is.
+// - The report lists which rows were left out and why, and any batch the database rejected, so those rows can be fixed and imported again.
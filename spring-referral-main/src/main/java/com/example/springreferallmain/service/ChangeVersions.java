@@ -0,0 +1,69 @@
+package com.example.springreferallmain.service;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+public class ChangeVersions {
+
+    // What a read can depend on. A post shows its user (and their address) and its tags, so changing a user or a tag also changes POSTS.
+    public enum Aggregate { POSTS, TAGS, USERS }
+
+    // Tells this run of the app apart from the last one, since the counters start again from 0 on every start
+    private final String startedAt = Long.toString(System.currentTimeMillis(), 36);
+
+    private final Map<Aggregate, AtomicLong> versions = new EnumMap<>(Aggregate.class);
+
+    public ChangeVersions() {
+        for (Aggregate aggregate : Aggregate.values()) {
+            versions.put(aggregate, new AtomicLong());
+        }
+    }
+
+
+    // ------- READ --------
+    // The ETag for a read of this aggregate: it stays the same until the next change, so a client that sends it back in If-None-Match gets a 304.
+    // variant tells apart representations of the same URL (i.e. "ndjson" for the streamed version), since a strong ETag promises the exact same bytes.
+    public String etag(Aggregate aggregate, String variant) {
+        return "\"" + aggregate.name().toLowerCase() + "-" + startedAt + "-" + versions.get(aggregate).get() + "-" + variant + "\"";
+    }
+
+    public String etag(Aggregate aggregate) {
+        return etag(aggregate, "json");
+    }
+
+
+    // ------- CHANGE --------
+    // Called by the services right after they change something. Inside a transaction we wait until it commits:
+    // bumping before that would let a read take the new ETag with the old data, and the client would keep the old data under a tag that never changes again.
+    public void changed(Aggregate... aggregates) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    bump(aggregates);
+                }
+            });
+            return;
+        }
+        bump(aggregates);
+    }
+
+    private void bump(Aggregate... aggregates) {
+        for (Aggregate aggregate : aggregates) {
+            versions.get(aggregate).incrementAndGet();
+        }
+    }
+}
+
+// Conditional GETs: GET /posts, /tags and /users (and a few reads built on them) send an ETag, and a client that sends it back in If-None-Match
+// gets a 304 with no body if nothing changed since. The controllers check If-None-Match before calling the service, so a 304 never touches the database.
+// The ETag is a counter per aggregate, bumped on every write, rather than a hash of the response (which would mean loading and serializing it first).
+// It is coarse: any post change gives every post read a new ETag, which just means one full response for clients that had the old one.
+// A read takes the ETag before loading the data, so a write that lands in between only costs the client an extra 200 next time, never a stale 304.
+// The counters live in memory, like TagCatalogCache, so they only see changes made through this instance of the app.
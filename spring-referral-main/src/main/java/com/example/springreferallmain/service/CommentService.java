@@ -1,16 +1,23 @@
 package com.example.springreferallmain.service;
 
+import com.example.springreferallmain.dto.CommentPatchDTO;
 import com.example.springreferallmain.dto.NotificationDTO;
 import com.example.springreferallmain.model.Comment;
+import com.example.springreferallmain.model.NotificationOutbox;
 import com.example.springreferallmain.model.Post;
 import com.example.springreferallmain.repository.ICommentRepository;
+import com.example.springreferallmain.repository.INotificationOutboxRepository;
 import com.example.springreferallmain.repository.IPostRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.CrossOrigin;
-import org.springframework.web.client.RestTemplate;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 @CrossOrigin(origins = "*")
 @Service
 public class CommentService {
@@ -20,16 +27,28 @@ public class CommentService {
     @Autowired
     IPostRepository iPostRepository;
 
-    // Autowire my Rest Template to make call to Notification microservice
+    @Autowired
+    PostSearchIndex postSearchIndex;
 
     @Autowired
-    RestTemplate restTemplate;
+    TrendingPosts trendingPosts;
+
+    // Notifications are queued in the outbox and sent to the Notification microservice by NotificationDispatcher
+    @Autowired
+    INotificationOutboxRepository iNotificationOutboxRepository;
+
+    @Autowired
+    ChangeVersions changeVersions;
+
+    @Autowired
+    VersionedUpdate versionedUpdate;
 
 
 
     // ------- Creating --------
     // Add a new comment to a post
-
+    // @Transactional: the comment and its queued notification are saved together, or not at all
+    @Transactional
     public Comment addCommentToAPost(Integer postId, Comment commentToAdd) {
         // Let's find the post first
         Post existingPost = iPostRepository.findById(postId).orElseThrow(() -> new RuntimeException("Post with id " + postId + " does not exist."));
@@ -41,7 +60,7 @@ public class CommentService {
         // We need to set comment to post and post to the comments, b/c of unidirectional relationship.
         existingPost.getComments().add(commentToAdd);
 
-        // After comment is added to post and saved to DB, we send a notification by making a post request to Notification
+        // After comment is added to post and saved to DB, we queue a notification for the Notification microservice
         // We need to ensure the comment is saved, so we can call the getters on it to write its info to Notification DTO
 
         Comment commentSaved = iCommentRepository.save(commentToAdd);
@@ -51,9 +70,16 @@ public class CommentService {
 
         NotificationDTO notificationDTO = getNotificationDTO(postId, existingPost, commentSaved);
 
-        restTemplate.postForEntity("http://localhost:8081/notifications",
-                notificationDTO, // parameter passed to Notification
-                NotificationDTO.class); // return type (b/c required for syntax, although we aren't returning anything since we are simply doing a Post call)
+        // Comments are searchable too, so add the new comment's words to its post
+        postSearchIndex.commentChanged(postId, null, commentSaved.getCommentText());
+        trendingPosts.postCommented(postId);
+        iPostRepository.addToCommentCount(postId, 1);
+        // Posts show their commentCount (this waits for the transaction to commit)
+        changeVersions.changed(ChangeVersions.Aggregate.POSTS);
+
+        // Instead of calling the microservice here (and making the user wait on it), we write the notification to the outbox in this same transaction
+        // NotificationDispatcher sends it in the background
+        iNotificationOutboxRepository.save(getNotificationOutbox(notificationDTO));
 
 
         // Return the comment the user added
@@ -62,7 +88,7 @@ public class CommentService {
 
     }
 
-    private static NotificationDTO getNotificationDTO(Integer postId, Post existingPost, Comment commentSaved) {
+    static NotificationDTO getNotificationDTO(Integer postId, Post existingPost, Comment commentSaved) {
         NotificationDTO notificationDTO = new NotificationDTO();
         notificationDTO.setPostId(postId);
         notificationDTO.setUserId(existingPost.getUser().getUserId());
@@ -73,13 +99,29 @@ public class CommentService {
         return notificationDTO;
     }
 
+    private static NotificationOutbox getNotificationOutbox(NotificationDTO notificationDTO) {
+        NotificationOutbox pendingNotification = new NotificationOutbox();
+        pendingNotification.setPostId(notificationDTO.getPostId());
+        pendingNotification.setUserId(notificationDTO.getUserId());
+        pendingNotification.setCommentId(notificationDTO.getCommentId());
+        pendingNotification.setCommentText(notificationDTO.getCommentText());
+        pendingNotification.setCommentedByUsername(notificationDTO.getCommentedByUsername());
+        pendingNotification.setTimeCommentCreated(notificationDTO.getTimeCommentCreated());
+        return pendingNotification;
+    }
 
 
-    // ------- RETRIEVE --------
-    // Get comments tied to a post (to display comments under a post for user)
 
-    public List<Comment> getCommentsByPostId(Integer postId) {
-        return iCommentRepository.findCommentByPostPostId(postId).orElseThrow(() -> new RuntimeException("Post with id " + postId + " does not exist."));
+    // ------- RETRIEVE --------
+    // Get one page of the comments tied to a post, oldest first (to display comments under a post for user, loading more as they scroll)
+
+    public List<Comment> getCommentsByPostId(Integer postId, Integer page, Integer size) {
+        List<Comment> comments = iCommentRepository.findCommentsByPostPostIdOrderByTimeCommentCreatedAscCommentIdAsc(postId, PageRequest.of(page, size));
+        // An empty page is normal past the end of a thread, so we only check the post exists when there's nothing to show
+        if (comments.isEmpty() && !iPostRepository.existsById(postId)) {
+            throw new RuntimeException("Post with id " + postId + " does not exist.");
+        }
+        return comments;
     }
 
     // ------- UPDATE --------
@@ -89,29 +131,58 @@ public class CommentService {
         Comment existingComment = iCommentRepository.findById(commentId).orElseThrow(() -> new RuntimeException("Comment with id " + commentId + " does not exist."));
 
         Post existingPost = iPostRepository.findById(postId).orElseThrow(() -> new RuntimeException("Post with id " + postId + " does not exist."));
+        // If the client sent the version it read, someone else mustn't have edited the comment since (409 otherwise)
+        VersionedUpdate.checkVersion(Comment.class, commentId, editedComment.getVersion(), existingComment.getVersion());
 
 
         // Update the fields of the existing comment with the edited values
+        String oldCommentText = existingComment.getCommentText();
         existingComment.setCommentText(editedComment.getCommentText());
-        existingComment.setNumberLikesOnComment(editedComment.getNumberLikesOnComment());
+        // Likes are not edited here, only through LikeService, so an edit can't overwrite likes that came in meanwhile
         existingComment.setCommentedByUsername(editedComment.getCommentedByUsername());
 
-        // Save updated comment
-        return iCommentRepository.save(existingComment);
+        // Save updated comment and swap its old words for the new ones in the post it belongs to
+        Comment commentSaved = iCommentRepository.save(existingComment);
+        postSearchIndex.commentChanged(existingPost.getPostId(), oldCommentText, commentSaved.getCommentText());
+        return commentSaved;
 
         // Since we're updating an existing comment that is already associated with a post, we don't need to explicitly re-associate the comment with the post.
 
     }
 
+    // Edit just the fields the client sent, if the comment is still at the version they read (one UPDATE, see VersionedUpdate)
+    // Returns the comment's new version
+    public Integer patchCommentById(Integer commentId, CommentPatchDTO commentPatch) {
+        Map<String, Object> changes = new LinkedHashMap<>();
+        VersionedUpdate.setIfSent(changes, "commentText", commentPatch.getCommentText());
+        VersionedUpdate.setIfSent(changes, "commentedByUsername", commentPatch.getCommentedByUsername());
+        // A post can be found by its comments' text, so for a new text we need the old one (if the update goes through, this was the version it replaced)
+        Optional<Comment> commentBefore = commentPatch.getCommentText() == null ? Optional.empty() : iCommentRepository.findById(commentId);
+        int newVersion = versionedUpdate.update(Comment.class, commentId, commentPatch.getVersion(), changes);
+
+        commentBefore.ifPresent(comment -> postSearchIndex.commentChanged(comment.getPost().getPostId(), comment.getCommentText(), commentPatch.getCommentText()));
+        return newVersion;
+    }
+
 
     // ------- DELETE--------
     // Delete comment by id for post
+    // @Transactional: the comment is deleted and its post's comment count goes down together
 
+    @Transactional
     public boolean deleteCommentById(Integer commentId) {
 
-        iCommentRepository.findById(commentId).orElseThrow(() -> new RuntimeException("Comment with id " + commentId + " does not exist."));
+        Comment existingComment = iCommentRepository.findById(commentId).orElseThrow(() -> new RuntimeException("Comment with id " + commentId + " does not exist."));
 
         iCommentRepository.deleteById(commentId);
+
+        // Take the deleted comment's words out of its post, so they no longer match it
+        Post postOfComment = existingComment.getPost();
+        if (postOfComment != null) {
+            iPostRepository.addToCommentCount(postOfComment.getPostId(), -1);
+            changeVersions.changed(ChangeVersions.Aggregate.POSTS);
+            postSearchIndex.commentChanged(postOfComment.getPostId(), existingComment.getCommentText(), null);
+        }
         return !iCommentRepository.findById(commentId).isPresent();
 
     }
@@ -0,0 +1,152 @@
+package com.example.springreferallmain.service;
+
+import com.example.springreferallmain.repository.ICommentRepository;
+import com.example.springreferallmain.repository.IPostRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+@Slf4j
+@Service
+public class LikeService {
+    @Autowired
+    IPostRepository iPostRepository;
+
+    @Autowired
+    ICommentRepository iCommentRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    TrendingPosts trendingPosts;
+
+    @Autowired
+    ChangeVersions changeVersions;
+
+    // Likes (+1) and unlikes (-1) that haven't been written to the database yet, per post and per comment
+    private final Map<Integer, LongAdder> pendingPostLikes = new ConcurrentHashMap<>();
+    private final Map<Integer, LongAdder> pendingCommentLikes = new ConcurrentHashMap<>();
+
+    // Add the change to the existing count, never going below 0 (and a post nobody has liked yet starts at null)
+    static final String ADD_POST_LIKES_SQL = "UPDATE post SET number_likes_on_post = GREATEST(COALESCE(number_likes_on_post, 0) + ?, 0) WHERE post_id = ?";
+    static final String ADD_COMMENT_LIKES_SQL = "UPDATE comment SET number_likes_on_comment = GREATEST(COALESCE(number_likes_on_comment, 0) + ?, 0) WHERE comment_id = ?";
+
+
+    // ------- LIKE / UNLIKE --------
+    // These only add to a counter in memory; the database is updated by flushLikes
+
+    public void likePost(Integer postId) {
+        pendingChange(pendingPostLikes, postId, iPostRepository.existsById(postId), "Post").increment();
+    }
+
+    public void unlikePost(Integer postId) {
+        pendingChange(pendingPostLikes, postId, iPostRepository.existsById(postId), "Post").decrement();
+    }
+
+    public void likeComment(Integer commentId) {
+        pendingChange(pendingCommentLikes, commentId, iCommentRepository.existsById(commentId), "Comment").increment();
+    }
+
+    public void unlikeComment(Integer commentId) {
+        pendingChange(pendingCommentLikes, commentId, iCommentRepository.existsById(commentId), "Comment").decrement();
+    }
+
+    private static LongAdder pendingChange(Map<Integer, LongAdder> pendingLikes, Integer id, boolean exists, String entityName) {
+        if (!exists) {
+            throw new RuntimeException(entityName + " with id " + id + " does not exist.");
+        }
+        return pendingLikes.computeIfAbsent(id, key -> new LongAdder());
+    }
+
+
+    // ------- FLUSH --------
+    // Runs in the background: writes the likes collected since the last run to the database, as one batch of UPDATEs for posts and one for comments.
+    // If the database write fails, the likes stay in memory and the next run tries again.
+    // Returns how many rows were updated.
+    @Scheduled(fixedDelayString = "${likes.flush-interval-ms:1000}")
+    public int flushLikes() {
+        List<Object[]> postChanges = takePendingChanges(pendingPostLikes);
+        List<Object[]> commentChanges = takePendingChanges(pendingCommentLikes);
+        if (postChanges.isEmpty() && commentChanges.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            // One transaction, so either every change is written or none is (and then none are lost either)
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(ADD_POST_LIKES_SQL, postChanges);
+                jdbcTemplate.batchUpdate(ADD_COMMENT_LIKES_SQL, commentChanges);
+            });
+        }
+        catch (DataAccessException e) {
+            log.warn("Could not save " + (postChanges.size() + commentChanges.size()) + " like counts, will retry: " + e.getMessage());
+            putBackPendingChanges(pendingPostLikes, postChanges);
+            putBackPendingChanges(pendingCommentLikes, commentChanges);
+            return 0;
+        }
+        if (!postChanges.isEmpty()) {
+            // Trending counts the likes once they are saved, all of this second's in one go (and a like that isn't saved yet can't be counted twice)
+            trendingPosts.postsLiked(likesByPost(postChanges));
+            // Posts show their like count (comments aren't part of any read with an ETag)
+            changeVersions.changed(ChangeVersions.Aggregate.POSTS);
+        }
+        return postChanges.size() + commentChanges.size();
+    }
+
+    // Write whatever is left when the app shuts down
+    @PreDestroy
+    public void flushLikesOnShutdown() {
+        flushLikes();
+    }
+
+    // Each change is {delta, id}, in the order of the ? in the SQL
+    private static List<Object[]> takePendingChanges(Map<Integer, LongAdder> pendingLikes) {
+        List<Object[]> changes = new ArrayList<>();
+        pendingLikes.forEach((id, pending) -> {
+            long delta = pending.sum();
+            if (delta != 0) {
+                // We take away exactly what we read instead of resetting to 0, so a like that comes in right now isn't lost
+                pending.add(-delta);
+                changes.add(new Object[]{delta, id});
+            }
+        });
+        return changes;
+    }
+
+    private static Map<Integer, Long> likesByPost(List<Object[]> postChanges) {
+        Map<Integer, Long> likesByPost = new HashMap<>();
+        for (Object[] change : postChanges) {
+            likesByPost.put((Integer) change[1], (Long) change[0]);
+        }
+        return likesByPost;
+    }
+
+    private static void putBackPendingChanges(Map<Integer, LongAdder> pendingLikes, List<Object[]> changes) {
+        for (Object[] change : changes) {
+            pendingLikes.computeIfAbsent((Integer) change[1], key -> new LongAdder()).add((Long) change[0]);
+        }
+    }
+}
+
+// Liking used to be a PUT of the whole post or comment: read the count, add 1, write it back. Two people liking at the same time could both read 5 and both write 6.
+// Now a like just bumps a LongAdder in memory. A LongAdder spreads its count over several cells when many threads add at once, so a hot post doesn't turn into one contended counter.
+// Every second flushLikes turns all of that into one "n = n + delta" UPDATE per post or comment that changed, sent to the database as one batch.
+// The database row is only locked once per post per second, however many likes it got, and no like is lost.
+// The trade-off: a like shows up in GET /posts up to a second later, and likes not yet flushed are lost if the app crashes (they are flushed on a normal shutdown).
+// There is one small counter per post/comment liked since startup.
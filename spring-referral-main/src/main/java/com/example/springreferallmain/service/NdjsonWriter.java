@@ -0,0 +1,82 @@
+package com.example.springreferallmain.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+@Service
+public class NdjsonWriter {
+    // Spring's own ObjectMapper, so entities are written exactly like a normal JSON response
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    private final TransactionTemplate readOnlyTransaction;
+
+    // Rows written per chunk; matches @BatchSize on Post, so a chunk's lazy collections load in one query
+    static final int CHUNK_SIZE = 100;
+
+    private static final byte[] NEW_LINE = {'\n'};
+
+    public NdjsonWriter(PlatformTransactionManager transactionManager) {
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+    }
+
+    // Writes every row from the repository stream to out as NDJSON (one JSON object per line), and returns how many were written.
+    // The stream is read inside a read-only transaction (a Stream<T> repository method needs one to keep its cursor open).
+    // Every CHUNK_SIZE rows we flush what we've written and clear the persistence context, so memory stays the same however many rows there are.
+    public <T> long write(Supplier<Stream<T>> rows, OutputStream out) {
+        Long written = readOnlyTransaction.execute(status -> {
+            long count = 0;
+            List<T> chunk = new ArrayList<>(CHUNK_SIZE);
+            try (Stream<T> stream = rows.get()) {
+                Iterator<T> iterator = stream.iterator();
+                while (iterator.hasNext()) {
+                    chunk.add(iterator.next());
+                    if (chunk.size() == CHUNK_SIZE) {
+                        count += writeChunk(chunk, out);
+                    }
+                }
+                count += writeChunk(chunk, out);
+            }
+            catch (IOException e) {
+                // Usually the client went away; there's nothing left to send them, so just stop reading
+                throw new UncheckedIOException(e);
+            }
+            return count;
+        });
+        return written == null ? 0 : written;
+    }
+
+    private <T> int writeChunk(List<T> chunk, OutputStream out) throws IOException {
+        for (T row : chunk) {
+            out.write(objectMapper.writeValueAsBytes(row));
+            out.write(NEW_LINE);
+        }
+        out.flush();
+        int written = chunk.size();
+        chunk.clear();
+        entityManager.clear();
+        return written;
+    }
+}
+
+// Why NDJSON: the client can start reading (and showing) the first rows while the rest are still being read from the database,
+// and neither side ever has the whole list in memory. Each line is one complete JSON object, i.e. `curl -H "Accept: application/x-ndjson" localhost:8080/posts`.
+// Because the response has started before we know how many rows there are, an empty result is a 200 with an empty body (not a 404 like the JSON endpoints).
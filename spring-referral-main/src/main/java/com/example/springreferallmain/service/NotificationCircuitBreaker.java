@@ -0,0 +1,186 @@
+package com.example.springreferallmain.service;
+
+import com.example.springreferallmain.config.NotificationServiceProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+@Slf4j
+@Service
+public class NotificationCircuitBreaker {
+    @Autowired
+    NotificationServiceProperties notificationServiceProperties;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger failuresInARow = new AtomicInteger();
+    // When the circuit last opened, from clock
+    private volatile long openedAt;
+    // While half open, only the one trial call gets through
+    private final AtomicBoolean trialCallInFlight = new AtomicBoolean();
+
+    // The bulkhead: one permit per call that may be waiting on the microservice at the same time
+    private Semaphore bulkhead;
+
+    // Nanoseconds; the tests swap this out so they don't have to wait for the circuit to half open
+    private LongSupplier clock = System::nanoTime;
+
+    @PostConstruct
+    void registerMetrics() {
+        bulkhead = new Semaphore(notificationServiceProperties.getBulkhead().getMaxConcurrentCalls());
+        // Show up under /actuator/metrics
+        Gauge.builder("notification.circuit.state", state, s -> s.get().ordinal())
+                .description("0 = closed, 1 = open, 2 = half open")
+                .register(meterRegistry);
+        Gauge.builder("notification.bulkhead.available", bulkhead, Semaphore::availablePermits)
+                .description("Calls that can still be made to the notification service right now")
+                .register(meterRegistry);
+    }
+
+
+    // ------- CALL --------
+    // Make a call to the Notification microservice, or use the fallback if it's failing or too many calls are already waiting on it
+    // 4xx responses are the microservice working fine (i.e. 404 not found), so they don't count as failures and are thrown as usual.
+    // If there is no fallback value, throws ResourceAccessException, the same as when the microservice can't be reached.
+    public <T> T call(Supplier<T> call, Supplier<T> fallback) {
+        if (!enterBulkhead()) {
+            count("bulkhead_full");
+            return useFallback(fallback);
+        }
+        try {
+            if (!allowCall()) {
+                count("rejected");
+                return useFallback(fallback);
+            }
+            try {
+                T result = call.get();
+                onSuccess();
+                return result;
+            }
+            catch (HttpClientErrorException e) {
+                onSuccess();
+                throw e;
+            }
+            catch (RestClientException e) {
+                onFailure(e);
+                return useFallback(fallback);
+            }
+            catch (RuntimeException e) {
+                // Not a problem talking to the microservice, so it doesn't count either way; just let the next trial call through
+                trialCallInFlight.set(false);
+                throw e;
+            }
+        }
+        finally {
+            bulkhead.release();
+        }
+    }
+
+    // For calls that have nothing to fall back to (i.e. marking a notification read)
+    public <T> T call(Supplier<T> call) {
+        return call(call, () -> null);
+    }
+
+    State getState() {
+        return state.get();
+    }
+
+    void setClock(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    // Back to closed with no failures, for the tests
+    void reset() {
+        state.set(State.CLOSED);
+        failuresInARow.set(0);
+        trialCallInFlight.set(false);
+    }
+
+
+    // ------- HELPERS --------
+
+    private boolean enterBulkhead() {
+        try {
+            return bulkhead.tryAcquire(notificationServiceProperties.getBulkhead().getMaxWait().toMillis(), TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private boolean allowCall() {
+        State current = state.get();
+        if (current == State.OPEN) {
+            long openFor = clock.getAsLong() - openedAt;
+            if (openFor < notificationServiceProperties.getCircuitBreaker().getOpenDuration().toNanos()) {
+                return false;
+            }
+            state.compareAndSet(State.OPEN, State.HALF_OPEN);
+            current = State.HALF_OPEN;
+        }
+        if (current == State.HALF_OPEN) {
+            return trialCallInFlight.compareAndSet(false, true);
+        }
+        return true;
+    }
+
+    private void onSuccess() {
+        count("success");
+        failuresInARow.set(0);
+        if (state.getAndSet(State.CLOSED) != State.CLOSED) {
+            log.info("Notification service is back, circuit closed");
+        }
+        trialCallInFlight.set(false);
+    }
+
+    private void onFailure(RestClientException e) {
+        count("failure");
+        boolean trialCallFailed = state.get() == State.HALF_OPEN;
+        if (trialCallFailed || failuresInARow.incrementAndGet() >= notificationServiceProperties.getCircuitBreaker().getFailureThreshold()) {
+            openedAt = clock.getAsLong();
+            if (state.getAndSet(State.OPEN) != State.OPEN) {
+                log.warn("Notification service is failing, circuit open: " + e.getMessage());
+            }
+        }
+        trialCallInFlight.set(false);
+    }
+
+    private <T> T useFallback(Supplier<T> fallback) {
+        T fallbackValue = fallback.get();
+        if (fallbackValue == null) {
+            throw new ResourceAccessException("Notification service is unavailable, please try again later.");
+        }
+        count("fallback");
+        return fallbackValue;
+    }
+
+    private void count(String outcome) {
+        meterRegistry.counter("notification.calls", "outcome", outcome).increment();
+    }
+}
+
+// When the Notification microservice slows down or goes down, calling it anyway ties up one of our Tomcat threads per call until it times out,
+// and soon there are none left for the rest of the app. This stops that from spreading:
+// - Circuit breaker: after failureThreshold failures in a row we stop calling it (open) and answer straight from the fallback. After openDuration one trial call
+//   goes through (half open); if it works we close the circuit again, if not it stays open for another openDuration.
+// - Bulkhead: at most maxConcurrentCalls threads wait on the microservice at once; any more get the fallback right away.
+// The fallback is whatever the caller has to offer, i.e. the last notifications we got for that user.
@@ -0,0 +1,137 @@
+package com.example.springreferallmain.service;
+
+import com.example.springreferallmain.dto.NotificationDTO;
+import com.example.springreferallmain.model.NotificationOutbox;
+import com.example.springreferallmain.repository.INotificationOutboxRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Slf4j
+@Service
+public class NotificationDispatcher {
+    @Autowired
+    INotificationOutboxRepository iNotificationOutboxRepository;
+
+    // Autowire my Rest Template to make call to Notification microservice
+    @Autowired
+    RestTemplate restTemplate;
+
+    @Autowired
+    NotificationCircuitBreaker notificationCircuitBreaker;
+
+    // How many notifications we send to the microservice in one call
+    @Value("${notification.outbox.batch-size:100}")
+    int batchSize = 100;
+
+
+    // ------- SEND PENDING NOTIFICATIONS --------
+    // Runs in the background: sends the pending notifications in the outbox to the Notification microservice, a batch per call, until the outbox is empty.
+    // If the microservice is slow or down, we stop and leave the rows where they are, and the next run tries again.
+    // If it rejects a batch as invalid (a 400 or 422), some row in it is bad: see sendBatch.
+    // Returns how many notifications were sent.
+    @Scheduled(fixedDelayString = "${notification.outbox.poll-interval-ms:500}")
+    public int dispatchOutbox() {
+        int sent = 0;
+        List<NotificationOutbox> batch;
+        do {
+            batch = iNotificationOutboxRepository.findByDeadLetteredAtIsNullOrderByOutboxIdAsc(PageRequest.of(0, batchSize));
+            if (batch.isEmpty()) {
+                break;
+            }
+
+            int accepted;
+            try {
+                accepted = sendBatch(batch);
+            }
+            catch (RestClientException e) {
+                log.warn("Could not send " + batch.size() + " notifications, will retry: " + e.getMessage());
+                break;
+            }
+            sent += accepted;
+
+            // A rejected row that isn't dead-lettered yet is still first in the outbox, so leave it for the next run
+            if (accepted < batch.size()) {
+                break;
+            }
+        } while (batch.size() == batchSize);
+
+        return sent;
+    }
+
+    // Sends the rows and deletes the ones the microservice accepted. Returns how many it accepted.
+    // A 400 or 422 won't go away by sending the same batch again, so we split the batch in half and send each half, until the bad rows are on their own.
+    // A 413 means the batch is too big, so we split it the same way, but only a row that is too big on its own counts as bad.
+    // Any other error (the microservice is down or busy, i.e. a 5xx, 429 or 408, or the circuit is open) is thrown and the rows stay in the outbox.
+    private int sendBatch(List<NotificationOutbox> rows) {
+        try {
+            // No fallback: while the circuit is open this throws straight away, and the outbox is what keeps the notifications safe
+            List<NotificationDTO> notificationDTOs = getNotificationDTOs(rows);
+            notificationCircuitBreaker.call(() -> restTemplate.postForEntity("/notifications/batch",
+                    notificationDTOs, // the whole batch goes in one request
+                    String.class));
+        }
+        catch (HttpClientErrorException e) {
+            if (!isBadRow(e) && !e.getStatusCode().isSameCodeAs(HttpStatus.PAYLOAD_TOO_LARGE)) {
+                throw e;
+            }
+            if (rows.size() == 1) {
+                rejected(rows.get(0), e);
+                return 0;
+            }
+            int half = rows.size() / 2;
+            return sendBatch(rows.subList(0, half)) + sendBatch(rows.subList(half, rows.size()));
+        }
+
+        // The microservice has them now, so they are no longer pending
+        iNotificationOutboxRepository.deleteAllInBatch(rows);
+        return rows.size();
+    }
+
+    // The microservice says the notification itself is invalid, so sending it again won't help
+    private static boolean isBadRow(HttpClientErrorException e) {
+        return e.getStatusCode().isSameCodeAs(HttpStatus.BAD_REQUEST) || e.getStatusCode().isSameCodeAs(HttpStatus.UNPROCESSABLE_ENTITY);
+    }
+
+    // A row rejected on its own is dead-lettered straight away, with the error, so the rows behind it keep moving
+    private void rejected(NotificationOutbox row, HttpClientErrorException e) {
+        row.setAttempts(row.getAttempts() + 1);
+        String error = e.getStatusCode() + " " + e.getResponseBodyAsString();
+        row.setLastError(error.length() > 500 ? error.substring(0, 500) : error);
+        row.setDeadLetteredAt(LocalDateTime.now());
+        log.error("Notification " + row.getOutboxId() + " was rejected and won't be sent again: " + row.getLastError());
+        iNotificationOutboxRepository.save(row);
+    }
+
+    private static List<NotificationDTO> getNotificationDTOs(List<NotificationOutbox> batch) {
+        List<NotificationDTO> notificationDTOs = new ArrayList<>(batch.size());
+        for (NotificationOutbox pending : batch) {
+            notificationDTOs.add(new NotificationDTO(null,
+                    pending.getPostId(),
+                    pending.getUserId(),
+                    pending.getCommentId(),
+                    pending.getCommentText(),
+                    pending.getCommentedByUsername(),
+                    pending.getTimeCommentCreated(),
+                    false));
+        }
+        return notificationDTOs;
+    }
+}
+
+// Delivery is "at least once": if we crash after the microservice saved a batch but before we deleted it from the outbox, that batch is sent again on the next run.
+// Only one instance of the main app should run the dispatcher, since two dispatchers would read the same rows.
+// A rejected row isn't retried: the next run is half a second away, too soon for whatever made it invalid to be fixed, so it is dead-lettered at once.
+// Throttling (429), timeouts (408) and the other 4xx that say nothing about the rows leave the whole batch for the next run, like a 5xx,
+// so a busy microservice isn't hit with a request per row while it is asking us to slow down.
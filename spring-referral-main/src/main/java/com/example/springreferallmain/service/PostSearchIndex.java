@@ -0,0 +1,266 @@
+package com.example.springreferallmain.service;
+
+import com.example.springreferallmain.model.Comment;
+import com.example.springreferallmain.model.Post;
+import com.example.springreferallmain.model.Tag;
+import com.example.springreferallmain.repository.IPostRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+@Slf4j
+@Service
+public class PostSearchIndex {
+    @Autowired
+    IPostRepository iPostRepository;
+
+    // Comment text is searchable too unless this is turned off
+    @Value("${post-search.include-comments:true}")
+    boolean includeComments = true;
+
+    // How much a word counts depending on where it shows up in the post
+    static final int TITLE_WEIGHT = 3;
+    static final int TAG_WEIGHT = 2;
+    static final int CONTENT_WEIGHT = 1;
+    static final int COMMENT_WEIGHT = 1;
+
+    private static final Set<String> STOP_WORDS = Set.of("a", "an", "and", "are", "as", "at", "be", "for", "in", "is", "it", "of", "on", "or", "the", "to", "with");
+
+    // word -> (postId -> weighted count of that word in the post)
+    private final Map<String, Map<Integer, Integer>> postings = new HashMap<>();
+
+    // postId -> words indexed for that post, so we can take a post back out of the index when it changes
+    private final Map<Integer, Set<String>> wordsByPost = new HashMap<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+
+    // ------- BUILD --------
+    // Load every post into the index once the app has started. After this, the index is kept up to date by the services.
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        List<Post> allPosts = iPostRepository.findAll();
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            wordsByPost.clear();
+            for (Post post : allPosts) {
+                addToIndex(post.getPostId(), countPostWords(post));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Post search index built with " + allPosts.size() + " posts");
+    }
+
+
+    // ------- UPDATE --------
+    // Add a post to the index, or re-index it if it was already there (i.e. the post was edited, tagged or commented on)
+    public void indexPost(Post post) {
+        if (post == null || post.getPostId() == null) {
+            return;
+        }
+        // Read the post's words now, while its tags and comments can still be loaded, and change the index once the write has committed
+        Integer postId = post.getPostId();
+        Map<String, Integer> counts = countPostWords(post);
+        afterCommit(() -> {
+            removeFromIndex(postId);
+            addToIndex(postId, counts);
+        });
+    }
+
+    // A comment was added (oldText is null), edited, or deleted (newText is null): change just that comment's words for its post.
+    // Unlike indexPost, this never reads the post's other comments, so commenting on a long thread doesn't load the whole thread.
+    public void commentChanged(Integer postId, String oldText, String newText) {
+        if (!includeComments || postId == null) {
+            return;
+        }
+        Map<String, Integer> changes = new HashMap<>();
+        countWords(oldText, -COMMENT_WEIGHT, changes);
+        countWords(newText, COMMENT_WEIGHT, changes);
+        changes.values().removeIf(change -> change == 0);
+        if (changes.isEmpty()) {
+            return;
+        }
+        afterCommit(() -> addToCounts(postId, changes));
+    }
+
+    // Take a deleted post out of the index
+    public void removePost(Integer postId) {
+        afterCommit(() -> removeFromIndex(postId));
+    }
+
+    // Inside a transaction the change waits until it commits, so a write that rolls back never shows up in (or goes missing from) search results
+    private void afterCommit(Runnable change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    underWriteLock(change);
+                }
+            });
+            return;
+        }
+        underWriteLock(change);
+    }
+
+    private void underWriteLock(Runnable change) {
+        lock.writeLock().lock();
+        try {
+            change.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    // ------- SEARCH --------
+    // Returns the ids of the posts matching any word in the query, best match first, for the requested page
+    // A post scores higher the more often (and the more prominently) it uses the query words, and rarer words count for more.
+    public List<Integer> search(String query, int page, int size) {
+        List<String> queryWords = tokenize(query);
+        Map<Integer, Double> scores = new HashMap<>();
+
+        lock.readLock().lock();
+        try {
+            int totalPosts = wordsByPost.size();
+            for (String word : queryWords) {
+                Map<Integer, Integer> postsWithWord = postings.get(word);
+                if (postsWithWord == null) {
+                    continue;
+                }
+                double rarity = Math.log(1.0 + (double) totalPosts / postsWithWord.size());
+                postsWithWord.forEach((postId, count) -> scores.merge(postId, count * rarity, Double::sum));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // A page past the last match is empty (in long, since page * size can be more than an int holds)
+        long skip = (long) page * size;
+        if (skip >= scores.size()) {
+            return new ArrayList<>();
+        }
+
+        // Keep only the best (page + 1) * size results in a small heap instead of sorting every match
+        int wanted = (int) Math.min(skip + size, scores.size());
+        Comparator<Map.Entry<Integer, Double>> bestFirst = Map.Entry.<Integer, Double>comparingByValue()
+                .thenComparing(Map.Entry.comparingByKey());
+        PriorityQueue<Map.Entry<Integer, Double>> best = new PriorityQueue<>(bestFirst);
+        for (Map.Entry<Integer, Double> score : scores.entrySet()) {
+            best.offer(score);
+            if (best.size() > wanted) {
+                best.poll();
+            }
+        }
+
+        List<Integer> rankedPostIds = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            rankedPostIds.add(best.poll().getKey());
+        }
+        Collections.reverse(rankedPostIds);
+
+        return rankedPostIds.subList((int) skip, rankedPostIds.size());
+    }
+
+
+    // ------- HELPERS --------
+    // The weighted count of every word in a post
+    private Map<String, Integer> countPostWords(Post post) {
+        Map<String, Integer> counts = new HashMap<>();
+        countWords(post.getPostTitle(), TITLE_WEIGHT, counts);
+        countWords(post.getPostContent(), CONTENT_WEIGHT, counts);
+        if (post.getTags() != null) {
+            for (Tag tag : post.getTags()) {
+                countWords(tag.getTagName(), TAG_WEIGHT, counts);
+            }
+        }
+        if (includeComments && post.getComments() != null) {
+            for (Comment comment : post.getComments()) {
+                countWords(comment.getCommentText(), COMMENT_WEIGHT, counts);
+            }
+        }
+        return counts;
+    }
+
+    // Callers must hold the write lock
+
+    private void addToIndex(Integer postId, Map<String, Integer> counts) {
+        counts.forEach((word, count) -> postings.computeIfAbsent(word, w -> new HashMap<>()).put(postId, count));
+        wordsByPost.put(postId, new HashSet<>(counts.keySet()));
+    }
+
+    // Add to (or take away from) the counts of some words in a post that is already indexed
+    private void addToCounts(Integer postId, Map<String, Integer> changes) {
+        Set<String> words = wordsByPost.get(postId);
+        if (words == null) {
+            // Deleted in the meantime
+            return;
+        }
+        changes.forEach((word, change) -> {
+            Map<Integer, Integer> postsWithWord = postings.computeIfAbsent(word, w -> new HashMap<>());
+            Integer count = postsWithWord.merge(postId, change, Integer::sum);
+            if (count > 0) {
+                words.add(word);
+                return;
+            }
+            postsWithWord.remove(postId);
+            words.remove(word);
+            if (postsWithWord.isEmpty()) {
+                postings.remove(word);
+            }
+        });
+    }
+
+    private void removeFromIndex(Integer postId) {
+        Set<String> words = wordsByPost.remove(postId);
+        if (words == null) {
+            return;
+        }
+        for (String word : words) {
+            Map<Integer, Integer> postsWithWord = postings.get(word);
+            postsWithWord.remove(postId);
+            if (postsWithWord.isEmpty()) {
+                postings.remove(word);
+            }
+        }
+    }
+
+    private static void countWords(String text, int weight, Map<String, Integer> counts) {
+        for (String word : tokenize(text)) {
+            counts.merge(word, weight, Integer::sum);
+        }
+    }
+
+    // Lower-case the text and split it into words, skipping very common words that would match almost every post
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (word.length() > 1 && !STOP_WORDS.contains(word)) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+}
+
+// This replaces the LIKE '%keyword%' scan with an inverted index kept in memory: for every word we keep the posts that use it.
+// A search only looks at the posts listed under the query words, so it doesn't get slower as posts are added that don't match.
+// The index is rebuilt from the database on startup, and PostService and TagService call indexPost/removePost whenever a post's title, content or tags change.
+// CommentService calls commentChanged instead, which adds or takes away just that comment's words, so a post's other comments are never loaded for it.
+// Index changes are applied after the transaction commits, so a rolled-back edit or delete leaves the index matching the database.
+// ReadWriteLock: many searches can read at the same time, while an update briefly locks them out so nobody sees a half-updated post.
@@ -1,12 +1,30 @@
 package com.example.springreferallmain.service;
+import com.example.springreferallmain.dto.FeedPageDTO;
+import com.example.springreferallmain.dto.PostPatchDTO;
 import com.example.springreferallmain.model.Post;
+import com.example.springreferallmain.model.Tag;
 import com.example.springreferallmain.model.User;
 import com.example.springreferallmain.repository.IPostRepository;
 import com.example.springreferallmain.repository.IUserRepository;
+import org.hibernate.Hibernate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+
+import static com.example.springreferallmain.service.ChangeVersions.Aggregate.POSTS;
 
 @Service
 public class PostService {
@@ -16,6 +34,34 @@ public class PostService {
     @Autowired
     IUserRepository iUserRepository;
 
+    @Autowired
+    PostSearchIndex postSearchIndex;
+
+    @Autowired
+    TagCatalogCache tagCatalogCache;
+
+    @Autowired
+    PostTagIndex postTagIndex;
+
+    @Autowired
+    TrendingPosts trendingPosts;
+
+    @Autowired
+    NdjsonWriter ndjsonWriter;
+
+    @Autowired
+    SingleFlight singleFlight;
+
+    // Gives reads of posts, tags and users a new ETag; we tell it whenever we change one
+    @Autowired
+    ChangeVersions changeVersions;
+
+    @Autowired
+    VersionedUpdate versionedUpdate;
+
+    // Largest page the feed will serve, no matter what limit the client asks for
+    static final int MAX_FEED_PAGE_SIZE = 100;
+
 
     // ------- CREATE --------
     // Create a new post
@@ -23,21 +69,138 @@ public class PostService {
     public Post addPost(Integer userId, Post postToAdd) {
         User existingUser = iUserRepository.findById(userId).orElseThrow(()-> new RuntimeException("User with id " + userId + " does not exist." ));
         postToAdd.setUser(existingUser);
-        return iPostRepository.save(postToAdd);
+        Post postSaved = iPostRepository.save(postToAdd);
+
+        // Make the new post searchable, and show it under its tags
+        postSearchIndex.indexPost(postSaved);
+        postTagIndex.indexPost(postSaved);
+        tagCatalogCache.evictPostIdsForTagsOf(postSaved);
+        trendingPosts.postCreated(postSaved.getPostId(), postSaved.getTimePostCreated());
+        changeVersions.changed(POSTS);
+        return postSaved;
     }
 
 
     // Create a list of posts for testing
     public List<Post> addPosts(List<Post> postsToAdd) {
-        return iPostRepository.saveAll(postsToAdd);
+        List<Post> postsSaved = iPostRepository.saveAll(postsToAdd);
+        postsSaved.forEach(postSearchIndex::indexPost);
+        postsSaved.forEach(postTagIndex::indexPost);
+        postsSaved.forEach(tagCatalogCache::evictPostIdsForTagsOf);
+        postsSaved.forEach(post -> trendingPosts.postCreated(post.getPostId(), post.getTimePostCreated()));
+        changeVersions.changed(POSTS);
+        return postsSaved;
     }
 
     // ------- RETRIEVE --------
     // Get all posts (to display on homepage)
+    // Requests that ask at the same time share one query (see SingleFlight)
     public List<Post> getAllPosts() {
-        return iPostRepository.findAll();
+        return singleFlight.call("posts.all", "all", () -> {
+            List<Post> allPosts = iPostRepository.findAll();
+            // The other requests write these out on their own threads, so the tags are loaded here rather than lazily while they are written
+            allPosts.forEach(post -> Hibernate.initialize(post.getTags()));
+            return allPosts;
+        });
+    }
+
+    // Write all posts to out as NDJSON, a chunk at a time, without ever holding them all in memory (i.e. to export them)
+    public long writeAllPosts(OutputStream out) {
+        return ndjsonWriter.write(iPostRepository::streamAllBy, out);
+    }
+
+
+    // Get one page of the homepage feed, newest first
+    // "after" is the nextCursor from the previous page (null for the first page)
+    public FeedPageDTO getPostFeed(String after, Integer limit) {
+        int pageSize = Math.min(Math.max(limit, 1), MAX_FEED_PAGE_SIZE);
+
+        // We ask for one extra row so we know whether there is another page without running a count query
+        Pageable firstRows = PageRequest.of(0, pageSize + 1);
+
+        List<Post> posts;
+        if (after == null || after.isBlank()) {
+            posts = iPostRepository.findFeedFirstPage(firstRows);
+        }
+        else {
+            String[] cursor = decodeFeedCursor(after);
+            posts = iPostRepository.findFeedPageAfter(LocalDateTime.parse(cursor[0]), Integer.valueOf(cursor[1]), firstRows);
+        }
+
+        if (posts.size() <= pageSize) {
+            return new FeedPageDTO(posts, null);
+        }
+
+        List<Post> page = posts.subList(0, pageSize);
+        return new FeedPageDTO(page, encodeFeedCursor(page.get(pageSize - 1)));
+    }
+
+    // The cursor is just "timePostCreated,postId" of the last post on the page, Base64 encoded so clients treat it as opaque
+    private static String encodeFeedCursor(Post lastPost) {
+        String cursor = lastPost.getTimePostCreated() + "," + lastPost.getPostId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decodeFeedCursor(String after) {
+        try {
+            String[] cursor = new String(Base64.getUrlDecoder().decode(after), StandardCharsets.UTF_8).split(",");
+            // parse both parts here so a tampered cursor fails with a clear message instead of deep in the query
+            LocalDateTime.parse(cursor[0]);
+            Integer.valueOf(cursor[1]);
+            return cursor;
+        }
+        catch (IllegalArgumentException | DateTimeParseException | ArrayIndexOutOfBoundsException e) {
+            // IllegalArgumentException: the client sent a bad cursor, which the controller answers with a 400
+            throw new IllegalArgumentException("Feed cursor " + after + " is not valid.");
+        }
+    }
+
+
+    // Full text search over post titles, content, tag names and comments, best match first
+    public List<Post> searchPosts(String query, Integer page, Integer size) {
+        List<Integer> rankedPostIds = postSearchIndex.search(query, page, size);
+        if (rankedPostIds.isEmpty()) {
+            return List.of();
+        }
+
+        // The database hands the posts back in any order, so we put them back in the order the index ranked them
+        Map<Integer, Integer> rankByPostId = new HashMap<>();
+        for (int rank = 0; rank < rankedPostIds.size(); rank++) {
+            rankByPostId.put(rankedPostIds.get(rank), rank);
+        }
+        List<Post> matchingPosts = new ArrayList<>(iPostRepository.findPostsByPostIdIn(rankedPostIds));
+        matchingPosts.sort(Comparator.comparing(post -> rankByPostId.get(post.getPostId())));
+        return matchingPosts;
+    }
+
+
+    // Posts filtered by several tags at once, newest first: with all of them (AND), any of them (OR) or none of them (NOT)
+    public List<Post> getPostsByTags(List<Integer> tagIds, PostTagIndex.Mode mode, Integer page, Integer size) {
+        List<Integer> matchingPostIds = postTagIndex.findPostIds(tagIds, mode, page, size);
+        if (matchingPostIds.isEmpty()) {
+            return List.of();
+        }
+        List<Post> matchingPosts = new ArrayList<>(iPostRepository.findPostsByPostIdIn(matchingPostIds));
+        matchingPosts.sort(Comparator.comparing(Post::getPostId).reversed());
+        return matchingPosts;
     }
 
+    // Posts with the most recent activity (likes and comments, newer counting more), most trending first
+    public List<Post> getTrendingPosts(Integer limit) {
+        List<Integer> trendingPostIds = trendingPosts.getTrendingPostIds(limit);
+        if (trendingPostIds.isEmpty()) {
+            return List.of();
+        }
+
+        // Same as search: put the posts back in the order they rank
+        Map<Integer, Integer> rankByPostId = new HashMap<>();
+        for (int rank = 0; rank < trendingPostIds.size(); rank++) {
+            rankByPostId.put(trendingPostIds.get(rank), rank);
+        }
+        List<Post> posts = new ArrayList<>(iPostRepository.findPostsByPostIdIn(trendingPostIds));
+        posts.sort(Comparator.comparing(post -> rankByPostId.get(post.getPostId())));
+        return posts;
+    }
 
     // Get all posts matching a keyword search, i.e. so users can see matching refer-all posts
     public List<Post> getPostsByDescriptionContaining(String keyword) {
@@ -50,24 +213,53 @@ public class PostService {
     public Post updatePostById(Integer postId, Post editedPost) {
         // Let's find the post we want to update first.
         Post existingPost = iPostRepository.findById(postId).orElseThrow(() -> new RuntimeException("User with id " + postId + " does not exist."));
+        // If the client sent the version it read, someone else mustn't have edited the post since (409 otherwise)
+        VersionedUpdate.checkVersion(Post.class, postId, editedPost.getVersion(), existingPost.getVersion());
 
         // Now let's update that post.
         existingPost.setPostTitle(editedPost.getPostTitle());
         existingPost.setPostContent(editedPost.getPostContent());
-        existingPost.setNumberLikesOnPost(editedPost.getNumberLikesOnPost());
+        // Likes are not edited here, only through LikeService, so an edit can't overwrite likes that came in meanwhile
         existingPost.setPostMediaURL(editedPost.getPostMediaURL());
 
-        // Save the updated post
-        return iPostRepository.save(existingPost);
+        // Save the updated post and re-index it so search sees the new title/content
+        Post postSaved = iPostRepository.save(existingPost);
+        postSearchIndex.indexPost(postSaved);
+        changeVersions.changed(POSTS);
+        return postSaved;
+
+    }
+
+    // Edit just the fields the client sent, if the post is still at the version they read (one UPDATE, see VersionedUpdate)
+    // Returns the post's new version
+    public Integer patchPostById(Integer postId, PostPatchDTO postPatch) {
+        Map<String, Object> changes = new LinkedHashMap<>();
+        VersionedUpdate.setIfSent(changes, "postTitle", postPatch.getPostTitle());
+        VersionedUpdate.setIfSent(changes, "postContent", postPatch.getPostContent());
+        VersionedUpdate.setIfSent(changes, "postMediaURL", postPatch.getPostMediaURL());
+        int newVersion = versionedUpdate.update(Post.class, postId, postPatch.getVersion(), changes);
 
+        // Search matches the title and content, so only then do we read the post back to re-index it
+        if (postPatch.getPostTitle() != null || postPatch.getPostContent() != null) {
+            iPostRepository.findById(postId).ifPresent(postSearchIndex::indexPost);
+        }
+        changeVersions.changed(POSTS);
+        return newVersion;
     }
 
 
     // ------- DELETE--------
     // Delete post by id (if user deletes a post)
     public boolean deletePostById(Integer postId) {
-        iPostRepository.findById(postId).orElseThrow(() -> new RuntimeException("Post with id " + postId + " does not exist."));
+        Post existingPost = iPostRepository.findById(postId).orElseThrow(() -> new RuntimeException("Post with id " + postId + " does not exist."));
+        // Which tags the post has, read now: its tags are loaded lazily, and once the post is deleted there's nothing left to load
+        List<Integer> tagIdsOfPost = existingPost.getTags().stream().map(Tag::getTagId).toList();
         iPostRepository.deleteById(postId);
+        postSearchIndex.removePost(postId);
+        postTagIndex.removePost(postId);
+        trendingPosts.removePost(postId);
+        tagIdsOfPost.forEach(tagCatalogCache::evictPostIds);
+        changeVersions.changed(POSTS);
         //if the post no longer exists (true), it's no longer present!
         return !iPostRepository.findById(postId).isPresent();
     }
@@ -0,0 +1,179 @@
+package com.example.springreferallmain.service;
+
+import com.example.springreferallmain.model.Post;
+import com.example.springreferallmain.model.Tag;
+import com.example.springreferallmain.repository.IPostRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+@Slf4j
+@Service
+public class PostTagIndex {
+    @Autowired
+    IPostRepository iPostRepository;
+
+    // How the tags in a query are combined
+    public enum Mode {
+        AND, // posts with all of the tags
+        OR,  // posts with any of the tags
+        NOT  // posts with none of the tags
+    }
+
+    // tagId -> bitmap of the ids of the posts with that tag
+    private final Map<Integer, RoaringBitmap> postsByTag = new HashMap<>();
+
+    // Every post id, so NOT has something to take the tagged posts away from
+    private final RoaringBitmap allPosts = new RoaringBitmap();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+
+    // ------- BUILD --------
+    // Load every post id and every post-tag pair once the app has started (two queries, no entities)
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        List<Integer> postIds = iPostRepository.findAllPostIds();
+        List<Object[]> postTagPairs = iPostRepository.findAllPostTagPairs();
+        lock.writeLock().lock();
+        try {
+            postsByTag.clear();
+            allPosts.clear();
+            postIds.forEach(allPosts::add);
+            for (Object[] postTagPair : postTagPairs) {
+                postsByTag.computeIfAbsent((Integer) postTagPair[1], tagId -> new RoaringBitmap()).add((Integer) postTagPair[0]);
+            }
+            // Switches each bitmap to whichever container (array, bitmap or run) takes the least memory
+            postsByTag.values().forEach(RoaringBitmap::runOptimize);
+            allPosts.runOptimize();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Post tag index built with " + postIds.size() + " posts and " + postTagPairs.size() + " tags on posts");
+    }
+
+
+    // ------- UPDATE --------
+    // A new post, with whatever tags it was created with
+    public void indexPost(Post post) {
+        if (post == null || post.getPostId() == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            allPosts.add(post.getPostId());
+            if (post.getTags() != null) {
+                for (Tag tag : post.getTags()) {
+                    if (tag.getTagId() != null) {
+                        postsByTag.computeIfAbsent(tag.getTagId(), tagId -> new RoaringBitmap()).add(post.getPostId());
+                    }
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // A tag was added to a post
+    public void addTagToPost(Integer postId, Integer tagId) {
+        lock.writeLock().lock();
+        try {
+            allPosts.add(postId);
+            postsByTag.computeIfAbsent(tagId, id -> new RoaringBitmap()).add(postId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // A post was deleted
+    public void removePost(Integer postId) {
+        lock.writeLock().lock();
+        try {
+            allPosts.remove(postId);
+            // There are far fewer tags than posts, so checking every tag's bitmap is cheap
+            postsByTag.values().forEach(postsWithTag -> postsWithTag.remove(postId));
+            postsByTag.values().removeIf(RoaringBitmap::isEmpty);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // A tag was deleted
+    public void removeTag(Integer tagId) {
+        lock.writeLock().lock();
+        try {
+            postsByTag.remove(tagId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+
+    // ------- QUERY --------
+    // Ids of the posts matching the tags combined with mode, newest (highest id) first, for the requested page
+    public List<Integer> findPostIds(List<Integer> tagIds, Mode mode, int page, int size) {
+        RoaringBitmap matchingPosts;
+        lock.readLock().lock();
+        try {
+            matchingPosts = combine(tagIds, mode);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // Walk the bitmap from the highest id down, skipping the earlier pages
+        List<Integer> postIds = new ArrayList<>(size);
+        IntIterator newestFirst = matchingPosts.getReverseIntIterator();
+        long skip = (long) page * size;
+        while (newestFirst.hasNext() && postIds.size() < size) {
+            int postId = newestFirst.next();
+            if (skip > 0) {
+                skip--;
+            } else {
+                postIds.add(postId);
+            }
+        }
+        return postIds;
+    }
+
+    // Callers must hold the read lock. Always returns a new bitmap, so the caller can use it after the lock is released.
+    private RoaringBitmap combine(List<Integer> tagIds, Mode mode) {
+        List<RoaringBitmap> bitmaps = new ArrayList<>(tagIds.size());
+        for (Integer tagId : tagIds) {
+            RoaringBitmap postsWithTag = postsByTag.get(tagId);
+            if (postsWithTag == null) {
+                // No post has this tag, so no post can have all of them
+                if (mode == Mode.AND) {
+                    return new RoaringBitmap();
+                }
+                continue;
+            }
+            bitmaps.add(postsWithTag);
+        }
+
+        switch (mode) {
+            case AND:
+                return bitmaps.isEmpty() ? new RoaringBitmap() : FastAggregation.and(bitmaps.iterator());
+            case OR:
+                return FastAggregation.or(bitmaps.iterator());
+            default:
+                return RoaringBitmap.andNot(allPosts, FastAggregation.or(bitmaps.iterator()));
+        }
+    }
+}
+
+// This is a second in-memory index next to PostSearchIndex: for every tag, the ids of the posts with that tag, kept as a compressed (Roaring) bitmap.
+// Combining tags is then just AND / OR / AND NOT of a few bitmaps, which takes microseconds, instead of joining Tag_Posts once per tag in the database.
+// Roaring bitmaps store each block of 65536 ids as a sorted array, a plain bitmap or runs, whichever is smallest, so a tag on a million posts still only takes a few KB.
+// It is built from the database on startup, and PostService and TagService keep it up to date when posts are created/deleted and tags are added to posts/deleted.
@@ -0,0 +1,84 @@
+package com.example.springreferallmain.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+@Service
+public class SingleFlight {
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    // name + key -> the call being made for it right now
+    private final ConcurrentHashMap<List<Object>, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+
+    // ------- CALL --------
+    // Make the call, unless the same call (same name and key) is already being made by another request, in which case we wait for it and share its result.
+    // If that call throws, everyone waiting on it gets the same exception.
+    // name says what is being loaded (i.e. "posts.all") and is used for the metrics; key tells apart calls with different arguments (i.e. the userId).
+    @SuppressWarnings("unchecked")
+    public <T> T call(String name, Object key, Supplier<T> call) {
+        List<Object> nameAndKey = List.of(name, key);
+        CompletableFuture<Object> ours = new CompletableFuture<>();
+        CompletableFuture<Object> theirs = inFlight.putIfAbsent(nameAndKey, ours);
+        if (theirs != null) {
+            count(name, "shared");
+            return (T) await(theirs);
+        }
+
+        count(name, "made");
+        try {
+            T result = call.get();
+            ours.complete(result);
+            return result;
+        }
+        catch (RuntimeException | Error e) {
+            ours.completeExceptionally(e);
+            throw e;
+        }
+        finally {
+            // The next request after this one makes a fresh call
+            inFlight.remove(nameAndKey, ours);
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> call) {
+        try {
+            return call.join();
+        }
+        catch (CompletionException e) {
+            // Rethrow what the call threw, so callers catch the same exceptions as if they'd made the call themselves
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void count(String name, String result) {
+        Counter.builder("singleflight.calls")
+                .description("Calls made, and calls that shared the result of one already being made")
+                .tag("name", name)
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
+    }
+}
+
+// Request coalescing: when a burst of requests all ask for the same thing at once (i.e. everyone loading GET /posts, or a cache that just expired),
+// only the first one goes to the database or the notification microservice, and the rest wait for its answer instead of each making the same call.
+// Only requests that overlap share a call; nothing is kept once it's done (that's what the caches are for), so a request never gets an answer older than
+// one that was already on its way when it arrived.
+// The shared result is handed to several threads at once, so it must be fully loaded (no lazy collections left to load) and never changed by the callers.
+// /actuator/metrics/singleflight.calls shows, per name, how many calls were made and how many were saved.
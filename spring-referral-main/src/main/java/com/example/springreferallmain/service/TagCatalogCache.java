@@ -0,0 +1,81 @@
+package com.example.springreferallmain.service;
+
+import com.example.springreferallmain.model.Post;
+import com.example.springreferallmain.model.Tag;
+import com.example.springreferallmain.repository.IPostRepository;
+import com.example.springreferallmain.repository.ITagRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+@Service
+public class TagCatalogCache {
+    @Autowired
+    ITagRepository iTagRepository;
+
+    @Autowired
+    IPostRepository iPostRepository;
+
+    @Autowired
+    CacheManager cacheManager;
+
+    static final String TAG_CATALOG = "tagCatalog";
+    static final String TAG_POST_IDS = "tagPostIds";
+
+
+    // ------- READ --------
+    // All tags, from memory after the first call
+    @Cacheable(TAG_CATALOG)
+    public List<Tag> getAllTags() {
+        return List.copyOf(iTagRepository.findAll());
+    }
+
+    // Ids of the posts with a tag, newest first, from memory after the first call for that tag
+    @Cacheable(value = TAG_POST_IDS, key = "#tagId")
+    public List<Integer> getPostIdsForTag(Integer tagId) {
+        // An unknown tag throws, so it isn't cached
+        if (!iTagRepository.existsById(tagId)) {
+            throw new RuntimeException("Tag with id " + tagId + " does not exist.");
+        }
+        return List.copyOf(iPostRepository.findPostIdsByTagId(tagId));
+    }
+
+
+    // ------- INVALIDATE --------
+    // Called by the services right after they change tags, so the next read goes back to the database
+
+    // A tag was added, renamed or deleted
+    public void evictCatalog() {
+        cache(TAG_CATALOG).clear();
+    }
+
+    // A post was tagged with this tag, or a post with this tag was deleted
+    public void evictPostIds(Integer tagId) {
+        cache(TAG_POST_IDS).evict(tagId);
+    }
+
+    // A post was added or deleted, so every tag on it has a different set of posts now
+    public void evictPostIdsForTagsOf(Post post) {
+        if (post.getTags() == null) {
+            return;
+        }
+        for (Tag tag : post.getTags()) {
+            if (tag.getTagId() != null) {
+                evictPostIds(tag.getTagId());
+            }
+        }
+    }
+
+    private Cache cache(String name) {
+        return cacheManager.getCache(name);
+    }
+}
+
+// Tags hardly ever change but are read on every tag page, so we keep two things in memory (Caffeine caches, limits in application.properties):
+// - tagCatalog: the list of all tags
+// - tagPostIds: tag id -> ids of the posts with that tag. Only the ids are kept, not the posts, since posts (likes, comments, edits) change much more often than tags.
+// Entries are evicted precisely when their tag data changes, and also expire after a while as a safety net for changes made outside this app.
@@ -5,10 +5,18 @@ import com.example.springreferallmain.repository.IPostRepository;
 import com.example.springreferallmain.repository.ITagRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 
+import static com.example.springreferallmain.service.ChangeVersions.Aggregate.POSTS;
+import static com.example.springreferallmain.service.ChangeVersions.Aggregate.TAGS;
+
 @Service
 public class TagService {
     @Autowired
@@ -17,17 +25,43 @@ public class TagService {
     @Autowired
     IPostRepository iPostRepository;
 
+    @Autowired
+    PostSearchIndex postSearchIndex;
+
+    // Tags and which posts have them, kept in memory; we tell it whenever we change either
+    @Autowired
+    TagCatalogCache tagCatalogCache;
+
+    @Autowired
+    PostTagIndex postTagIndex;
+
+    @Autowired
+    NdjsonWriter ndjsonWriter;
+
+    @Autowired
+    SingleFlight singleFlight;
+
+    // Gives reads of posts, tags and users a new ETag; we tell it whenever we change one
+    @Autowired
+    ChangeVersions changeVersions;
+
     // ------- CREATE --------
 
     // Add a tag (user creates a tag)
     public Tag addTag(Tag tagToAdd) {
-        return iTagRepository.save(tagToAdd);
+        Tag tagSaved = iTagRepository.save(tagToAdd);
+        tagCatalogCache.evictCatalog();
+        changeVersions.changed(TAGS);
+        return tagSaved;
     }
 
 
     // Create a list of tags for testing
     public List<Tag> addTags(List<Tag> tagsToAdd) {
-        return iTagRepository.saveAll(tagsToAdd);
+        List<Tag> tagsSaved = iTagRepository.saveAll(tagsToAdd);
+        tagCatalogCache.evictCatalog();
+        changeVersions.changed(TAGS);
+        return tagsSaved;
     }
 
 
@@ -52,6 +86,14 @@ public class TagService {
         // Post and tags have a many to many (aka bidirectional relationship) so when you add a tag to a post, you are also modifying the state of the post. Thus, you need to save the updated post with its newly added tags to the DB. (With this below, you don't need to set the tag to the post).
         iPostRepository.save(existingPost);
 
+        // Re-index the post so it can be found by its new tag's name
+        postSearchIndex.indexPost(existingPost);
+        // The tag has one more post now
+        postTagIndex.addTagToPost(postId, tagId);
+        tagCatalogCache.evictPostIds(tagId);
+        // The post shows its tags
+        changeVersions.changed(POSTS);
+
         // Return the tag that was added to the post
         return existingTag;
     }
@@ -61,20 +103,29 @@ public class TagService {
     // Get all tags
 
     public List<Tag> getAllTags() {
-        return iTagRepository.findAll();
+        // When the cached list has expired, requests that ask at the same time share one query instead of each reloading it
+        return singleFlight.call("tags.all", "all", tagCatalogCache::getAllTags);
+    }
+
+    // Write all tags to out as NDJSON straight from the database (not the cache), a chunk at a time
+    public long writeAllTags(OutputStream out) {
+        return ndjsonWriter.write(iTagRepository::streamAllBy, out);
     }
 
 
     // Get posts associated with a tag
     // This way we can show a posts with that tag.
     public List<Post> getPostsByTagById (Integer tagId) {
-        // Let's find the tag first
-        Tag existingTag = iTagRepository.findById(tagId)
-                .orElseThrow(() -> new RuntimeException("Tag with id " + tagId + " does not exist."));
+        // The ids of the posts with this tag come from memory (this also throws if the tag doesn't exist)
+        List<Integer> postIdsWithTag = tagCatalogCache.getPostIdsForTag(tagId);
+        if (postIdsWithTag.isEmpty()) {
+            return new ArrayList<>();
+        }
 
-        // Return the list of posts associated with the tag
-        // This will allow the posts to still show regardless of that JSON ignore
-        return existingTag.getPosts();
+        // Then we load just those posts, each with its user, in one query, and put them back in the cached order (newest first)
+        List<Post> postsWithTag = new ArrayList<>(iPostRepository.findPostsByPostIdIn(postIdsWithTag));
+        postsWithTag.sort(Comparator.comparing(Post::getPostId).reversed());
+        return postsWithTag;
 
     }
 
@@ -86,21 +137,62 @@ public class TagService {
         existingTag.setTagName(editedTag.getTagName());
         existingTag.setTagDescription(editedTag.getTagDescription());
         // Save the updated tag to the database
-        return iTagRepository.save(existingTag);
+        Tag tagSaved = iTagRepository.save(existingTag);
+
+        // A renamed tag changes what every post with that tag can be found by
+        iPostRepository.findDistinctPostsByTagsTagId(tagId).forEach(postSearchIndex::indexPost);
+        // The tag list shows the new name; which posts have the tag hasn't changed
+        tagCatalogCache.evictCatalog();
+        // Posts show the new name too
+        changeVersions.changed(TAGS, POSTS);
+        return tagSaved;
 
         }
 
 
     // ------- DELETE--------
     // Delete tag by id (if a user wants to delete a tag)
+    // One transaction, so the tag comes off its posts and is deleted together (and the search index only changes if both commit)
+    @Transactional
     public boolean deleteTagById(Integer tagId) {
 
         iTagRepository.findById(tagId)
                 .orElseThrow(() -> new RuntimeException("Tag with id " + tagId + " does not exist."));
 
+        // Take the tag off its posts first (Post owns the join table), so they can be re-indexed without its name
+        List<Post> postsWithTag = iPostRepository.findDistinctPostsByTagsTagId(tagId);
+        for (Post post : postsWithTag) {
+            List<Tag> remainingTags = new ArrayList<>(post.getTags());
+            remainingTags.removeIf(tag -> tagId.equals(tag.getTagId()));
+            post.setTags(remainingTags);
+        }
+
         iTagRepository.deleteById(tagId);
+        // Those posts can't be found by the deleted tag's name anymore
+        postsWithTag.forEach(postSearchIndex::indexPost);
+        // Only once the delete commits: until then a read still sees the tag and would cache its posts again,
+        // and a delete that rolls back must leave the tag in the index
+        afterCommit(() -> {
+            postTagIndex.removeTag(tagId);
+            tagCatalogCache.evictCatalog();
+            tagCatalogCache.evictPostIds(tagId);
+        });
+        changeVersions.changed(TAGS, POSTS);
         return !iTagRepository.findById(tagId).isPresent();
 
     }
 
+    private void afterCommit(Runnable change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    change.run();
+                }
+            });
+            return;
+        }
+        change.run();
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,242 @@
+package com.example.springreferallmain.service;
+
+import com.example.springreferallmain.repository.ICommentRepository;
+import com.example.springreferallmain.repository.IPostRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.function.LongSupplier;
+
+@Slf4j
+@Service
+public class TrendingPosts {
+    @Autowired
+    IPostRepository iPostRepository;
+
+    @Autowired
+    ICommentRepository iCommentRepository;
+
+    // Every this long, a like or comment counts half as much as it did
+    @Value("${trending.half-life:6h}")
+    Duration halfLife = Duration.ofHours(6);
+
+    // How many posts we keep ranked
+    @Value("${trending.size:100}")
+    int size = 100;
+
+    // How much each kind of activity is worth when it happens
+    static final double POST_WEIGHT = 1.0;
+    static final double LIKE_WEIGHT = 1.0;
+    static final double COMMENT_WEIGHT = 3.0;
+
+    // Below this (after decay) a post has had no real activity in a long time, and we stop tracking it
+    static final double FORGET_BELOW = 0.01;
+
+    // postId -> score, measured as of epochMillis (see the note at the bottom)
+    private final Map<Integer, Double> scores = new HashMap<>();
+    private long epochMillis;
+
+    // The best `size` posts, best first. Its order comes from scores, so a post must be taken out before its score changes.
+    private final TreeSet<Integer> top = new TreeSet<>(
+            Comparator.<Integer>comparingDouble(postId -> scores.get(postId)).reversed()
+                    .thenComparing(Comparator.<Integer>reverseOrder()));
+
+    // A copy of top for readers, replaced after every change so reads never wait on a lock
+    private volatile List<Integer> topPostIds = List.of();
+
+    // Milliseconds; the tests swap this out so they can move time forward
+    private LongSupplier clock = System::currentTimeMillis;
+
+    public TrendingPosts() {
+        epochMillis = clock.getAsLong();
+    }
+
+
+    // ------- BUILD --------
+    // Replay the recent posts and comments from the database once the app has started.
+    // Anything older than 20 half-lives would count for less than a millionth, so we don't load it.
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        LocalDateTime since = toDateTime(clock.getAsLong() - halfLife.toMillis() * 20);
+        List<Object[]> recentPosts = iPostRepository.findPostActivitySince(since);
+        List<Object[]> recentComments = iCommentRepository.findCommentTimesSince(since);
+
+        synchronized (this) {
+            scores.clear();
+            top.clear();
+            epochMillis = clock.getAsLong();
+            for (Object[] post : recentPosts) {
+                long createdAt = toMillis((LocalDateTime) post[1]);
+                Integer likes = (Integer) post[2];
+                // We don't know when the likes happened, so we count them as of when the post was created
+                addToScore((Integer) post[0], POST_WEIGHT + LIKE_WEIGHT * (likes == null ? 0 : likes), createdAt);
+            }
+            for (Object[] comment : recentComments) {
+                addToScore((Integer) comment[0], COMMENT_WEIGHT, toMillis((LocalDateTime) comment[1]));
+            }
+            publish();
+        }
+        log.info("Trending posts built from " + recentPosts.size() + " posts and " + recentComments.size() + " comments");
+    }
+
+
+    // ------- UPDATE --------
+    // Called by the services as things happen
+
+    public synchronized void postCreated(Integer postId, LocalDateTime timePostCreated) {
+        if (addToScore(postId, POST_WEIGHT, timePostCreated == null ? clock.getAsLong() : toMillis(timePostCreated))) {
+            refillTop();
+        }
+        publish();
+    }
+
+    // Called by LikeService once a second with the likes (minus unlikes) per post it just saved, so liking never takes this lock:
+    // the whole second's likes take it once, copy the top once, and rescan the scores at most once
+    public synchronized void postsLiked(Map<Integer, Long> likesByPost) {
+        if (likesByPost.isEmpty()) {
+            return;
+        }
+        long now = clock.getAsLong();
+        boolean topWentDown = false;
+        for (Map.Entry<Integer, Long> likes : likesByPost.entrySet()) {
+            topWentDown |= addToScore(likes.getKey(), LIKE_WEIGHT * likes.getValue(), now);
+        }
+        if (topWentDown) {
+            refillTop();
+        }
+        publish();
+    }
+
+    // Like likes, a comment only counts once it is saved: inside a transaction this waits until it commits
+    public void postCommented(Integer postId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    commented(postId);
+                }
+            });
+            return;
+        }
+        commented(postId);
+    }
+
+    private synchronized void commented(Integer postId) {
+        if (addToScore(postId, COMMENT_WEIGHT, clock.getAsLong())) {
+            refillTop();
+        }
+        publish();
+    }
+
+    public synchronized void removePost(Integer postId) {
+        if (!scores.containsKey(postId)) {
+            return;
+        }
+        boolean wasTop = top.remove(postId);
+        scores.remove(postId);
+        if (wasTop) {
+            refillTop();
+        }
+        publish();
+    }
+
+
+    // ------- RETRIEVE --------
+    // Ids of the trending posts, best first
+    public List<Integer> getTrendingPostIds(int limit) {
+        List<Integer> trending = topPostIds;
+        return trending.subList(0, Math.min(limit, trending.size()));
+    }
+
+
+    // ------- CLEAN UP --------
+    // Runs in the background: forgets posts with no recent activity, so we only track posts that could still trend
+    @Scheduled(fixedDelayString = "${trending.cleanup-interval-ms:600000}")
+    public synchronized void forgetInactivePosts() {
+        double decayedSinceEpoch = Math.exp(-decayPerMilli() * (clock.getAsLong() - epochMillis));
+        scores.entrySet().removeIf(score -> score.getValue() * decayedSinceEpoch < FORGET_BELOW && !top.contains(score.getKey()));
+
+        // Move the epoch up to now before the numbers get too big for a double (scaling every score the same way keeps the order)
+        if (decayedSinceEpoch < 1e-100) {
+            scores.replaceAll((postId, score) -> score * decayedSinceEpoch);
+            epochMillis = clock.getAsLong();
+        }
+    }
+
+
+    // ------- HELPERS --------
+    // Callers must hold the lock (synchronized on this)
+
+    // Returns true if a top post went down, in which case a post outside the top may now be ahead of it and the caller must refillTop
+    private boolean addToScore(Integer postId, double weight, long happenedAtMillis) {
+        if (postId == null) {
+            return false;
+        }
+        double change = weight * Math.exp(decayPerMilli() * (happenedAtMillis - epochMillis));
+        boolean wasTop = scores.containsKey(postId) && top.remove(postId);
+        double updated = Math.max(scores.getOrDefault(postId, 0.0) + change, 0.0);
+        scores.put(postId, updated);
+
+        if (change < 0 && wasTop) {
+            return true;
+        }
+        top.add(postId);
+        if (top.size() > size) {
+            top.pollLast();
+        }
+        return false;
+    }
+
+    // Pick the best `size` posts again from every score; only needed when a top post goes down or is deleted, which is rare
+    private void refillTop() {
+        top.clear();
+        for (Integer postId : scores.keySet()) {
+            top.add(postId);
+            if (top.size() > size) {
+                top.pollLast();
+            }
+        }
+    }
+
+    private void publish() {
+        topPostIds = List.copyOf(top);
+    }
+
+    private double decayPerMilli() {
+        return Math.log(2) / halfLife.toMillis();
+    }
+
+    private static long toMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static LocalDateTime toDateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+
+    void setClock(LongSupplier clock) {
+        this.clock = clock;
+    }
+}
+
+// A post's trending score is the sum of its activity (being posted, likes, comments), where each one counts for less the longer ago it happened:
+//   score now = sum of weight * 2^-(age / halfLife)
+// A post with a burst of comments in the last hour beats one with more comments spread over last week.
+// Every score shrinks by the same factor as time passes, so that never changes which post is ahead. That lets us store each score as of a fixed moment (epochMillis)
+// instead of now, where an event adds weight * 2^((happened - epoch) / halfLife), and a post's score only changes when something happens to it.
+// So the ranking is kept up to date one event at a time in a small sorted set (top), and GET /posts/trending just reads it, with no SQL sort.
+// Likes are the busiest event, so they don't come in one at a time: LikeService hands over each second's likes per post after it saves them (postsLiked).
@@ -1,15 +1,21 @@
 package com.example.springreferallmain.service;
-import com.example.springreferallmain.config.RestTemplateConfig;
+import com.example.springreferallmain.dto.InboxPageDTO;
 import com.example.springreferallmain.dto.NotificationDTO;
+import com.example.springreferallmain.dto.UserPatchDTO;
 import com.example.springreferallmain.model.User;
 import com.example.springreferallmain.repository.IUserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
 
-import java.util.Arrays;
-import java.util.List;
+import java.io.OutputStream;
+import java.util.*;
+
+import static com.example.springreferallmain.service.ChangeVersions.Aggregate.POSTS;
+import static com.example.springreferallmain.service.ChangeVersions.Aggregate.USERS;
 
 @Service
 public class UserService {
@@ -19,17 +25,44 @@ public class UserService {
     @Autowired
     RestTemplate restTemplate;
 
+    @Autowired
+    NdjsonWriter ndjsonWriter;
+
+    // Every call to the Notification microservice goes through this, so a slow or down microservice can't tie up all our request threads
+    @Autowired
+    NotificationCircuitBreaker notificationCircuitBreaker;
+
+    @Autowired
+    SingleFlight singleFlight;
+
+    // Gives reads of posts, tags and users a new ETag; we tell it whenever we change one
+    @Autowired
+    ChangeVersions changeVersions;
+
+    @Autowired
+    VersionedUpdate versionedUpdate;
+
+    // The last notifications we got from the microservice for each (recently active) user, shown if the microservice is unavailable
+    static final int LAST_KNOWN_CACHE_SIZE = 1000;
+    private final Map<Integer, List<NotificationDTO>> lastKnownNotifications = lastKnownCache();
+    private final Map<Integer, InboxPageDTO> lastKnownInboxes = lastKnownCache();
+    private final Map<Integer, Long> lastKnownUnreadCounts = lastKnownCache();
+
 
     // ------- CREATE --------
     // Create a new user (when user creates an account)
 
     public User addUser(User userToAdd) {
-        return iUserRepository.save(userToAdd);
+        User userSaved = iUserRepository.save(userToAdd);
+        changeVersions.changed(USERS);
+        return userSaved;
     }
 
     // Create a list of users for testing in Postman
     public List<User> addUsers(List<User> usersToAdd) {
-        return iUserRepository.saveAll(usersToAdd);
+        List<User> usersSaved = iUserRepository.saveAll(usersToAdd);
+        changeVersions.changed(USERS);
+        return usersSaved;
     }
 
 
@@ -40,6 +73,11 @@ public class UserService {
         return iUserRepository.findAll();
     }
 
+    // Write all users to out as NDJSON, a chunk at a time, without ever holding them all in memory
+    public long writeAllUsers(OutputStream out) {
+        return ndjsonWriter.write(iUserRepository::streamAllBy, out);
+    }
+
     // Get user by id (if user forgot credentials)
 
     public User getUserById(Integer userId) {
@@ -52,6 +90,8 @@ public class UserService {
     public User updateUserById(Integer userId, User editedUser) {
         // Let's find the user we want to update first
         User existingUser = iUserRepository.findById(userId).orElseThrow(() -> new RuntimeException("User with id " + userId + " does not exist."));
+        // If the client sent the version it read, someone else mustn't have edited the account since (409 otherwise)
+        VersionedUpdate.checkVersion(User.class, userId, editedUser.getVersion(), existingUser.getVersion());
 
         // Then, we update the user info
         existingUser.setUsername(editedUser.getUsername());
@@ -69,7 +109,24 @@ public class UserService {
 
 
         // Save the updated user
-        return iUserRepository.save(existingUser);
+        User userSaved = iUserRepository.save(existingUser);
+        // Posts show their user too
+        changeVersions.changed(USERS, POSTS);
+        return userSaved;
+    }
+
+    // Edit just the account fields the client sent, if the user is still at the version they read (one UPDATE, see VersionedUpdate)
+    // Returns the user's new version
+    public Integer patchUserById(Integer userId, UserPatchDTO userPatch) {
+        Map<String, Object> changes = new LinkedHashMap<>();
+        VersionedUpdate.setIfSent(changes, "username", userPatch.getUsername());
+        VersionedUpdate.setIfSent(changes, "email", userPatch.getEmail());
+        VersionedUpdate.setIfSent(changes, "password", userPatch.getPassword());
+        VersionedUpdate.setIfSent(changes, "profilePictureURL", userPatch.getProfilePictureURL());
+        VersionedUpdate.setIfSent(changes, "userBio", userPatch.getUserBio());
+        int newVersion = versionedUpdate.update(User.class, userId, userPatch.getVersion(), changes);
+        changeVersions.changed(USERS, POSTS);
+        return newVersion;
     }
 
 
@@ -81,6 +138,7 @@ public class UserService {
     public boolean deleteUserById(Integer userId) {
         iUserRepository.findById(userId).orElseThrow(() -> new RuntimeException("User with id " + userId + " does not exist."));
         iUserRepository.deleteById(userId);
+        changeVersions.changed(USERS, POSTS);
         return !iUserRepository.findById(userId).isPresent();
 
     }
@@ -89,13 +147,21 @@ public class UserService {
 
     // ------- MICROSERVICE GET NOTIFICATION FOR USER --------
 
+    // Requests for the same user at the same time (i.e. a few tabs refreshing at once) share one lookup and one call to the microservice
     public List<NotificationDTO> getNotificationsByUserId(Integer userId) {
-        // for error handling in case user doesn't exist
-        User existingUser = iUserRepository.findById(userId).orElseThrow(() -> new RuntimeException("User with id " + userId + " does not exist."));
+        return singleFlight.call("users.notifications", userId, () -> {
+            // for error handling in case user doesn't exist
+            User existingUser = iUserRepository.findById(userId).orElseThrow(() -> new RuntimeException("User with id " + userId + " does not exist."));
+
+            // If the microservice is unavailable, the user sees the notifications we got last time
+            return notificationCircuitBreaker.call(() -> fetchNotificationsByUserId(userId), () -> lastKnownNotifications.get(userId));
+        });
+    }
 
+    private List<NotificationDTO> fetchNotificationsByUserId(Integer userId) {
         // responseEntity is a variable to represent the metadata we get back which include the body and status
 
-        ResponseEntity<NotificationDTO[]> responseEntity = restTemplate.getForEntity("http://localhost:8081/notifications/{userId}",
+        ResponseEntity<NotificationDTO[]> responseEntity = restTemplate.getForEntity("/notifications/{userId}",
                 NotificationDTO[].class,
                 userId);
 
@@ -105,8 +171,11 @@ public class UserService {
         if(responseEntity.getStatusCode().is2xxSuccessful()) {
             NotificationDTO[] listOfNotifications = responseEntity.getBody();
 
-            if(listOfNotifications != null)
-                return Arrays.asList(listOfNotifications);
+            if(listOfNotifications != null) {
+                List<NotificationDTO> notifications = Arrays.asList(listOfNotifications);
+                lastKnownNotifications.put(userId, notifications);
+                return notifications;
+            }
 
         }
 
@@ -114,11 +183,68 @@ public class UserService {
 
     }
 
+    // One page of a user's inbox, newest first, with read/unread state ("before" is the nextBefore from the previous page)
+    public InboxPageDTO getNotificationInbox(Integer userId, Integer before, Integer limit) {
+        // for error handling in case user doesn't exist
+        iUserRepository.findById(userId).orElseThrow(() -> new RuntimeException("User with id " + userId + " does not exist."));
 
+        String inboxUrl = UriComponentsBuilder.fromPath("/notifications/{userId}/inbox")
+                .queryParam("limit", limit)
+                .queryParamIfPresent("before", Optional.ofNullable(before))
+                .buildAndExpand(userId)
+                .toUriString();
+
+        // Only the first page is kept for the fallback, since that's the one the user sees when they open their inbox
+        return notificationCircuitBreaker.call(() -> {
+            InboxPageDTO inboxPage = restTemplate.getForObject(inboxUrl, InboxPageDTO.class);
+            if (before == null && inboxPage != null) {
+                lastKnownInboxes.put(userId, inboxPage);
+            }
+            return inboxPage;
+        }, () -> before == null ? lastKnownInboxes.get(userId) : null);
+    }
 
-
-
+    // How many unread notifications a user has, for the notification bell
+    // We skip the user lookup here on purpose: this is called on every page load, and an unknown user simply has 0 unread.
+    public Long getUnreadNotificationCount(Integer userId) {
+        // If the microservice is unavailable we show the last count we got, or 0 rather than failing the whole page
+        return notificationCircuitBreaker.call(() -> {
+            Long unreadCount = restTemplate.getForObject("/notifications/{userId}/unread-count", Long.class, userId);
+            if (unreadCount != null) {
+                lastKnownUnreadCounts.put(userId, unreadCount);
+            }
+            return unreadCount;
+        }, () -> lastKnownUnreadCounts.getOrDefault(userId, 0L));
     }
 
+    // Mark one of a user's notifications as read; returns false if the user has no such unread notification
+    public boolean markNotificationRead(Integer userId, Integer notificationId) {
+        try {
+            return notificationCircuitBreaker.call(() -> {
+                restTemplate.put("/notifications/{userId}/{notificationId}/read", null, userId, notificationId);
+                return true;
+            });
+        }
+        catch (HttpClientErrorException.NotFound e) {
+            return false;
+        }
+    }
 
+    // Mark all of a user's notifications as read
+    public void markAllNotificationsRead(Integer userId) {
+        notificationCircuitBreaker.call(() -> {
+            restTemplate.put("/notifications/{userId}/read", null, userId);
+            return true;
+        });
+    }
 
+    // A map that only keeps the LAST_KNOWN_CACHE_SIZE most recently used users, so it can't grow with every user we've ever seen
+    private static <V> Map<Integer, V> lastKnownCache() {
+        return Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, V> eldest) {
+                return size() > LAST_KNOWN_CACHE_SIZE;
+            }
+        });
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.springreferallmain.service;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaUpdate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.metamodel.EntityType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Map;
+
+@Service
+public class VersionedUpdate {
+    @PersistenceContext
+    EntityManager entityManager;
+
+
+    // ------- UPDATE --------
+    // Set just these attributes (attribute name -> new value) of one Post, User or Comment, if it is still at the version the client read, in one statement:
+    // UPDATE post SET post_title = ?, version = version + 1 WHERE post_id = ? AND version = ?
+    // Returns the new version. Throws if there is no such row, and ObjectOptimisticLockingFailureException if someone else changed it since that version.
+    @Transactional
+    public <T> int update(Class<T> entityClass, Integer id, Integer version, Map<String, Object> changes) {
+        EntityType<T> entityType = entityManager.getMetamodel().entity(entityClass);
+        String idAttribute = entityType.getId(Integer.class).getName();
+        String versionAttribute = entityType.getVersion(Integer.class).getName();
+
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<T> update = criteriaBuilder.createCriteriaUpdate(entityClass);
+        Root<T> row = update.from(entityClass);
+        changes.forEach(update::set);
+        update.set(row.<Integer>get(versionAttribute), criteriaBuilder.sum(row.<Integer>get(versionAttribute), 1));
+        update.where(criteriaBuilder.equal(row.get(idAttribute), id), criteriaBuilder.equal(row.get(versionAttribute), version));
+
+        if (entityManager.createQuery(update).executeUpdate() == 1) {
+            return version + 1;
+        }
+
+        // Nothing was updated: only now do we look at the row to tell why
+        if (entityManager.find(entityClass, id) == null) {
+            throw new RuntimeException(entityClass.getSimpleName() + " with id " + id + " does not exist.");
+        }
+        throw conflict(entityClass, id, version);
+    }
+
+    // Edits through PUT load the row, copy the client's fields over it and save it. If the client sent the version it read,
+    // the row has to still be at that version (and Hibernate checks it hasn't moved on again between loading and saving).
+    static void checkVersion(Class<?> entityClass, Integer id, Integer versionRead, Integer currentVersion) {
+        if (versionRead != null && !versionRead.equals(currentVersion)) {
+            throw conflict(entityClass, id, versionRead);
+        }
+    }
+
+    private static ObjectOptimisticLockingFailureException conflict(Class<?> entityClass, Integer id, Integer version) {
+        return new ObjectOptimisticLockingFailureException(entityClass, id,
+                entityClass.getSimpleName() + " with id " + id + " was changed by someone else since version " + version + ". Please reload it and try again.", null);
+    }
+
+    // Only the attributes the client sent are changed; the ones it left out (null) stay as they are
+    static void setIfSent(Map<String, Object> changes, String attribute, Object value) {
+        if (value != null) {
+            changes.put(attribute, value);
+        }
+    }
+}
+
+// Edits through PATCH: instead of loading the row, copying every field over it and saving it (a SELECT, then an UPDATE of every column),
+// the edit is one UPDATE of just the columns the client sent, with the version check in its WHERE. That's one round trip to the database,
+// and two edits of the same row at once can't both go through: the second one matches no row (the version moved on) and gets a 409.
+// The UPDATE goes straight to the database, so any copy of the row already loaded in this request is out of date afterwards; the services don't load it first.
@@ -0,0 +1,76 @@
+package com.example.springreferallmain.aop;
+
+import com.example.springreferallmain.dto.MethodLatencyDTO;
+import com.example.springreferallmain.model.User;
+import com.example.springreferallmain.repository.IUserRepository;
+import com.example.springreferallmain.service.AddressService;
+import com.example.springreferallmain.testdata.TestData;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+// Every call is timed here (sample-rate=1), so the numbers are exact. The meters live as long as the Spring context, so each test compares before and after.
+@SpringBootTest(properties = "service-metrics.sample-rate=1")
+public class ServiceMetricsAspectTest {
+    @Autowired
+    AddressService beanAddressService;
+
+    @Autowired
+    ServiceLatencyEndpoint serviceLatencyEndpoint;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @MockBean
+    IUserRepository mockUserRepository;
+
+    private static final String METHOD = "AddressService.getAddressByUserId";
+
+    private final User testUser1 = TestData.makeTestUser1();
+
+    private MethodLatencyDTO latencyOf(String method) {
+        return serviceLatencyEndpoint.serviceLatency().getOrDefault(method, new MethodLatencyDTO());
+    }
+
+
+    // |           TESTING TIMING  | \\
+
+    // Happy Path 😊: each call is counted and timed, and shows up in /actuator/servicelatency and /actuator/metrics
+    @Test
+    public void testServiceCallsAreTimed() {
+        when(mockUserRepository.findById(1)).thenReturn(Optional.of(testUser1));
+        MethodLatencyDTO before = latencyOf(METHOD);
+
+        for (int call = 0; call < 5; call++) {
+            beanAddressService.getAddressByUserId(1);
+        }
+
+        MethodLatencyDTO after = latencyOf(METHOD);
+        assertEquals(before.getCalls() + 5, after.getCalls());
+        assertEquals(before.getErrors(), after.getErrors());
+        assertTrue(after.getSampledCalls() >= 5);
+        assertTrue(after.getP99Ms() > 0);
+        assertTrue(after.getP50Ms() <= after.getP999Ms());
+        assertNotNull(meterRegistry.find("service.method.latency").tag("method", METHOD).timer());
+    }
+
+    // Sad Path 😭: a call that throws is counted as an error, and the exception still reaches the caller
+    @Test
+    public void testServiceErrorsAreCounted() {
+        when(mockUserRepository.findById(2)).thenReturn(Optional.empty());
+        MethodLatencyDTO before = latencyOf(METHOD);
+
+        assertThrows(RuntimeException.class, () -> beanAddressService.getAddressByUserId(2));
+
+        MethodLatencyDTO after = latencyOf(METHOD);
+        assertEquals(before.getCalls() + 1, after.getCalls());
+        assertEquals(before.getErrors() + 1, after.getErrors());
+    }
+}
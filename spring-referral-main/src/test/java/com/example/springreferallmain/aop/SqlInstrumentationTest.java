@@ -0,0 +1,81 @@
+package com.example.springreferallmain.aop;
+
+import com.example.springreferallmain.dto.RequestSqlStatsDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+// These go through the real (H2) DataSource, so the statements counted are the ones Hibernate actually sends.
+// The totals live as long as the Spring context, so each test compares before and after.
+@SpringBootTest(properties = "sql-instrumentation.max-repeated-statement=2")
+@AutoConfigureMockMvc
+public class SqlInstrumentationTest {
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    SqlStatsRecorder sqlStatsRecorder;
+
+    @Autowired
+    SqlStatsEndpoint sqlStatsEndpoint;
+
+    private RequestSqlStatsDTO statsOf(String handler) {
+        return sqlStatsEndpoint.sqlStats().getOrDefault(handler, new RequestSqlStatsDTO());
+    }
+
+
+    // |           TESTING COUNTING  | \\
+
+    // Happy Path 😊: a request's statements are counted under its controller method in /actuator/sqlstats
+    @Test
+    public void testRequestStatementsAreCounted() throws Exception {
+        RequestSqlStatsDTO before = statsOf("TagController.getAllTags");
+
+        mockMvc.perform(get("/tags"));
+
+        RequestSqlStatsDTO after = statsOf("TagController.getAllTags");
+        assertEquals(before.getRequests() + 1, after.getRequests());
+        assertTrue(after.getMaxStatements() >= 1);
+        assertTrue(after.getMaxJdbcMs() > 0);
+        assertEquals(before.getWarnings(), after.getWarnings());
+    }
+
+
+    // |           TESTING WARNINGS  | \\
+
+    // Happy Path 😊: running a statement as many times as allowed is fine
+    @Test
+    public void testRepeatedStatementUnderLimit() {
+        SqlRequestStats stats = new SqlRequestStats();
+        stats.statementExecuted("select * from tag where tag_id=?", 1_000);
+        stats.statementExecuted("select * from tag where tag_id=?", 1_000);
+        stats.statementExecuted("select * from post", 1_000);
+
+        sqlStatsRecorder.record("Test.underLimit", "GET", "/test", stats);
+
+        RequestSqlStatsDTO recorded = statsOf("Test.underLimit");
+        assertEquals(1, recorded.getRequests());
+        assertEquals(3, recorded.getMaxStatements());
+        assertEquals(0, recorded.getWarnings());
+    }
+
+    // Sad Path 😭: the same statement over and over (an N+1) is counted as a warning
+    @Test
+    public void testRepeatedStatementOverLimit() {
+        SqlRequestStats stats = new SqlRequestStats();
+        for (int post = 0; post < 3; post++) {
+            stats.statementExecuted("select * from tag where post_id=?", 1_000);
+        }
+
+        sqlStatsRecorder.record("Test.overLimit", "GET", "/test", stats);
+
+        assertEquals(3, stats.getMostRepeatedCount());
+        assertEquals("select * from tag where post_id=?", stats.getMostRepeatedSql());
+        assertEquals(1, statsOf("Test.overLimit").getWarnings());
+    }
+}
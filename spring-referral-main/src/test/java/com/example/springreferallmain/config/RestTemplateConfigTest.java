@@ -0,0 +1,89 @@
+package com.example.springreferallmain.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.config.Configurable;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.util.Timeout;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.web.client.RestTemplateAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RestTemplateConfigTest {
+
+    // Just RestTemplateConfig and what it needs, with the client settings from application.properties
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(RestTemplateAutoConfiguration.class))
+            .withUserConfiguration(RestTemplateConfig.class)
+            .withBean(MeterRegistry.class, SimpleMeterRegistry::new)
+            .withPropertyValues(
+                    "notification-service.client.max-connections=40",
+                    "notification-service.client.max-connections-per-route=20",
+                    "notification-service.client.connect-timeout=2s",
+                    "notification-service.client.pool-wait-timeout=1s",
+                    "notification-service.client.read-timeout=5s");
+
+
+// |           TESTING CONNECTION POOL  | \\
+
+    // The pool and the client are beans, with the limits and timeouts from the properties 😊
+    @Test
+    public void testPooledClientPass() {
+        contextRunner.run(context -> {
+            PoolingHttpClientConnectionManager connectionManager = context.getBean(PoolingHttpClientConnectionManager.class);
+            assertEquals(40, connectionManager.getMaxTotal());
+            assertEquals(20, connectionManager.getDefaultMaxPerRoute());
+
+            @SuppressWarnings("deprecation")
+            RequestConfig requestConfig = ((Configurable) context.getBean(CloseableHttpClient.class)).getConfig();
+            assertEquals(Timeout.ofSeconds(1), requestConfig.getConnectionRequestTimeout());
+            assertEquals(Timeout.ofSeconds(5), requestConfig.getResponseTimeout());
+
+            // The RestTemplate sends its calls through that client
+            assertInstanceOf(HttpComponentsClientHttpRequestFactory.class, context.getBean(RestTemplate.class).getRequestFactory());
+            assertFalse(context.containsBean("notificationHttp2Client"));
+        });
+    }
+
+    // Closing the application context closes the pool 😊
+    @Test
+    public void testPoolClosedWithContextPass() {
+        PoolingHttpClientConnectionManager[] connectionManager = new PoolingHttpClientConnectionManager[1];
+        contextRunner.run(context -> connectionManager[0] = context.getBean(PoolingHttpClientConnectionManager.class));
+
+        // Verify results: a closed pool won't hand out connections
+        HttpRoute route = new HttpRoute(new HttpHost("localhost", 8081));
+        assertThrows(IllegalStateException.class, () -> connectionManager[0].lease("after-close", route, Timeout.ofSeconds(1), null));
+    }
+
+
+// |           TESTING HTTP/2  | \\
+
+    // With http2=true the JDK HttpClient is the bean, and no pool is made 😊
+    @Test
+    public void testHttp2ClientPass() {
+        contextRunner.withPropertyValues("notification-service.client.http2=true").run(context -> {
+            HttpClient httpClient = context.getBean(HttpClient.class);
+            assertEquals(HttpClient.Version.HTTP_2, httpClient.version());
+            assertEquals(Duration.ofSeconds(2), httpClient.connectTimeout().orElseThrow());
+
+            assertInstanceOf(JdkClientHttpRequestFactory.class, context.getBean(RestTemplate.class).getRequestFactory());
+            assertTrue(context.getBeansOfType(PoolingHttpClientConnectionManager.class).isEmpty());
+            assertTrue(context.getBeansOfType(CloseableHttpClient.class).isEmpty());
+        });
+    }
+
+}
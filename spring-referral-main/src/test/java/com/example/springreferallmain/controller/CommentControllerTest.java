@@ -1,7 +1,9 @@
 package com.example.springreferallmain.controller;
 
+import com.example.springreferallmain.dto.CommentPatchDTO;
 import com.example.springreferallmain.model.Comment;
 import com.example.springreferallmain.service.CommentService;
+import com.example.springreferallmain.service.LikeService;
 import com.example.springreferallmain.service.CommentServiceTest;
 import com.example.springreferallmain.testdata.TestData;
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -12,6 +14,7 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.util.Collections;
@@ -35,6 +38,9 @@ public class CommentControllerTest {
     @MockBean
     private CommentService mockCommentService;
 
+    @MockBean
+    private LikeService mockLikeService;
+
     // ----------- TEST DATA  -----------
     // #DRY - keeping in DRY, variables to represent return from Test Data class
 
@@ -109,28 +115,40 @@ public class CommentControllerTest {
         ObjectMapper objectMapper = new ObjectMapper();
         String commentJson = objectMapper.writeValueAsString(testComments);
 
-        when(mockCommentService.getCommentsByPostId(postId)).thenReturn(testComments);
+        when(mockCommentService.getCommentsByPostId(postId, 0, 20)).thenReturn(testComments);
 
         // Test the controller method and see if expected output and status is returned; provide "parameters" by URL
         mockMvc.perform(get("/comments/posts/{postId}", postId))
                 .andExpect(status().isOk())  // Expecting status code 200
                 .andExpect(content().json(commentJson)); // Response should be the same JSON as request
 
-        // Verify the controller calls the service method
-        verify(mockCommentService, times(1)).getCommentsByPostId(postId);
+        // Verify the controller calls the service method with the default page and size
+        verify(mockCommentService, times(1)).getCommentsByPostId(postId, 0, 20);
     }
     // getCommentsByPostId Sad Path 😭
     @Test
     public void testGetCommentsByPostIdFail() throws Exception {
         // Setup of mock method with parameters
         Integer nonexistentPostId = 100;
-        when(mockCommentService.getCommentsByPostId(nonexistentPostId)).thenReturn(Collections.emptyList());
+        when(mockCommentService.getCommentsByPostId(nonexistentPostId, 0, 20)).thenReturn(Collections.emptyList());
 
         // Test the controller method and see if expected output and status is returned
         mockMvc.perform(get("/address/users/{userId}", nonexistentPostId))
                 .andExpect(status().isNotFound()); // Expecting status not found
     }
 
+    // getCommentsByPostId Sad Path 😭: a page size that's too big
+    @Test
+    public void testGetCommentsByPostIdBadSize() throws Exception {
+        // Test the controller method and see if expected output and status is returned
+        mockMvc.perform(get("/comments/posts/{postId}", 1)
+                        .param("size", "500"))
+                .andExpect(status().isBadRequest())  // Expecting status code 400
+                .andExpect(content().string("Tsk tsk. Please provide a page of 0 or more and a size between 1 and 100."));
+
+        verify(mockCommentService, never()).getCommentsByPostId(any(), any(), any());
+    }
+
 
 // |           TESTING UPDATE  | \\
 
@@ -178,6 +196,36 @@ public void testUpdateCommentForPostPass() throws Exception {
                 .andExpect(content().string("Tsk tsk. Null or empty comment provided")); // Expecting error message
     }
 
+    // Edit just some fields of a comment
+    // patchCommentById Happy Path 😊
+    @Test
+    public void testPatchCommentByIdPass() throws Exception {
+        Integer commentId = 1;
+        CommentPatchDTO commentPatch = new CommentPatchDTO(0, "Fixed a typo", null);
+        when(mockCommentService.patchCommentById(commentId, commentPatch)).thenReturn(1);
+
+        mockMvc.perform(patch("/comments/{commentId}", commentId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"version\":0,\"commentText\":\"Fixed a typo\"}"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"id\":1,\"version\":1}"));
+    }
+
+    // patchCommentById Sad Path 😭: the comment was edited since version 0
+    @Test
+    public void testPatchCommentByIdConflict() throws Exception {
+        Integer commentId = 1;
+        when(mockCommentService.patchCommentById(eq(commentId), any(CommentPatchDTO.class)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Comment.class, commentId, "Comment with id 1 was changed by someone else since version 0. Please reload it and try again.", null));
+
+        mockMvc.perform(patch("/comments/{commentId}", commentId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"version\":0,\"commentText\":\"Fixed a typo\"}"))
+                .andExpect(status().isConflict())  // Expecting status code 409
+                .andExpect(content().string("Comment with id 1 was changed by someone else since version 0. Please reload it and try again."));
+    }
+
+
 // |           TESTING DELETE  | \\
 
 // Delete comment by id
@@ -213,4 +261,29 @@ public void testUpdateCommentForPostPass() throws Exception {
     }
 
 
+// Like and unlike a comment
+
+    // likeComment Happy Path 😊
+    @Test
+    public void testLikeCommentPass () throws Exception {
+        // Test the controller method and see if expected output and status is returned; provide "parameters" by URL
+        mockMvc.perform(post("/comments/{commentId}/likes", 1))
+                .andExpect(status().isAccepted())  // Expecting status code 202, since the like is saved a moment later
+                .andExpect(content().string("Comment liked"));
+
+        // Verify the controller calls the service method
+        verify(mockLikeService, times(1)).likeComment(1);
+    }
+
+    // unlikeComment Happy Path 😊
+    @Test
+    public void testUnlikeCommentPass () throws Exception {
+        // Test the controller method and see if expected output and status is returned; provide "parameters" by URL
+        mockMvc.perform(delete("/comments/{commentId}/likes", 1))
+                .andExpect(status().isAccepted())  // Expecting status code 202, since the unlike is saved a moment later
+                .andExpect(content().string("Comment unliked"));
+
+        // Verify the controller calls the service method
+        verify(mockLikeService, times(1)).unlikeComment(1);
+    }
 }
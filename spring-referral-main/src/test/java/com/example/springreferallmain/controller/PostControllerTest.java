@@ -1,9 +1,16 @@
 package com.example.springreferallmain.controller;
 
 
+import com.example.springreferallmain.dto.BulkImportReportDTO;
+import com.example.springreferallmain.dto.FeedPageDTO;
+import com.example.springreferallmain.dto.PostPatchDTO;
 import com.example.springreferallmain.model.Post;
 import com.example.springreferallmain.service.CommentService;
+import com.example.springreferallmain.service.LikeService;
+import com.example.springreferallmain.service.BulkImportService;
+import com.example.springreferallmain.service.ChangeVersions;
 import com.example.springreferallmain.service.PostService;
+import com.example.springreferallmain.service.PostTagIndex;
 import com.example.springreferallmain.testdata.TestData;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
@@ -11,10 +18,15 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -22,9 +34,11 @@ import java.util.List;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
-@Import(PostController.class)
+@Import({PostController.class, ChangeVersions.class})
 @WebMvcTest(PostControllerTest.class)
 public class PostControllerTest {
     @Autowired
@@ -34,9 +48,18 @@ public class PostControllerTest {
     @MockBean
     private PostService mockPostService;
 
+    @MockBean
+    private BulkImportService mockBulkImportService;
+
     @MockBean
     private CommentService mockCommentService;
 
+    @MockBean
+    private LikeService mockLikeService;
+
+    @Autowired
+    private ChangeVersions changeVersions;
+
     // ----------- TEST DATA  -----------
     // #DRY - keeping in DRY, variables to represent return from Test Data class
 
@@ -139,6 +162,37 @@ public class PostControllerTest {
     }
 
 
+// Bulk import posts
+    // importPosts Happy Path 😊
+    @Test
+    public void testImportPostsPass() throws Exception {
+        // Setup of mock method: one of the two rows is imported, the other is reported
+        BulkImportReportDTO.BatchErrors batchErrors = new BulkImportReportDTO.BatchErrors(1, 1, 2, 1, List.of("Row 2: user with id 100 does not exist"));
+        BulkImportReportDTO report = new BulkImportReportDTO(2, 1, 1, List.of(batchErrors));
+        when(mockBulkImportService.importPosts(any(), eq(BulkImportService.Format.CSV))).thenReturn(report);
+
+        // Test the controller method and see if expected output and status is returned
+        mockMvc.perform(post("/posts/import")
+                        .contentType("text/csv")
+                        .content("userId,postTitle,postContent\n1,Hiring,Java devs\n100,Hiring,Nobody\n"))
+                .andExpect(status().isCreated())  // Expecting status code 201
+                .andExpect(content().json(new ObjectMapper().writeValueAsString(report)));
+    }
+
+    // importPosts Sad Path 😭
+    @Test
+    public void testImportPostsFail() throws Exception {
+        // Setup of mock method: nothing could be imported
+        when(mockBulkImportService.importPosts(any(), eq(BulkImportService.Format.NDJSON))).thenReturn(new BulkImportReportDTO(1, 0, 1, List.of()));
+
+        // Test the controller method and see if expected output and status is returned
+        mockMvc.perform(post("/posts/import")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("{\"postTitle\":\"\"}\n"))
+                .andExpect(status().isBadRequest());  // Expecting status code 400
+    }
+
+
 // |           TESTING RETRIEVE  | \\
 
 // Get all posts (to display on homepage)
@@ -176,6 +230,197 @@ public void testGetAllPostsPass() throws Exception {
 
     }
 
+    // getAllPosts Happy Path 😊: a client that sends back the ETag it got gets a 304 and the service isn't asked again, until a post changes
+    @Test
+    public void testGetAllPostsNotModified() throws Exception {
+        when(mockPostService.getAllPosts()).thenReturn(testPosts);
+
+        String etag = mockMvc.perform(get("/posts"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/posts").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(content().string(""));
+        verify(mockPostService, times(1)).getAllPosts();
+
+        changeVersions.changed(ChangeVersions.Aggregate.POSTS);
+        mockMvc.perform(get("/posts").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+        verify(mockPostService, times(2)).getAllPosts();
+    }
+
+// Stream all posts as NDJSON
+    // streamAllPosts Happy Path 😊
+    @Test
+    public void testStreamAllPostsPass() throws Exception {
+        // Setup of mock method: the service writes two lines to whatever stream it is given
+        when(mockPostService.writeAllPosts(any())).thenAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(0);
+            out.write("{\"postId\":1}\n{\"postId\":2}\n".getBytes(StandardCharsets.UTF_8));
+            return 2L;
+        });
+
+        // Test the controller method: the body is written after the handler returns, so we wait for it
+        MvcResult result = mockMvc.perform(get("/posts").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())  // Expecting status code 200
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string("{\"postId\":1}\n{\"postId\":2}\n"));
+
+        // Verify the NDJSON endpoint streams instead of building the list
+        verify(mockPostService, never()).getAllPosts();
+    }
+
+// Get one page of the homepage feed
+    // getPostFeed Happy Path 😊
+    @Test
+    public void testGetPostFeedPass() throws Exception {
+        // Setup of mock method with "parameters"
+        FeedPageDTO testFeedPage = new FeedPageDTO(testPosts, "nextCursorToken");
+
+        // Convert the feed page to JSON format
+        ObjectMapper objectMapper = new ObjectMapper();
+        String feedJson = objectMapper.writeValueAsString(testFeedPage);
+
+        when(mockPostService.getPostFeed(null, 2)).thenReturn(testFeedPage);
+
+        // Test the controller method and see if expected output and status is returned
+        mockMvc.perform(get("/posts")
+                        .param("limit", "2"))
+                .andExpect(status().isOk())  // Expecting status code 200
+                .andExpect(content().json(feedJson));
+
+        // Verify the controller calls the service method (and not the full table load)
+        verify(mockPostService, times(1)).getPostFeed(null, 2);
+        verify(mockPostService, never()).getAllPosts();
+    }
+
+    // getPostFeed Sad Path 😭
+    @Test
+    public void testGetPostFeedFail() throws Exception {
+        // Test the controller method with a limit of 0 and see if expected output and status is returned
+        mockMvc.perform(get("/posts")
+                        .param("limit", "0"))
+                .andExpect(status().isBadRequest())  // Expecting status code 400
+                .andExpect(content().string("Tsk tsk. The feed limit must be greater than 0."));
+
+        verify(mockPostService, never()).getPostFeed(any(), any());
+    }
+
+    // getPostFeed Sad Path 😭: a tampered cursor is the client's mistake, so it's a 400 rather than a 500
+    @Test
+    public void testGetPostFeedBadCursorFail() throws Exception {
+        when(mockPostService.getPostFeed("not-a-real-cursor", 2)).thenThrow(new IllegalArgumentException("Feed cursor not-a-real-cursor is not valid."));
+
+        mockMvc.perform(get("/posts")
+                        .param("limit", "2")
+                        .param("after", "not-a-real-cursor"))
+                .andExpect(status().isBadRequest())  // Expecting status code 400
+                .andExpect(content().string("Tsk tsk. The feed cursor is not valid. Start again from the first page (without after)."));
+    }
+
+// Full text search over posts
+    // searchPosts Happy Path 😊
+    @Test
+    public void testSearchPostsPass() throws Exception {
+        // Setup of mock method with "parameters"
+        String query = "jobs";
+        // Convert the Post object to JSON format
+        ObjectMapper objectMapper = new ObjectMapper();
+        String postJson = objectMapper.writeValueAsString(testPosts);
+
+        when(mockPostService.searchPosts(query, 0, 20)).thenReturn(testPosts);
+
+        // Test the controller method and see if expected output and status is returned
+        mockMvc.perform(get("/posts/search")
+                        .param("q", query))
+                .andExpect(status().isOk())  // Expecting status code 200
+                .andExpect(content().json(postJson));
+
+        // Verify the controller calls the service method with the default page and size
+        verify(mockPostService, times(1)).searchPosts(query, 0, 20);
+    }
+
+    // searchPosts Sad Path 😭
+    @Test
+    public void testSearchPostsFail() throws Exception {
+        // Test the controller method with a blank query and see if expected output and status is returned
+        mockMvc.perform(get("/posts/search")
+                        .param("q", " "))
+                .andExpect(status().isBadRequest());  // Expecting status code 400
+
+        verify(mockPostService, never()).searchPosts(any(), any(), any());
+    }
+
+// Trending posts
+    // getTrendingPosts Happy Path 😊
+    @Test
+    public void testGetTrendingPostsPass() throws Exception {
+        // Setup of mock method with "parameters"
+        // Convert the Post object to JSON format
+        ObjectMapper objectMapper = new ObjectMapper();
+        String postJson = objectMapper.writeValueAsString(testPosts);
+
+        when(mockPostService.getTrendingPosts(20)).thenReturn(testPosts);
+
+        // Test the controller method and see if expected output and status is returned
+        mockMvc.perform(get("/posts/trending"))
+                .andExpect(status().isOk())  // Expecting status code 200
+                .andExpect(content().json(postJson));
+
+        // Verify the controller calls the service method with the default limit
+        verify(mockPostService, times(1)).getTrendingPosts(20);
+    }
+
+    // getTrendingPosts Sad Path 😭
+    @Test
+    public void testGetTrendingPostsFail() throws Exception {
+        // Test the controller method with a limit that's too big and see if expected output and status is returned
+        mockMvc.perform(get("/posts/trending")
+                        .param("limit", "500"))
+                .andExpect(status().isBadRequest())  // Expecting status code 400
+                .andExpect(content().string("Tsk tsk. The limit must be between 1 and 100."));
+
+        verify(mockPostService, never()).getTrendingPosts(any());
+    }
+
+// Get posts filtered by several tags
+    // getPostsByTags Happy Path 😊
+    @Test
+    public void testGetPostsByTagsPass() throws Exception {
+        // Setup of mock method with "parameters"
+        // Convert the Post object to JSON format
+        ObjectMapper objectMapper = new ObjectMapper();
+        String postJson = objectMapper.writeValueAsString(testPosts);
+
+        when(mockPostService.getPostsByTags(List.of(1, 2), PostTagIndex.Mode.OR, 0, 20)).thenReturn(testPosts);
+
+        // Test the controller method and see if expected output and status is returned
+        mockMvc.perform(get("/posts")
+                        .param("tags", "1,2")
+                        .param("mode", "or"))
+                .andExpect(status().isOk())  // Expecting status code 200
+                .andExpect(content().json(postJson));
+
+        verify(mockPostService, times(1)).getPostsByTags(List.of(1, 2), PostTagIndex.Mode.OR, 0, 20);
+    }
+
+    // getPostsByTags Sad Path 😭
+    @Test
+    public void testGetPostsByTagsFail() throws Exception {
+        // Test the controller method with a mode that doesn't exist and see if expected output and status is returned
+        mockMvc.perform(get("/posts")
+                        .param("tags", "1,2")
+                        .param("mode", "xor"))
+                .andExpect(status().isBadRequest());  // Expecting status code 400
+
+        verify(mockPostService, never()).getPostsByTags(any(), any(), any(), any());
+    }
+
 // Get all posts matching a keyword search, i.e. so users can see matching refer-all posts
     // getPostsByDescriptionContaining Happy Path 😊
 
@@ -257,6 +502,66 @@ public void testUpdatePostByIdPass() throws Exception {
                 .andExpect(content().string("Please make sure you provide a post title and content before submitting.")); // Expecting error message
     }
 
+    // updatePostById Sad Path 😭: the version the client read comes in the body, and an outdated one is a 409
+    @Test
+    public void testUpdatePostByIdConflict() throws Exception {
+        // Setup of mock method with parameters
+        Integer postId = 1;
+        when(mockPostService.updatePostById(eq(postId), argThat(post -> Integer.valueOf(3).equals(post.getVersion()))))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Post.class, postId, "Post with id 1 was changed by someone else since version 3. Please reload it and try again.", null));
+
+        // Test the controller method and see if expected output and status is returned
+        mockMvc.perform(put("/posts/{postId}", postId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"version\": 3, \"postTitle\": \"New title\", \"postContent\": \"New content\"}"))
+                .andExpect(status().isConflict())  // Expecting status code 409
+                .andExpect(content().string("Post with id 1 was changed by someone else since version 3. Please reload it and try again."));
+    }
+
+
+    // Edit just some fields of a post
+    // patchPostById Happy Path 😊
+    @Test
+    public void testPatchPostByIdPass() throws Exception {
+        Integer postId = 1;
+        PostPatchDTO postPatch = new PostPatchDTO(3, "New title", null, null);
+        when(mockPostService.patchPostById(postId, postPatch)).thenReturn(4);
+
+        mockMvc.perform(patch("/posts/{postId}", postId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"version\":3,\"postTitle\":\"New title\"}"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"id\":1,\"version\":4}"));
+
+        verify(mockPostService, times(1)).patchPostById(postId, postPatch);
+    }
+
+    // patchPostById Sad Path 😭: someone else edited the post since version 3
+    @Test
+    public void testPatchPostByIdConflict() throws Exception {
+        Integer postId = 1;
+        when(mockPostService.patchPostById(eq(postId), any(PostPatchDTO.class)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Post.class, postId, "Post with id 1 was changed by someone else since version 3. Please reload it and try again.", null));
+
+        mockMvc.perform(patch("/posts/{postId}", postId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"version\":3,\"postTitle\":\"New title\"}"))
+                .andExpect(status().isConflict())  // Expecting status code 409
+                .andExpect(content().string("Post with id 1 was changed by someone else since version 3. Please reload it and try again."));
+    }
+
+    // patchPostById Sad Path 😭: no version, so we can't tell whether the client saw the latest post
+    @Test
+    public void testPatchPostByIdWithoutVersionFail() throws Exception {
+        mockMvc.perform(patch("/posts/{postId}", 1)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"postTitle\":\"New title\"}"))
+                .andExpect(status().isBadRequest())  // Expecting status code 400
+                .andExpect(content().string("Tsk tsk. Please send the version of the post you are editing."));
+
+        verify(mockPostService, never()).patchPostById(any(), any());
+    }
+
 
 // |           TESTING DELETE  | \\
 // Delete post by id
@@ -291,4 +596,29 @@ public void testUpdatePostByIdPass() throws Exception {
     }
 
 
+// Like and unlike a post
+
+    // likePost Happy Path 😊
+    @Test
+    public void testLikePostPass () throws Exception {
+        // Test the controller method and see if expected output and status is returned; provide "parameters" by URL
+        mockMvc.perform(post("/posts/{postId}/likes", 1))
+                .andExpect(status().isAccepted())  // Expecting status code 202, since the like is saved a moment later
+                .andExpect(content().string("Post liked"));
+
+        // Verify the controller calls the service method
+        verify(mockLikeService, times(1)).likePost(1);
+    }
+
+    // unlikePost Happy Path 😊
+    @Test
+    public void testUnlikePostPass () throws Exception {
+        // Test the controller method and see if expected output and status is returned; provide "parameters" by URL
+        mockMvc.perform(delete("/posts/{postId}/likes", 1))
+                .andExpect(status().isAccepted())  // Expecting status code 202, since the unlike is saved a moment later
+                .andExpect(content().string("Post unliked"));
+
+        // Verify the controller calls the service method
+        verify(mockLikeService, times(1)).unlikePost(1);
+    }
 }
@@ -2,6 +2,8 @@ package com.example.springreferallmain.controller;
 
 import com.example.springreferallmain.model.Post;
 import com.example.springreferallmain.model.Tag;
+import com.example.springreferallmain.service.BulkImportService;
+import com.example.springreferallmain.service.ChangeVersions;
 import com.example.springreferallmain.service.TagService;
 import com.example.springreferallmain.testdata.TestData;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -10,9 +12,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -20,9 +26,10 @@ import java.util.List;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
-@Import(TagController.class)
+@Import({TagController.class, ChangeVersions.class})
 @WebMvcTest(TagControllerTest.class)
 public class TagControllerTest {
     @Autowired
@@ -32,6 +39,12 @@ public class TagControllerTest {
     @MockBean
     private TagService mockTagService;
 
+    @MockBean
+    private BulkImportService mockBulkImportService;
+
+    @Autowired
+    private ChangeVersions changeVersions;
+
     // ----------- TEST DATA  -----------
     // #DRY - keeping in DRY, variables to represent return from Test Data class
     private Tag testTag = TestData.makeTestTag1();
@@ -208,6 +221,88 @@ public class TagControllerTest {
                 .andExpect(status().isNotFound()); // Expecting status not found
     }
 
+    // getAllTags Happy Path 😊: the tag list stays a 304 when only posts change, and is sent again once a tag changes
+    @Test
+    public void testGetAllTagsNotModified() throws Exception {
+        when(mockTagService.getAllTags()).thenReturn(testTags);
+
+        String etag = mockMvc.perform(get("/tags"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        changeVersions.changed(ChangeVersions.Aggregate.POSTS);
+        mockMvc.perform(get("/tags").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+        verify(mockTagService, times(1)).getAllTags();
+
+        changeVersions.changed(ChangeVersions.Aggregate.TAGS);
+        mockMvc.perform(get("/tags").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+        verify(mockTagService, times(2)).getAllTags();
+    }
+
+// Stream all tags as NDJSON
+    // streamAllTags Happy Path 😊
+    @Test
+    public void testStreamAllTagsPass() throws Exception {
+        // Setup of mock method: the service writes two lines to whatever stream it is given
+        when(mockTagService.writeAllTags(any())).thenAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(0);
+            out.write("{\"tagId\":1}\n{\"tagId\":2}\n".getBytes(StandardCharsets.UTF_8));
+            return 2L;
+        });
+
+        // Test the controller method: the body is written after the handler returns, so we wait for it
+        MvcResult result = mockMvc.perform(get("/tags").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())  // Expecting status code 200
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string("{\"tagId\":1}\n{\"tagId\":2}\n"));
+
+        // Verify the NDJSON endpoint streams instead of building the list
+        verify(mockTagService, never()).getAllTags();
+    }
+
+    // streamAllTags Happy Path 😊: no tags is an empty body, not a 404 (every line is one tag, so there is nothing to send)
+    @Test
+    public void testStreamAllTagsEmpty() throws Exception {
+        when(mockTagService.writeAllTags(any())).thenReturn(0L);
+
+        MvcResult result = mockMvc.perform(get("/tags").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())  // Expecting status code 200
+                .andExpect(content().string(""));
+    }
+
+    // streamAllTags Happy Path 😊: the export isn't written again while the client's copy is current, and is once a tag changes
+    @Test
+    public void testStreamAllTagsNotModified() throws Exception {
+        when(mockTagService.writeAllTags(any())).thenReturn(0L);
+
+        MvcResult result = mockMvc.perform(get("/tags").accept(MediaType.APPLICATION_NDJSON))
+                .andReturn();
+        String etag = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // Not the same ETag as the JSON list, since it isn't the same bytes
+        mockMvc.perform(get("/tags").accept(MediaType.APPLICATION_NDJSON).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+        verify(mockTagService, times(1)).writeAllTags(any());
+
+        changeVersions.changed(ChangeVersions.Aggregate.TAGS);
+        result = mockMvc.perform(get("/tags").accept(MediaType.APPLICATION_NDJSON).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+        verify(mockTagService, times(2)).writeAllTags(any());
+    }
+
 
     // Get posts tied to a tag (to display posts with a specific tag)
 
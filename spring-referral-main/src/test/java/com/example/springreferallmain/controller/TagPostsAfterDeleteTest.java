@@ -0,0 +1,71 @@
+package com.example.springreferallmain.controller;
+
+import com.example.springreferallmain.model.Address;
+import com.example.springreferallmain.model.Post;
+import com.example.springreferallmain.model.Tag;
+import com.example.springreferallmain.model.User;
+import com.example.springreferallmain.repository.IPostRepository;
+import com.example.springreferallmain.repository.ITagRepository;
+import com.example.springreferallmain.repository.IUserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Unlike the other controller tests, this goes through the real services, the (H2) database and the tag caches,
+// since what we are testing is that deleting a post takes it out of the cached posts of its tags.
+@SpringBootTest(properties = "spring.cache.type=caffeine")
+@AutoConfigureMockMvc
+public class TagPostsAfterDeleteTest {
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    IUserRepository iUserRepository;
+
+    @Autowired
+    ITagRepository iTagRepository;
+
+    @Autowired
+    IPostRepository iPostRepository;
+
+
+// |           TESTING DELETE  | \\
+
+    // deletePostById Happy Path 😊: the deleted post is gone from GET /tags/{tagId}/posts, even after that list was cached
+    @Test
+    public void testDeletedPostLeavesTagPosts() throws Exception {
+        // Setup: a tag with two posts
+        Address address = new Address(null, "123 Main St", "City", "State", "12345", "USA", null);
+        User user = iUserRepository.save(new User(null, "tagPostsUser", "tagposts@example.com", "password", null, null, null, null, address, null));
+        Tag tag = iTagRepository.save(new Tag(null, "deletetest", "Posts that get deleted", new ArrayList<>()));
+        Post keptPost = iPostRepository.save(new Post(null, "Kept", "Still here", 0, 0, null, null, user, new ArrayList<>(), new ArrayList<>(), null));
+        Post deletedPost = iPostRepository.save(new Post(null, "Deleted", "Going away", 0, 0, null, null, user, new ArrayList<>(), new ArrayList<>(), null));
+        mockMvc.perform(post("/tags/{tagId}/posts/{postId}", tag.getTagId(), keptPost.getPostId()));
+        mockMvc.perform(post("/tags/{tagId}/posts/{postId}", tag.getTagId(), deletedPost.getPostId()));
+
+        // Read the tag's posts once, so they are cached
+        mockMvc.perform(get("/tags/{tagId}/posts", tag.getTagId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2));
+
+        mockMvc.perform(delete("/posts/{postId}", deletedPost.getPostId()))
+                .andExpect(status().isOk());
+
+        // Verify results
+        mockMvc.perform(get("/tags/{tagId}/posts", tag.getTagId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].postId").value(keptPost.getPostId()));
+    }
+
+}
@@ -1,6 +1,11 @@
 package com.example.springreferallmain.controller;
 
+import com.example.springreferallmain.dto.InboxPageDTO;
+import com.example.springreferallmain.dto.NotificationDTO;
+import com.example.springreferallmain.dto.UserPatchDTO;
 import com.example.springreferallmain.model.User;
+import com.example.springreferallmain.service.BulkImportService;
+import com.example.springreferallmain.service.ChangeVersions;
 import com.example.springreferallmain.service.UserService;
 import com.example.springreferallmain.testdata.TestData;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -9,9 +14,14 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.client.ResourceAccessException;
 
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -19,9 +29,11 @@ import java.util.List;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
-@Import(UserController.class)
+@Import({UserController.class, ChangeVersions.class})
 @WebMvcTest(UserControllerTest.class)
 public class UserControllerTest {
     @Autowired
@@ -31,6 +43,12 @@ public class UserControllerTest {
     @MockBean
     private UserService mockUserService;
 
+    @MockBean
+    private BulkImportService mockBulkImportService;
+
+    @Autowired
+    private ChangeVersions changeVersions;
+
     // ----------- TEST DATA  -----------
     // #DRY - keeping in DRY, variables to represent return from Test Data class
     private User testUser = TestData.makeTestUser1();
@@ -195,6 +213,88 @@ public class UserControllerTest {
                 .andExpect(status().isNotFound()); // Expecting status not found
     }
 
+    // getUserById Happy Path 😊: the profile isn't loaded again while the client's copy is current, and is once a user changes
+    @Test
+    public void testGetUserByIdNotModified() throws Exception {
+        Integer userId = 1;
+        when(mockUserService.getUserById(userId)).thenReturn(testUser);
+
+        String etag = mockMvc.perform(get("/users/{userId}", userId))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/users/{userId}", userId).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+        verify(mockUserService, times(1)).getUserById(userId);
+
+        changeVersions.changed(ChangeVersions.Aggregate.USERS);
+        mockMvc.perform(get("/users/{userId}", userId).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+        verify(mockUserService, times(2)).getUserById(userId);
+    }
+
+// Stream all users as NDJSON
+    // streamAllUsers Happy Path 😊
+    @Test
+    public void testStreamAllUsersPass() throws Exception {
+        // Setup of mock method: the service writes two lines to whatever stream it is given
+        when(mockUserService.writeAllUsers(any())).thenAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(0);
+            out.write("{\"userId\":1}\n{\"userId\":2}\n".getBytes(StandardCharsets.UTF_8));
+            return 2L;
+        });
+
+        // Test the controller method: the body is written after the handler returns, so we wait for it
+        MvcResult result = mockMvc.perform(get("/users").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())  // Expecting status code 200
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string("{\"userId\":1}\n{\"userId\":2}\n"));
+
+        // Verify the NDJSON endpoint streams instead of building the list
+        verify(mockUserService, never()).getAllUsers();
+    }
+
+    // streamAllUsers Happy Path 😊: no users is an empty body, not a 404 (every line is one user, so there is nothing to send)
+    @Test
+    public void testStreamAllUsersEmpty() throws Exception {
+        when(mockUserService.writeAllUsers(any())).thenReturn(0L);
+
+        MvcResult result = mockMvc.perform(get("/users").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())  // Expecting status code 200
+                .andExpect(content().string(""));
+    }
+
+    // streamAllUsers Happy Path 😊: the export isn't written again while the client's copy is current, and is once a user changes
+    @Test
+    public void testStreamAllUsersNotModified() throws Exception {
+        when(mockUserService.writeAllUsers(any())).thenReturn(0L);
+
+        MvcResult result = mockMvc.perform(get("/users").accept(MediaType.APPLICATION_NDJSON))
+                .andReturn();
+        String etag = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // Not the same ETag as the JSON list, since it isn't the same bytes
+        mockMvc.perform(get("/users").accept(MediaType.APPLICATION_NDJSON).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+        verify(mockUserService, times(1)).writeAllUsers(any());
+
+        changeVersions.changed(ChangeVersions.Aggregate.USERS);
+        result = mockMvc.perform(get("/users").accept(MediaType.APPLICATION_NDJSON).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+        verify(mockUserService, times(2)).writeAllUsers(any());
+    }
+
 
 // |           TESTING UPDATE  | \\
 
@@ -240,6 +340,34 @@ public class UserControllerTest {
                 .andExpect(content().string("Tsk tsk. Null user provided. Please make sure to fill in the required fields when updating account."));// Expecting status code 400
     }
 
+    // Edit just some account fields
+    // patchUserById Happy Path 😊
+    @Test
+    public void testPatchUserByIdPass() throws Exception {
+        Integer userId = 1;
+        UserPatchDTO userPatch = new UserPatchDTO(2, null, null, null, null, "Now hiring!");
+        when(mockUserService.patchUserById(userId, userPatch)).thenReturn(3);
+
+        mockMvc.perform(patch("/users/{userId}", userId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"version\":2,\"userBio\":\"Now hiring!\"}"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"id\":1,\"version\":3}"));
+    }
+
+    // patchUserById Sad Path 😭: the password can be changed, but not to nothing
+    @Test
+    public void testPatchUserByIdFail() throws Exception {
+        mockMvc.perform(patch("/users/{userId}", 1)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"version\":2,\"password\":\"\"}"))
+                .andExpect(status().isBadRequest())  // Expecting status code 400
+                .andExpect(content().string("Tsk tsk. Username, email and password can't be empty."));
+
+        verify(mockUserService, never()).patchUserById(any(), any());
+    }
+
+
     // |           TESTING DELETE  | \\
 // Delete user by id
 // deleteUserById Happy Path 😊
@@ -272,4 +400,101 @@ public class UserControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+
+
+    // |           TESTING NOTIFICATIONS  | \\
+// Notification inbox, unread count and mark as read, passed on to the Notification microservice
+// getNotificationInbox Happy Path 😊
+    @Test
+    public void testGetNotificationInboxPass() throws Exception {
+        // Setup of mock method with "parameters"
+        Integer userId = 1;
+        NotificationDTO notification = new NotificationDTO(7, 1, userId, 3, "Nice post", "testUser", null, false);
+        when(mockUserService.getNotificationInbox(userId, 10, 5)).thenReturn(new InboxPageDTO(List.of(notification), 7, 4));
+
+        //Test the controller method and see if expected output and status is returned; provide "parameters" by URL
+        mockMvc.perform(get("/users/{userId}/notifications/inbox", userId).param("before", "10").param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.notifications[0].notificationId").value(7))
+                .andExpect(jsonPath("$.nextBefore").value(7))
+                .andExpect(jsonPath("$.unreadCount").value(4));
+
+        //Verify the controller calls the service method
+        verify(mockUserService, times(1)).getNotificationInbox(userId, 10, 5);
+    }
+
+    // getNotificationInbox Sad Path 😭
+    @Test
+    public void testGetNotificationInboxFail() throws Exception {
+        //Test the controller method with a limit of 0
+        mockMvc.perform(get("/users/{userId}/notifications/inbox", 1).param("limit", "0"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Tsk tsk. The inbox limit must be greater than 0."));
+
+        verify(mockUserService, never()).getNotificationInbox(any(), any(), any());
+    }
+
+    // getNotificationInbox Sad Path 😭: the Notification microservice is down
+    @Test
+    public void testGetNotificationInboxUnavailableFail() throws Exception {
+        // Setup of mock method; the circuit breaker throws when the microservice can't be reached
+        when(mockUserService.getNotificationInbox(1, null, 20)).thenThrow(new ResourceAccessException("Notification service is unavailable, please try again later."));
+
+        //Test the controller method and see if expected output and status is returned
+        mockMvc.perform(get("/users/{userId}/notifications/inbox", 1))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(content().string("Notification service is unavailable, please try again later."));
+    }
+
+    // getUnreadNotificationCount Happy Path 😊
+    @Test
+    public void testGetUnreadNotificationCountPass() throws Exception {
+        // Setup of mock method with "parameters"
+        when(mockUserService.getUnreadNotificationCount(1)).thenReturn(3L);
+
+        //Test the controller method and see if expected output and status is returned; provide "parameters" by URL
+        mockMvc.perform(get("/users/{userId}/notifications/unread-count", 1))
+                .andExpect(status().isOk())
+                .andExpect(content().string("3"));
+    }
+
+    // markNotificationRead Happy Path 😊
+    @Test
+    public void testMarkNotificationReadPass() throws Exception {
+        // Setup of mock method with "parameters"
+        when(mockUserService.markNotificationRead(1, 7)).thenReturn(true);
+
+        //Test the controller method and see if expected output and status is returned; provide "parameters" by URL
+        mockMvc.perform(put("/users/{userId}/notifications/{notificationId}/read", 1, 7))
+                .andExpect(status().isOk())
+                .andExpect(content().string("Notification marked as read"));
+
+        //Verify the controller calls the service method
+        verify(mockUserService, times(1)).markNotificationRead(1, 7);
+    }
+
+    // markNotificationRead Sad Path 😭: already read, or not this user's
+    @Test
+    public void testMarkNotificationReadFail() throws Exception {
+        // Setup of mock method with "parameters"
+        when(mockUserService.markNotificationRead(1, 100)).thenReturn(false);
+
+        //Test the controller method and see if expected output and status is returned; provide "parameters" by URL
+        mockMvc.perform(put("/users/{userId}/notifications/{notificationId}/read", 1, 100))
+                .andExpect(status().isNotFound())
+                .andExpect(content().string("Unread notification not found"));
+    }
+
+    // markAllNotificationsRead Happy Path 😊
+    @Test
+    public void testMarkAllNotificationsReadPass() throws Exception {
+        //Test the controller method and see if expected output and status is returned; provide "parameters" by URL
+        mockMvc.perform(put("/users/{userId}/notifications/read", 1))
+                .andExpect(status().isOk())
+                .andExpect(content().string("All notifications marked as read"));
+
+        //Verify the controller calls the service method
+        verify(mockUserService, times(1)).markAllNotificationsRead(1);
+    }
+
 }
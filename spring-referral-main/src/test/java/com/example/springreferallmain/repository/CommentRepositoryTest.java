@@ -0,0 +1,84 @@
+package com.example.springreferallmain.repository;
+
+import com.example.springreferallmain.model.*;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+public class CommentRepositoryTest {
+
+    @Autowired
+    ICommentRepository iCommentRepository;
+
+    @Autowired
+    TestEntityManager testEntityManager;
+
+    private Statistics statistics;
+
+    private Post testPost;
+
+    // ----------- TEST DATA  -----------
+    // One post with a thread of 25 comments ("Comment 0" is the oldest), and another post with a comment of its own
+
+    @BeforeEach
+    public void setUp() {
+        Address address = new Address(null, "123 Main St", "City", "State", "12345", "USA", null);
+        User user = testEntityManager.persist(new User(null, "user", "user@example.com", "password", null, null, null, null, address, null));
+        testPost = testEntityManager.persist(new Post(null, "Post", "Looking for jobs", 0, 25, null, null, user, new ArrayList<>(), new ArrayList<>(), null));
+        Post otherPost = testEntityManager.persist(new Post(null, "Other post", "Hiring", 0, 1, null, null, user, new ArrayList<>(), new ArrayList<>(), null));
+
+        for (int commentNumber = 0; commentNumber < 25; commentNumber++) {
+            testEntityManager.persist(new Comment(null, "Comment " + commentNumber, 0, "commenter", null, testPost, null));
+        }
+        testEntityManager.persist(new Comment(null, "Not in this thread", 0, "commenter", null, otherPost, null));
+
+        // Start every test with an empty persistence context and a fresh statement count, just like a new request
+        testEntityManager.flush();
+        testEntityManager.clear();
+        statistics = testEntityManager.getEntityManager().getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    private List<Comment> page(int page, int size) {
+        return iCommentRepository.findCommentsByPostPostIdOrderByTimeCommentCreatedAscCommentIdAsc(testPost.getPostId(), PageRequest.of(page, size));
+    }
+
+
+    // |           TESTING RETRIEVE  | \\
+
+    // Pages of a thread come back oldest first, and together cover the whole thread once
+    @Test
+    public void testCommentPagesInOrder() {
+        List<Comment> firstPage = page(0, 10);
+        List<Comment> lastPage = page(2, 10);
+
+        assertEquals(10, firstPage.size());
+        assertEquals("Comment 0", firstPage.get(0).getCommentText());
+        assertEquals("Comment 9", firstPage.get(9).getCommentText());
+        assertEquals(List.of("Comment 20", "Comment 21", "Comment 22", "Comment 23", "Comment 24"),
+                lastPage.stream().map(Comment::getCommentText).toList());
+        assertTrue(page(3, 10).isEmpty());
+    }
+
+    // A page is 1 statement: the comments' post isn't loaded along with them
+    @Test
+    public void testCommentPageStatementCount() {
+        List<Comment> result = page(0, 20);
+        result.forEach(comment -> comment.getCommentText());
+
+        assertEquals(20, result.size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+}
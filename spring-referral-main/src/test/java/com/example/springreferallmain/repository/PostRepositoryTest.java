@@ -0,0 +1,159 @@
+package com.example.springreferallmain.repository;
+
+import com.example.springreferallmain.model.*;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+public class PostRepositoryTest {
+
+    @Autowired
+    IPostRepository iPostRepository;
+
+    @Autowired
+    TestEntityManager testEntityManager;
+
+    private Statistics statistics;
+
+    private Tag testTag;
+
+    // ----------- TEST DATA  -----------
+    // Unlike the service tests, these hit a real (in-memory) database, since what we are testing is the SQL Hibernate sends.
+    // We save 5 users with 6 posts each, and every post gets 2 tags and 2 comments.
+
+    @BeforeEach
+    public void setUp() {
+        testTag = testEntityManager.persist(new Tag(null, "jobs", "Job referrals", new ArrayList<>()));
+        Tag otherTag = testEntityManager.persist(new Tag(null, "remote", "Remote roles", new ArrayList<>()));
+
+        for (int userNumber = 0; userNumber < 5; userNumber++) {
+            Address address = new Address(null, "123 Main St", "City", "State", "12345", "USA", null);
+            User user = testEntityManager.persist(new User(null, "user" + userNumber, "user" + userNumber + "@example.com", "password", null, null, null, null, address, null));
+
+            for (int postNumber = 0; postNumber < 6; postNumber++) {
+                Post post = new Post(null, "Post " + postNumber, "Looking for jobs", 0, 2, null, null, user, new ArrayList<>(), new ArrayList<>(List.of(testTag, otherTag)), null);
+                testEntityManager.persist(post);
+                testEntityManager.persist(new Comment(null, "Nice!", 0, "commenter", null, post, null));
+                testEntityManager.persist(new Comment(null, "DM me", 0, "commenter2", null, post, null));
+            }
+        }
+
+        // Start every test with an empty persistence context and a fresh statement count, just like a new request
+        testEntityManager.flush();
+        testEntityManager.clear();
+        statistics = testEntityManager.getEntityManager().getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    // Touch everything Jackson would serialize for a post, so lazy loads happen just like they would in a response
+    // (comments aren't sent with a post any more, only its commentCount)
+    private void serializeGraph(List<Post> posts) {
+        for (Post post : posts) {
+            post.getUser().getAddress().getCity();
+            post.getCommentCount();
+            post.getTags().size();
+        }
+    }
+
+
+    // |           TESTING RETRIEVE  | \\
+
+    // Get all posts costs the same 2 statements (posts + users, tags) as a single post would
+    @Test
+    public void testFindAllStatementCount() {
+        List<Post> result = iPostRepository.findAll();
+        serializeGraph(result);
+
+        assertEquals(30, result.size());
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    // A feed page costs 2 statements no matter how big the page is
+    @Test
+    public void testFeedPageStatementCount() {
+        List<Post> smallPage = iPostRepository.findFeedFirstPage(PageRequest.of(0, 2));
+        serializeGraph(smallPage);
+        long smallPageStatements = statistics.getPrepareStatementCount();
+
+        testEntityManager.clear();
+        statistics.clear();
+
+        List<Post> bigPage = iPostRepository.findFeedFirstPage(PageRequest.of(0, 25));
+        serializeGraph(bigPage);
+
+        assertEquals(25, bigPage.size());
+        assertEquals(2, smallPageStatements);
+        assertEquals(smallPageStatements, statistics.getPrepareStatementCount());
+    }
+
+    // Keyword search goes through the same read path
+    @Test
+    public void testKeywordSearchStatementCount() {
+        List<Post> result = iPostRepository.findPostsByPostContentContaining("jobs").orElseThrow();
+        serializeGraph(result);
+
+        assertEquals(30, result.size());
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    // Posts for a tag go through the same read path
+    @Test
+    public void testPostsByTagStatementCount() {
+        List<Post> result = iPostRepository.findDistinctPostsByTagsTagId(testTag.getTagId());
+        serializeGraph(result);
+
+        assertEquals(30, result.size());
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    // The tag page: the post ids come from one query (and then from TagCatalogCache), and the posts themselves still take 2
+    @Test
+    public void testPostIdsByTagStatementCount() {
+        List<Integer> postIds = iPostRepository.findPostIdsByTagId(testTag.getTagId());
+        assertEquals(30, postIds.size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+
+        statistics.clear();
+        List<Post> result = iPostRepository.findPostsByPostIdIn(postIds);
+        serializeGraph(result);
+
+        assertEquals(30, result.size());
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    // PostTagIndex is built from two queries that return no entities, however many posts there are
+    @Test
+    public void testPostTagIndexQueriesStatementCount() {
+        List<Integer> postIds = iPostRepository.findAllPostIds();
+        List<Object[]> postTagPairs = iPostRepository.findAllPostTagPairs();
+
+        assertEquals(30, postIds.size());
+        assertEquals(60, postTagPairs.size());
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    // The comment count is changed in one UPDATE, without loading the post or its comments
+    @Test
+    public void testAddToCommentCount() {
+        Integer postId = iPostRepository.findAllPostIds().get(0);
+        statistics.clear();
+
+        assertEquals(1, iPostRepository.addToCommentCount(postId, 1));
+        assertEquals(1, statistics.getPrepareStatementCount());
+
+        testEntityManager.clear();
+        assertEquals(3, iPostRepository.findById(postId).orElseThrow().getCommentCount());
+    }
+
+}
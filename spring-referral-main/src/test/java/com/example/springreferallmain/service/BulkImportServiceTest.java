@@ -0,0 +1,204 @@
+package com.example.springreferallmain.service;
+
+import com.example.springreferallmain.dto.BulkImportReportDTO;
+import com.example.springreferallmain.model.Address;
+import com.example.springreferallmain.model.Post;
+import com.example.springreferallmain.model.Tag;
+import com.example.springreferallmain.model.User;
+import com.example.springreferallmain.repository.IPostRepository;
+import com.example.springreferallmain.repository.ITagRepository;
+import com.example.springreferallmain.repository.IUserRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.persistence.EntityManagerFactory;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+// Runs against a real (in-memory) database, since what we are testing is what gets saved and how many statements it takes.
+// Each batch commits its own transaction, so the tests don't run inside one (and clean up after themselves instead).
+@DataJpaTest(properties = {"spring.jpa.properties.hibernate.generate_statistics=true", "bulk-import.batch-size=100"})
+@Import({BulkImportService.class, ChangeVersions.class})
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class BulkImportServiceTest {
+
+    @Autowired
+    BulkImportService beanBulkImportService;
+
+    @Autowired
+    IUserRepository iUserRepository;
+
+    @Autowired
+    IPostRepository iPostRepository;
+
+    @Autowired
+    ITagRepository iTagRepository;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @MockBean
+    PostSearchIndex mockPostSearchIndex;
+
+    @MockBean
+    PostTagIndex mockPostTagIndex;
+
+    @MockBean
+    TrendingPosts mockTrendingPosts;
+
+    @MockBean
+    TagCatalogCache mockTagCatalogCache;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    public void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        iPostRepository.deleteAll();
+        iUserRepository.deleteAll();
+        iTagRepository.deleteAll();
+    }
+
+    private static InputStream body(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+
+// |           TESTING IMPORT  | \\
+
+    // importUsers Happy Path 😊: 250 users (3 batches of 100) from NDJSON, each with their address
+    @Test
+    public void testImportUsersNdjson() throws Exception {
+        StringBuilder ndjson = new StringBuilder();
+        for (int userNumber = 0; userNumber < 250; userNumber++) {
+            ndjson.append("{\"username\":\"user").append(userNumber).append("\",\"email\":\"user").append(userNumber)
+                    .append("@example.com\",\"password\":\"password\",\"city\":\"Austin\"}\n");
+        }
+
+        BulkImportReportDTO report = beanBulkImportService.importUsers(body(ndjson.toString()), BulkImportService.Format.NDJSON);
+
+        assertEquals(250, report.getRowsRead());
+        assertEquals(250, report.getRowsImported());
+        assertEquals(0, report.getRowsRejected());
+        assertTrue(report.getBatchesWithErrors().isEmpty());
+        assertEquals(250, iUserRepository.count());
+        assertEquals("Austin", iUserRepository.findAll().get(0).getAddress().getCity());
+    }
+
+    // importUsers: the INSERTs go in JDBC batches, and ids come 500 at a time, so 250 users + 250 addresses is a handful of statements, not 1000+
+    @Test
+    public void testImportUsersStatementCount() throws Exception {
+        StringBuilder ndjson = new StringBuilder();
+        for (int userNumber = 0; userNumber < 250; userNumber++) {
+            ndjson.append("{\"username\":\"u\",\"email\":\"e\",\"password\":\"p\"}\n");
+        }
+
+        beanBulkImportService.importUsers(body(ndjson.toString()), BulkImportService.Format.NDJSON);
+
+        assertEquals(500, statistics.getEntityInsertCount());
+        assertTrue(statistics.getPrepareStatementCount() <= 12, "statements: " + statistics.getPrepareStatementCount());
+    }
+
+    // importUsers Sad Path 😭: bad rows are left out and reported, and the rest are still imported
+    @Test
+    public void testImportUsersRejectsBadRows() throws Exception {
+        String ndjson = "{\"username\":\"ok\",\"email\":\"ok@example.com\",\"password\":\"p\"}\n"
+                + "{\"username\":\"no email\",\"password\":\"p\"}\n"
+                + "this is not json\n";
+
+        BulkImportReportDTO report = beanBulkImportService.importUsers(body(ndjson), BulkImportService.Format.NDJSON);
+
+        assertEquals(3, report.getRowsRead());
+        assertEquals(1, report.getRowsImported());
+        assertEquals(2, report.getRowsRejected());
+        List<String> errors = report.getBatchesWithErrors().get(0).getErrors();
+        assertEquals(2, errors.size());
+        assertTrue(errors.get(0).startsWith("Row 3 could not be read"));
+        assertEquals("Row 2: username, email and password are required", errors.get(1));
+        assertEquals(1, iUserRepository.count());
+    }
+
+    // importUsers Sad Path 😭: if the database refuses a batch, only that batch is rolled back
+    @Test
+    public void testImportUsersRollsBackFailedBatchOnly() throws Exception {
+        StringBuilder ndjson = new StringBuilder();
+        for (int userNumber = 0; userNumber < 200; userNumber++) {
+            // Row 150 (in the 2nd batch) is longer than the username column allows
+            String username = userNumber == 149 ? "x".repeat(300) : "user" + userNumber;
+            ndjson.append("{\"username\":\"").append(username).append("\",\"email\":\"e\",\"password\":\"p\"}\n");
+        }
+
+        BulkImportReportDTO report = beanBulkImportService.importUsers(body(ndjson.toString()), BulkImportService.Format.NDJSON);
+
+        assertEquals(100, report.getRowsImported());
+        assertEquals(100, report.getRowsRejected());
+        BulkImportReportDTO.BatchErrors failedBatch = report.getBatchesWithErrors().get(0);
+        assertEquals(2, failedBatch.getBatchNumber());
+        assertEquals(101, failedBatch.getFirstRow());
+        assertEquals(200, failedBatch.getLastRow());
+        assertTrue(failedBatch.getErrors().get(0).startsWith("Batch 2 was not saved"));
+        assertEquals(100, iUserRepository.count());
+    }
+
+    // importTags Happy Path 😊: CSV, with the columns in any order
+    @Test
+    public void testImportTagsCsv() throws Exception {
+        String csv = "tagDescription,tagName\nJob referrals,jobs\nRemote roles,remote\n,missing name\n";
+
+        BulkImportReportDTO report = beanBulkImportService.importTags(body(csv), BulkImportService.Format.CSV);
+
+        assertEquals(2, report.getRowsImported());
+        assertEquals(List.of("Row 3: tagName and tagDescription are required"), report.getBatchesWithErrors().get(0).getErrors());
+        assertEquals(List.of("jobs", "remote"), iTagRepository.findAll().stream().map(Tag::getTagName).sorted().toList());
+        verify(mockTagCatalogCache, times(1)).evictCatalog();
+    }
+
+    // importPosts Happy Path 😊: CSV with tag ids separated by semicolons; the posts are added to the search/tag indexes and trending
+    @Test
+    public void testImportPostsCsv() throws Exception {
+        User user = iUserRepository.save(new User(null, "user", "user@example.com", "password", null, null, null, null, new Address(), null));
+        Tag jobs = iTagRepository.save(new Tag(null, "jobs", "Job referrals", new ArrayList<>()));
+        Tag remote = iTagRepository.save(new Tag(null, "remote", "Remote roles", new ArrayList<>()));
+        String csv = "userId,postTitle,postContent,tagIds\n"
+                + user.getUserId() + ",Hiring,Java devs," + jobs.getTagId() + ";" + remote.getTagId() + "\n"
+                + user.getUserId() + ",No tags,Just a post,\n"
+                + "999999,Hiring,Nobody,\n"
+                + user.getUserId() + ",Hiring,Bad tag,999999\n";
+
+        BulkImportReportDTO report = beanBulkImportService.importPosts(body(csv), BulkImportService.Format.CSV);
+
+        assertEquals(2, report.getRowsImported());
+        assertEquals(List.of("Row 3: user with id 999999 does not exist", "Row 4: tag with id 999999 does not exist"),
+                report.getBatchesWithErrors().get(0).getErrors());
+        List<Integer> postIds = iPostRepository.findAllPostIds();
+        assertEquals(2, postIds.size());
+        assertEquals(2, iPostRepository.findAllPostTagPairs().size());
+        verify(mockPostSearchIndex, times(2)).indexPost(any(Post.class));
+        verify(mockPostTagIndex, times(2)).indexPost(any(Post.class));
+        verify(mockTrendingPosts, times(2)).postCreated(any(), any());
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.springreferallmain.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static com.example.springreferallmain.service.ChangeVersions.Aggregate.POSTS;
+import static com.example.springreferallmain.service.ChangeVersions.Aggregate.TAGS;
+import static com.example.springreferallmain.service.ChangeVersions.Aggregate.USERS;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+public class ChangeVersionsTest {
+    @Autowired
+    ChangeVersions beanChangeVersions;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+
+// |           TESTING ETAGS  | \\
+
+    // etag Happy Path 😊: the ETag stays the same until its own aggregate changes
+    @Test
+    public void testEtagChangesOnlyWithItsAggregate() {
+        String postsEtag = beanChangeVersions.etag(POSTS);
+        String tagsEtag = beanChangeVersions.etag(TAGS);
+        assertEquals(postsEtag, beanChangeVersions.etag(POSTS));
+        // A strong ETag, and the NDJSON version of the same read has its own
+        assertTrue(postsEtag.startsWith("\"") && postsEtag.endsWith("\""));
+        assertNotEquals(postsEtag, beanChangeVersions.etag(POSTS, "ndjson"));
+
+        beanChangeVersions.changed(POSTS, USERS);
+        assertNotEquals(postsEtag, beanChangeVersions.etag(POSTS));
+        assertEquals(tagsEtag, beanChangeVersions.etag(TAGS));
+    }
+
+    // changed Happy Path 😊: inside a transaction the ETag only changes once it commits
+    @Test
+    public void testChangeInTransactionWaitsForCommit() {
+        String before = beanChangeVersions.etag(TAGS);
+        transactionTemplate.executeWithoutResult(status -> {
+            beanChangeVersions.changed(TAGS);
+            assertEquals(before, beanChangeVersions.etag(TAGS));
+        });
+        assertNotEquals(before, beanChangeVersions.etag(TAGS));
+    }
+
+    // changed Sad Path 😭: a transaction that rolls back changed nothing, so the ETag stays the same
+    @Test
+    public void testRolledBackChangeKeepsEtag() {
+        String before = beanChangeVersions.etag(USERS);
+        transactionTemplate.executeWithoutResult(status -> {
+            beanChangeVersions.changed(USERS);
+            status.setRollbackOnly();
+        });
+        assertEquals(before, beanChangeVersions.etag(USERS));
+    }
+}
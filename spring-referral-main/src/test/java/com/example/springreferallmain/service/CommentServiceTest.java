@@ -1,16 +1,20 @@
 package com.example.springreferallmain.service;
 
 import com.example.springreferallmain.model.Comment;
+import com.example.springreferallmain.model.NotificationOutbox;
 import com.example.springreferallmain.model.Post;
 import com.example.springreferallmain.model.Tag;
 import com.example.springreferallmain.model.User;
 import com.example.springreferallmain.repository.ICommentRepository;
+import com.example.springreferallmain.repository.INotificationOutboxRepository;
 import com.example.springreferallmain.repository.IPostRepository;
 import com.example.springreferallmain.testdata.TestData;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.client.RestTemplate;
 
@@ -37,6 +41,12 @@ public class CommentServiceTest {
     @MockBean
     RestTemplate restTemplate;
 
+    @MockBean
+    INotificationOutboxRepository mockNotificationOutboxRepository;
+
+    @Autowired
+    TrendingPosts beanTrendingPosts;
+
 
     // ----------- TEST DATA  -----------
     // #DRY - keeping in DRY, variables to represent return from Test Data class
@@ -80,6 +90,13 @@ public class CommentServiceTest {
         assertEquals(testComment.getPost(), result.getPost());
 
         verify(mockPostRepository, times(1)).findById(testPostId);
+
+        // The notification is queued in the outbox instead of being sent to the microservice during the request
+        verify(mockNotificationOutboxRepository, times(1)).save(any(NotificationOutbox.class));
+        verifyNoInteractions(restTemplate);
+
+        // The post's comment count goes up in the database
+        verify(mockPostRepository, times(1)).addToCommentCount(testPostId, 1);
     }
 
     // addCommentToPost Sad Path 😭
@@ -94,12 +111,38 @@ public class CommentServiceTest {
 
         //Verify result
         assertThrows(RuntimeException.class, () -> beanCommentService.addCommentToAPost(nonExistentPostId, testComment));
+        verify(mockNotificationOutboxRepository, never()).save(any());
+        verify(mockPostRepository, never()).addToCommentCount(any(), anyInt());
+
+    }
 
+    // addCommentToPost Sad Path 😭: a comment that rolls back doesn't make its post trend
+    @Test
+    public void testAddCommentToAPostRollbackFail() {
+        // Setup of mock method; the notification can't be queued, so the whole comment rolls back
+        Integer rolledBackPostId = 77;
+        Integer savedPostId = 78;
+        testPost.setComments(new ArrayList<>(testPost.getComments()));
+        when(mockPostRepository.findById(anyInt())).thenReturn(Optional.of(testPost));
+        when(mockCommentRepository.save(testComment)).thenReturn(testComment);
+        when(mockNotificationOutboxRepository.save(any(NotificationOutbox.class))).thenThrow(new RuntimeException("Connection lost"));
+
+        // Test the service method
+        assertThrows(RuntimeException.class, () -> beanCommentService.addCommentToAPost(rolledBackPostId, testComment));
+
+        // The same comment on another post, this time saved
+        reset(mockNotificationOutboxRepository);
+        beanCommentService.addCommentToAPost(savedPostId, testComment);
+
+        // Verify results
+        List<Integer> trending = beanTrendingPosts.getTrendingPostIds(100);
+        assertFalse(trending.contains(rolledBackPostId));
+        assertTrue(trending.contains(savedPostId));
     }
 
 
 // |           TESTING RETRIEVE  | \\
-// Get comments tied to a post (to display comments under a post for user)
+// Get comments tied to a post, a page at a time (to display comments under a post for user)
 
     // getCommentsByPostId Happy Path 😊
     @Test
@@ -107,16 +150,29 @@ public class CommentServiceTest {
         // Setup of mock method with "parameters"
         Integer postId = 1;
 
-        when(mockCommentRepository.findCommentByPostPostId(postId)).thenReturn(Optional.ofNullable(testComments));
+        when(mockCommentRepository.findCommentsByPostPostIdOrderByTimeCommentCreatedAscCommentIdAsc(postId, PageRequest.of(0, 20))).thenReturn(testComments);
 
         // Test the service method
-        List<Comment> result = beanCommentService.getCommentsByPostId(postId);
+        List<Comment> result = beanCommentService.getCommentsByPostId(postId, 0, 20);
 
-        // Verify results
+        // Verify results (a page with comments on it means the post exists, so we don't check)
         assertNotNull(result);
         assertEquals(testComments, result);
 
-        verify(mockCommentRepository, times(1)).findCommentByPostPostId(postId);
+        verify(mockCommentRepository, times(1)).findCommentsByPostPostIdOrderByTimeCommentCreatedAscCommentIdAsc(postId, PageRequest.of(0, 20));
+        verify(mockPostRepository, never()).existsById(any());
+    }
+
+    // getCommentsByPostId: past the end of a thread is just an empty page
+    @Test
+    public void testGetCommentsByPostIdPastLastPage() {
+        // Setup of mock method with "parameters"
+        Integer postId = 1;
+        when(mockCommentRepository.findCommentsByPostPostIdOrderByTimeCommentCreatedAscCommentIdAsc(postId, PageRequest.of(5, 20))).thenReturn(List.of());
+        when(mockPostRepository.existsById(postId)).thenReturn(true);
+
+        // Verify results (service method is called here as well)
+        assertTrue(beanCommentService.getCommentsByPostId(postId, 5, 20).isEmpty());
     }
 
     // getCommentsByPostId Sad Path 😭
@@ -124,10 +180,11 @@ public class CommentServiceTest {
     public void testGetCommentsByPostIdFail() {
         // Setup of mock method with "parameters"
         Integer nonexistentPostId = 1;
-        when(mockCommentRepository.findCommentByPostPostId(nonexistentPostId)).thenReturn(Optional.empty());
+        when(mockCommentRepository.findCommentsByPostPostIdOrderByTimeCommentCreatedAscCommentIdAsc(nonexistentPostId, PageRequest.of(0, 20))).thenReturn(List.of());
+        when(mockPostRepository.existsById(nonexistentPostId)).thenReturn(false);
 
         // Verify results (service method is called here as well)
-        assertThrows(RuntimeException.class, () -> beanCommentService.getCommentsByPostId(nonexistentPostId));
+        assertThrows(RuntimeException.class, () -> beanCommentService.getCommentsByPostId(nonexistentPostId, 0, 20));
     }
 
 
@@ -148,19 +205,23 @@ public void testUpdateCommentForPostPass() {
     updatedTestComment.setNumberLikesOnComment(10);
     updatedTestComment.setCommentedByUsername("testUser");
 
-    when(mockCommentRepository.save(updatedTestComment)).thenReturn(updatedTestComment);
+    // The repository hands back whatever the service saved
+    when(mockCommentRepository.save(any(Comment.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
     // Test the service method
     Comment result = beanCommentService.updateCommentForPost(postId, commentId,updatedTestComment);
 
     // Verify results to prove it actually updated
     assertNotNull(result);
-    assertEquals(updatedTestComment, result);
+    assertEquals("UpdatedText", result.getCommentText());
+    assertEquals("testUser", result.getCommentedByUsername());
+    // Likes only change through LikeService, so the edit leaves them alone
+    assertEquals(0, result.getNumberLikesOnComment());
 
     // Verify the calls to repository were made
     verify(mockCommentRepository, times(1)).findById(commentId);
     verify(mockPostRepository, times(1)).findById(postId);
-    verify(mockCommentRepository, times(1)).save(updatedTestComment);
+    verify(mockCommentRepository, times(1)).save(result);
 }
 
     // updateCommentForPost Sad Path 😭
@@ -178,6 +239,25 @@ public void testUpdateCommentForPostPass() {
 
     }
 
+    // updateCommentForPost Sad Path 😭: the client read version 1, but the comment has been edited since, so nothing is saved
+    @Test
+    public void testUpdateCommentForPostConflict() {
+        // Setup of mock method with "parameters"
+        Integer postId = 1;
+        Integer commentId = 1;
+        testComment.setVersion(2);
+        when(mockCommentRepository.findById(commentId)).thenReturn(Optional.ofNullable(testComment));
+        when(mockPostRepository.findById(postId)).thenReturn(Optional.ofNullable(testPost));
+
+        Comment editedComment = new Comment();
+        editedComment.setCommentText("UpdatedText");
+        editedComment.setVersion(1);
+
+        // Verify results (and service method is called here)
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> beanCommentService.updateCommentForPost(postId, commentId, editedComment));
+        verify(mockCommentRepository, never()).save(any(Comment.class));
+    }
+
 
 // |           TESTING DELETE  | \\
 
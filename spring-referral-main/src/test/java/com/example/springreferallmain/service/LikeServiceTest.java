@@ -0,0 +1,197 @@
+package com.example.springreferallmain.service;
+
+import com.example.springreferallmain.repository.ICommentRepository;
+import com.example.springreferallmain.repository.IPostRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+public class LikeServiceTest {
+    @Autowired
+    LikeService beanLikeService;
+
+    @Autowired
+    TrendingPosts beanTrendingPosts;
+
+    @MockBean
+    IPostRepository mockPostRepository;
+
+    @MockBean
+    ICommentRepository mockCommentRepository;
+
+    @MockBean
+    JdbcTemplate mockJdbcTemplate;
+
+    // Start every test with nothing waiting to be written
+    @BeforeEach
+    public void setUp() {
+        beanLikeService.flushLikes();
+        reset(mockJdbcTemplate);
+    }
+
+    // The {delta, id} rows sent in the batch UPDATE for the given SQL
+    @SuppressWarnings("unchecked")
+    private List<Object[]> flushedChanges(String sql) {
+        ArgumentCaptor<List<Object[]>> changes = ArgumentCaptor.forClass(List.class);
+        verify(mockJdbcTemplate).batchUpdate(eq(sql), changes.capture());
+        return changes.getValue();
+    }
+
+
+// |           TESTING LIKE / UNLIKE  | \\
+
+    // likePost Happy Path 😊; 3 likes and 1 unlike go to the database as one +2
+    @Test
+    public void testLikePostPass() {
+        // Setup of mock method with "parameters"
+        when(mockPostRepository.existsById(1)).thenReturn(true);
+
+        // Test the service method
+        beanLikeService.likePost(1);
+        beanLikeService.likePost(1);
+        beanLikeService.likePost(1);
+        beanLikeService.unlikePost(1);
+        int result = beanLikeService.flushLikes();
+
+        // Verify results
+        assertEquals(1, result);
+        List<Object[]> postChanges = flushedChanges(LikeService.ADD_POST_LIKES_SQL);
+        assertEquals(1, postChanges.size());
+        assertArrayEquals(new Object[]{2L, 1}, postChanges.get(0));
+    }
+
+    // likePost Sad Path 😭
+    @Test
+    public void testLikePostFail() {
+        // Setup of mock method with "parameters"
+        when(mockPostRepository.existsById(100)).thenReturn(false);
+
+        // Verify results (service method is called here as well); nothing is waiting to be written
+        assertThrows(RuntimeException.class, () -> beanLikeService.likePost(100));
+        assertEquals(0, beanLikeService.flushLikes());
+    }
+
+    // likeComment Happy Path 😊
+    @Test
+    public void testLikeCommentPass() {
+        // Setup of mock method with "parameters"
+        when(mockCommentRepository.existsById(1)).thenReturn(true);
+
+        // Test the service method
+        beanLikeService.likeComment(1);
+        beanLikeService.flushLikes();
+
+        // Verify results
+        List<Object[]> commentChanges = flushedChanges(LikeService.ADD_COMMENT_LIKES_SQL);
+        assertArrayEquals(new Object[]{1L, 1}, commentChanges.get(0));
+    }
+
+    // likeComment Sad Path 😭
+    @Test
+    public void testLikeCommentFail() {
+        // Setup of mock method with "parameters"
+        when(mockCommentRepository.existsById(100)).thenReturn(false);
+
+        // Verify results (service method is called here as well)
+        assertThrows(RuntimeException.class, () -> beanLikeService.likeComment(100));
+    }
+
+
+// |           TESTING FLUSH  | \\
+
+    // flushLikes with many threads liking the same post at once: every like is counted
+    @Test
+    public void testFlushLikesConcurrentLikes() throws InterruptedException {
+        // Setup of mock method with "parameters"
+        when(mockPostRepository.existsById(1)).thenReturn(true);
+
+        // Test the service method: 8 threads, 1000 likes each, flushing while they are still liking
+        ExecutorService likers = Executors.newFixedThreadPool(8);
+        for (int thread = 0; thread < 8; thread++) {
+            likers.execute(() -> {
+                for (int like = 0; like < 1000; like++) {
+                    beanLikeService.likePost(1);
+                }
+            });
+        }
+        beanLikeService.flushLikes();
+        likers.shutdown();
+        assertTrue(likers.awaitTermination(10, TimeUnit.SECONDS));
+        beanLikeService.flushLikes();
+
+        // Verify results: the deltas from both flushes add up to exactly 8000
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Object[]>> changes = ArgumentCaptor.forClass(List.class);
+        verify(mockJdbcTemplate, atLeastOnce()).batchUpdate(eq(LikeService.ADD_POST_LIKES_SQL), changes.capture());
+        long totalLikes = 0;
+        for (List<Object[]> flush : changes.getAllValues()) {
+            for (Object[] change : flush) {
+                totalLikes += (Long) change[0];
+            }
+        }
+        assertEquals(8000, totalLikes);
+    }
+
+    // flushLikes Sad Path 😭; the database is down, so the likes are kept and written on the next run
+    @Test
+    public void testFlushLikesFail() {
+        // Setup of mock method with "parameters"
+        when(mockPostRepository.existsById(1)).thenReturn(true);
+        when(mockJdbcTemplate.batchUpdate(eq(LikeService.ADD_POST_LIKES_SQL), anyList())).thenThrow(new QueryTimeoutException("Database is down"));
+
+        // Test the service method
+        beanLikeService.likePost(1);
+        int result = beanLikeService.flushLikes();
+
+        // Verify results
+        assertEquals(0, result);
+
+        // The database is back
+        reset(mockJdbcTemplate);
+        beanLikeService.flushLikes();
+        List<Object[]> postChanges = flushedChanges(LikeService.ADD_POST_LIKES_SQL);
+        assertArrayEquals(new Object[]{1L, 1}, new ArrayList<>(postChanges).get(0));
+    }
+
+
+// |           TESTING TRENDING  | \\
+
+    // Likes reach the trending posts when they are flushed, not when they happen, and only once they are saved
+    @Test
+    public void testLikesTrendAfterFlush() {
+        // Setup of mock method with "parameters"; nothing trending yet (the mock repositories have no posts)
+        beanTrendingPosts.rebuild();
+        when(mockPostRepository.existsById(7)).thenReturn(true);
+        when(mockJdbcTemplate.batchUpdate(eq(LikeService.ADD_POST_LIKES_SQL), anyList())).thenThrow(new QueryTimeoutException("Database is down"));
+
+        // Test the service method
+        beanLikeService.likePost(7);
+        beanLikeService.likePost(7);
+        assertEquals(List.of(), beanTrendingPosts.getTrendingPostIds(20));
+
+        // The write failed, so the likes aren't counted yet
+        beanLikeService.flushLikes();
+        assertEquals(List.of(), beanTrendingPosts.getTrendingPostIds(20));
+
+        // Verify results: the database is back
+        reset(mockJdbcTemplate);
+        beanLikeService.flushLikes();
+        assertEquals(List.of(7), beanTrendingPosts.getTrendingPostIds(20));
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.springreferallmain.service;
+
+import com.example.springreferallmain.model.*;
+import com.example.springreferallmain.repository.IPostRepository;
+import com.example.springreferallmain.repository.ITagRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Like PostRepositoryTest, this runs against a real (in-memory) database, since what we are testing is how rows are read and written
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import(NdjsonWriter.class)
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+public class NdjsonWriterTest {
+
+    @Autowired
+    NdjsonWriter ndjsonWriter;
+
+    @Autowired
+    IPostRepository iPostRepository;
+
+    @Autowired
+    ITagRepository iTagRepository;
+
+    @Autowired
+    TestEntityManager testEntityManager;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    private Statistics statistics;
+
+    // ----------- TEST DATA  -----------
+    // 250 posts (so 3 chunks, the last one partly full) by one user, each with 2 tags
+
+    @BeforeEach
+    public void setUp() {
+        Tag jobs = testEntityManager.persist(new Tag(null, "jobs", "Job referrals", new ArrayList<>()));
+        Tag remote = testEntityManager.persist(new Tag(null, "remote", "Remote roles", new ArrayList<>()));
+        Address address = new Address(null, "123 Main St", "City", "State", "12345", "USA", null);
+        User user = testEntityManager.persist(new User(null, "user", "user@example.com", "password", null, null, null, null, address, null));
+        for (int postNumber = 0; postNumber < 250; postNumber++) {
+            testEntityManager.persist(new Post(null, "Post " + postNumber, "Looking for jobs", 0, 0, null, null, user, new ArrayList<>(), new ArrayList<>(List.of(jobs, remote)), null));
+        }
+
+        testEntityManager.flush();
+        testEntityManager.clear();
+        statistics = testEntityManager.getEntityManager().getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    private List<JsonNode> readLines(ByteArrayOutputStream out) throws Exception {
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            lines.add(objectMapper.readTree(line));
+        }
+        return lines;
+    }
+
+
+    // |           TESTING WRITE  | \\
+
+    // Every post is written once, in id order, as one JSON object per line, with its user and tags
+    @Test
+    public void testWriteAllPosts() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long written = ndjsonWriter.write(iPostRepository::streamAllBy, out);
+
+        List<JsonNode> lines = readLines(out);
+        assertEquals(250, written);
+        assertEquals(250, lines.size());
+        assertEquals("Post 0", lines.get(0).get("postTitle").asText());
+        assertEquals("Post 249", lines.get(249).get("postTitle").asText());
+        assertEquals("user", lines.get(0).get("user").get("username").asText());
+        assertEquals(2, lines.get(249).get("tags").size());
+        assertFalse(lines.get(0).has("comments"));
+    }
+
+    // The posts come from one query, and their tags from one query per chunk of 100 (not one per post)
+    @Test
+    public void testWriteAllPostsStatementCount() {
+        ndjsonWriter.write(iPostRepository::streamAllBy, new ByteArrayOutputStream());
+
+        assertEquals(1 + 3, statistics.getPrepareStatementCount());
+    }
+
+    // Nothing to write is just an empty body
+    @Test
+    public void testWriteNothing() {
+        iPostRepository.deleteAll();
+        testEntityManager.flush();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertEquals(0, ndjsonWriter.write(iPostRepository::streamAllBy, out));
+        assertEquals(0, out.size());
+        assertEquals(2, ndjsonWriter.write(iTagRepository::streamAllBy, new ByteArrayOutputStream()));
+    }
+}
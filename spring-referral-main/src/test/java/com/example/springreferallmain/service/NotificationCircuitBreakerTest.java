@@ -0,0 +1,152 @@
+package com.example.springreferallmain.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "notification-service.circuit-breaker.failure-threshold=3",
+        "notification-service.circuit-breaker.open-duration=10s",
+        "notification-service.bulkhead.max-concurrent-calls=1"})
+public class NotificationCircuitBreakerTest {
+    @Autowired
+    NotificationCircuitBreaker beanNotificationCircuitBreaker;
+
+    @MockBean
+    RestTemplate restTemplate;
+
+    // ----------- TEST DATA  -----------
+    // A clock we move by hand, and calls that count how often they actually ran
+
+    private final AtomicLong now = new AtomicLong();
+    private final AtomicInteger callsMade = new AtomicInteger();
+
+    private final Supplier<String> failingCall = () -> {
+        callsMade.incrementAndGet();
+        throw new ResourceAccessException("Connection refused");
+    };
+
+    private final Supplier<String> workingCall = () -> {
+        callsMade.incrementAndGet();
+        return "notifications";
+    };
+
+    @BeforeEach
+    public void setUp() {
+        beanNotificationCircuitBreaker.reset();
+        beanNotificationCircuitBreaker.setClock(now::get);
+    }
+
+
+// |           TESTING CIRCUIT BREAKER  | \\
+
+    // call Happy Path 😊
+    @Test
+    public void testCallPass() {
+        // Test the service method
+        String result = beanNotificationCircuitBreaker.call(workingCall, () -> "last known");
+
+        // Verify results
+        assertEquals("notifications", result);
+        assertEquals(NotificationCircuitBreaker.State.CLOSED, beanNotificationCircuitBreaker.getState());
+    }
+
+    // call Sad Path 😭; after 3 failures in a row we stop calling the microservice and use the fallback
+    @Test
+    public void testCallOpensCircuit() {
+        // Test the service method
+        for (int i = 0; i < 3; i++) {
+            assertEquals("last known", beanNotificationCircuitBreaker.call(failingCall, () -> "last known"));
+        }
+        String result = beanNotificationCircuitBreaker.call(workingCall, () -> "last known");
+
+        // Verify results: the 4th call never reached the microservice
+        assertEquals("last known", result);
+        assertEquals(3, callsMade.get());
+        assertEquals(NotificationCircuitBreaker.State.OPEN, beanNotificationCircuitBreaker.getState());
+    }
+
+    // call Sad Path 😭; with no fallback the caller gets the same error as if the microservice couldn't be reached
+    @Test
+    public void testCallWithoutFallbackFail() {
+        // Verify results (service method is called here as well)
+        assertThrows(ResourceAccessException.class, () -> beanNotificationCircuitBreaker.call(failingCall));
+    }
+
+    // call Half Open; once the circuit has been open for a while, one trial call goes through, and it closes the circuit if it works
+    @Test
+    public void testCallClosesAfterTrialCallPass() {
+        // Setup: open the circuit
+        for (int i = 0; i < 3; i++) {
+            beanNotificationCircuitBreaker.call(failingCall, () -> "last known");
+        }
+
+        // Test the service method after the circuit has been open for 10 seconds
+        now.addAndGet(Duration.ofSeconds(10).toNanos());
+        String result = beanNotificationCircuitBreaker.call(workingCall, () -> "last known");
+
+        // Verify results
+        assertEquals("notifications", result);
+        assertEquals(NotificationCircuitBreaker.State.CLOSED, beanNotificationCircuitBreaker.getState());
+    }
+
+    // call Half Open; if the trial call fails too, the circuit opens again straight away
+    @Test
+    public void testCallReopensAfterTrialCallFail() {
+        // Setup: open the circuit
+        for (int i = 0; i < 3; i++) {
+            beanNotificationCircuitBreaker.call(failingCall, () -> "last known");
+        }
+
+        // Test the service method after the circuit has been open for 10 seconds
+        now.addAndGet(Duration.ofSeconds(10).toNanos());
+        beanNotificationCircuitBreaker.call(failingCall, () -> "last known");
+
+        // Verify results
+        assertEquals(4, callsMade.get());
+        assertEquals(NotificationCircuitBreaker.State.OPEN, beanNotificationCircuitBreaker.getState());
+    }
+
+    // call 4xx; a 404 means the microservice is working, so it is thrown to the caller and doesn't count as a failure
+    @Test
+    public void testCallClientErrorIsNotAFailure() {
+        // Test the service method
+        for (int i = 0; i < 3; i++) {
+            assertThrows(HttpClientErrorException.class, () -> beanNotificationCircuitBreaker.call(() -> {
+                throw HttpClientErrorException.create(HttpStatus.NOT_FOUND, "Not Found", null, null, null);
+            }, () -> "last known"));
+        }
+
+        // Verify results
+        assertEquals(NotificationCircuitBreaker.State.CLOSED, beanNotificationCircuitBreaker.getState());
+    }
+
+
+// |           TESTING BULKHEAD  | \\
+
+    // call Bulkhead Full; only 1 call at a time is allowed in this test, so a second call made while the first is waiting gets the fallback
+    @Test
+    public void testCallBulkheadFull() {
+        // Test the service method
+        String result = beanNotificationCircuitBreaker.call(
+                () -> beanNotificationCircuitBreaker.call(workingCall, () -> "last known"),
+                () -> "outer fallback");
+
+        // Verify results: the inner call never ran
+        assertEquals("last known", result);
+        assertEquals(0, callsMade.get());
+    }
+}
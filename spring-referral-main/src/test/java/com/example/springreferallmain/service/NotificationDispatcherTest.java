@@ -0,0 +1,164 @@
+package com.example.springreferallmain.service;
+
+import com.example.springreferallmain.dto.NotificationDTO;
+import com.example.springreferallmain.model.NotificationOutbox;
+import com.example.springreferallmain.repository.INotificationOutboxRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatcher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+public class NotificationDispatcherTest {
+    @Autowired
+    NotificationDispatcher beanNotificationDispatcher;
+
+    @MockBean
+    INotificationOutboxRepository mockNotificationOutboxRepository;
+
+    @MockBean
+    RestTemplate restTemplate;
+
+    // ----------- TEST DATA  -----------
+    // Two notifications waiting in the outbox
+
+    private List<NotificationOutbox> testPendingNotifications = List.of(
+            new NotificationOutbox(1, 1, 1, 1, "Testing. I want cheetos.", "testUser", null, null, 0, null, null),
+            new NotificationOutbox(2, 1, 1, 2, "Testing. I want boba.", "testUser2", null, null, 0, null, null));
+
+
+// |           TESTING SEND PENDING NOTIFICATIONS  | \\
+
+    // dispatchOutbox Happy Path 😊
+    @Test
+    public void testDispatchOutboxPass() {
+        // Setup of mock method with "parameters"
+        when(mockNotificationOutboxRepository.findByDeadLetteredAtIsNullOrderByOutboxIdAsc(PageRequest.of(0, 100))).thenReturn(testPendingNotifications);
+
+        // Test the service method
+        int result = beanNotificationDispatcher.dispatchOutbox();
+
+        // Verify results: both notifications went out in one call and were taken out of the outbox
+        assertEquals(2, result);
+        verify(restTemplate, times(1)).postForEntity(eq("/notifications/batch"), anyList(), eq(String.class));
+        verify(mockNotificationOutboxRepository, times(1)).deleteAllInBatch(testPendingNotifications);
+    }
+
+    // dispatchOutbox Sad Path 😭
+    @Test
+    public void testDispatchOutboxFail() {
+        // Setup of mock method; simulating the microservice being down
+        when(mockNotificationOutboxRepository.findByDeadLetteredAtIsNullOrderByOutboxIdAsc(PageRequest.of(0, 100))).thenReturn(testPendingNotifications);
+        when(restTemplate.postForEntity(anyString(), any(), eq(String.class))).thenThrow(new ResourceAccessException("Connection refused"));
+
+        // Test the service method
+        int result = beanNotificationDispatcher.dispatchOutbox();
+
+        // Verify results: nothing was sent, and the notifications stay in the outbox for the next run
+        assertEquals(0, result);
+        verify(mockNotificationOutboxRepository, never()).deleteAllInBatch(any());
+    }
+
+
+    // dispatchOutbox Sad Path 😭: the microservice rejects one notification (a 4xx)
+    @Test
+    public void testDispatchOutboxRejectedFail() {
+        // Setup of mock method; any batch with comment 2 in it gets a 400
+        when(mockNotificationOutboxRepository.findByDeadLetteredAtIsNullOrderByOutboxIdAsc(PageRequest.of(0, 100))).thenReturn(testPendingNotifications);
+        when(restTemplate.postForEntity(anyString(), argThat(hasCommentId(2)), eq(String.class)))
+                .thenThrow(HttpClientErrorException.create(HttpStatus.BAD_REQUEST, "Bad Request", null, "Tsk tsk.".getBytes(), null));
+
+        // Test the service method
+        int result = beanNotificationDispatcher.dispatchOutbox();
+
+        // Verify results: the good notification still went out, and the bad one is dead-lettered with the error
+        assertEquals(1, result);
+        verify(mockNotificationOutboxRepository, times(1)).deleteAllInBatch(List.of(testPendingNotifications.get(0)));
+        NotificationOutbox rejected = testPendingNotifications.get(1);
+        verify(mockNotificationOutboxRepository, times(1)).save(rejected);
+        assertEquals(1, rejected.getAttempts());
+        assertTrue(rejected.getLastError().contains("Tsk tsk."));
+        assertNotNull(rejected.getDeadLetteredAt());
+    }
+
+    // dispatchOutbox Sad Path 😭: a notification the microservice can't process (a 422) is dead-lettered the first time
+    @Test
+    public void testDispatchOutboxDeadLetterFail() {
+        // Setup of mock method
+        NotificationOutbox badNotification = new NotificationOutbox(3, 1, 1, 3, "Testing. I want cheetos.", "testUser", null, null, 0, null, null);
+        when(mockNotificationOutboxRepository.findByDeadLetteredAtIsNullOrderByOutboxIdAsc(PageRequest.of(0, 100))).thenReturn(new ArrayList<>(List.of(badNotification)));
+        when(restTemplate.postForEntity(anyString(), any(), eq(String.class)))
+                .thenThrow(HttpClientErrorException.create(HttpStatus.UNPROCESSABLE_ENTITY, "Unprocessable Entity", null, null, null));
+
+        // Test the service method
+        int result = beanNotificationDispatcher.dispatchOutbox();
+
+        // Verify results: it won't be picked up again
+        assertEquals(0, result);
+        assertEquals(1, badNotification.getAttempts());
+        assertTrue(badNotification.getLastError().startsWith("422"));
+        assertNotNull(badNotification.getDeadLetteredAt());
+        verify(mockNotificationOutboxRepository, times(1)).save(badNotification);
+        verify(mockNotificationOutboxRepository, never()).deleteAllInBatch(any());
+    }
+
+    // dispatchOutbox Sad Path 😭: the microservice is throttling us (a 429)
+    @Test
+    public void testDispatchOutboxTooManyRequestsFail() {
+        // Setup of mock method
+        when(mockNotificationOutboxRepository.findByDeadLetteredAtIsNullOrderByOutboxIdAsc(PageRequest.of(0, 100))).thenReturn(testPendingNotifications);
+        when(restTemplate.postForEntity(anyString(), any(), eq(String.class)))
+                .thenThrow(HttpClientErrorException.create(HttpStatus.TOO_MANY_REQUESTS, "Too Many Requests", null, null, null));
+
+        // Test the service method
+        int result = beanNotificationDispatcher.dispatchOutbox();
+
+        // Verify results: one call, no splitting, and every notification is still pending for the next run, with nothing counted against it
+        assertEquals(0, result);
+        verify(restTemplate, times(1)).postForEntity(anyString(), any(), eq(String.class));
+        verify(mockNotificationOutboxRepository, never()).save(any());
+        verify(mockNotificationOutboxRepository, never()).deleteAllInBatch(any());
+        for (NotificationOutbox pending : testPendingNotifications) {
+            assertEquals(0, pending.getAttempts());
+            assertNull(pending.getDeadLetteredAt());
+        }
+    }
+
+    // dispatchOutbox Happy Path 😊: a batch too big for the microservice (a 413) goes out in smaller batches
+    @Test
+    public void testDispatchOutboxPayloadTooLargePass() {
+        // Setup of mock method; only one notification fits in a request
+        when(mockNotificationOutboxRepository.findByDeadLetteredAtIsNullOrderByOutboxIdAsc(PageRequest.of(0, 100))).thenReturn(testPendingNotifications);
+        when(restTemplate.postForEntity(anyString(), argThat(batch -> batch instanceof List<?> notifications && notifications.size() > 1), eq(String.class)))
+                .thenThrow(HttpClientErrorException.create(HttpStatus.PAYLOAD_TOO_LARGE, "Payload Too Large", null, null, null));
+
+        // Test the service method
+        int result = beanNotificationDispatcher.dispatchOutbox();
+
+        // Verify results: both went out one at a time, and neither was counted as rejected
+        assertEquals(2, result);
+        verify(mockNotificationOutboxRepository, times(1)).deleteAllInBatch(List.of(testPendingNotifications.get(0)));
+        verify(mockNotificationOutboxRepository, times(1)).deleteAllInBatch(List.of(testPendingNotifications.get(1)));
+        verify(mockNotificationOutboxRepository, never()).save(any());
+        assertEquals(0, testPendingNotifications.get(1).getAttempts());
+    }
+
+    // Matches a batch sent to the microservice that has the notification for this comment in it
+    private static ArgumentMatcher<Object> hasCommentId(Integer commentId) {
+        return batch -> batch instanceof List<?> notifications
+                && notifications.stream().anyMatch(notification -> notification instanceof NotificationDTO dto && commentId.equals(dto.getCommentId()));
+    }
+
+}
@@ -0,0 +1,220 @@
+package com.example.springreferallmain.service;
+
+import com.example.springreferallmain.model.Comment;
+import com.example.springreferallmain.model.Post;
+import com.example.springreferallmain.model.Tag;
+import com.example.springreferallmain.repository.IPostRepository;
+import com.example.springreferallmain.testdata.TestData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+public class PostSearchIndexTest {
+
+    @Autowired
+    PostSearchIndex beanPostSearchIndex;
+
+    @MockBean
+    IPostRepository mockPostRepository;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    // ----------- TEST DATA  -----------
+    // A post with a word in its title, and another post with the same word only in its content
+
+    private Post titlePost = makePost(1, "Remote Java jobs", "Apply through the link below.");
+    private Post contentPost = makePost(2, "Hiring", "We have remote roles for Java developers.");
+
+    private static Post makePost(Integer postId, String title, String content) {
+        Post post = new Post();
+        post.setPostId(postId);
+        post.setPostTitle(title);
+        post.setPostContent(content);
+        post.setTags(new ArrayList<>());
+        post.setComments(new ArrayList<>());
+        return post;
+    }
+
+    // Start every test with an empty index (the mock repository has no posts)
+    @BeforeEach
+    public void setUp() {
+        beanPostSearchIndex.rebuild();
+    }
+
+
+// |           TESTING SEARCH  | \\
+
+    // search Happy Path 😊
+    @Test
+    public void testSearchPass() {
+        // Setup: index both posts
+        beanPostSearchIndex.indexPost(contentPost);
+        beanPostSearchIndex.indexPost(titlePost);
+
+        // Test the index method
+        List<Integer> result = beanPostSearchIndex.search("REMOTE java", 0, 10);
+
+        // Verify the post with the words in its title ranks first
+        assertEquals(List.of(1, 2), result);
+    }
+
+    // search finds posts by tag name and comment text too 😊
+    @Test
+    public void testSearchTagsAndCommentsPass() {
+        // Setup: tag one post and comment on the other
+        Tag testTag = TestData.makeTestTag1();
+        testTag.setTagName("internship");
+        titlePost.getTags().add(testTag);
+        Comment testComment = TestData.makeTestComment1();
+        testComment.setCommentText("Is this open to new grads?");
+        contentPost.getComments().add(testComment);
+
+        beanPostSearchIndex.indexPost(titlePost);
+        beanPostSearchIndex.indexPost(contentPost);
+
+        // Verify results
+        assertEquals(List.of(1), beanPostSearchIndex.search("internship", 0, 10));
+        assertEquals(List.of(2), beanPostSearchIndex.search("grads", 0, 10));
+    }
+
+    // search pages through results 😊
+    @Test
+    public void testSearchPagePass() {
+        beanPostSearchIndex.indexPost(titlePost);
+        beanPostSearchIndex.indexPost(contentPost);
+
+        // Verify results
+        assertEquals(List.of(1), beanPostSearchIndex.search("java", 0, 1));
+        assertEquals(List.of(2), beanPostSearchIndex.search("java", 1, 1));
+        assertTrue(beanPostSearchIndex.search("java", 2, 1).isEmpty());
+    }
+
+    // A huge page is empty, rather than overflowing page * size 😭
+    @Test
+    public void testSearchHugePageFail() {
+        beanPostSearchIndex.indexPost(titlePost);
+        beanPostSearchIndex.indexPost(contentPost);
+
+        // Verify results
+        assertTrue(beanPostSearchIndex.search("java", Integer.MAX_VALUE, 2).isEmpty());
+        assertTrue(beanPostSearchIndex.search("java", 1, Integer.MAX_VALUE).isEmpty());
+        assertEquals(List.of(1, 2), beanPostSearchIndex.search("java", 0, Integer.MAX_VALUE));
+    }
+
+    // search Sad Path 😭
+    @Test
+    public void testSearchFail() {
+        beanPostSearchIndex.indexPost(titlePost);
+
+        // Verify results: unknown words and stop words match nothing
+        assertTrue(beanPostSearchIndex.search("nonexistent", 0, 10).isEmpty());
+        assertTrue(beanPostSearchIndex.search("the", 0, 10).isEmpty());
+    }
+
+
+// |           TESTING UPDATE AND DELETE  | \\
+
+    // indexPost replaces the old version of an edited post 😊
+    @Test
+    public void testIndexPostUpdatePass() {
+        beanPostSearchIndex.indexPost(titlePost);
+
+        titlePost.setPostTitle("Remote Python jobs");
+        beanPostSearchIndex.indexPost(titlePost);
+
+        // Verify results
+        assertTrue(beanPostSearchIndex.search("java", 0, 10).isEmpty());
+        assertEquals(List.of(1), beanPostSearchIndex.search("python", 0, 10));
+    }
+
+    // removePost takes a deleted post out of the results 😊
+    @Test
+    public void testRemovePostPass() {
+        beanPostSearchIndex.indexPost(titlePost);
+        beanPostSearchIndex.indexPost(contentPost);
+
+        beanPostSearchIndex.removePost(1);
+
+        // Verify results
+        assertEquals(List.of(2), beanPostSearchIndex.search("java", 0, 10));
+    }
+
+
+    // Inside a transaction the index only changes once it commits 😊
+    @Test
+    public void testIndexPostAfterCommitPass() {
+        transactionTemplate.executeWithoutResult(status -> {
+            beanPostSearchIndex.indexPost(titlePost);
+            // Not searchable until the transaction commits
+            assertTrue(beanPostSearchIndex.search("java", 0, 10).isEmpty());
+        });
+
+        // Verify results
+        assertEquals(List.of(1), beanPostSearchIndex.search("java", 0, 10));
+    }
+
+    // A write that rolls back leaves the index as it was 😭
+    @Test
+    public void testIndexPostRollbackFail() {
+        beanPostSearchIndex.indexPost(titlePost);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            beanPostSearchIndex.removePost(1);
+            beanPostSearchIndex.indexPost(contentPost);
+            status.setRollbackOnly();
+        });
+
+        // Verify results
+        assertEquals(List.of(1), beanPostSearchIndex.search("java", 0, 10));
+    }
+
+
+// |           TESTING COMMENTS  | \\
+
+    // commentChanged adds, swaps and takes away just that comment's words, without reading the post's comments 😊
+    @Test
+    public void testCommentChangedPass() {
+        beanPostSearchIndex.indexPost(titlePost);
+        beanPostSearchIndex.indexPost(contentPost);
+        // If the index read the thread it would find this; it must only use the text it is given
+        contentPost.getComments().add(new Comment(null, "Kotlin too?", 0, null, null, contentPost, null));
+
+        beanPostSearchIndex.commentChanged(2, null, "Is this remote? Python welcome?");
+        assertEquals(List.of(2), beanPostSearchIndex.search("python", 0, 10));
+        assertTrue(beanPostSearchIndex.search("kotlin", 0, 10).isEmpty());
+        // Post 2 now uses "remote" in its content once and in comments three times, so it moves ahead of post 1 (title, worth 3)
+        beanPostSearchIndex.commentChanged(2, null, "Remote remote remote");
+        assertEquals(List.of(2, 1), beanPostSearchIndex.search("remote", 0, 10));
+        beanPostSearchIndex.commentChanged(2, "Remote remote remote", null);
+
+        beanPostSearchIndex.commentChanged(2, "Is this remote? Python welcome?", "Is this remote? Scala welcome?");
+        assertTrue(beanPostSearchIndex.search("python", 0, 10).isEmpty());
+        assertEquals(List.of(2), beanPostSearchIndex.search("scala", 0, 10));
+
+        beanPostSearchIndex.commentChanged(2, "Is this remote? Scala welcome?", null);
+
+        // Verify results: only the comment's words are gone, the post's own words still match
+        assertTrue(beanPostSearchIndex.search("scala", 0, 10).isEmpty());
+        assertEquals(List.of(2), beanPostSearchIndex.search("developers", 0, 10));
+        assertEquals(List.of(1, 2), beanPostSearchIndex.search("remote", 0, 10));
+    }
+
+    // A comment on a post that isn't in the index (e.g. it was just deleted) is ignored 😭
+    @Test
+    public void testCommentChangedFail() {
+        beanPostSearchIndex.commentChanged(3, null, "Python welcome");
+
+        // Verify results
+        assertTrue(beanPostSearchIndex.search("python", 0, 10).isEmpty());
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.springreferallmain.service;
 
+import com.example.springreferallmain.dto.FeedPageDTO;
 import com.example.springreferallmain.model.Comment;
 import com.example.springreferallmain.model.Post;
 import com.example.springreferallmain.model.Tag;
@@ -11,7 +12,10 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -31,6 +35,15 @@ public class PostServiceTest {
     @MockBean
     IUserRepository mockUserRepository;
 
+    @MockBean
+    PostSearchIndex mockPostSearchIndex;
+
+    @MockBean
+    PostTagIndex mockPostTagIndex;
+
+    @MockBean
+    TrendingPosts mockTrendingPosts;
+
     // ----------- TEST DATA  -----------
     // #DRY - keeping in DRY, variables to represent return from Test Data class
     private Post testPost = TestData.makeTestPost1();
@@ -63,6 +76,8 @@ public class PostServiceTest {
         assertEquals(testPost, result);
 
         verify(mockPostRepository, times(1)).save(testPost);
+        verify(mockPostSearchIndex, times(1)).indexPost(testPost);
+        verify(mockTrendingPosts, times(1)).postCreated(testPost.getPostId(), testPost.getTimePostCreated());
     }
 
     // addPost Sad Path 😭
@@ -149,6 +164,143 @@ public class PostServiceTest {
         assertNotEquals(result.size(), 0, "Size was expected to be non-zero");
     }
 
+// Get one page of the homepage feed
+    // getPostFeed Happy Path 😊
+    @Test
+    public void testGetPostFeedPass() {
+        // Setup of mock method with "parameters"
+        // We ask for a page of 1 and the repository returns 2 rows (page size + 1), which means there is another page
+        testPosts.get(0).setTimePostCreated(LocalDateTime.of(2024, 5, 1, 10, 0));
+        testPosts.get(1).setTimePostCreated(LocalDateTime.of(2024, 4, 30, 10, 0));
+        when(mockPostRepository.findFeedFirstPage(PageRequest.of(0, 2))).thenReturn(testPosts);
+
+        // Test the service method
+        FeedPageDTO result = beanPostService.getPostFeed(null, 1);
+
+        // Verify results
+        assertNotNull(result);
+        assertEquals(1, result.getPosts().size());
+        assertEquals(testPosts.get(0), result.getPosts().get(0));
+        assertNotNull(result.getNextCursor());
+
+        // The cursor should bring us to the page after the first post
+        beanPostService.getPostFeed(result.getNextCursor(), 1);
+        verify(mockPostRepository, times(1)).findFeedPageAfter(LocalDateTime.of(2024, 5, 1, 10, 0), 1, PageRequest.of(0, 2));
+    }
+
+    // getPostFeed Sad Path 😭
+    @Test
+    public void testGetPostFeedFail() {
+        // Setup of mock method with "parameters"
+        String tamperedCursor = "not-a-real-cursor";
+
+        // Verify results (service method is called here as well)
+        assertThrows(IllegalArgumentException.class, () -> beanPostService.getPostFeed(tamperedCursor, 10));
+        verify(mockPostRepository, never()).findFeedPageAfter(any(), any(), any());
+    }
+
+// Full text search over posts
+    // searchPosts Happy Path 😊
+    @Test
+    public void testSearchPostsPass() {
+        // Setup of mock method with "parameters"
+        // The index ranks post 2 above post 1, and the repository returns them in id order
+        String query = "jobs";
+        when(mockPostSearchIndex.search(query, 0, 20)).thenReturn(List.of(2, 1));
+        when(mockPostRepository.findPostsByPostIdIn(List.of(2, 1))).thenReturn(testPosts);
+
+        // Test the service method
+        List<Post> result = beanPostService.searchPosts(query, 0, 20);
+
+        // Verify results come back in the order the index ranked them
+        assertNotNull(result);
+        assertEquals(2, result.get(0).getPostId());
+        assertEquals(1, result.get(1).getPostId());
+
+        verify(mockPostRepository, times(1)).findPostsByPostIdIn(List.of(2, 1));
+    }
+
+    // searchPosts Sad Path 😭
+    @Test
+    public void testSearchPostsFail() {
+        // Setup of mock method with "parameters"
+        String nonexistentWord = "Nonexistent";
+        when(mockPostSearchIndex.search(nonexistentWord, 0, 20)).thenReturn(List.of());
+
+        // Test the service method
+        List<Post> result = beanPostService.searchPosts(nonexistentWord, 0, 20);
+
+        // Verify results (no match means we don't even go to the database)
+        assertTrue(result.isEmpty());
+        verify(mockPostRepository, never()).findPostsByPostIdIn(any());
+    }
+
+// Trending posts
+    // getTrendingPosts Happy Path 😊
+    @Test
+    public void testGetTrendingPostsPass() {
+        // Setup of mock method with "parameters"
+        // Post 2 is trending more than post 1, and the repository returns them in id order
+        when(mockTrendingPosts.getTrendingPostIds(20)).thenReturn(List.of(2, 1));
+        when(mockPostRepository.findPostsByPostIdIn(List.of(2, 1))).thenReturn(testPosts);
+
+        // Test the service method
+        List<Post> result = beanPostService.getTrendingPosts(20);
+
+        // Verify results come back most trending first
+        assertEquals(2, result.size());
+        assertEquals(2, result.get(0).getPostId());
+        assertEquals(1, result.get(1).getPostId());
+    }
+
+    // getTrendingPosts Sad Path 😭
+    @Test
+    public void testGetTrendingPostsFail() {
+        // Setup of mock method with "parameters"
+        when(mockTrendingPosts.getTrendingPostIds(20)).thenReturn(List.of());
+
+        // Test the service method
+        List<Post> result = beanPostService.getTrendingPosts(20);
+
+        // Verify results (nothing trending means we don't even go to the database)
+        assertTrue(result.isEmpty());
+        verify(mockPostRepository, never()).findPostsByPostIdIn(any());
+    }
+
+// Get posts filtered by several tags
+    // getPostsByTags Happy Path 😊
+    @Test
+    public void testGetPostsByTagsPass() {
+        // Setup of mock method with "parameters"
+        // The index gives the newest post first, and the repository returns them in any order
+        List<Integer> tagIds = List.of(1, 2);
+        when(mockPostTagIndex.findPostIds(tagIds, PostTagIndex.Mode.AND, 0, 20)).thenReturn(List.of(2, 1));
+        when(mockPostRepository.findPostsByPostIdIn(List.of(2, 1))).thenReturn(testPosts);
+
+        // Test the service method
+        List<Post> result = beanPostService.getPostsByTags(tagIds, PostTagIndex.Mode.AND, 0, 20);
+
+        // Verify results come back newest first
+        assertEquals(2, result.size());
+        assertEquals(2, result.get(0).getPostId());
+        assertEquals(1, result.get(1).getPostId());
+    }
+
+    // getPostsByTags Sad Path 😭
+    @Test
+    public void testGetPostsByTagsFail() {
+        // Setup of mock method with "parameters"
+        List<Integer> nonexistentTagIds = List.of(100);
+        when(mockPostTagIndex.findPostIds(nonexistentTagIds, PostTagIndex.Mode.OR, 0, 20)).thenReturn(List.of());
+
+        // Test the service method
+        List<Post> result = beanPostService.getPostsByTags(nonexistentTagIds, PostTagIndex.Mode.OR, 0, 20);
+
+        // Verify results (no match means we don't even go to the database)
+        assertTrue(result.isEmpty());
+        verify(mockPostRepository, never()).findPostsByPostIdIn(any());
+    }
+
 // Get all posts matching a keyword search, i.e. so users can see matching refer-all posts
     // getPostsByDescriptionContaining Happy Path 😊
     @Test
@@ -205,7 +357,8 @@ public class PostServiceTest {
         updatedTestPost.setTags(testTags);
 
 
-        when(mockPostRepository.save(updatedTestPost)).thenReturn(updatedTestPost);
+        // The repository hands back whatever the service saved
+        when(mockPostRepository.save(any(Post.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
         // Test the service method and the updatedTestPost is what we want to update it to
         Post result = beanPostService.updatePostById(postId, updatedTestPost);
@@ -213,12 +366,16 @@ public class PostServiceTest {
         // Verify results to prove it actually updated
         // 1.) Verify that the existing post was updated with the new data
         assertNotNull(result);
-        assertEquals (updatedTestPost, result);
+        assertEquals("updatedTitle", result.getPostTitle());
+        assertEquals("Updating blah blah", result.getPostContent());
+        assertEquals("www.blah-blah.com", result.getPostMediaURL());
+        // Likes only change through LikeService, so the edit leaves them alone
+        assertEquals(0, result.getNumberLikesOnPost());
 
 
         // 2.) Verify the calls to repository were made
         verify(mockPostRepository, times(1)).findById(postId);
-        verify(mockPostRepository, times(1)).save(updatedTestPost);
+        verify(mockPostRepository, times(1)).save(result);
 
     }
 
@@ -235,6 +392,29 @@ public class PostServiceTest {
 
     }
 
+    // updatePostById Sad Path 😭: the client read version 1, but the post has been edited since, so nothing is saved
+    @Test
+    public void testUpdatePostByIdConflict() {
+        // Setup of mock method with "parameters"
+        Integer postId = 1;
+        testPost.setVersion(2);
+        when(mockPostRepository.findById(postId)).thenReturn(Optional.ofNullable(testPost));
+
+        Post editedPost = new Post();
+        editedPost.setPostTitle("updatedTitle");
+        editedPost.setPostContent("Updating blah blah");
+        editedPost.setVersion(1);
+
+        // Verify results (and service method is called here)
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> beanPostService.updatePostById(postId, editedPost));
+        verify(mockPostRepository, never()).save(any(Post.class));
+
+        // The version it just read goes through
+        editedPost.setVersion(2);
+        when(mockPostRepository.save(any(Post.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        assertEquals("updatedTitle", beanPostService.updatePostById(postId, editedPost).getPostTitle());
+    }
+
 
 // |           TESTING DELETE  | \\
 // Delete post by id
@@ -0,0 +1,118 @@
+package com.example.springreferallmain.service;
+
+import com.example.springreferallmain.model.Post;
+import com.example.springreferallmain.model.Tag;
+import com.example.springreferallmain.repository.IPostRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+public class PostTagIndexTest {
+
+    @Autowired
+    PostTagIndex beanPostTagIndex;
+
+    @MockBean
+    IPostRepository mockPostRepository;
+
+    // ----------- TEST DATA  -----------
+    // Post 1 has tags 10 and 20, post 2 has tag 10, post 3 has tag 20, post 4 has no tags
+
+    private static Post makePost(Integer postId, Integer... tagIds) {
+        Post post = new Post();
+        post.setPostId(postId);
+        List<Tag> tags = new ArrayList<>();
+        for (Integer tagId : tagIds) {
+            Tag tag = new Tag();
+            tag.setTagId(tagId);
+            tags.add(tag);
+        }
+        post.setTags(tags);
+        return post;
+    }
+
+    // Start every test with an empty index (the mock repository has no posts), then index the 4 posts
+    @BeforeEach
+    public void setUp() {
+        beanPostTagIndex.rebuild();
+        beanPostTagIndex.indexPost(makePost(1, 10, 20));
+        beanPostTagIndex.indexPost(makePost(2, 10));
+        beanPostTagIndex.indexPost(makePost(3, 20));
+        beanPostTagIndex.indexPost(makePost(4));
+    }
+
+
+// |           TESTING QUERY  | \\
+
+    // findPostIds AND: posts with all the tags
+    @Test
+    public void testFindPostIdsAnd() {
+        assertEquals(List.of(1), beanPostTagIndex.findPostIds(List.of(10, 20), PostTagIndex.Mode.AND, 0, 20));
+    }
+
+    // findPostIds OR: posts with any of the tags, newest first
+    @Test
+    public void testFindPostIdsOr() {
+        assertEquals(List.of(3, 2, 1), beanPostTagIndex.findPostIds(List.of(10, 20), PostTagIndex.Mode.OR, 0, 20));
+    }
+
+    // findPostIds NOT: posts with none of the tags
+    @Test
+    public void testFindPostIdsNot() {
+        assertEquals(List.of(4, 3), beanPostTagIndex.findPostIds(List.of(10), PostTagIndex.Mode.NOT, 0, 20));
+    }
+
+    // findPostIds Sad Path 😭: no post can have a tag nobody uses
+    @Test
+    public void testFindPostIdsUnknownTag() {
+        assertTrue(beanPostTagIndex.findPostIds(List.of(10, 99), PostTagIndex.Mode.AND, 0, 20).isEmpty());
+        assertEquals(List.of(2, 1), beanPostTagIndex.findPostIds(List.of(10, 99), PostTagIndex.Mode.OR, 0, 20));
+    }
+
+    // findPostIds paging: the second page of 2 starts after the 2 newest posts
+    @Test
+    public void testFindPostIdsSecondPage() {
+        assertEquals(List.of(1), beanPostTagIndex.findPostIds(List.of(10, 20), PostTagIndex.Mode.OR, 1, 2));
+    }
+
+
+// |           TESTING UPDATE  | \\
+
+    // addTagToPost: post 2 now has both tags
+    @Test
+    public void testAddTagToPost() {
+        beanPostTagIndex.addTagToPost(2, 20);
+
+        assertEquals(List.of(2, 1), beanPostTagIndex.findPostIds(List.of(10, 20), PostTagIndex.Mode.AND, 0, 20));
+    }
+
+    // removePost: a deleted post doesn't match anything, not even NOT
+    @Test
+    public void testRemovePost() {
+        beanPostTagIndex.removePost(1);
+
+        assertTrue(beanPostTagIndex.findPostIds(List.of(10, 20), PostTagIndex.Mode.AND, 0, 20).isEmpty());
+        assertEquals(List.of(4, 3, 2), beanPostTagIndex.findPostIds(List.of(99), PostTagIndex.Mode.NOT, 0, 20));
+    }
+
+    // rebuild: the index is loaded from the post ids and Tag_Posts rows in the database
+    @Test
+    public void testRebuild() {
+        when(mockPostRepository.findAllPostIds()).thenReturn(List.of(5, 6));
+        when(mockPostRepository.findAllPostTagPairs()).thenReturn(List.of(new Object[]{5, 30}, new Object[]{6, 30}));
+
+        beanPostTagIndex.rebuild();
+
+        assertEquals(List.of(6, 5), beanPostTagIndex.findPostIds(List.of(30), PostTagIndex.Mode.AND, 0, 20));
+        assertTrue(beanPostTagIndex.findPostIds(List.of(10), PostTagIndex.Mode.OR, 0, 20).isEmpty());
+    }
+}
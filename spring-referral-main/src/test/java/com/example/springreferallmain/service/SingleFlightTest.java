@@ -0,0 +1,118 @@
+package com.example.springreferallmain.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+public class SingleFlightTest {
+    @Autowired
+    SingleFlight beanSingleFlight;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    // ----------- TEST DATA  -----------
+    // A call that counts how often it actually ran, and holds on until we let it finish, so other requests can pile up behind it
+
+    private final AtomicInteger callsMade = new AtomicInteger();
+    private final CountDownLatch finishCall = new CountDownLatch(1);
+    private final ExecutorService requests = Executors.newFixedThreadPool(6);
+
+    private String slowCall() {
+        callsMade.incrementAndGet();
+        try {
+            finishCall.await(10, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "all posts";
+    }
+
+    private double shared(String name) {
+        Counter shared = meterRegistry.find("singleflight.calls").tags("name", name, "result", "shared").counter();
+        return shared == null ? 0 : shared.count();
+    }
+
+    // Wait until this many requests are waiting on the call already being made
+    private void awaitShared(String name, double count) throws InterruptedException {
+        for (int wait = 0; wait < 200 && shared(name) < count; wait++) {
+            Thread.sleep(25);
+        }
+        assertEquals(count, shared(name));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        finishCall.countDown();
+        requests.shutdownNow();
+    }
+
+
+// |           TESTING SINGLE FLIGHT  | \\
+
+    // call Happy Path 😊: requests that ask at the same time share one call and get the same result
+    @Test
+    public void testConcurrentCallsShareOneCall() throws Exception {
+        List<Future<String>> results = new ArrayList<>();
+        for (int request = 0; request < 5; request++) {
+            results.add(requests.submit(() -> beanSingleFlight.call("test.shared", "all", this::slowCall)));
+        }
+        awaitShared("test.shared", 4);
+        finishCall.countDown();
+
+        for (Future<String> result : results) {
+            assertEquals("all posts", result.get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(1, callsMade.get());
+    }
+
+    // call Happy Path 😊: different keys (i.e. different users) don't share, and once a call is done the next request makes a fresh one
+    @Test
+    public void testDifferentKeysAndLaterCallsAreMade() throws Exception {
+        Future<String> user1 = requests.submit(() -> beanSingleFlight.call("test.keys", 1, this::slowCall));
+        // While user 1's call is still being made
+        assertEquals("user 2", beanSingleFlight.call("test.keys", 2, () -> "user 2"));
+
+        finishCall.countDown();
+        assertEquals("all posts", user1.get(10, TimeUnit.SECONDS));
+        assertEquals("again", beanSingleFlight.call("test.keys", 1, () -> "again"));
+        assertEquals(0, shared("test.keys"));
+    }
+
+    // call Sad Path 😭: if the call throws, every request waiting on it gets the same exception
+    @Test
+    public void testExceptionIsShared() throws Exception {
+        List<Future<String>> results = new ArrayList<>();
+        for (int request = 0; request < 3; request++) {
+            results.add(requests.submit(() -> beanSingleFlight.call("test.failing", 7, () -> {
+                slowCall();
+                throw new RuntimeException("User with id 7 does not exist.");
+            })));
+        }
+        awaitShared("test.failing", 2);
+        finishCall.countDown();
+
+        for (Future<String> result : results) {
+            ExecutionException thrown = assertThrows(ExecutionException.class, () -> result.get(10, TimeUnit.SECONDS));
+            assertEquals("User with id 7 does not exist.", thrown.getCause().getMessage());
+        }
+        assertEquals(1, callsMade.get());
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.springreferallmain.service;
+
+import com.example.springreferallmain.model.Post;
+import com.example.springreferallmain.model.Tag;
+import com.example.springreferallmain.repository.IPostRepository;
+import com.example.springreferallmain.repository.ITagRepository;
+import com.example.springreferallmain.testdata.TestData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+// Caching is off for the other tests, so we turn it on here
+@SpringBootTest(properties = "spring.cache.type=caffeine")
+public class TagCatalogCacheTest {
+    @Autowired
+    TagService beanTagService;
+
+    @Autowired
+    TagCatalogCache beanTagCatalogCache;
+
+    @MockBean
+    ITagRepository mockTagRepository;
+
+    @MockBean
+    IPostRepository mockPostRepository;
+
+
+    // ----------- TEST DATA  -----------
+
+    private List<Tag> testTags = TestData.makeTestTags();
+    private Tag testTag = TestData.makeTestTag1();
+    private Post testPost = TestData.makeTestPost1();
+
+    @BeforeEach
+    public void setUp() {
+        // Start every test with empty caches
+        beanTagCatalogCache.evictCatalog();
+        beanTagCatalogCache.evictPostIds(testTag.getTagId());
+    }
+
+
+// |           TESTING TAG CATALOG  | \\
+
+    // getAllTags Happy Path 😊; only the first call goes to the database
+    @Test
+    public void testGetAllTagsCached() {
+        // Setup of mock method with "parameters"
+        when(mockTagRepository.findAll()).thenReturn(testTags);
+
+        // Test the service method
+        beanTagService.getAllTags();
+        List<Tag> result = beanTagService.getAllTags();
+
+        // Verify results
+        assertEquals(testTags, result);
+        verify(mockTagRepository, times(1)).findAll();
+    }
+
+    // addTag; a new tag means the next call goes back to the database
+    @Test
+    public void testAddTagEvictsCatalog() {
+        // Setup of mock method with "parameters"
+        when(mockTagRepository.findAll()).thenReturn(testTags);
+        when(mockTagRepository.save(testTag)).thenReturn(testTag);
+
+        // Test the service method
+        beanTagService.getAllTags();
+        beanTagService.addTag(testTag);
+        beanTagService.getAllTags();
+
+        // Verify results
+        verify(mockTagRepository, times(2)).findAll();
+    }
+
+
+// |           TESTING TAG POST IDS  | \\
+
+    // getPostsByTagById Happy Path 😊; the post ids only come from the database once
+    @Test
+    public void testGetPostIdsForTagCached() {
+        // Setup of mock method with "parameters"
+        Integer tagId = testTag.getTagId();
+        when(mockTagRepository.existsById(tagId)).thenReturn(true);
+        when(mockPostRepository.findPostIdsByTagId(tagId)).thenReturn(List.of(testPost.getPostId()));
+        when(mockPostRepository.findPostsByPostIdIn(List.of(testPost.getPostId()))).thenReturn(List.of(testPost));
+
+        // Test the service method
+        beanTagService.getPostsByTagById(tagId);
+        List<Post> result = beanTagService.getPostsByTagById(tagId);
+
+        // Verify results
+        assertEquals(List.of(testPost), result);
+        verify(mockPostRepository, times(1)).findPostIdsByTagId(tagId);
+    }
+
+    // getPostsByTagById Sad Path 😭; an unknown tag isn't cached, so it is checked again every time
+    @Test
+    public void testGetPostIdsForUnknownTagNotCached() {
+        // Setup of mock method with "parameters"
+        Integer nonexistentTagId = testTag.getTagId();
+        when(mockTagRepository.existsById(nonexistentTagId)).thenReturn(false);
+
+        // Verify results (service method is called here as well)
+        assertThrows(RuntimeException.class, () -> beanTagService.getPostsByTagById(nonexistentTagId));
+        assertThrows(RuntimeException.class, () -> beanTagService.getPostsByTagById(nonexistentTagId));
+        verify(mockTagRepository, times(2)).existsById(nonexistentTagId);
+    }
+
+    // addTagToPost; tagging a post means the tag's post ids are loaded again
+    @Test
+    public void testAddTagToPostEvictsPostIds() {
+        // Setup of mock method with "parameters"
+        Integer tagId = testTag.getTagId();
+        when(mockTagRepository.existsById(tagId)).thenReturn(true);
+        when(mockTagRepository.findById(tagId)).thenReturn(Optional.of(testTag));
+        when(mockPostRepository.findById(testPost.getPostId())).thenReturn(Optional.of(testPost));
+        when(mockPostRepository.findPostIdsByTagId(tagId)).thenReturn(List.of(), List.of(testPost.getPostId()));
+
+        // Test the service method
+        assertTrue(beanTagCatalogCache.getPostIdsForTag(tagId).isEmpty());
+        beanTagService.addTagToPost(testPost.getPostId(), tagId);
+        List<Integer> result = beanTagCatalogCache.getPostIdsForTag(tagId);
+
+        // Verify results
+        assertEquals(List.of(testPost.getPostId()), result);
+        verify(mockPostRepository, times(2)).findPostIdsByTagId(tagId);
+    }
+}
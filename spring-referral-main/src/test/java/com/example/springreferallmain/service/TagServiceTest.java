@@ -28,6 +28,12 @@ public class TagServiceTest {
     @MockBean
     IPostRepository mockPostRepository;
 
+    @Autowired
+    PostSearchIndex beanPostSearchIndex;
+
+    @Autowired
+    PostTagIndex beanPostTagIndex;
+
     // ----------- TEST DATA  -----------
     // #DRY - keeping in DRY, variables to represent return from Test Data class
 
@@ -180,8 +186,10 @@ public class TagServiceTest {
         // Setup of mock method with "parameters"
         Integer tagId = 1;
 
-        when(mockTagRepository.findById(tagId)).thenReturn(Optional.ofNullable(testTag));
-        List <Post> testPostsTiedToTestTag = testTag.getPosts();
+        when(mockTagRepository.existsById(tagId)).thenReturn(true);
+        List <Post> testPostsTiedToTestTag = List.of(testPost);
+        when(mockPostRepository.findPostIdsByTagId(tagId)).thenReturn(List.of(testPost.getPostId()));
+        when(mockPostRepository.findPostsByPostIdIn(List.of(testPost.getPostId()))).thenReturn(testPostsTiedToTestTag);
 
 
         // We don't need to worry about simulating filtering since that is handled via repository layer, and we've already mocked a return result. Keep in mind we are just testing service logic here.
@@ -193,7 +201,8 @@ public class TagServiceTest {
         assertNotNull(result);
         assertEquals(testPostsTiedToTestTag, result);
 
-        verify(mockTagRepository, times(1)).findById(tagId);
+        verify(mockTagRepository, times(1)).existsById(tagId);
+        verify(mockPostRepository, times(1)).findPostIdsByTagId(tagId);
     }
 
     // getPostsByTagById Sad Path 😭
@@ -201,7 +210,7 @@ public class TagServiceTest {
     public void testGetPostsByTagByIdFail() {
         // Setup of mock method with "parameters"
         Integer nonexistentTagId = 1;
-        when(mockTagRepository.findById(nonexistentTagId)).thenReturn(Optional.empty());
+        when(mockTagRepository.existsById(nonexistentTagId)).thenReturn(false);
 
 
         // Verify results (service method is called here as well)
@@ -278,6 +287,61 @@ public class TagServiceTest {
     }
 
 
+    // deleteTagById takes the tag off its posts, so they can't be found by its name anymore 😊
+    @Test
+    public void testDeleteTagByIdReindexesPostsPass() {
+        // Setup: a post tagged "Kotlin" that can be found by that name
+        Integer tagId = 7;
+        Tag kotlinTag = new Tag(tagId, "Kotlin", "Kotlin jobs", new ArrayList<>());
+        Tag otherTag = TestData.makeTestTag2();
+        Post taggedPost = TestData.makeTestPost1();
+        taggedPost.setTags(new ArrayList<>(List.of(kotlinTag, otherTag)));
+        beanPostSearchIndex.indexPost(taggedPost);
+        assertEquals(List.of(1), beanPostSearchIndex.search("kotlin", 0, 10));
+
+        when(mockTagRepository.findById(tagId)).thenReturn(Optional.of(kotlinTag));
+        when(mockPostRepository.findDistinctPostsByTagsTagId(tagId)).thenReturn(List.of(taggedPost));
+
+        // Test the service method
+        beanTagService.deleteTagById(tagId);
+
+        // Verify results
+        assertEquals(List.of(otherTag), taggedPost.getTags());
+        assertTrue(beanPostSearchIndex.search("kotlin", 0, 10).isEmpty());
+        verify(mockTagRepository, times(1)).deleteById(tagId);
+    }
+
+
+    // deleteTagById leaves the tag in the post index until the delete commits, and for good if it rolls back 😊
+    @Test
+    public void testDeleteTagByIdAfterCommitPass() {
+        // Setup: post 1 tagged with tag 8
+        Integer tagId = 8;
+        Tag tag = new Tag(tagId, "Scala", "Scala jobs", new ArrayList<>());
+        Post taggedPost = TestData.makeTestPost1();
+        taggedPost.setTags(new ArrayList<>(List.of(tag)));
+        beanPostTagIndex.indexPost(taggedPost);
+        when(mockPostRepository.findDistinctPostsByTagsTagId(tagId)).thenReturn(List.of(taggedPost));
+
+        // The last read of the delete fails, so the transaction rolls back
+        when(mockTagRepository.findById(tagId)).thenReturn(Optional.of(tag)).thenThrow(new RuntimeException("Connection lost"));
+        assertThrows(RuntimeException.class, () -> beanTagService.deleteTagById(tagId));
+        assertEquals(List.of(1), beanPostTagIndex.findPostIds(List.of(tagId), PostTagIndex.Mode.OR, 0, 10));
+
+        // This time it commits; the tag is still in the index right up to the end of the transaction
+        List<List<Integer>> postIdsBeforeCommit = new ArrayList<>();
+        doReturn(Optional.of(tag)).doAnswer(invocation -> {
+            postIdsBeforeCommit.add(beanPostTagIndex.findPostIds(List.of(tagId), PostTagIndex.Mode.OR, 0, 10));
+            return Optional.empty();
+        }).when(mockTagRepository).findById(tagId);
+        assertTrue(beanTagService.deleteTagById(tagId));
+
+        // Verify results
+        assertEquals(List.of(List.of(1)), postIdsBeforeCommit);
+        assertTrue(beanPostTagIndex.findPostIds(List.of(tagId), PostTagIndex.Mode.OR, 0, 10).isEmpty());
+    }
+
+
     // deleteTagById Sad Path 😭
     @Test
     public void testDeleteTagByIdFail() {
@@ -0,0 +1,160 @@
+package com.example.springreferallmain.service;
+
+import com.example.springreferallmain.repository.ICommentRepository;
+import com.example.springreferallmain.repository.IPostRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+// Only 3 posts are kept ranked here, so we can see posts fall out of (and climb back into) the top
+@SpringBootTest(properties = {"trending.size=3", "trending.half-life=6h"})
+public class TrendingPostsTest {
+
+    @Autowired
+    TrendingPosts beanTrendingPosts;
+
+    @MockBean
+    IPostRepository mockPostRepository;
+
+    @MockBean
+    ICommentRepository mockCommentRepository;
+
+    // A clock we move forward by hand
+    private final AtomicLong now = new AtomicLong(Duration.ofDays(1000).toMillis());
+
+    // Start every test with nothing trending (the mock repositories have no posts)
+    @BeforeEach
+    public void setUp() {
+        beanTrendingPosts.setClock(now::get);
+        beanTrendingPosts.rebuild();
+    }
+
+    private void hoursPass(long hours) {
+        now.addAndGet(Duration.ofHours(hours).toMillis());
+    }
+
+
+// |           TESTING RANKING  | \\
+
+    // Recent activity beats more, older activity
+    @Test
+    public void testRecentCommentsBeatOlderComments() {
+        // Post 1 gets 3 comments, then a day later post 2 gets 2
+        beanTrendingPosts.postCommented(1);
+        beanTrendingPosts.postCommented(1);
+        beanTrendingPosts.postCommented(1);
+        hoursPass(24);
+        beanTrendingPosts.postCommented(2);
+        beanTrendingPosts.postCommented(2);
+
+        assertEquals(List.of(2, 1), beanTrendingPosts.getTrendingPostIds(20));
+    }
+
+    // A comment is worth more than a like
+    @Test
+    public void testCommentsCountMoreThanLikes() {
+        beanTrendingPosts.postsLiked(Map.of(1, 2L));
+        beanTrendingPosts.postCommented(2);
+
+        assertEquals(List.of(2, 1), beanTrendingPosts.getTrendingPostIds(20));
+        assertEquals(List.of(2), beanTrendingPosts.getTrendingPostIds(1));
+    }
+
+    // Only the best `size` posts are kept, and a post outside them can still climb back in
+    @Test
+    public void testOnlyTopPostsAreKept() {
+        for (int postId = 1; postId <= 4; postId++) {
+            beanTrendingPosts.postsLiked(Map.of(postId, (long) postId));
+        }
+        assertEquals(List.of(4, 3, 2), beanTrendingPosts.getTrendingPostIds(20));
+
+        // Post 1 gets a burst of comments
+        beanTrendingPosts.postCommented(1);
+        beanTrendingPosts.postCommented(1);
+        assertEquals(List.of(1, 4, 3), beanTrendingPosts.getTrendingPostIds(20));
+    }
+
+    // Unliking a top post lets a post that was outside the top take its place
+    @Test
+    public void testUnlikedPostIsReplaced() {
+        beanTrendingPosts.postsLiked(Map.of(1, 3L, 2, 2L, 3, 2L, 4, 1L));
+        assertEquals(List.of(1, 3, 2), beanTrendingPosts.getTrendingPostIds(20));
+
+        // Post 3 loses both likes, so post 4 (1 like) is now ahead of it
+        beanTrendingPosts.postsLiked(Map.of(3, -2L));
+        assertEquals(List.of(1, 2, 4), beanTrendingPosts.getTrendingPostIds(20));
+    }
+
+    // One flush can take likes away from one top post and add them to others, and the top is still right afterwards
+    @Test
+    public void testLikesAndUnlikesInOneFlush() {
+        beanTrendingPosts.postsLiked(Map.of(1, 3L, 2, 2L, 3, 2L, 4, 1L));
+
+        beanTrendingPosts.postsLiked(Map.of(1, -3L, 4, 2L, 5, 1L));
+        assertEquals(List.of(4, 3, 2), beanTrendingPosts.getTrendingPostIds(20));
+
+        // A flush with no likes changes nothing
+        beanTrendingPosts.postsLiked(Map.of());
+        assertEquals(List.of(4, 3, 2), beanTrendingPosts.getTrendingPostIds(20));
+    }
+
+    // Deleted posts stop trending
+    @Test
+    public void testRemovePost() {
+        beanTrendingPosts.postCommented(1);
+        beanTrendingPosts.postCommented(2);
+
+        beanTrendingPosts.removePost(2);
+
+        assertEquals(List.of(1), beanTrendingPosts.getTrendingPostIds(20));
+    }
+
+
+// |           TESTING BUILD / CLEAN UP  | \\
+
+    // On startup, the ranking is built from the recent posts and comments in the database
+    @Test
+    public void testRebuildFromDatabase() {
+        LocalDateTime nowAsDateTime = LocalDateTime.now();
+        when(mockPostRepository.findPostActivitySince(any())).thenReturn(List.of(
+                new Object[]{1, nowAsDateTime.minusHours(1), 5},
+                new Object[]{2, nowAsDateTime.minusHours(1), null}));
+        when(mockCommentRepository.findCommentTimesSince(any())).thenReturn(List.<Object[]>of(
+                new Object[]{2, nowAsDateTime.minusMinutes(5)},
+                new Object[]{2, nowAsDateTime.minusMinutes(5)}));
+
+        beanTrendingPosts.setClock(System::currentTimeMillis);
+        beanTrendingPosts.rebuild();
+
+        // Post 2: 1 + 2 comments (6) beats post 1: 1 + 5 likes (6), because the comments are newer
+        assertEquals(List.of(2, 1), beanTrendingPosts.getTrendingPostIds(20));
+    }
+
+    // Old posts outside the top are forgotten, and the ranking survives moving the epoch forward
+    @Test
+    public void testForgetInactivePosts() {
+        for (int postId = 1; postId <= 4; postId++) {
+            beanTrendingPosts.postCommented(postId);
+        }
+
+        // Long enough that the scores would overflow a double if the epoch were never moved
+        hoursPass(24 * 365);
+        beanTrendingPosts.forgetInactivePosts();
+        beanTrendingPosts.postsLiked(Map.of(1, 1L));
+        beanTrendingPosts.postCommented(5);
+
+        assertEquals(List.of(5, 1, 4), beanTrendingPosts.getTrendingPostIds(20));
+    }
+}
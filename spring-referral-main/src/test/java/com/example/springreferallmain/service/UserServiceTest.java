@@ -1,4 +1,5 @@
 package com.example.springreferallmain.service;
+import com.example.springreferallmain.dto.InboxPageDTO;
 import com.example.springreferallmain.model.Address;
 import com.example.springreferallmain.model.User;
 import com.example.springreferallmain.repository.IUserRepository;
@@ -7,6 +8,9 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
 
 import java.util.List;
 import java.util.Optional;
@@ -23,6 +27,9 @@ public class UserServiceTest {
     @MockBean
     IUserRepository mockUserRepository;
 
+    @MockBean
+    RestTemplate restTemplate;
+
 
     // ----------- TEST DATA  -----------
     // #DRY - keeping in DRY, variables to represent return from Test Data class
@@ -208,6 +215,24 @@ public void testUpdateUserByIdPass() {
         assertThrows(RuntimeException.class, () -> beanUserService.updateUserById(nonExistentUserId, testUser));
     }
 
+    // updateUserById Sad Path 😭: the client read version 1, but the account has been edited since, so nothing is saved
+    @Test
+    public void testUpdateUserByIdConflict() {
+        // Setup of mock method with "parameters"
+        Integer userId = 1;
+        testUser.setVersion(2);
+        when(mockUserRepository.findById(userId)).thenReturn(Optional.ofNullable(testUser));
+
+        User editedUser = new User();
+        editedUser.setUsername("UpdatedUsername");
+        editedUser.setAddress(testAddress);
+        editedUser.setVersion(1);
+
+        // Verify results (and service method is called here)
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> beanUserService.updateUserById(userId, editedUser));
+        verify(mockUserRepository, never()).save(any(User.class));
+    }
+
 
 
 // |           TESTING DELETE  | \\
@@ -245,5 +270,60 @@ public void testDeleteUserByIdPass() {
     }
 
 
+// |           TESTING NOTIFICATION INBOX  | \
+// Get one page of a user's inbox from the Notification microservice
+
+    // getNotificationInbox Happy Path 😊
+    @Test
+    public void testGetNotificationInboxPass() {
+        // Setup of mock method with "parameters"
+        Integer userId = 1;
+        InboxPageDTO testInboxPage = new InboxPageDTO(List.of(), null, 3);
+        when(mockUserRepository.findById(userId)).thenReturn(Optional.ofNullable(testUser));
+        when(restTemplate.getForObject("/notifications/1/inbox?limit=20&before=50", InboxPageDTO.class)).thenReturn(testInboxPage);
+
+        // Test the service method
+        InboxPageDTO result = beanUserService.getNotificationInbox(userId, 50, 20);
+
+        // Verify results
+        assertNotNull(result);
+        assertEquals(testInboxPage, result);
+    }
+
+    // getNotificationInbox Sad Path 😭
+    @Test
+    public void testGetNotificationInboxFail() {
+        // Setup of mock method with "parameters"
+        Integer nonexistentUserId = 100;
+        when(mockUserRepository.findById(nonexistentUserId)).thenReturn(Optional.empty());
+
+        // Verify results (service method is called here as well); we never call the microservice for an unknown user
+        assertThrows(RuntimeException.class, () -> beanUserService.getNotificationInbox(nonexistentUserId, null, 20));
+        verifyNoInteractions(restTemplate);
+    }
+
+    // getNotificationInbox Fallback Path: the microservice goes down, so the user sees the inbox we got last time
+    @Test
+    public void testGetNotificationInboxFallback() {
+        // Setup of mock method with "parameters"; the first call works, the second can't reach the microservice
+        Integer userId = 1;
+        InboxPageDTO testInboxPage = new InboxPageDTO(List.of(), null, 3);
+        when(mockUserRepository.findById(userId)).thenReturn(Optional.ofNullable(testUser));
+        when(restTemplate.getForObject("/notifications/1/inbox?limit=20", InboxPageDTO.class))
+                .thenReturn(testInboxPage)
+                .thenThrow(new ResourceAccessException("Connection refused"));
+
+        // Test the service method
+        beanUserService.getNotificationInbox(userId, null, 20);
+        InboxPageDTO result = beanUserService.getNotificationInbox(userId, null, 20);
+
+        // Verify results
+        assertEquals(testInboxPage, result);
+        // There is nothing saved for older pages, so those fail
+        when(restTemplate.getForObject("/notifications/1/inbox?limit=20&before=50", InboxPageDTO.class)).thenThrow(new ResourceAccessException("Connection refused"));
+        assertThrows(ResourceAccessException.class, () -> beanUserService.getNotificationInbox(userId, 50, 20));
+    }
+
+
 }
 
@@ -0,0 +1,120 @@
+package com.example.springreferallmain.service;
+
+import com.example.springreferallmain.model.Address;
+import com.example.springreferallmain.model.Post;
+import com.example.springreferallmain.model.User;
+import com.example.springreferallmain.repository.IPostRepository;
+import com.example.springreferallmain.repository.IUserRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Against a real (in-memory) database, since what we are testing is the UPDATE itself: what it changes, its version check, and that it's one statement.
+// Each update commits its own transaction, so the tests don't run inside one (and clean up after themselves instead).
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import(VersionedUpdate.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class VersionedUpdateTest {
+
+    @Autowired
+    VersionedUpdate beanVersionedUpdate;
+
+    @Autowired
+    IUserRepository iUserRepository;
+
+    @Autowired
+    IPostRepository iPostRepository;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Post testPost;
+
+    @BeforeEach
+    public void setUp() {
+        User user = iUserRepository.save(new User(null, "user", "user@example.com", "password", null, null, null, null, new Address(), null));
+        testPost = iPostRepository.save(new Post(null, "Hiring", "Java developers", 0, 0, "https://example.com/job.png", null, user, new ArrayList<>(), new ArrayList<>(), null));
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        iPostRepository.deleteAll();
+        iUserRepository.deleteAll();
+    }
+
+    private static Map<String, Object> changes(String attribute, Object value) {
+        Map<String, Object> changes = new LinkedHashMap<>();
+        changes.put(attribute, value);
+        return changes;
+    }
+
+
+// |           TESTING UPDATE  | \\
+
+    // update Happy Path 😊: one statement changes just the column that was sent, and moves the version on
+    @Test
+    public void testUpdateChangesOnlySentColumns() {
+        assertEquals(0, testPost.getVersion());
+
+        int newVersion = beanVersionedUpdate.update(Post.class, testPost.getPostId(), 0, changes("postTitle", "Hiring now"));
+
+        assertEquals(1, newVersion);
+        assertEquals(1, statistics.getPrepareStatementCount());
+        Post updatedPost = iPostRepository.findById(testPost.getPostId()).orElseThrow();
+        assertEquals("Hiring now", updatedPost.getPostTitle());
+        assertEquals("Java developers", updatedPost.getPostContent());
+        assertEquals("https://example.com/job.png", updatedPost.getPostMediaURL());
+        assertEquals(1, updatedPost.getVersion());
+    }
+
+    // update Sad Path 😭: an edit made from an older version is turned down and changes nothing
+    @Test
+    public void testUpdateFromStaleVersionConflicts() {
+        beanVersionedUpdate.update(Post.class, testPost.getPostId(), 0, changes("postTitle", "First edit"));
+
+        ObjectOptimisticLockingFailureException thrown = assertThrows(ObjectOptimisticLockingFailureException.class,
+                () -> beanVersionedUpdate.update(Post.class, testPost.getPostId(), 0, changes("postTitle", "Second edit")));
+
+        assertEquals("Post with id " + testPost.getPostId() + " was changed by someone else since version 0. Please reload it and try again.", thrown.getMessage());
+        Post updatedPost = iPostRepository.findById(testPost.getPostId()).orElseThrow();
+        assertEquals("First edit", updatedPost.getPostTitle());
+        assertEquals(1, updatedPost.getVersion());
+    }
+
+    // update Sad Path 😭: there is nothing to update
+    @Test
+    public void testUpdateMissingRowThrows() {
+        RuntimeException thrown = assertThrows(RuntimeException.class,
+                () -> beanVersionedUpdate.update(Post.class, 999999, 0, changes("postTitle", "Hiring now")));
+        assertEquals("Post with id 999999 does not exist.", thrown.getMessage());
+    }
+
+    // save Sad Path 😭: a post loaded before someone else's edit can't be saved over it (the load, change, save path of PUT)
+    @Test
+    public void testSaveOfStaleEntityConflicts() {
+        Post loadedPost = iPostRepository.findById(testPost.getPostId()).orElseThrow();
+        beanVersionedUpdate.update(Post.class, testPost.getPostId(), 0, changes("postContent", "Edited meanwhile"));
+
+        loadedPost.setPostTitle("Overwrite");
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> iPostRepository.save(loadedPost));
+        assertEquals("Edited meanwhile", iPostRepository.findById(testPost.getPostId()).orElseThrow().getPostContent());
+    }
+}